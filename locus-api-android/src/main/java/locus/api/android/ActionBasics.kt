@@ -23,6 +23,7 @@ import android.database.Cursor
 import android.net.Uri
 import android.text.TextUtils
 import locus.api.android.features.periodicUpdates.UpdateContainer
+import locus.api.android.features.periodicUpdates.UpdateContainerDeltaWriter
 import locus.api.android.objects.LocusInfo
 import locus.api.android.objects.LocusVersion
 import locus.api.android.objects.TrackRecordProfileSimple
@@ -50,6 +51,10 @@ object ActionBasics {
     // tag for logger
     private const val TAG = "ActionBasics"
 
+    // version of Locus Map, that does not provide delta updates of UpdateContainer
+    @Volatile
+    private var updateContainerDeltaMissing: LocusVersion? = null
+
     //*************************************************
     // CORE TOOLS
     //*************************************************
@@ -124,6 +129,70 @@ object ActionBasics {
         return null
     }
 
+    /**
+     * Update [container] with current fresh data. Only groups of values changed since last
+     * update of the container are transferred and read (see [UpdateContainer.applyDelta]).
+     * If Locus Map does not provide delta updates, complete new data are loaded into
+     * the container and its [UpdateContainer.deltaSequence] is reset.
+     *
+     * @param ctx current context
+     * @param lv required Locus version
+     * @param container previous container, updated in place
+     * @param groups requested groups of values, see [UpdateContainer.GROUPS_ALL]
+     * @return updated [container] or 'null' in case of problem
+     * @throws RequiredVersionMissingException if Locus in required version is missing
+     */
+    @JvmOverloads
+    @Throws(RequiredVersionMissingException::class)
+    fun getUpdateContainer(ctx: Context, lv: LocusVersion, container: UpdateContainer,
+            groups: Int = UpdateContainer.GROUPS_ALL): UpdateContainer? {
+        if (!isUpdateContainerDeltaMissing(lv)) {
+            // get scheme if valid Locus is available
+            val scheme = getProviderUriData(lv, VersionCode.UPDATE_13,
+                    LocusConst.CONTENT_PROVIDER_PATH_DATA + "/" + LocusConst.VALUE_UPDATE_CONTAINER_DELTA)
+
+            // execute action
+            try {
+                val data = queryData(ctx, scheme,
+                        UpdateContainerDeltaWriter.createSelection(container.deltaSequence, groups),
+                        LocusConst.VALUE_UPDATE_CONTAINER_DELTA)
+                if (data?.isNotEmpty() == true) {
+                    container.applyDelta(data, groups)
+                    return container
+                }
+            } catch (e: Exception) {
+                Logger.logE(TAG, "getUpdateContainer($ctx, $lv, $container, $groups)", e)
+            }
+            updateContainerDeltaMissing = lv
+        }
+
+        // get scheme if valid Locus is available
+        val scheme = getProviderUriData(lv, VersionCode.UPDATE_13,
+                LocusConst.CONTENT_PROVIDER_PATH_DATA + "/" + LocusConst.VALUE_UPDATE_CONTAINER)
+
+        // load complete container into existing one
+        try {
+            val data = queryData(ctx, scheme, null, LocusConst.VALUE_UPDATE_CONTAINER)
+            if (data?.isNotEmpty() == true) {
+                container.read(data)
+                container.deltaSequence = -1L
+                return container
+            }
+        } catch (e: Exception) {
+            Logger.logE(TAG, "getUpdateContainer($ctx, $lv, $container, $groups)", e)
+        }
+        return null
+    }
+
+    /**
+     * Check if [lv] version of Locus Map is known to not provide delta updates. Flag is bound
+     * to version of the app, so delta updates are tried again once Locus Map is updated.
+     */
+    private fun isUpdateContainerDeltaMissing(lv: LocusVersion): Boolean {
+        val missing = updateContainerDeltaMissing ?: return false
+        return missing.packageName == lv.packageName && missing.versionCode == lv.versionCode
+    }
+
     //*************************************************
     // LOCATION
     //*************************************************
@@ -748,11 +817,14 @@ object ActionBasics {
      *
      * @param ctx     current context
      * @param trackId unique ID of track in Locus database
+     * @param lazyRead `true` to decode points, waypoints and extra data of track on first
+     * access only (see [Track.isLazyRead])
      * @return [locus.api.objects.extra.Track] or *null* in case of problem
      * @throws RequiredVersionMissingException if Locus in required version is missing
      */
+    @JvmOverloads
     @Throws(RequiredVersionMissingException::class)
-    fun getTrack(ctx: Context, lv: LocusVersion, trackId: Long): Track? {
+    fun getTrack(ctx: Context, lv: LocusVersion, trackId: Long, lazyRead: Boolean = false): Track? {
         // check version
         val minVersion = VersionCode.UPDATE_10.vcFree
         if (!LocusUtils.isLocusFreePro(lv, minVersion)) {
@@ -773,6 +845,7 @@ object ActionBasics {
         // handle result
         try {
             return Track().apply {
+                isLazyRead = lazyRead
                 read(cursor.getBlob(1))
             }
         } catch (e: Exception) {
@@ -23,6 +23,8 @@ import locus.api.android.objects.VersionCode
 import locus.api.android.utils.LocusConst
 import locus.api.android.utils.exceptions.RequiredVersionMissingException
 import locus.api.objects.Storable
+import locus.api.objects.StorableListWriter
+import java.io.DataOutputStream
 import java.io.File
 import java.util.*
 
@@ -165,9 +167,36 @@ object ActionDisplayPoints {
             file: File, fileUri: Uri? = null,
             extraAction: ActionDisplayVarious.ExtraAction = ActionDisplayVarious.ExtraAction.CENTER): Boolean {
         return sendPacksFile(LocusConst.ACTION_DISPLAY_DATA,
-                ctx, lv, data, file, fileUri,
+                ctx, lv, file, fileUri,
                 extraAction == ActionDisplayVarious.ExtraAction.IMPORT,
-                extraAction == ActionDisplayVarious.ExtraAction.CENTER)
+                extraAction == ActionDisplayVarious.ExtraAction.CENTER) {
+            Storable.writeList(data, this)
+        }
+    }
+
+    /**
+     * Variant of [sendPacksFile] suitable for huge amount of data. Packs are taken from [data]
+     * sequence and written into the file one by one, so they do not need to be in memory all
+     * at once. Sequence is iterated only once.
+     *
+     * @param ctx existing [Context]
+     * @param count number of packs in [data] sequence
+     * @param data data to send
+     * @param file path where data should be stored
+     * @param fileUri uri from `FileProvider`, which represents filepath (optional)
+     * @param extraAction extra action that should happen after Locus reads data
+     * @return `true` if data were correctly send, otherwise `false`
+     */
+    @Throws(RequiredVersionMissingException::class)
+    fun sendPacksFile(ctx: Context, lv: LocusVersion, count: Int, data: Sequence<PackPoints>,
+            file: File, fileUri: Uri? = null,
+            extraAction: ActionDisplayVarious.ExtraAction = ActionDisplayVarious.ExtraAction.CENTER): Boolean {
+        return sendPacksFile(LocusConst.ACTION_DISPLAY_DATA,
+                ctx, lv, file, fileUri,
+                extraAction == ActionDisplayVarious.ExtraAction.IMPORT,
+                extraAction == ActionDisplayVarious.ExtraAction.CENTER) {
+            StorableListWriter.write(count, data, this)
+        }
     }
 
     /**
@@ -200,8 +229,10 @@ object ActionDisplayPoints {
             file: File, fileUri: Uri? = null,
             centerOnData: Boolean = false): Boolean {
         return sendPacksFile(LocusConst.ACTION_DISPLAY_DATA_SILENTLY,
-                ctx, lv, data, file, fileUri,
-                false, centerOnData)
+                ctx, lv, file, fileUri,
+                false, centerOnData) {
+            Storable.writeList(data, this)
+        }
     }
 
     /**
@@ -209,21 +240,20 @@ object ActionDisplayPoints {
      *
      * @param action       action we wants to perform
      * @param ctx      current ctx
-     * @param data         data to send
      * @param file         path where file will be temporary stored
      * @param fileUri      uri from `FileProvider`, which represents `file`
      * @param callImport   `true` to call import after load in Locus
      * @param centerOnData `true` to center on data
+     * @param writer       writer of data to send
      * @return `true` if request was correctly send
      */
     @Throws(RequiredVersionMissingException::class)
     private fun sendPacksFile(action: String, ctx: Context, lv: LocusVersion,
-            data: List<PackPoints>, file: File, fileUri: Uri?,
-            callImport: Boolean, centerOnData: Boolean): Boolean {
+            file: File, fileUri: Uri?,
+            callImport: Boolean, centerOnData: Boolean,
+            writer: DataOutputStream.() -> Unit): Boolean {
         // write data to storage
-        val writeResult = SendToAppHelper.sendDataWriteOnCard(file) {
-            Storable.writeList(data, this)
-        }
+        val writeResult = SendToAppHelper.sendDataWriteOnCard(file, writer)
 
         // send intent with reference to stored data
         return if (writeResult) {
@@ -262,6 +292,19 @@ object ActionDisplayPoints {
         return SendPointBase.readPointsFile(ctx, intent)
     }
 
+    /**
+     * Invert method to [.sendPacksFile] that hands loaded packs to [consumer] one by one, so
+     * even huge files may be read without need to keep all data in memory.
+     *
+     * @param ctx    context
+     * @param intent intent data
+     * @param consumer handler of every loaded pack. Return `false` to stop reading
+     * @return `true` if packs were correctly read
+     */
+    fun readPacksFile(ctx: Context, intent: Intent, consumer: (PackPoints) -> Boolean): Boolean {
+        return SendPointBase.readPointsFile(ctx, intent, consumer)
+    }
+
     /**
      * Allows to remove already send Pack from the map. Keep in mind, that this method remove
      * only packs that are visible (temporary) on map.
@@ -50,7 +50,7 @@ class FieldNote : Storable() {
         note = dr.readString()
         isFavorite = dr.readBoolean()
         isLogged = dr.readBoolean()
-        images = dr.readListStorable(FieldNoteImage::class.java)
+        images = dr.readListStorable { FieldNoteImage() }
     }
 
     @Throws(IOException::class)
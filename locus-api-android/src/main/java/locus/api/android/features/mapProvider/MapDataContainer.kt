@@ -26,7 +26,15 @@ class MapDataContainer : Parcelable {
         private set
     // container with response
     var tileResponse: MapTileResponse? = null
+        get() {
+            if (field == null && tileResponseData != null) {
+                field = MapTileResponse().apply { read(tileResponseData!!) }
+            }
+            return field
+        }
         private set
+    // serialized response, written without repeated encoding of tile image
+    private var tileResponseData: ByteArray? = null
 
     constructor(mapConfigs: List<MapConfigLayer>) {
         this.mDataType = DATA_TYPE_CONFIGURATION
@@ -43,6 +51,14 @@ class MapDataContainer : Parcelable {
         this.tileResponse = tileResponse
     }
 
+    /**
+     * Create container with already serialized [MapTileResponse].
+     */
+    internal constructor(tileResponseData: ByteArray) {
+        this.mDataType = DATA_TYPE_TILE_RESPONSE
+        this.tileResponseData = tileResponseData
+    }
+
     /**
      * Check if container contains valid data.
      *
@@ -61,7 +77,7 @@ class MapDataContainer : Parcelable {
         return when (mDataType) {
             DATA_TYPE_CONFIGURATION -> mapConfigurations != null && mapConfigurations!!.isNotEmpty()
             DATA_TYPE_TILE_REQUEST -> tileRequest != null
-            DATA_TYPE_TILE_RESPONSE -> tileResponse != null
+            DATA_TYPE_TILE_RESPONSE -> tileResponseData != null || tileResponse != null
             else -> false
         }
     }
@@ -88,7 +104,7 @@ class MapDataContainer : Parcelable {
             DATA_TYPE_CONFIGURATION -> {
                 val data = ByteArray(`in`.readInt())
                 `in`.readByteArray(data)
-                mapConfigurations = Storable.readList(MapConfigLayer::class.java, data)
+                mapConfigurations = Storable.readList(data) { MapConfigLayer() }
             }
             DATA_TYPE_TILE_REQUEST -> {
                 val data = ByteArray(`in`.readInt())
@@ -113,7 +129,7 @@ class MapDataContainer : Parcelable {
         when (mDataType) {
             DATA_TYPE_CONFIGURATION -> writeObject(dest, Storable.getAsBytes(mapConfigurations!!)!!)
             DATA_TYPE_TILE_REQUEST -> writeObject(dest, tileRequest!!.asBytes!!)
-            DATA_TYPE_TILE_RESPONSE -> writeObject(dest, tileResponse!!.asBytes!!)
+            DATA_TYPE_TILE_RESPONSE -> writeObject(dest, tileResponseData ?: tileResponse!!.asBytes!!)
         }
     }
 
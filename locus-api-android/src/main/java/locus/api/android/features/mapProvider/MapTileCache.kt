@@ -0,0 +1,297 @@
+package locus.api.android.features.mapProvider
+
+import locus.api.utils.Logger
+import java.io.File
+import java.util.*
+
+/**
+ * Two-tier cache of serialized map tiles (responses of the [MapTileService]). First tier keeps
+ * tiles in memory, optional second tier in files of defined directory. Both tiers are limited
+ * by size of stored data, least recently used tiles are removed first.
+ *
+ * Cache is thread-safe.
+ *
+ * @param memoryLimit maximal size of tiles in memory (in bytes)
+ * @param diskDir directory for cached tiles, `null` to disable disk tier
+ * @param diskLimit maximal size of tiles on disk (in bytes)
+ */
+class MapTileCache @JvmOverloads constructor(
+        val memoryLimit: Long,
+        val diskDir: File? = null,
+        val diskLimit: Long = 0L) {
+
+    // tiles in memory, in order of access
+    private val memory = LinkedHashMap<Long, ByteArray>(64, 0.75f, true)
+
+    // current size of tiles in memory
+    private var memorySize = 0L
+
+    // sizes of tiles on disk, in order of access
+    private val disk = LinkedHashMap<Long, Long>(64, 0.75f, true)
+
+    // current size of tiles on disk
+    private var diskSize = 0L
+
+    init {
+        if (memoryLimit < 0L || diskLimit < 0L) {
+            throw IllegalArgumentException("Invalid limits $memoryLimit, $diskLimit")
+        }
+        if (diskDir != null && diskLimit > 0L) {
+            loadDiskIndex(diskDir)
+        }
+    }
+
+    /**
+     * Current size of tiles in memory (in bytes).
+     */
+    val memoryBytes: Long
+        get() = synchronized(memory) { memorySize }
+
+    /**
+     * Current size of tiles on disk (in bytes).
+     */
+    val diskBytes: Long
+        get() = synchronized(disk) { diskSize }
+
+    //*************************************************
+    // CACHE
+    //*************************************************
+
+    /**
+     * Get cached data of tile. Tile found on disk is moved also to memory.
+     *
+     * @param key key of tile, see [createKey]
+     * @return serialized tile or `null` if tile is not cached
+     */
+    fun get(key: Long): ByteArray? {
+        synchronized(memory) {
+            memory[key]?.let { return it }
+        }
+
+        // search on disk
+        val data = readFromDisk(key)
+                ?: return null
+        putToMemory(key, data)
+        return data
+    }
+
+    /**
+     * Check if tile is cached, without change of order of tiles.
+     *
+     * @param key key of tile, see [createKey]
+     */
+    fun contains(key: Long): Boolean {
+        synchronized(memory) {
+            if (memory.containsKey(key)) {
+                return true
+            }
+        }
+        synchronized(disk) {
+            return disk.containsKey(key)
+        }
+    }
+
+    /**
+     * Put data of tile into cache.
+     *
+     * @param key key of tile, see [createKey]
+     * @param data serialized tile
+     * @param persist `true` to store tile also on disk
+     */
+    @JvmOverloads
+    fun put(key: Long, data: ByteArray, persist: Boolean = true) {
+        putToMemory(key, data)
+        if (persist) {
+            writeToDisk(key, data)
+        }
+    }
+
+    /**
+     * Remove all tiles from cache, including tiles on disk.
+     */
+    fun clear() {
+        synchronized(memory) {
+            memory.clear()
+            memorySize = 0L
+        }
+        synchronized(disk) {
+            for (key in disk.keys) {
+                getFile(key)?.delete()
+            }
+            disk.clear()
+            diskSize = 0L
+        }
+    }
+
+    //*************************************************
+    // MEMORY
+    //*************************************************
+
+    /**
+     * Put data into memory tier and remove least recently used tiles over limit.
+     */
+    private fun putToMemory(key: Long, data: ByteArray) {
+        if (data.size > memoryLimit) {
+            return
+        }
+        synchronized(memory) {
+            memory.put(key, data)?.let {
+                memorySize -= it.size
+            }
+            memorySize += data.size
+
+            // remove oldest tiles
+            val it = memory.values.iterator()
+            while (memorySize > memoryLimit && it.hasNext()) {
+                memorySize -= it.next().size
+                it.remove()
+            }
+        }
+    }
+
+    //*************************************************
+    // DISK
+    //*************************************************
+
+    /**
+     * Load sizes of tiles already stored in [dir], ordered by time of last access.
+     */
+    private fun loadDiskIndex(dir: File) {
+        if (!dir.exists() && !dir.mkdirs()) {
+            Logger.logW(TAG, "loadDiskIndex($dir), unable to create directory")
+            return
+        }
+
+        // remove temporary files of interrupted writes
+        dir.listFiles { file -> file.name.endsWith(TMP_SUFFIX) }
+                ?.forEach { it.delete() }
+
+        // existing tiles, oldest first
+        val files = dir.listFiles { file -> file.name.endsWith(FILE_SUFFIX) }
+                ?: return
+        files.sortBy { it.lastModified() }
+        synchronized(disk) {
+            for (file in files) {
+                val key = file.name.removeSuffix(FILE_SUFFIX).toLongOrNull()
+                if (key == null) {
+                    file.delete()
+                    continue
+                }
+                disk[key] = file.length()
+                diskSize += file.length()
+            }
+            trimDisk()
+        }
+    }
+
+    /**
+     * Read tile from disk tier.
+     */
+    private fun readFromDisk(key: Long): ByteArray? {
+        val file = synchronized(disk) {
+            if (disk[key] == null) {
+                return null
+            }
+            getFile(key)
+        } ?: return null
+
+        // read data
+        return try {
+            file.readBytes().also {
+                file.setLastModified(System.currentTimeMillis())
+            }
+        } catch (e: Exception) {
+            Logger.logE(TAG, "readFromDisk($key)", e)
+            synchronized(disk) {
+                disk.remove(key)?.let { diskSize -= it }
+            }
+            null
+        }
+    }
+
+    /**
+     * Write tile to disk tier and remove least recently used tiles over limit.
+     */
+    private fun writeToDisk(key: Long, data: ByteArray) {
+        val file = getFile(key)
+        if (file == null || data.size > diskLimit) {
+            return
+        }
+
+        // write to temporary file, so readers never see incomplete tile
+        val tmp = File(file.parentFile, "${file.name}.${Thread.currentThread().id}$TMP_SUFFIX")
+        try {
+            tmp.writeBytes(data)
+            if (!tmp.renameTo(file)) {
+                file.delete()
+                if (!tmp.renameTo(file)) {
+                    tmp.delete()
+                    return
+                }
+            }
+        } catch (e: Exception) {
+            Logger.logE(TAG, "writeToDisk($key)", e)
+            tmp.delete()
+            return
+        }
+
+        // register tile
+        synchronized(disk) {
+            disk.put(key, data.size.toLong())?.let {
+                diskSize -= it
+            }
+            diskSize += data.size
+            trimDisk()
+        }
+    }
+
+    /**
+     * Remove least recently used tiles from disk, until size is over limit.
+     */
+    private fun trimDisk() {
+        val it = disk.entries.iterator()
+        while (diskSize > diskLimit && it.hasNext()) {
+            val entry = it.next()
+            getFile(entry.key)?.delete()
+            diskSize -= entry.value
+            it.remove()
+        }
+    }
+
+    /**
+     * Get file for tile with defined [key].
+     */
+    private fun getFile(key: Long): File? {
+        return if (diskDir != null && diskLimit > 0L) {
+            File(diskDir, "$key$FILE_SUFFIX")
+        } else {
+            null
+        }
+    }
+
+    companion object {
+
+        // tag for logger
+        private const val TAG = "MapTileCache"
+
+        // suffix of files with tiles
+        private const val FILE_SUFFIX = ".tile"
+
+        // suffix of temporary files with tiles
+        private const val TMP_SUFFIX = ".tmp"
+
+        /**
+         * Create unique key of tile.
+         *
+         * @param x X coordinate of tile
+         * @param y Y coordinate of tile
+         * @param zoom zoom level of tile
+         */
+        @JvmStatic
+        fun createKey(x: Int, y: Int, zoom: Int): Long {
+            return (zoom.toLong() shl 56) or
+                    ((x.toLong() and 0xFFFFFFF) shl 28) or
+                    (y.toLong() and 0xFFFFFFF)
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package locus.api.android.features.mapProvider
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.FutureTask
+
+/**
+ * Loads of map tiles currently running in [MapTileService]. Concurrent loads of same tile are
+ * coalesced, so provider loads every tile only once and other threads wait on its result.
+ */
+internal class MapTileLoads {
+
+    // tiles currently loaded
+    private val inProgress = ConcurrentHashMap<Long, FutureTask<ByteArray?>>()
+
+    /**
+     * Number of currently running loads.
+     */
+    val size: Int
+        get() = inProgress.size
+
+    /**
+     * Load tile on current thread or wait on already running load of same tile.
+     *
+     * @param key key of tile, see [MapTileCache.createKey]
+     * @param loader function that loads tile
+     * @return result of the [loader]
+     * @throws ExecutionException if [loader] failed
+     */
+    @Throws(ExecutionException::class)
+    fun load(key: Long, loader: () -> ByteArray?): ByteArray? {
+        val task = FutureTask<ByteArray?>(loader)
+        val running = inProgress.putIfAbsent(key, task)
+        if (running != null) {
+            return running.get()
+        }
+        try {
+            task.run()
+        } finally {
+            inProgress.remove(key, task)
+        }
+        return task.get()
+    }
+}
@@ -0,0 +1,434 @@
+package locus.api.android.features.mapProvider
+
+import locus.api.android.features.mapProvider.data.MapTileRequest
+import locus.api.utils.Logger
+import java.util.concurrent.*
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.math.abs
+import kotlin.math.max
+
+/**
+ * Concurrent pipeline for loading of map tiles in [MapTileService].
+ *
+ * Tiles are loaded on pool of worker threads. Requested tiles are loaded before prefetched
+ * tiles, newest requests first. Around every requested tile, ring of neighbour tiles is
+ * prefetched into [MapTileCache]. Not yet started tiles of other zoom level or outside area
+ * of recent requests, are cancelled.
+ *
+ * @param threads number of worker threads
+ * @param prefetchRadius number of rings of neighbour tiles to prefetch, `0` to disable
+ * @param prefetchLimit maximal number of waiting prefetched tiles
+ */
+class MapTilePipeline @JvmOverloads constructor(
+        val threads: Int = DEFAULT_THREADS,
+        val prefetchRadius: Int = 1,
+        val prefetchLimit: Int = DEFAULT_PREFETCH_LIMIT) {
+
+    init {
+        if (threads < 1 || prefetchRadius < 0 || prefetchLimit < 0) {
+            throw IllegalArgumentException("Invalid parameters $threads, $prefetchRadius, $prefetchLimit")
+        }
+    }
+
+    /**
+     * Function that loads serialized tile and stores it into cache, set by [MapTileService].
+     */
+    internal var loader: ((key: Long, request: MapTileRequest) -> ByteArray?)? = null
+
+    /**
+     * Cache for prefetched tiles, set by [MapTileService].
+     */
+    internal var cache: MapTileCache? = null
+
+    // lock for all states of pipeline
+    private val lock = Any()
+
+    // waiting and running tasks
+    private val tasks = HashMap<Long, TileTask>()
+
+    // workers
+    private val executor = ThreadPoolExecutor(threads, threads,
+            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, PriorityBlockingQueue<Runnable>(),
+            object : ThreadFactory {
+
+                private val counter = AtomicInteger()
+
+                override fun newThread(r: Runnable): Thread {
+                    return Thread(r, "MapTilePipeline-${counter.incrementAndGet()}").apply {
+                        isDaemon = true
+                    }
+                }
+            }).apply {
+        allowCoreThreadTimeOut(true)
+    }
+
+    // sequence of created tasks
+    private var sequence = 0L
+
+    // zoom level of last requested tile
+    private var currentZoom = -1
+
+    // recently requested tiles on current zoom level
+    private val recentX = IntArray(RECENT_TILES)
+    private val recentY = IntArray(RECENT_TILES)
+    private var recentCount = 0
+
+    // metrics
+    private var requests = 0L
+    private var cacheHits = 0L
+    private var prefetched = 0L
+    private var prefetchHits = 0L
+    private var cancelled = 0L
+    private var loaded = 0L
+    private var failed = 0L
+    private var loadTimeSum = 0L
+    private var loadTimeMax = 0L
+    private var waitTimeSum = 0L
+    private var waitTimeMax = 0L
+    private var waits = 0L
+
+    //*************************************************
+    // LOADING
+    //*************************************************
+
+    /**
+     * Get serialized tile for [request]. Method blocks until tile is loaded.
+     *
+     * @return serialized tile or `null` if tile was not loaded, was cancelled or pipeline
+     * is already stopped by [shutdown]
+     */
+    fun request(request: MapTileRequest): ByteArray? {
+        val start = System.nanoTime()
+        val key = MapTileCache.createKey(request.tileX, request.tileY, request.tileZoom)
+
+        // check cache
+        val cached = cache?.get(key)
+        val task = synchronized(lock) {
+            if (executor.isShutdown) {
+                return null
+            }
+            requests++
+            onRequested(request.tileX, request.tileY, request.tileZoom)
+            if (cached != null) {
+                cacheHits++
+                null
+            } else {
+                prepareTask(key, request)
+            }
+        }
+        schedulePrefetch(request)
+        if (task == null) {
+            return cached
+        }
+
+        // wait on result
+        return try {
+            task.get()
+        } catch (e: CancellationException) {
+            null
+        } catch (e: ExecutionException) {
+            Logger.logE(TAG, "request($request)", e)
+            null
+        } finally {
+            val time = System.nanoTime() - start
+            synchronized(lock) {
+                waits++
+                waitTimeSum += time
+                waitTimeMax = max(waitTimeMax, time)
+            }
+        }
+    }
+
+    /**
+     * Get current metrics of pipeline.
+     */
+    fun getMetrics(): Metrics {
+        synchronized(lock) {
+            return Metrics(
+                    requests = requests,
+                    cacheHits = cacheHits,
+                    prefetched = prefetched,
+                    prefetchHits = prefetchHits,
+                    cancelled = cancelled,
+                    loaded = loaded,
+                    failed = failed,
+                    queueDepth = executor.queue.size,
+                    activeLoads = executor.activeCount,
+                    loadTimeAvg = if (loaded + failed > 0) loadTimeSum / (loaded + failed) else 0L,
+                    loadTimeMax = loadTimeMax,
+                    waitTimeAvg = if (waits > 0) waitTimeSum / waits else 0L,
+                    waitTimeMax = waitTimeMax)
+        }
+    }
+
+    /**
+     * Cancel all waiting tasks and stop workers. Already running loads are finished.
+     */
+    fun shutdown() {
+        synchronized(lock) {
+            for (task in tasks.values.toList()) {
+                if (executor.remove(task)) {
+                    task.cancel(false)
+                    cancelled++
+                }
+            }
+            executor.shutdown()
+        }
+    }
+
+    /**
+     * Get task for requested tile. Existing task is reused, waiting prefetch task is moved
+     * in front of the queue.
+     */
+    private fun prepareTask(key: Long, request: MapTileRequest): TileTask {
+        val task = tasks[key]
+        if (task == null) {
+            return TileTask(key, request, true, ++sequence).also {
+                tasks[key] = it
+                executor.execute(it)
+            }
+        }
+
+        // use existing task
+        if (!task.requested) {
+            prefetchHits++
+            if (executor.remove(task)) {
+                task.requested = true
+                task.sequence = ++sequence
+                executor.execute(task)
+            } else {
+                task.requested = true
+            }
+        }
+        return task
+    }
+
+    //*************************************************
+    // VIEWPORT
+    //*************************************************
+
+    /**
+     * Register requested tile and cancel waiting tasks that are no longer visible.
+     */
+    private fun onRequested(x: Int, y: Int, zoom: Int) {
+        if (zoom != currentZoom) {
+            currentZoom = zoom
+            recentCount = 0
+        }
+        recentX[recentCount % RECENT_TILES] = x
+        recentY[recentCount % RECENT_TILES] = y
+        recentCount++
+
+        // area of recent requests
+        var xMin = Int.MAX_VALUE
+        var xMax = Int.MIN_VALUE
+        var yMin = Int.MAX_VALUE
+        var yMax = Int.MIN_VALUE
+        for (i in 0 until minOf(recentCount, RECENT_TILES)) {
+            xMin = minOf(xMin, recentX[i])
+            xMax = max(xMax, recentX[i])
+            yMin = minOf(yMin, recentY[i])
+            yMax = max(yMax, recentY[i])
+        }
+
+        // cancel tasks outside of area. Requested tasks only when they wait for long time
+        val it = tasks.values.iterator()
+        while (it.hasNext()) {
+            val task = it.next()
+            if (task.requested && task.sequence > sequence - RECENT_TILES) {
+                continue
+            }
+            val visible = task.zoom == currentZoom
+                    && task.x >= xMin - prefetchRadius && task.x <= xMax + prefetchRadius
+                    && task.y >= yMin - prefetchRadius && task.y <= yMax + prefetchRadius
+            if (!visible && executor.remove(task)) {
+                it.remove()
+                task.cancel(false)
+                cancelled++
+            }
+        }
+    }
+
+    /**
+     * Schedule load of not yet cached neighbour tiles of [request].
+     */
+    private fun schedulePrefetch(request: MapTileRequest) {
+        val cache = cache
+        if (prefetchRadius == 0 || cache == null) {
+            return
+        }
+
+        // prefetch rings from the nearest
+        for (ring in 1..prefetchRadius) {
+            for (dy in -ring..ring) {
+                for (dx in -ring..ring) {
+                    if (max(abs(dx), abs(dy)) != ring) {
+                        continue
+                    }
+                    val x = request.tileX + dx
+                    val y = request.tileY + dy
+                    if (x < 0 || y < 0) {
+                        continue
+                    }
+                    val key = MapTileCache.createKey(x, y, request.tileZoom)
+                    if (cache.contains(key)) {
+                        continue
+                    }
+                    if (!prefetchTile(key, request, dx, dy)) {
+                        return
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Register task for neighbour tile of [request], shifted by [dx] and [dy] tiles.
+     *
+     * @return `false` if no more tiles may be prefetched
+     */
+    private fun prefetchTile(key: Long, request: MapTileRequest, dx: Int, dy: Int): Boolean {
+        synchronized(lock) {
+            if (executor.queue.size >= prefetchLimit || executor.isShutdown) {
+                return false
+            }
+            if (tasks.containsKey(key)) {
+                return true
+            }
+
+            // request with shifted coordinates in map system
+            val width = request.mapSystemX2 - request.mapSystemX1
+            val height = request.mapSystemY2 - request.mapSystemY1
+            val neighbour = MapTileRequest().apply {
+                tileX = request.tileX + dx
+                tileY = request.tileY + dy
+                tileZoom = request.tileZoom
+                mapSystemX1 = request.mapSystemX1 + dx * width
+                mapSystemX2 = request.mapSystemX2 + dx * width
+                mapSystemY1 = request.mapSystemY1 + dy * height
+                mapSystemY2 = request.mapSystemY2 + dy * height
+            }
+            val task = TileTask(key, neighbour, false, ++sequence)
+            tasks[key] = task
+            prefetched++
+            executor.execute(task)
+            return true
+        }
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Task that loads single tile.
+     */
+    private inner class TileTask(
+            val key: Long,
+            val request: MapTileRequest,
+            var requested: Boolean,
+            var sequence: Long)
+        : FutureTask<ByteArray?>(Callable { loader?.invoke(key, request) }),
+            Comparable<TileTask> {
+
+        val x: Int
+            get() = request.tileX
+        val y: Int
+            get() = request.tileY
+        val zoom: Int
+            get() = request.tileZoom
+
+        // time of start of load
+        private var started = 0L
+
+        override fun run() {
+            started = System.nanoTime()
+            super.run()
+        }
+
+        override fun done() {
+            synchronized(lock) {
+                tasks.remove(key, this)
+                if (started == 0L) {
+                    return
+                }
+                val time = System.nanoTime() - started
+                loadTimeSum += time
+                loadTimeMax = max(loadTimeMax, time)
+                if (!isCancelled && try {
+                            get() != null
+                        } catch (e: ExecutionException) {
+                            false
+                        }) {
+                    loaded++
+                } else {
+                    failed++
+                }
+            }
+        }
+
+        override fun compareTo(other: TileTask): Int {
+            if (requested != other.requested) {
+                return if (requested) -1 else 1
+            }
+            return other.sequence.compareTo(sequence)
+        }
+    }
+
+    /**
+     * Snapshot of metrics of pipeline. All times are in nanoseconds.
+     */
+    class Metrics internal constructor(
+            // number of requested tiles
+            val requests: Long,
+            // number of requested tiles served from cache
+            val cacheHits: Long,
+            // number of started prefetch loads
+            val prefetched: Long,
+            // number of requested tiles already waiting as prefetch
+            val prefetchHits: Long,
+            // number of cancelled loads
+            val cancelled: Long,
+            // number of finished loads
+            val loaded: Long,
+            // number of loads without result
+            val failed: Long,
+            // number of waiting loads
+            val queueDepth: Int,
+            // number of currently running loads
+            val activeLoads: Int,
+            // average and maximal time of single load by provider
+            val loadTimeAvg: Long,
+            val loadTimeMax: Long,
+            // average and maximal time of request, including waiting in queue
+            val waitTimeAvg: Long,
+            val waitTimeMax: Long) {
+
+        override fun toString(): String {
+            return "Metrics [requests: $requests, cacheHits: $cacheHits, " +
+                    "prefetched: $prefetched, prefetchHits: $prefetchHits, " +
+                    "cancelled: $cancelled, loaded: $loaded, failed: $failed, " +
+                    "queueDepth: $queueDepth, activeLoads: $activeLoads, " +
+                    "loadTime: ${loadTimeAvg / 1000}/${loadTimeMax / 1000} us, " +
+                    "waitTime: ${waitTimeAvg / 1000}/${waitTimeMax / 1000} us]"
+        }
+    }
+
+    companion object {
+
+        // tag for logger
+        private const val TAG = "MapTilePipeline"
+
+        // default number of worker threads
+        private val DEFAULT_THREADS = max(2, minOf(4, Runtime.getRuntime().availableProcessors()))
+
+        // default limit of waiting prefetched tiles
+        private const val DEFAULT_PREFETCH_LIMIT = 32
+
+        // time after which idle worker thread stops
+        private const val KEEP_ALIVE_SECONDS = 30L
+
+        // number of recent requests that define visible area
+        private const val RECENT_TILES = 32
+    }
+}
@@ -8,6 +8,7 @@ import locus.api.android.features.mapProvider.data.MapTileRequest
 import locus.api.android.features.mapProvider.data.MapTileResponse
 import locus.api.utils.Logger
 import java.util.*
+import java.util.concurrent.ExecutionException
 
 /**
  * IN PREPARATION - NOT YET FULLY WORKING!!
@@ -37,7 +38,7 @@ abstract class MapTileService : Service() {
             }
 
             // handle request
-            val response = this@MapTileService.getMapTile(request.tileRequest!!)
+            val response = loadMapTile(request.tileRequest!!)
             return if (response == null) {
                 Logger.logW(TAG, "getMapTile($request), invalid response")
                 val resp = MapTileResponse()
@@ -49,6 +50,30 @@ abstract class MapTileService : Service() {
         }
     }
 
+    /**
+     * Cache of serialized tiles, `null` if disabled.
+     */
+    val tileCache: MapTileCache? by lazy {
+        createTileCache()
+    }
+
+    // tiles currently loaded by the provider
+    private val tilesInProgress = MapTileLoads()
+
+    // pipeline for concurrent loading of tiles, `null` if disabled
+    private val tilePipelineLazy = lazy {
+        createTilePipeline()?.apply {
+            loader = { key, request -> loadMapTile(key, request) }
+            cache = tileCache
+        }
+    }
+
+    /**
+     * Pipeline for concurrent loading of tiles, `null` if disabled.
+     */
+    val tilePipeline: MapTilePipeline?
+        get() = tilePipelineLazy.value
+
     // ABSTRACT PART
 
     abstract val mapConfigs: List<MapConfigLayer>?
@@ -57,10 +82,93 @@ abstract class MapTileService : Service() {
         return mBinder
     }
 
+    override fun onDestroy() {
+        if (tilePipelineLazy.isInitialized()) {
+            tilePipelineLazy.value?.shutdown()
+        }
+        super.onDestroy()
+    }
+
     abstract fun getMapTile(request: MapTileRequest): MapTileResponse?
 
+    // CACHE
+
+    /**
+     * Create cache of tiles. Default cache keeps tiles in memory only. Override to define own
+     * limits, to add disk tier or return `null` to disable cache.
+     */
+    protected open fun createTileCache(): MapTileCache? {
+        return MapTileCache(minOf(Runtime.getRuntime().maxMemory() / 16, DEFAULT_MEMORY_CACHE))
+    }
+
+    /**
+     * Create pipeline for concurrent loading of tiles. Without pipeline (default), tiles are
+     * loaded directly on threads of incoming requests. Override for slow providers, to load
+     * tiles on pool of workers with prefetch of neighbour tiles.
+     */
+    protected open fun createTilePipeline(): MapTilePipeline? {
+        return null
+    }
+
+    /**
+     * Remove all cached tiles. Call when source of map data changes.
+     */
+    fun clearTileCache() {
+        tileCache?.clear()
+    }
+
+    /**
+     * Get serialized tile for [request]. Tile is taken from cache or loaded by provider.
+     * Concurrent requests on same tile wait on single load.
+     */
+    private fun loadMapTile(request: MapTileRequest): ByteArray? {
+        tilePipeline?.let {
+            return it.request(request)
+        }
+
+        // load on current thread
+        val key = MapTileCache.createKey(request.tileX, request.tileY, request.tileZoom)
+        tileCache?.get(key)?.let {
+            return it
+        }
+
+        // load tile or wait on already running load
+        return try {
+            tilesInProgress.load(key) { loadMapTile(key, request) }
+        } catch (e: ExecutionException) {
+            Logger.logE(TAG, "loadMapTile($request)", e)
+            null
+        }
+    }
+
+    /**
+     * Load tile by provider and store result into cache.
+     */
+    private fun loadMapTile(key: Long, request: MapTileRequest): ByteArray? {
+        // check cache again, tile may be loaded during registration of the task
+        tileCache?.get(key)?.let {
+            return it
+        }
+
+        // load tile
+        val response = getMapTile(request)
+                ?: return null
+        val data = response.asBytes
+                ?: return null
+        when (response.resultCode) {
+            MapTileResponse.CODE_VALID ->
+                tileCache?.put(key, data)
+            MapTileResponse.CODE_NOT_EXISTS ->
+                tileCache?.put(key, data, false)
+        }
+        return data
+    }
+
     companion object {
 
         private val TAG = "MapTileService"
+
+        // default limit of memory cache of tiles (in bytes)
+        private const val DEFAULT_MEMORY_CACHE = 16L * 1024 * 1024
     }
 }
@@ -378,6 +378,16 @@ class UpdateContainer : Storable() {
      */
     var deviceBatteryTemperature: Float = 0.0f
 
+    //*************************************************
+    // DELTA UPDATES
+    //*************************************************
+
+    /**
+     * Sequence of last delta update applied by [applyDelta], `-1` if container does not
+     * contain any delta update yet. Used as base for request on next delta update.
+     */
+    var deltaSequence: Long = -1L
+
     //*************************************************/
     // TOOLS
     //*************************************************/
@@ -663,6 +673,211 @@ class UpdateContainer : Storable() {
         dw.writeLong(guideNextViaTime)
     }
 
+    //*************************************************
+    // DELTA PART
+    //*************************************************
+
+    /**
+     * Apply delta update generated by [UpdateContainerDeltaWriter] into this container.
+     * Groups of values not contained in the update keep their current values.
+     *
+     * Delta is computed against [deltaSequence], so with delta updates for subset of groups,
+     * same [groups] have to be requested and applied every time. When requested groups
+     * change, reset [deltaSequence] to `-1` to receive complete groups.
+     *
+     * @param data delta update
+     * @param groups groups of values to apply, other groups are skipped
+     * @return mask of changed and applied groups
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun applyDelta(data: ByteArray, groups: Int = GROUPS_ALL): Int {
+        val dr = DataReaderBigEndian(data)
+        val sequence = dr.readLong()
+        val mask = dr.readInt()
+
+        // read changed groups
+        var applied = 0
+        for (group in GROUPS) {
+            if (mask and group == 0) {
+                continue
+            }
+            val limit = dr.beginWindow(dr.readInt())
+            if (groups and group != 0) {
+                readGroup(group, dr)
+                applied = applied or group
+            }
+            dr.endWindow(limit)
+        }
+        deltaSequence = sequence
+        return applied
+    }
+
+    /**
+     * Write values of single [group] for delta update.
+     */
+    @Throws(IOException::class)
+    internal fun writeGroup(group: Int, dw: DataWriterBigEndian) {
+        when (group) {
+            GROUP_STATE -> {
+                dw.writeBoolean(isUserTouching)
+                dw.writeBoolean(isEnabledMyLocation)
+            }
+            GROUP_LOCATION -> {
+                writeLocation(dw, locMyLocation)
+                dw.writeBoolean(isGpsLocValid)
+                dw.writeInt(gpsSatsUsed)
+                dw.writeInt(gpsSatsAll)
+                dw.writeFloat(declination)
+                dw.writeFloat(orientHeading)
+                dw.writeFloat(orientHeadingOpposit)
+                dw.writeFloat(orientCourse)
+                dw.writeFloat(orientPitch)
+                dw.writeFloat(orientRoll)
+                dw.writeFloat(orientGpsAngle)
+                dw.writeFloat(pace)
+                dw.writeFloat(speedVertical)
+                dw.writeFloat(slope)
+            }
+            GROUP_MAP -> {
+                dw.writeBoolean(isMapVisible)
+                dw.writeFloat(mapRotate)
+                writeLocation(dw, locMapCenter)
+                writeLocation(dw, mapTopLeft)
+                writeLocation(dw, mapBottomRight)
+                dw.writeInt(mapZoomLevel)
+            }
+            GROUP_TRACK_REC -> {
+                dw.writeBoolean(isTrackRecRecording)
+                dw.writeBoolean(isTrackRecPaused)
+                dw.writeString(trackRecProfileName)
+                if (trackRecStats != null) {
+                    dw.writeBoolean(true)
+                    dw.writeStorable(trackRecStats!!)
+                } else {
+                    dw.writeBoolean(false)
+                }
+            }
+            GROUP_GUIDANCE -> {
+                dw.writeInt(guideType)
+                dw.writeLong(guideTargetId)
+                dw.writeString(guideWptName)
+                writeLocation(dw, guideWptLoc)
+                dw.writeDouble(guideWptDist)
+                dw.writeFloat(guideWptAzim)
+                dw.writeFloat(guideWptAngle)
+                dw.writeLong(guideWptTime)
+                dw.writeBoolean(guideValid)
+                dw.writeDouble(guideDistFromStart)
+                dw.writeDouble(guideDistToFinish)
+                dw.writeLong(guideTimeToFinish)
+                dw.writeString(guideNavPoint1Name)
+                writeLocation(dw, guideNavPoint1Loc)
+                dw.writeDouble(guideNavPoint1Dist)
+                dw.writeLong(guideNavPoint1Time)
+                dw.writeInt(guideNavPoint1Action.id)
+                dw.writeString(guideNavPoint1Extra)
+                dw.writeString(guideNavPoint2Name)
+                writeLocation(dw, guideNavPoint2Loc)
+                dw.writeDouble(guideNavPoint2Dist)
+                dw.writeLong(guideNavPoint2Time)
+                dw.writeInt(guideNavPoint2Action.id)
+                dw.writeString(guideNavPoint2Extra)
+                dw.writeString(guideNextViaName)
+                dw.writeDouble(guideNextViaDist)
+                dw.writeLong(guideNextViaTime)
+            }
+            GROUP_VARIOUS -> {
+                dw.writeString(activeDashboardId)
+                dw.writeString(activeLiveTrackId)
+                dw.writeInt(deviceBatteryValue)
+                dw.writeFloat(deviceBatteryTemperature)
+            }
+        }
+    }
+
+    /**
+     * Read values of single [group] from delta update.
+     */
+    @Throws(IOException::class)
+    private fun readGroup(group: Int, dr: DataReaderBigEndian) {
+        when (group) {
+            GROUP_STATE -> {
+                isUserTouching = dr.readBoolean()
+                isEnabledMyLocation = dr.readBoolean()
+            }
+            GROUP_LOCATION -> {
+                locMyLocation = readLocation(dr) ?: locMyLocation
+                isGpsLocValid = dr.readBoolean()
+                gpsSatsUsed = dr.readInt()
+                gpsSatsAll = dr.readInt()
+                declination = dr.readFloat()
+                orientHeading = dr.readFloat()
+                orientHeadingOpposit = dr.readFloat()
+                orientCourse = dr.readFloat()
+                orientPitch = dr.readFloat()
+                orientRoll = dr.readFloat()
+                orientGpsAngle = dr.readFloat()
+                pace = dr.readFloat()
+                speedVertical = dr.readFloat()
+                slope = dr.readFloat()
+            }
+            GROUP_MAP -> {
+                isMapVisible = dr.readBoolean()
+                mapRotate = dr.readFloat()
+                locMapCenter = readLocation(dr)
+                mapTopLeft = readLocation(dr)
+                mapBottomRight = readLocation(dr)
+                mapZoomLevel = dr.readInt()
+            }
+            GROUP_TRACK_REC -> {
+                isTrackRecRecording = dr.readBoolean()
+                isTrackRecPaused = dr.readBoolean()
+                trackRecProfileName = dr.readString()
+                trackRecStats = if (dr.readBoolean()) {
+                    TrackStats().apply { read(dr) }
+                } else {
+                    null
+                }
+            }
+            GROUP_GUIDANCE -> {
+                guideType = dr.readInt()
+                guideTargetId = dr.readLong()
+                guideWptName = dr.readString()
+                guideWptLoc = readLocation(dr)
+                guideWptDist = dr.readDouble()
+                guideWptAzim = dr.readFloat()
+                guideWptAngle = dr.readFloat()
+                guideWptTime = dr.readLong()
+                guideValid = dr.readBoolean()
+                guideDistFromStart = dr.readDouble()
+                guideDistToFinish = dr.readDouble()
+                guideTimeToFinish = dr.readLong()
+                guideNavPoint1Name = dr.readString()
+                guideNavPoint1Loc = readLocation(dr)
+                guideNavPoint1Dist = dr.readDouble()
+                guideNavPoint1Time = dr.readLong()
+                guideNavPoint1Action = PointRteAction.getActionById(dr.readInt())
+                guideNavPoint1Extra = dr.readString()
+                guideNavPoint2Name = dr.readString()
+                guideNavPoint2Loc = readLocation(dr)
+                guideNavPoint2Dist = dr.readDouble()
+                guideNavPoint2Time = dr.readLong()
+                guideNavPoint2Action = PointRteAction.getActionById(dr.readInt())
+                guideNavPoint2Extra = dr.readString()
+                guideNextViaName = dr.readString()
+                guideNextViaDist = dr.readDouble()
+                guideNextViaTime = dr.readLong()
+            }
+            GROUP_VARIOUS -> {
+                activeDashboardId = dr.readString()
+                activeLiveTrackId = dr.readString()
+                deviceBatteryValue = dr.readInt()
+                deviceBatteryTemperature = dr.readFloat()
+            }
+        }
+    }
+
     /**
      * Read location from reader.
      *
@@ -678,16 +893,7 @@ class UpdateContainer : Storable() {
         }
 
         // finally read location
-        try {
-            return dr.readStorable(Location::class.java)
-        } catch (e: InstantiationException) {
-            throw IOException(e.message)
-        } catch (e: IllegalAccessException) {
-            throw IOException(e.message)
-        } catch (e: IOException) {
-            throw IOException(e.message)
-        }
-
+        return dr.readStorable { Location() }
     }
 
     /**
@@ -713,5 +919,41 @@ class UpdateContainer : Storable() {
         const val GUIDE_TYPE_WAYPOINT = 1
         const val GUIDE_TYPE_TRACK_GUIDE = 2
         const val GUIDE_TYPE_TRACK_NAVIGATION = 3
+
+        // GROUPS OF VALUES FOR DELTA UPDATES
+
+        /**
+         * State of user interaction and GPS.
+         */
+        const val GROUP_STATE = 1
+        /**
+         * My location, GPS and orientation values.
+         */
+        const val GROUP_LOCATION = 1 shl 1
+        /**
+         * Visible map screen.
+         */
+        const val GROUP_MAP = 1 shl 2
+        /**
+         * Track recording and its statistics.
+         */
+        const val GROUP_TRACK_REC = 1 shl 3
+        /**
+         * Guidance and navigation.
+         */
+        const val GROUP_GUIDANCE = 1 shl 4
+        /**
+         * Dashboard, live tracking and device battery.
+         */
+        const val GROUP_VARIOUS = 1 shl 5
+        /**
+         * All groups of values.
+         */
+        const val GROUPS_ALL = GROUP_STATE or GROUP_LOCATION or GROUP_MAP or
+                GROUP_TRACK_REC or GROUP_GUIDANCE or GROUP_VARIOUS
+
+        // all groups in order of serialization
+        internal val GROUPS = intArrayOf(GROUP_STATE, GROUP_LOCATION, GROUP_MAP,
+                GROUP_TRACK_REC, GROUP_GUIDANCE, GROUP_VARIOUS)
     }
 }
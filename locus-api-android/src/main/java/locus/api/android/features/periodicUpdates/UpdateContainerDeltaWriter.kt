@@ -0,0 +1,134 @@
+package locus.api.android.features.periodicUpdates
+
+import locus.api.android.features.periodicUpdates.UpdateContainer.Companion.GROUPS
+import locus.api.android.features.periodicUpdates.UpdateContainer.Companion.GROUPS_ALL
+import locus.api.utils.DataWriterBigEndian
+import java.io.IOException
+
+/**
+ * Generator of delta updates of [UpdateContainer], used by producer of updates.
+ *
+ * Every new container is registered over [update]. Values of container are split into groups
+ * (see [UpdateContainer.GROUPS_ALL]) and writer remembers sequence of update, in which every
+ * group changed last time. Delta update for any reader then contains only groups changed since
+ * sequence of the update the reader already has, so single writer serves any number of readers.
+ *
+ * Writer is thread-safe.
+ */
+class UpdateContainerDeltaWriter {
+
+    // first sequence of this writer. Based on time, so sequences of restarted writer are
+    // higher than sequences known by readers
+    private val sequenceStart = System.currentTimeMillis() * 1000L
+
+    /**
+     * Sequence of last registered container.
+     */
+    var sequence: Long = sequenceStart
+        private set
+
+    // serialized groups of last container
+    private val groupData = arrayOfNulls<ByteArray>(GROUPS.size)
+
+    // sequence in which group changed last time
+    private val groupChanged = LongArray(GROUPS.size)
+
+    // writer for serialization of groups
+    private val dw = DataWriterBigEndian()
+
+    /**
+     * Register new state of container.
+     *
+     * @param container current container
+     * @return mask of groups changed since previous container
+     */
+    @Synchronized
+    @Throws(IOException::class)
+    fun update(container: UpdateContainer): Int {
+        sequence++
+        var changed = 0
+        for (i in GROUPS.indices) {
+            dw.reset()
+            container.writeGroup(GROUPS[i], dw)
+            val data = dw.toByteArray()
+            if (!data.contentEquals(groupData[i])) {
+                groupData[i] = data
+                groupChanged[i] = sequence
+                changed = changed or GROUPS[i]
+            }
+        }
+        return changed
+    }
+
+    /**
+     * Generate delta update for reader, that already has update with [baseSequence].
+     *
+     * @param baseSequence sequence of update known by the reader, `-1` for complete update
+     * @param groups groups requested by the reader
+     * @return serialized update for [UpdateContainer.applyDelta]
+     */
+    @Synchronized
+    @JvmOverloads
+    fun getDelta(baseSequence: Long, groups: Int = GROUPS_ALL): ByteArray {
+        // unknown base, send complete groups
+        val base = if (baseSequence in sequenceStart..sequence) {
+            baseSequence
+        } else {
+            -1L
+        }
+
+        // mask of changed groups
+        var mask = 0
+        for (i in GROUPS.indices) {
+            if (groups and GROUPS[i] != 0 && groupData[i] != null && groupChanged[i] > base) {
+                mask = mask or GROUPS[i]
+            }
+        }
+
+        // write update
+        val dwDelta = DataWriterBigEndian.obtain()
+        try {
+            dwDelta.writeLong(sequence)
+            dwDelta.writeInt(mask)
+            for (i in GROUPS.indices) {
+                if (mask and GROUPS[i] != 0) {
+                    val data = groupData[i]!!
+                    dwDelta.writeInt(data.size)
+                    dwDelta.write(data)
+                }
+            }
+            return dwDelta.toByteArray()
+        } finally {
+            dwDelta.recycle()
+        }
+    }
+
+    /**
+     * Generate delta update for query [selection] created by [createSelection].
+     *
+     * @param selection selection of the query, `null` for complete update
+     */
+    fun getDelta(selection: String?): ByteArray {
+        val parts = selection?.split(SELECTION_SEPARATOR) ?: emptyList()
+        val base = parts.getOrNull(0)?.toLongOrNull() ?: -1L
+        val groups = parts.getOrNull(1)?.toIntOrNull() ?: GROUPS_ALL
+        return getDelta(base, groups)
+    }
+
+    companion object {
+
+        // separator of values in query selection
+        private const val SELECTION_SEPARATOR = ';'
+
+        /**
+         * Create query selection for request on delta update.
+         *
+         * @param baseSequence sequence of update known by the reader
+         * @param groups groups requested by the reader
+         */
+        @JvmStatic
+        fun createSelection(baseSequence: Long, groups: Int): String {
+            return "$baseSequence$SELECTION_SEPARATOR$groups"
+        }
+    }
+}
@@ -14,8 +14,11 @@ package locus.api.android.features.sendToApp
 import android.content.Context
 import android.net.Uri
 import locus.api.objects.Storable
+import locus.api.objects.StorableListReader
 import locus.api.utils.Logger
 import locus.api.utils.Utils
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
 import java.io.DataInputStream
 import java.io.DataOutputStream
 import java.io.File
@@ -62,7 +65,7 @@ object SendToAppHelper {
             }
 
             // create stream
-            dos = DataOutputStream(FileOutputStream(file, false))
+            dos = DataOutputStream(BufferedOutputStream(FileOutputStream(file, false)))
 
             // write current version
             writer(dos)
@@ -92,7 +95,7 @@ object SendToAppHelper {
 
         var dis: DataInputStream? = null
         try {
-            dis = DataInputStream(FileInputStream(file))
+            dis = DataInputStream(BufferedInputStream(FileInputStream(file)))
             return Storable.readList(T::class.java, dis)
         } catch (e: Exception) {
             Logger.logE(TAG, "readDataFromPath($filepath)", e)
@@ -104,12 +107,19 @@ object SendToAppHelper {
 
     /**
      * Read data from the supplied [fileUri] source.
+     *
+     * @param factory factory for new items, `null` to use factory registered for [T]
      */
-    internal inline fun <reified T : Storable> readDataFromUri(ctx: Context, fileUri: Uri): List<T> {
+    internal inline fun <reified T : Storable> readDataFromUri(ctx: Context, fileUri: Uri,
+            noinline factory: (() -> T)? = null): List<T> {
         var dis: DataInputStream? = null
         try {
-            dis = DataInputStream(ctx.contentResolver.openInputStream(fileUri))
-            return Storable.readList(T::class.java, dis)
+            dis = DataInputStream(BufferedInputStream(ctx.contentResolver.openInputStream(fileUri)))
+            return if (factory != null) {
+                Storable.readList(dis, factory)
+            } else {
+                Storable.readList(T::class.java, dis)
+            }
         } catch (e: Exception) {
             Logger.logE(TAG, "readDataFromUri($fileUri)", e)
         } finally {
@@ -117,4 +127,69 @@ object SendToAppHelper {
         }
         return listOf()
     }
+
+    /**
+     * Read data from the supplied [fileUri] source item by item. Only single item is kept in
+     * memory at once, so this method is suitable also for huge files.
+     *
+     * @param factory factory for new items, `null` to use factory registered for [T]
+     * @param consumer handler of every loaded item. Return `false` to stop reading
+     * @return `true` if all required data were correctly read
+     */
+    internal inline fun <reified T : Storable> readDataFromUri(ctx: Context, fileUri: Uri,
+            noinline factory: (() -> T)?, consumer: (T) -> Boolean): Boolean {
+        var reader: StorableListReader<T>? = null
+        try {
+            val dis = DataInputStream(BufferedInputStream(ctx.contentResolver.openInputStream(fileUri)))
+            reader = if (factory != null) {
+                StorableListReader(dis, factory)
+            } else {
+                StorableListReader(T::class.java, dis)
+            }
+            while (reader.hasNext()) {
+                if (!consumer(reader.next())) {
+                    break
+                }
+            }
+            return true
+        } catch (e: Exception) {
+            Logger.logE(TAG, "readDataFromUri($fileUri, $consumer)", e)
+        } finally {
+            Utils.closeStream(reader)
+        }
+        return false
+    }
+
+    /**
+     * Read data stored in certain path item by item. File is memory-mapped, so only single
+     * item is kept in memory at once.
+     *
+     * @param consumer handler of every loaded item. Return `false` to stop reading
+     * @return `true` if all required data were correctly read
+     */
+    @Deprecated (message = "Use system over FileUri")
+    internal inline fun <reified T : Storable> readDataFromPath(filepath: String,
+            consumer: (T) -> Boolean): Boolean {
+        // check file
+        val file = File(filepath)
+        if (!file.exists() || !file.isFile) {
+            return false
+        }
+
+        var reader: StorableListReader<T>? = null
+        try {
+            reader = StorableListReader(T::class.java, FileInputStream(file).channel)
+            while (reader.hasNext()) {
+                if (!consumer(reader.next())) {
+                    break
+                }
+            }
+            return true
+        } catch (e: Exception) {
+            Logger.logE(TAG, "readDataFromPath($filepath, $consumer)", e)
+        } finally {
+            Utils.closeStream(reader)
+        }
+        return false
+    }
 }
\ No newline at end of file
@@ -56,5 +56,33 @@ class SendPointBase {
                 }
             }
         }
+
+        /**
+         * Alternative to [readPointsFile] that does not load all packs into memory at once. Packs
+         * are handed to [consumer] one by one, so huge files may be processed with constant memory.
+         *
+         * @param ctx    context
+         * @param intent intent data
+         * @param consumer handler of every loaded pack. Return `false` to stop reading
+         * @return `true` if packs were correctly read
+         */
+        fun readPointsFile(ctx: Context, intent: Intent, consumer: (PackPoints) -> Boolean): Boolean {
+            return when {
+                intent.hasExtra(LocusConst.INTENT_EXTRA_POINTS_FILE_URI) -> {
+                    SendToAppHelper.readDataFromUri(ctx,
+                            intent.getParcelableExtra(LocusConst.INTENT_EXTRA_POINTS_FILE_URI)!!,
+                            null, consumer)
+                }
+                intent.hasExtra(LocusConst.INTENT_EXTRA_POINTS_FILE_PATH) -> {
+                    // backward compatibility
+                    SendToAppHelper.readDataFromPath(
+                            intent.getStringExtra(LocusConst.INTENT_EXTRA_POINTS_FILE_PATH)!!,
+                            consumer)
+                }
+                else -> {
+                    false
+                }
+            }
+        }
     }
 }
\ No newline at end of file
@@ -171,18 +171,67 @@ abstract class SendTrackBase internal constructor(
          *
          * @param ctx context
          * @param intent intent data
+         * @param lazyRead `true` to decode points, waypoints and extra data of tracks on first
+         * access only (see [Track.isLazyRead]). Suitable when only names and statistics of
+         * tracks are needed
          * @return loaded tracks
          */
-        fun readTracksFile(ctx: Context, intent: Intent): List<Track> {
+        @JvmOverloads
+        fun readTracksFile(ctx: Context, intent: Intent, lazyRead: Boolean = false): List<Track> {
             return when {
                 intent.hasExtra(LocusConst.INTENT_EXTRA_TRACKS_FILE_URI) -> {
                     SendToAppHelper.readDataFromUri(ctx,
-                            intent.getParcelableExtra(LocusConst.INTENT_EXTRA_TRACKS_FILE_URI)!!)
+                            intent.getParcelableExtra(LocusConst.INTENT_EXTRA_TRACKS_FILE_URI)!!,
+                            createFactory(lazyRead))
                 }
                 else -> {
                     listOf()
                 }
             }
         }
+
+        /**
+         * Alternative to [readTracksFile] that does not load all tracks into memory at once. Tracks
+         * are handed to [consumer] one by one, so huge files may be processed with constant memory.
+         *
+         * @param ctx context
+         * @param intent intent data
+         * @param consumer handler of every loaded track. Return `false` to stop reading
+         * @return `true` if tracks were correctly read
+         */
+        fun readTracksFile(ctx: Context, intent: Intent, consumer: (Track) -> Boolean): Boolean {
+            return readTracksFile(ctx, intent, false, consumer)
+        }
+
+        /**
+         * Variant of [readTracksFile] with consumer, that optionally reads tracks in lazy mode.
+         *
+         * @param ctx context
+         * @param intent intent data
+         * @param lazyRead `true` to decode points, waypoints and extra data of tracks on first
+         * access only (see [Track.isLazyRead])
+         * @param consumer handler of every loaded track. Return `false` to stop reading
+         * @return `true` if tracks were correctly read
+         */
+        fun readTracksFile(ctx: Context, intent: Intent, lazyRead: Boolean,
+                consumer: (Track) -> Boolean): Boolean {
+            return when {
+                intent.hasExtra(LocusConst.INTENT_EXTRA_TRACKS_FILE_URI) -> {
+                    SendToAppHelper.readDataFromUri(ctx,
+                            intent.getParcelableExtra(LocusConst.INTENT_EXTRA_TRACKS_FILE_URI)!!,
+                            createFactory(lazyRead), consumer)
+                }
+                else -> {
+                    false
+                }
+            }
+        }
+
+        /**
+         * Create factory for tracks read in defined mode.
+         */
+        private fun createFactory(lazyRead: Boolean): () -> Track {
+            return { Track().apply { isLazyRead = lazyRead } }
+        }
     }
 }
\ No newline at end of file
@@ -95,7 +95,7 @@ class PackPoints() : Storable() {
         }
         bitmap = UtilsBitmap.readBitmap(dr)
         points.clear()
-        points.addAll(dr.readListStorable(Point::class.java))
+        points.addAll(dr.readListStorable { Point() })
     }
 
     @Throws(IOException::class)
@@ -449,6 +449,8 @@ object LocusConst {
     const val VALUE_MAP_PREVIEW_MISSING_TILES = "mapPreviewMissingTiles"
     // value for UpdateContainer object
     const val VALUE_UPDATE_CONTAINER = "updateContainer"
+    // value for delta update of UpdateContainer object
+    const val VALUE_UPDATE_CONTAINER_DELTA = "updateContainerDelta"
 
     // TRACK RECORDING - ADD WAYPOINT
 
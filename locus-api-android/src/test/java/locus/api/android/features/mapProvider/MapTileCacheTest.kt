@@ -0,0 +1,189 @@
+package locus.api.android.features.mapProvider
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class MapTileCacheTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    @Test
+    fun memoryLimitedBySize() {
+        val cache = MapTileCache(1000L)
+        cache.put(key(1), tile(1, 400))
+        cache.put(key(2), tile(2, 400))
+        assertEquals(800L, cache.memoryBytes)
+
+        // access of first tile makes second tile the oldest one
+        assertArrayEquals(tile(1, 400), cache.get(key(1)))
+        cache.put(key(3), tile(3, 300))
+        assertEquals(700L, cache.memoryBytes)
+        assertTrue(cache.contains(key(1)))
+        assertFalse(cache.contains(key(2)))
+        assertTrue(cache.contains(key(3)))
+
+        // replaced tile updates size
+        cache.put(key(3), tile(3, 100))
+        assertEquals(500L, cache.memoryBytes)
+
+        // tile bigger than limit is not stored
+        cache.put(key(4), tile(4, 1001))
+        assertFalse(cache.contains(key(4)))
+        assertEquals(500L, cache.memoryBytes)
+
+        // contains does not change order
+        cache.contains(key(1))
+        cache.put(key(5), tile(5, 600))
+        assertFalse(cache.contains(key(1)))
+        assertTrue(cache.contains(key(3)))
+        assertEquals(700L, cache.memoryBytes)
+
+        cache.clear()
+        assertEquals(0L, cache.memoryBytes)
+        assertNull(cache.get(key(3)))
+    }
+
+    @Test
+    fun diskLimitedBySize() {
+        val dir = folder.newFolder()
+        val cache = MapTileCache(0L, dir, 1000L)
+        cache.put(key(1), tile(1, 400))
+        cache.put(key(2), tile(2, 400))
+        cache.put(key(3), tile(3, 100), false)
+        assertEquals(0L, cache.memoryBytes)
+        assertEquals(800L, cache.diskBytes)
+        assertEquals(setOf(key(1), key(2)), tileKeys(dir))
+
+        // read from disk, first tile becomes the newest
+        assertArrayEquals(tile(1, 400), cache.get(key(1)))
+        assertNull(cache.get(key(3)))
+        cache.put(key(4), tile(4, 500))
+        assertEquals(900L, cache.diskBytes)
+        assertEquals(setOf(key(1), key(4)), tileKeys(dir))
+
+        // tile bigger than limit is not stored
+        cache.put(key(5), tile(5, 1001))
+        assertFalse(cache.contains(key(5)))
+
+        cache.clear()
+        assertEquals(0L, cache.diskBytes)
+        assertTrue(tileKeys(dir).isEmpty())
+    }
+
+    @Test
+    fun diskIndexReloaded() {
+        val dir = folder.newFolder()
+        MapTileCache(0L, dir, 10_000L).apply {
+            for (i in 1..5) {
+                put(key(i), tile(i, 300))
+            }
+        }
+
+        // order of files defined by time of last access, oldest is tile 3
+        val now = System.currentTimeMillis()
+        for ((i, age) in listOf(3 to 50, 1 to 40, 5 to 30, 2 to 20, 4 to 10)) {
+            File(dir, "${key(i)}.tile").setLastModified(now - age * 60_000L)
+        }
+
+        // not valid files
+        File(dir, "invalid.tile").writeBytes(ByteArray(10))
+        File(dir, "${key(6)}.tile.12.tmp").writeBytes(ByteArray(10))
+        File(dir, "other.txt").writeBytes(ByteArray(10))
+
+        // smaller limit removes oldest tiles
+        val cache = MapTileCache(1000L, dir, 1000L)
+        assertEquals(900L, cache.diskBytes)
+        assertEquals(setOf(key(2), key(4), key(5)), tileKeys(dir))
+        assertFalse(File(dir, "invalid.tile").exists())
+        assertFalse(File(dir, "${key(6)}.tile.12.tmp").exists())
+        assertTrue(File(dir, "other.txt").exists())
+
+        // reloaded tiles are readable and moved to memory
+        for (i in listOf(2, 4, 5)) {
+            assertArrayEquals(tile(i, 300), cache.get(key(i)))
+        }
+        assertEquals(900L, cache.memoryBytes)
+
+        // oldest by access is now tile 2
+        cache.put(key(7), tile(7, 101))
+        assertEquals(setOf(key(4), key(5), key(7)), tileKeys(dir))
+
+        // missing directory is created
+        val created = File(dir, "sub/dir")
+        MapTileCache(0L, created, 100L).put(key(1), tile(1, 50))
+        assertEquals(setOf(key(1)), tileKeys(created))
+    }
+
+    @Test
+    fun diskWritesAreAtomic() {
+        val dir = folder.newFolder()
+        val cache = MapTileCache(0L, dir, 1_000_000L)
+        val threads = 8
+        val executor = Executors.newFixedThreadPool(threads)
+        val start = CountDownLatch(1)
+        val errors = ArrayList<String>()
+        try {
+            // concurrent writes of same tiles with different content and concurrent reads
+            val tasks = List(threads) { t ->
+                executor.submit {
+                    start.await()
+                    for (round in 0 until 200) {
+                        val i = round % 5
+                        if (t % 2 == 0) {
+                            cache.put(key(i), tile(t + round, 1000 + t))
+                        } else {
+                            val data = cache.get(key(i))
+                                    ?: continue
+                            if (data.size < 1000 || data.any { it != data[0] }) {
+                                synchronized(errors) { errors.add("tile $i, size ${data.size}") }
+                            }
+                        }
+                    }
+                }
+            }
+            start.countDown()
+            tasks.forEach { it.get(30, TimeUnit.SECONDS) }
+        } finally {
+            executor.shutdown()
+        }
+        assertEquals(emptyList<String>(), errors)
+
+        // no temporary files are left and size matches files
+        assertTrue(dir.list()!!.none { it.endsWith(".tmp") })
+        assertEquals(dir.listFiles()!!.sumOf { it.length() }, cache.diskBytes)
+        for (i in 0 until 5) {
+            val data = File(dir, "${key(i)}.tile").readBytes()
+            assertTrue(data.all { it == data[0] })
+        }
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    private fun key(i: Int): Long {
+        return MapTileCache.createKey(i, i + 1, 12)
+    }
+
+    private fun tile(value: Int, size: Int): ByteArray {
+        return ByteArray(size) { value.toByte() }
+    }
+
+    private fun tileKeys(dir: File): Set<Long> {
+        return dir.list()!!
+                .filter { it.endsWith(".tile") }
+                .map { it.removeSuffix(".tile").toLong() }
+                .toSet()
+    }
+}
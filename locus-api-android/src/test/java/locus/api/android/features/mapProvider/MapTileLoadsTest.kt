@@ -0,0 +1,90 @@
+package locus.api.android.features.mapProvider
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class MapTileLoadsTest {
+
+    @Test
+    fun loadsCoalesced() {
+        val loads = MapTileLoads()
+        val started = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        val calls = AtomicInteger()
+        val results = arrayOfNulls<ByteArray>(6)
+
+        // first load blocks until all other threads wait on it
+        val threads = List(results.size) { t ->
+            Thread {
+                results[t] = loads.load(key(1)) {
+                    calls.incrementAndGet()
+                    started.countDown()
+                    release.await()
+                    tile(1, 10)
+                }
+            }
+        }
+        threads[0].start()
+        assertTrue(started.await(10, TimeUnit.SECONDS))
+        for (thread in threads.drop(1)) {
+            thread.start()
+        }
+        for (thread in threads.drop(1)) {
+            while (thread.state != Thread.State.WAITING) {
+                Thread.sleep(1L)
+            }
+        }
+        assertEquals(1, loads.size)
+
+        // load of other tile is not blocked
+        assertArrayEquals(tile(3, 10), loads.load(key(3)) { tile(3, 10) })
+
+        // all threads get result of single load
+        release.countDown()
+        for (thread in threads) {
+            thread.join(10_000L)
+        }
+        assertEquals(1, calls.get())
+        for (result in results) {
+            assertArrayEquals(tile(1, 10), result)
+        }
+        assertEquals(0, loads.size)
+
+        // finished load is not reused
+        assertArrayEquals(tile(4, 10), loads.load(key(1)) { tile(4, 10) })
+        assertEquals(0, loads.size)
+    }
+
+    @Test
+    fun failedLoadReleased() {
+        val loads = MapTileLoads()
+        try {
+            loads.load(key(1)) { throw IllegalStateException("failed") }
+            fail()
+        } catch (e: ExecutionException) {
+            assertTrue(e.cause is IllegalStateException)
+        }
+        assertEquals(0, loads.size)
+        assertNull(loads.load(key(1)) { null })
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    private fun key(i: Int): Long {
+        return MapTileCache.createKey(i, i + 1, 12)
+    }
+
+    private fun tile(value: Int, size: Int): ByteArray {
+        return ByteArray(size) { value.toByte() }
+    }
+}
@@ -0,0 +1,270 @@
+package locus.api.android.features.mapProvider
+
+import locus.api.android.features.mapProvider.data.MapTileRequest
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class MapTilePipelineTest {
+
+    // keys of tiles in order of load
+    private val loaded = Collections.synchronizedList(ArrayList<Long>())
+
+    // failures of requests on other threads
+    private val errors = Collections.synchronizedList(ArrayList<Throwable>())
+
+    // tile that blocks the worker until released
+    private var blockedKey = -1L
+    private val blockedStarted = CountDownLatch(1)
+    private val blockedRelease = CountDownLatch(1)
+
+    private lateinit var cache: MapTileCache
+    private lateinit var pipeline: MapTilePipeline
+
+    @Before
+    fun setUp() {
+        cache = MapTileCache(1L shl 20)
+        pipeline = MapTilePipeline(1, 1, 32).also {
+            it.cache = cache
+            it.loader = { key, request ->
+                if (key == blockedKey) {
+                    blockedStarted.countDown()
+                    blockedRelease.await()
+                }
+                loaded.add(key)
+                tile(request).also { data -> cache.put(key, data) }
+            }
+        }
+    }
+
+    @After
+    fun tearDown() {
+        blockedRelease.countDown()
+        pipeline.shutdown()
+        assertEquals(emptyList<Throwable>(), errors)
+    }
+
+    @Test
+    fun prefetchNeighbours() {
+        val result = pipeline.request(request(5, 5, 10))
+        assertArrayEquals(tile(request(5, 5, 10)), result)
+        waitForLoaded(9L)
+
+        // all neighbours are loaded into cache with shifted map coordinates
+        for (dy in -1..1) {
+            for (dx in -1..1) {
+                val key = MapTileCache.createKey(5 + dx, 5 + dy, 10)
+                assertArrayEquals(tile(request(5 + dx, 5 + dy, 10)), cache.get(key))
+            }
+        }
+        val metrics = pipeline.getMetrics()
+        assertEquals(1L, metrics.requests)
+        assertEquals(8L, metrics.prefetched)
+        assertEquals(9L, metrics.loaded)
+
+        // neighbour served from cache, only not cached neighbours are prefetched
+        assertArrayEquals(tile(request(6, 6, 10)), pipeline.request(request(6, 6, 10)))
+        waitForLoaded(14L)
+        assertEquals(1L, pipeline.getMetrics().cacheHits)
+        assertEquals(13L, pipeline.getMetrics().prefetched)
+
+        // no neighbours with negative coordinates
+        pipeline.request(request(0, 0, 10))
+        waitForLoaded(18L)
+        assertEquals(16L, pipeline.getMetrics().prefetched)
+    }
+
+    @Test
+    fun queuedPrefetchPromoted() {
+        // block worker, neighbours wait in queue
+        val first = requestAsync(request(5, 5, 10), block = true)
+        assertEquals(8, pipeline.getMetrics().queueDepth)
+
+        // requested neighbour is moved in front of other waiting prefetched tiles
+        val neighbour = request(4, 6, 10)
+        val promoted = requestAsync(neighbour)
+        waitForWaiting(promoted)
+        assertEquals(1L, pipeline.getMetrics().prefetchHits)
+        blockedRelease.countDown()
+        first.join(10_000L)
+        promoted.join(10_000L)
+        assertEquals(keyOf(neighbour), loaded[1])
+        waitForLoaded(14L)
+
+        // loaded only once, together with 5 new neighbours of the promoted tile
+        assertEquals(loaded.size, loaded.toSet().size)
+        assertEquals(14L, pipeline.getMetrics().loaded)
+    }
+
+    @Test
+    fun otherZoomCancelled() {
+        val first = requestAsync(request(5, 5, 10), block = true)
+        val prefetched = neighbourKeys(5, 5, 10)
+
+        // request on other zoom cancels waiting prefetched tiles
+        val other = requestAsync(request(20, 20, 11))
+        waitForWaiting(other)
+        assertEquals(8L, pipeline.getMetrics().cancelled)
+        blockedRelease.countDown()
+        first.join(10_000L)
+        other.join(10_000L)
+        waitForQueue()
+        assertTrue(loaded.none { it in prefetched })
+        assertTrue(loaded.contains(MapTileCache.createKey(20, 20, 11)))
+
+        // cancelled tasks are released, so tile may be requested again
+        val again = request(4, 4, 10)
+        assertArrayEquals(tile(again), pipeline.request(again))
+        assertTrue(loaded.contains(keyOf(again)))
+    }
+
+    @Test
+    fun outsideAreaCancelled() {
+        val first = requestAsync(request(5, 5, 10), block = true)
+        val prefetched = neighbourKeys(5, 5, 10)
+
+        // requests of tiles far away from the first tile, served from cache
+        for (i in 0 until 40) {
+            val far = request(100 + i, 100, 10)
+            cache.put(keyOf(far), tile(far))
+            assertArrayEquals(tile(far), pipeline.request(far))
+        }
+
+        // waiting prefetched tiles around the first tile are cancelled
+        assertTrue(pipeline.getMetrics().cancelled >= 8L)
+        blockedRelease.countDown()
+        first.join(10_000L)
+        waitForQueue()
+        assertTrue(loaded.none { it in prefetched })
+    }
+
+    @Test
+    fun requestAfterShutdown() {
+        // request waiting on queued tile is cancelled
+        val first = requestAsync(request(5, 5, 10), block = true)
+        var waitingResult: ByteArray? = ByteArray(0)
+        val waiting = Thread {
+            waitingResult = pipeline.request(request(30, 30, 10))
+        }.apply { start() }
+        waitForWaiting(waiting)
+        pipeline.shutdown()
+        waiting.join(10_000L)
+        assertNull(waitingResult)
+        blockedRelease.countDown()
+        first.join(10_000L)
+
+        // pipeline does not accept new requests
+        assertNull(pipeline.request(request(40, 40, 10)))
+        assertNull(pipeline.request(request(5, 5, 10)))
+        assertFalse(loaded.contains(MapTileCache.createKey(30, 30, 10)))
+        assertFalse(loaded.contains(MapTileCache.createKey(40, 40, 10)))
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    private fun request(x: Int, y: Int, zoom: Int): MapTileRequest {
+        return MapTileRequest().apply {
+            tileX = x
+            tileY = y
+            tileZoom = zoom
+            mapSystemX1 = x * 256.0
+            mapSystemX2 = (x + 1) * 256.0
+            mapSystemY1 = y * 256.0
+            mapSystemY2 = (y + 1) * 256.0
+        }
+    }
+
+    private fun keyOf(request: MapTileRequest): Long {
+        return MapTileCache.createKey(request.tileX, request.tileY, request.tileZoom)
+    }
+
+    /**
+     * Tile content defined by request, so shifted coordinates of neighbours are checked.
+     */
+    private fun tile(request: MapTileRequest): ByteArray {
+        val text = "${request.tileX}/${request.tileY}/${request.tileZoom}/" +
+                "${request.mapSystemX1}/${request.mapSystemY1}/" +
+                "${request.mapSystemX2}/${request.mapSystemY2}"
+        return text.toByteArray()
+    }
+
+    private fun neighbourKeys(x: Int, y: Int, zoom: Int): Set<Long> {
+        val result = HashSet<Long>()
+        for (dy in -1..1) {
+            for (dx in -1..1) {
+                if (dx != 0 || dy != 0) {
+                    result.add(MapTileCache.createKey(x + dx, y + dy, zoom))
+                }
+            }
+        }
+        return result
+    }
+
+    /**
+     * Request tile on new thread. Blocked tile keeps the only worker busy until released.
+     */
+    private fun requestAsync(request: MapTileRequest, block: Boolean = false): Thread {
+        if (block) {
+            blockedKey = keyOf(request)
+        }
+        return Thread {
+            try {
+                assertArrayEquals(tile(request), pipeline.request(request))
+            } catch (e: Throwable) {
+                errors.add(e)
+            }
+        }.apply {
+            start()
+            if (block) {
+                assertTrue(blockedStarted.await(10, TimeUnit.SECONDS))
+                waitForQueueDepth(8)
+            } else {
+                waitForWaiting(this)
+            }
+        }
+    }
+
+    private fun waitForWaiting(thread: Thread) {
+        while (thread.state != Thread.State.WAITING && thread.isAlive) {
+            Thread.sleep(1L)
+        }
+    }
+
+    private fun waitForQueueDepth(depth: Int) {
+        while (pipeline.getMetrics().queueDepth < depth) {
+            Thread.sleep(1L)
+        }
+    }
+
+    private fun waitForLoaded(count: Long) {
+        while (pipeline.getMetrics().loaded < count) {
+            Thread.sleep(1L)
+        }
+    }
+
+    /**
+     * Wait until queue is empty and no load is running, checked twice as worker may be between
+     * queue and start of the load.
+     */
+    private fun waitForQueue() {
+        var idle = 0
+        while (idle < 2) {
+            Thread.sleep(10L)
+            idle = if (pipeline.getMetrics().let { it.queueDepth == 0 && it.activeLoads == 0 }) {
+                idle + 1
+            } else {
+                0
+            }
+        }
+    }
+}
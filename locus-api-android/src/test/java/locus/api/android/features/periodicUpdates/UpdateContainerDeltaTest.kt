@@ -0,0 +1,135 @@
+package locus.api.android.features.periodicUpdates
+
+import locus.api.android.features.periodicUpdates.UpdateContainer.Companion.GROUPS_ALL
+import locus.api.android.features.periodicUpdates.UpdateContainer.Companion.GROUP_LOCATION
+import locus.api.android.features.periodicUpdates.UpdateContainer.Companion.GROUP_MAP
+import locus.api.android.features.periodicUpdates.UpdateContainer.Companion.GROUP_TRACK_REC
+import locus.api.android.features.periodicUpdates.UpdateContainer.Companion.GROUP_VARIOUS
+import locus.api.objects.extra.Location
+import locus.api.objects.extra.TrackStats
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Test
+
+class UpdateContainerDeltaTest {
+
+    @Test
+    fun fullAndIncrementalDeltas() {
+        val source = createContainer()
+        val writer = UpdateContainerDeltaWriter()
+        assertEquals(GROUPS_ALL, writer.update(source))
+
+        // complete update
+        val reader = UpdateContainer()
+        assertEquals(GROUPS_ALL, reader.applyDelta(writer.getDelta(null)))
+        assertEquals(writer.sequence, reader.deltaSequence)
+        assertArrayEquals(source.asBytes, reader.asBytes)
+
+        // change of single group
+        source.locMyLocation = Location(50.0001, 14.0001).apply { speed = 3.5f }
+        source.orientHeading = 45.0f
+        assertEquals(GROUP_LOCATION, writer.update(source))
+        val stats = reader.trackRecStats
+        val selection = UpdateContainerDeltaWriter.createSelection(reader.deltaSequence, GROUPS_ALL)
+        assertEquals(GROUP_LOCATION, reader.applyDelta(writer.getDelta(selection)))
+        assertArrayEquals(source.asBytes, reader.asBytes)
+        assertSame(stats, reader.trackRecStats)
+
+        // change of more groups
+        source.mapZoomLevel = 15
+        source.deviceBatteryValue = 70
+        source.trackRecStats = null
+        assertEquals(GROUP_MAP or GROUP_TRACK_REC or GROUP_VARIOUS, writer.update(source))
+        assertEquals(GROUP_MAP or GROUP_TRACK_REC or GROUP_VARIOUS,
+                reader.applyDelta(writer.getDelta(reader.deltaSequence)))
+        assertArrayEquals(source.asBytes, reader.asBytes)
+        assertNull(reader.trackRecStats)
+
+        // no change
+        assertEquals(0, writer.update(source))
+        assertEquals(0, reader.applyDelta(writer.getDelta(reader.deltaSequence)))
+        assertEquals(writer.sequence, reader.deltaSequence)
+        assertArrayEquals(source.asBytes, reader.asBytes)
+    }
+
+    @Test
+    fun unsubscribedGroupsSkipped() {
+        val source = createContainer()
+        val writer = UpdateContainerDeltaWriter()
+        writer.update(source)
+
+        // writer sends only requested groups
+        val reader = UpdateContainer()
+        assertEquals(GROUP_MAP, reader.applyDelta(writer.getDelta(-1L, GROUP_MAP), GROUP_MAP))
+        assertEquals(14, reader.mapZoomLevel)
+        assertEquals(0, reader.deviceBatteryValue)
+        assertNull(reader.trackRecStats)
+
+        // reader skips groups not requested by itself
+        val all = UpdateContainer()
+        all.applyDelta(writer.getDelta(-1L))
+        source.mapZoomLevel = 15
+        source.deviceBatteryValue = 70
+        writer.update(source)
+        assertEquals(GROUP_MAP, all.applyDelta(writer.getDelta(all.deltaSequence), GROUP_MAP))
+        assertEquals(15, all.mapZoomLevel)
+        assertEquals(80, all.deviceBatteryValue)
+    }
+
+    @Test
+    fun unknownBaseSequence() {
+        val source = createContainer()
+        val writer = UpdateContainerDeltaWriter()
+        writer.update(source)
+        val reader = UpdateContainer()
+        reader.applyDelta(writer.getDelta(-1L))
+
+        // sequences not generated by this writer
+        for (base in listOf(0L, 123L, writer.sequence + 1L, Long.MAX_VALUE)) {
+            assertEquals(GROUPS_ALL, UpdateContainer().applyDelta(writer.getDelta(base)))
+        }
+
+        // sequence of another (restarted) writer
+        Thread.sleep(2L)
+        val restarted = UpdateContainerDeltaWriter()
+        restarted.update(source)
+        val result = UpdateContainer()
+        assertEquals(GROUPS_ALL, result.applyDelta(restarted.getDelta(reader.deltaSequence)))
+        assertArrayEquals(source.asBytes, result.asBytes)
+
+        // invalid selection
+        assertEquals(GROUPS_ALL, UpdateContainer().applyDelta(writer.getDelta("x;y")))
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    private fun createContainer(): UpdateContainer {
+        return UpdateContainer().apply {
+            locMyLocation = Location(50.0, 14.0).apply {
+                speed = 3.0f
+                sensorHeartRate = 120
+            }
+            isMapVisible = true
+            locMapCenter = Location(50.1, 14.1)
+            mapTopLeft = Location(51.0, 13.0)
+            mapBottomRight = Location(49.0, 15.0)
+            mapZoomLevel = 14
+            isTrackRecRecording = true
+            trackRecProfileName = "Bike"
+            trackRecStats = TrackStats().apply {
+                totalLength = 1234.0f
+                numOfPoints = 50
+            }
+            guideType = UpdateContainer.GUIDE_TYPE_WAYPOINT
+            guideWptName = "Target"
+            guideWptLoc = Location(50.5, 14.5)
+            guideWptDist = 5000.0
+            deviceBatteryValue = 80
+            activeDashboardId = "dash"
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.benchmark
+
+import locus.api.objects.extra.GeoDataExtra
+import locus.api.objects.extra.Location
+import locus.api.objects.geoData.Point
+import locus.api.objects.geoData.Track
+import locus.api.objects.geocaching.GeocachingData
+import locus.api.objects.geocaching.GeocachingLog
+import locus.api.objects.styles.GeoDataStyle
+import java.util.*
+
+/**
+ * Generator of test data for benchmarks. All data are generated from fixed seed, so every run
+ * works with the same content.
+ */
+object BenchmarkData {
+
+    // seed for the random generator
+    private const val SEED = 20120101L
+
+    /**
+     * Create new random generator.
+     */
+    fun random(): Random {
+        return Random(SEED)
+    }
+
+    /**
+     * Generate location on random walk from [prev] location.
+     *
+     * @param rnd random generator
+     * @param prev previous location, `null` for first one
+     * @param index index of location in track
+     */
+    fun location(rnd: Random, prev: Location?, index: Int): Location {
+        return Location(
+                (prev?.latitude ?: 50.0) + (rnd.nextDouble() - 0.4) * 0.0002,
+                (prev?.longitude ?: 14.0) + (rnd.nextDouble() - 0.4) * 0.0003).apply {
+            time = 1_600_000_000_000L + index * 1000L
+            altitude = 250.0 + 50.0 * Math.sin(index / 100.0) + rnd.nextDouble()
+            speed = 2.0f + rnd.nextFloat() * 3.0f
+            accuracyHor = 3.0f + rnd.nextFloat() * 5.0f
+            sensorHeartRate = (110 + rnd.nextInt(40)).toShort()
+            if (index % 2 == 0) {
+                sensorCadence = (80 + rnd.nextInt(10)).toShort()
+            }
+        }
+    }
+
+    /**
+     * Generate track with [size] points.
+     *
+     * @param size number of track points
+     */
+    fun track(size: Int): Track {
+        val rnd = random()
+        return Track().apply {
+            name = "Track $size"
+            addParameter(GeoDataExtra.PAR_DESCRIPTION, "Generated track for benchmarks")
+            styleNormal = GeoDataStyle("track").apply {
+                setLineStyle(0xFF0000FF.toInt(), 4.0f)
+            }
+            var prev: Location? = null
+            for (i in 0 until size) {
+                prev = location(rnd, prev, i)
+                points.add(prev)
+            }
+            if (size > 10) {
+                breaks.add(size / 2)
+            }
+            waypoints.add(point())
+        }
+    }
+
+    /**
+     * Generate point with common set of attached data.
+     */
+    fun point(): Point {
+        return Point("Point", location(random(), null, 0)).apply {
+            addParameter(GeoDataExtra.PAR_DESCRIPTION, "Point description with some longer text")
+            addParameter(GeoDataExtra.PAR_COMMENT, "comment")
+            addParameterUrl("https://www.locusmap.app", "Locus")
+            addParameterPhone("+420 123 456 789")
+            styleNormal = GeoDataStyle("point").apply {
+                setIconStyle("https://www.locusmap.app/icon.png", 1.0f)
+            }
+            gcData = GeocachingData().apply {
+                cacheID = "GC12345"
+                name = "Cache"
+                owner = "owner"
+                for (i in 0 until 5) {
+                    logs.add(GeocachingLog().apply {
+                        finder = "finder $i"
+                        logText = "Found it, thanks for the cache!"
+                    })
+                }
+            }
+        }
+    }
+}
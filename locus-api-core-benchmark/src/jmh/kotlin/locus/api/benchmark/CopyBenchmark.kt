@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.benchmark
+
+import locus.api.objects.Storable
+import locus.api.objects.geoData.Point
+import locus.api.objects.geoData.Track
+import locus.api.utils.DataReaderBigEndian
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Copy of the [Track] and [Point] objects over [Storable.copy], compared with copy by write
+ * and read of the object, the way used by the library before direct copy was introduced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class CopyBenchmark {
+
+    /**
+     * Number of points in track.
+     */
+    @Param("100", "1000", "10000")
+    @JvmField
+    var size: Int = 0
+
+    // source objects
+    private lateinit var track: Track
+    private lateinit var trackLazy: Track
+    private lateinit var point: Point
+
+    @Setup
+    fun setup() {
+        track = BenchmarkData.track(size)
+        trackLazy = Track().apply {
+            isLazyRead = true
+            read(track.asBytes!!)
+        }
+        point = BenchmarkData.point()
+    }
+
+    @Benchmark
+    fun copyTrackSerialized(): Track {
+        return Storable.read(DataReaderBigEndian(track.asBytes)) { Track() }
+    }
+
+    @Benchmark
+    fun copyTrack(): Track {
+        return track.copy as Track
+    }
+
+    @Benchmark
+    fun copyTrackLazy(): Track {
+        return trackLazy.copy as Track
+    }
+
+    @Benchmark
+    fun copyPointSerialized(): Point {
+        return Storable.read(DataReaderBigEndian(point.asBytes)) { Point() }
+    }
+
+    @Benchmark
+    fun copyPoint(): Point {
+        return point.copy as Point
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.benchmark
+
+import locus.api.objects.extra.GeoDataExtra
+import locus.api.objects.geoData.Point
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.TimeUnit
+
+/**
+ * Access to parameters stored in [GeoDataExtra].
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class GeoDataExtraBenchmark {
+
+    // point with filled parameters
+    private lateinit var point: Point
+
+    // points for search over parameters
+    private lateinit var points: List<Point>
+
+    @Setup
+    fun setup() {
+        point = BenchmarkData.point()
+        points = List(POINTS) { BenchmarkData.point() }
+    }
+
+    @Benchmark
+    fun getParameter(): String? {
+        return point.getParameter(GeoDataExtra.PAR_DESCRIPTION)
+    }
+
+    @Benchmark
+    fun getParameterMissing(): String? {
+        return point.getParameter(GeoDataExtra.PAR_ADDRESS_CITY)
+    }
+
+    @Benchmark
+    fun getParameters(bh: Blackhole) {
+        bh.consume(point.getParameter(GeoDataExtra.PAR_DESCRIPTION))
+        bh.consume(point.getParameter(GeoDataExtra.PAR_COMMENT))
+        bh.consume(point.getParameter(GeoDataExtra.PAR_ADDRESS_CITY))
+        bh.consume(point.extraData?.getAttachments(GeoDataExtra.AttachType.URL))
+    }
+
+    @Benchmark
+    fun addParameter(): Boolean {
+        return point.addParameter(GeoDataExtra.PAR_COMMENT, "comment")
+    }
+
+    @Benchmark
+    fun getAttachments(): Any? {
+        return point.extraData?.getAttachments(GeoDataExtra.AttachType.URL)
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    fun searchText(): Int {
+        var found = 0
+        for (i in points.indices) {
+            if (points[i].extraData?.searchInParameters("LONGER") == true) {
+                found++
+            }
+        }
+        return found
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    fun searchCondition(): Int {
+        var found = 0
+        for (i in points.indices) {
+            if (points[i].extraData?.searchInParameters { it.contains("LONGER", true) } == true) {
+                found++
+            }
+        }
+        return found
+    }
+
+    companion object {
+
+        // number of points in search
+        private const val POINTS = 1000
+    }
+}
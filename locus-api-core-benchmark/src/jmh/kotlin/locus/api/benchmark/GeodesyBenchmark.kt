@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.benchmark
+
+import locus.api.objects.extra.Location
+import locus.api.utils.GeodesyBatch
+import locus.api.utils.LocationCompute
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compute of distance and bearing between consecutive points of track.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class GeodesyBenchmark {
+
+    // coordinates of the points
+    private lateinit var locations: List<Location>
+    private lateinit var lats: DoubleArray
+    private lateinit var lons: DoubleArray
+
+    // containers for results
+    private val resultsF = FloatArray(2)
+    private val resultsD = DoubleArray(2)
+    private val distances = DoubleArray(POINTS - 1)
+    private val bearings = DoubleArray(POINTS - 1)
+    private val cumulative = DoubleArray(POINTS)
+
+    @Setup
+    fun setup() {
+        locations = BenchmarkData.track(POINTS).points
+        lats = DoubleArray(POINTS) { locations[it].latitude }
+        lons = DoubleArray(POINTS) { locations[it].longitude }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS - 1)
+    fun distanceAndBearing(): Double {
+        var sum = 0.0
+        for (i in 1 until POINTS) {
+            LocationCompute.computeDistanceAndBearing(
+                    lats[i - 1], lons[i - 1], lats[i], lons[i], resultsF)
+            sum += resultsF[0] + resultsF[1]
+        }
+        return sum
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS - 1)
+    fun distanceAndBearingFast(): Double {
+        var sum = 0.0
+        for (i in 1 until POINTS) {
+            LocationCompute.computeDistanceAndBearingFast(
+                    lats[i - 1], lons[i - 1], lats[i], lons[i], resultsD)
+            sum += resultsD[0] + resultsD[1]
+        }
+        return sum
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS - 1)
+    fun distanceFast(): Double {
+        var sum = 0.0
+        for (i in 1 until POINTS) {
+            sum += LocationCompute.computeDistanceFast(
+                    lats[i - 1], lons[i - 1], lats[i], lons[i])
+        }
+        return sum
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(POINTS - 1)
+    fun distanceFastThreads(): Double {
+        return distanceFast()
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS - 1)
+    fun distanceFastBatch(): Double {
+        return LocationCompute.computeDistancesFast(lats, lons)
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    fun nearestFastBatch(): Int {
+        return LocationCompute.computeDistancesFast(lats[0], lons[0], lats, lons)
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS - 1)
+    fun locationDistanceTo(): Double {
+        var sum = 0.0
+        for (i in 1 until POINTS) {
+            sum += locations[i - 1].distanceTo(locations[i])
+        }
+        return sum
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS - 1)
+    fun batchHaversine(): Double {
+        return GeodesyBatch.computeSegments(lats, lons, POINTS,
+                GeodesyBatch.Formula.HAVERSINE, distances, bearings, cumulative)
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS - 1)
+    fun batchVincenty(): Double {
+        return GeodesyBatch.computeSegments(lats, lons, POINTS,
+                GeodesyBatch.Formula.VINCENTY, distances, bearings, cumulative)
+    }
+
+    companion object {
+
+        // number of points
+        private const val POINTS = 1000
+    }
+}
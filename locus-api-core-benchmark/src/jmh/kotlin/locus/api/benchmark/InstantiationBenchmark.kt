@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.benchmark
+
+import locus.api.objects.Storable
+import locus.api.objects.extra.Location
+import locus.api.utils.DataReaderBigEndian
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Cost of creating objects during read. Reflection based creation is the way used by the
+ * library before factories were introduced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class InstantiationBenchmark {
+
+    // serialized list of locations
+    private lateinit var data: ByteArray
+
+    // number of serialized locations
+    private var count = 0
+
+    @Setup
+    fun setup() {
+        val locations = BenchmarkData.track(LOCATIONS).points
+        data = Storable.getAsBytes(locations)!!
+        count = locations.size
+    }
+
+    @Benchmark
+    @Suppress("DEPRECATION")
+    fun createReflection(): Location {
+        return Location::class.java.newInstance()
+    }
+
+    @Benchmark
+    fun createFactory(): Location {
+        return Storable.getFactory(Location::class.java)()
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOCATIONS)
+    @Suppress("DEPRECATION")
+    fun readListReflection(): List<Location> {
+        val dr = DataReaderBigEndian(data)
+        val result = ArrayList<Location>(dr.readInt())
+        for (i in 0 until count) {
+            result.add(Location::class.java.newInstance().apply { read(dr) })
+        }
+        return result
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOCATIONS)
+    fun readListFactory(): List<Location> {
+        return DataReaderBigEndian(data).readListStorable { Location() }
+    }
+
+    companion object {
+
+        // number of locations in the list
+        private const val LOCATIONS = 10000
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.benchmark
+
+import locus.api.objects.extra.Location
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Access to extra values (altitude, speed, sensors) of the [Location] objects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class LocationBenchmark {
+
+    // locations of the track
+    private lateinit var locations: List<Location>
+
+    @Setup
+    fun setup() {
+        locations = BenchmarkData.track(POINTS).points
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    fun readValues(): Double {
+        var sum = 0.0
+        for (loc in locations) {
+            sum += loc.altitude + loc.speed + loc.sensorHeartRate
+            if (loc.hasSensorCadence) {
+                sum += loc.sensorCadence
+            }
+        }
+        return sum
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    fun writeValues(): Int {
+        for (loc in locations) {
+            loc.altitude = loc.altitude
+            loc.speed = loc.speed
+            loc.sensorHeartRate = loc.sensorHeartRate
+        }
+        return locations.size
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    fun copy(): Location {
+        var last = locations[0]
+        for (loc in locations) {
+            last = Location(loc)
+        }
+        return last
+    }
+
+    companion object {
+
+        // number of locations
+        private const val POINTS = 1000
+    }
+}
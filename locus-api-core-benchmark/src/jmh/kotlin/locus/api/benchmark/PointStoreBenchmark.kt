@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.benchmark
+
+import locus.api.objects.Storable
+import locus.api.objects.extra.Location
+import locus.api.objects.geoData.Point
+import locus.api.objects.geoData.PointStoreReader
+import locus.api.objects.geoData.PointStoreWriter
+import org.openjdk.jmh.annotations.*
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+/**
+ * Access to points in point store file, compared with read of whole serialized list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class PointStoreBenchmark {
+
+    // file with the store
+    private lateinit var file: File
+
+    // opened store
+    private lateinit var store: PointStoreReader
+
+    // same points as serialized list
+    private lateinit var listData: ByteArray
+
+    @Setup
+    fun setup() {
+        val rnd = BenchmarkData.random()
+        val points = List(POINTS) {
+            BenchmarkData.point().apply {
+                id = it.toLong()
+                location = Location(
+                        50.0 + rnd.nextDouble(),
+                        14.0 + rnd.nextDouble() * 2.0)
+            }
+        }
+        file = File.createTempFile("benchmark", ".lps")
+        PointStoreWriter(file.outputStream()).use { it.writeAll(points) }
+        store = PointStoreReader(file)
+        listData = Storable.getAsBytes(points)!!
+    }
+
+    @TearDown
+    fun tearDown() {
+        store.close()
+        file.delete()
+    }
+
+    @Benchmark
+    fun open(): Int {
+        return PointStoreReader(file).use { it.count }
+    }
+
+    @Benchmark
+    fun readById(): Point? {
+        return store.readById(POINTS / 2L)
+    }
+
+    @Benchmark
+    fun readInBounds(): List<Point> {
+        return store.readInBounds(50.5, 15.0, 50.52, 15.04)
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    fun readList(): List<Point> {
+        return Storable.readList(listData) { Point() }
+    }
+
+    companion object {
+
+        // number of stored points
+        private const val POINTS = 50000
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.benchmark
+
+import locus.api.objects.Storable
+import locus.api.objects.StorableIndex
+import locus.api.objects.extra.Location
+import locus.api.objects.geoData.Point
+import locus.api.objects.geoData.Track
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Write and read of the [Track], [Point] and [Location] objects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class SerializationBenchmark {
+
+    /**
+     * Number of points in track and number of items in lists.
+     */
+    @Param("100", "1000", "10000")
+    @JvmField
+    var size: Int = 0
+
+    // source objects
+    private lateinit var track: Track
+    private lateinit var trackCompact: Track
+    private lateinit var points: List<Point>
+    private lateinit var locations: List<Location>
+
+    // serialized objects
+    private lateinit var trackData: ByteArray
+    private lateinit var trackCompactData: ByteArray
+    private lateinit var pointsData: ByteArray
+    private lateinit var locationsData: ByteArray
+
+    @Setup
+    fun setup() {
+        track = BenchmarkData.track(size)
+        points = List(size) { BenchmarkData.point() }
+        locations = track.points
+        trackData = track.asBytes!!
+        trackCompact = BenchmarkData.track(size).apply { isCompactPoints = true }
+        trackCompactData = trackCompact.asBytes!!
+        pointsData = Storable.getAsBytes(points)!!
+        locationsData = Storable.getAsBytes(locations)!!
+    }
+
+    @Benchmark
+    fun writeTrack(): ByteArray? {
+        return track.asBytes
+    }
+
+    @Benchmark
+    fun readTrack(): Track {
+        return Track().apply { read(trackData) }
+    }
+
+    @Benchmark
+    fun readTrackLazy(): Track {
+        return Track().apply {
+            isLazyRead = true
+            read(trackData)
+        }
+    }
+
+    @Benchmark
+    fun writeTrackCompact(): ByteArray? {
+        return trackCompact.asBytes
+    }
+
+    @Benchmark
+    fun readTrackCompact(): Track {
+        return Track().apply { read(trackCompactData) }
+    }
+
+    @Benchmark
+    fun readTrackCompactLazy(): Track {
+        return Track().apply {
+            isLazyRead = true
+            read(trackCompactData)
+        }
+    }
+
+    @Benchmark
+    fun writePoints(): ByteArray? {
+        return Storable.getAsBytes(points)
+    }
+
+    @Benchmark
+    fun readPoints(): List<Point> {
+        return Storable.readList(pointsData) { Point() }
+    }
+
+    @Benchmark
+    fun readPointsLazy(): List<Point> {
+        return Storable.readList(pointsData) { Point().apply { isLazyRead = true } }
+    }
+
+    @Benchmark
+    fun indexPoints(): StorableIndex {
+        return StorableIndex(pointsData)
+    }
+
+    @Benchmark
+    fun writeLocations(): ByteArray? {
+        return Storable.getAsBytes(locations)
+    }
+
+    @Benchmark
+    fun readLocations(): List<Location> {
+        return Storable.readList(locationsData) { Location() }
+    }
+}
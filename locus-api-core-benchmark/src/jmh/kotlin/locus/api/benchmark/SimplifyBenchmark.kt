@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.benchmark
+
+import locus.api.objects.geoData.Track
+import locus.api.objects.geoData.TrackSimplifier
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Simplification of huge track.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class SimplifyBenchmark {
+
+    // simplified track
+    private lateinit var track: Track
+
+    // prepared level of details
+    private lateinit var lod: TrackSimplifier.Lod
+
+    @Setup
+    fun setup() {
+        track = BenchmarkData.track(POINTS)
+        lod = TrackSimplifier.createLod(track)
+    }
+
+    @Benchmark
+    fun douglasPeucker(): IntArray {
+        return TrackSimplifier.simplifyIndices(track, TOLERANCE,
+                TrackSimplifier.Method.DOUGLAS_PEUCKER)
+    }
+
+    @Benchmark
+    fun visvalingam(): IntArray {
+        return TrackSimplifier.simplifyIndices(track, TOLERANCE,
+                TrackSimplifier.Method.VISVALINGAM)
+    }
+
+    @Benchmark
+    fun decimate(): IntArray {
+        return TrackSimplifier.decimateIndices(track, TOLERANCE, 0L)
+    }
+
+    @Benchmark
+    fun createLod(): TrackSimplifier.Lod {
+        return TrackSimplifier.createLod(track)
+    }
+
+    @Benchmark
+    fun lodLevel(): IntArray {
+        return lod.getIndices(TOLERANCE)
+    }
+
+    companion object {
+
+        // number of points in track
+        private const val POINTS = 200000
+
+        // tolerance of simplification (in m)
+        private const val TOLERANCE = 10.0
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.benchmark
+
+import locus.api.objects.extra.Location
+import locus.api.objects.geoData.Point
+import locus.api.utils.LocationCompute
+import locus.api.utils.SpatialIndex
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Search of nearest points and points in area, indexed and by linear scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class SpatialIndexBenchmark {
+
+    // indexed points
+    private lateinit var points: List<Point>
+
+    // index over points
+    private lateinit var index: SpatialIndex<Point>
+
+    // center of searches
+    private val center = Location(50.5, 15.0)
+
+    @Setup
+    fun setup() {
+        val rnd = BenchmarkData.random()
+        points = List(POINTS) {
+            Point("Point $it", Location(
+                    50.0 + rnd.nextDouble(),
+                    14.0 + rnd.nextDouble() * 2.0))
+        }
+        index = SpatialIndex.forPoints(points)
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    fun build(): SpatialIndex<Point> {
+        return SpatialIndex.forPoints(points)
+    }
+
+    @Benchmark
+    fun nearestIndex(): List<Point> {
+        return index.findNearest(center, NEAREST)
+    }
+
+    @Benchmark
+    fun nearestScan(): List<Point> {
+        val distances = DoubleArray(points.size) {
+            LocationCompute.computeDistanceFast(center, points[it].location)
+        }
+        return points.indices
+                .sortedBy { distances[it] }
+                .take(NEAREST)
+                .map { points[it] }
+    }
+
+    @Benchmark
+    fun radiusIndex(): List<Point> {
+        return index.findInRadius(center.latitude, center.longitude, RADIUS)
+    }
+
+    @Benchmark
+    fun radiusScan(): List<Point> {
+        return points.filter {
+            LocationCompute.computeDistanceFast(center, it.location) <= RADIUS
+        }
+    }
+
+    companion object {
+
+        // number of indexed points
+        private const val POINTS = 50000
+
+        // number of searched nearest points
+        private const val NEAREST = 20
+
+        // radius of search (in m)
+        private const val RADIUS = 2000.0
+    }
+}
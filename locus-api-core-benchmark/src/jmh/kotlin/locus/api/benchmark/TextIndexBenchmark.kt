@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.benchmark
+
+import locus.api.objects.extra.GeoDataExtra
+import locus.api.objects.extra.Location
+import locus.api.objects.geoData.Point
+import locus.api.objects.geocaching.GeocachingData
+import locus.api.utils.TextIndex
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Full-text search over geocaches, indexed and by linear scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class TextIndexBenchmark {
+
+    // searched points
+    private lateinit var points: List<Point>
+
+    // index over points
+    private lateinit var index: TextIndex<Point>
+
+    // searched word
+    private lateinit var word: String
+
+    @Setup
+    fun setup() {
+        val rnd = BenchmarkData.random()
+        val words = List(WORDS) { w ->
+            String(CharArray(4 + w % 6) { 'a' + rnd.nextInt(26) })
+        }
+        fun text(count: Int): String {
+            return List(count) { words[rnd.nextInt(words.size)] }.joinToString(" ")
+        }
+        points = List(POINTS) {
+            Point("Cache $it ${text(2)}", Location(50.0, 14.0)).apply {
+                addParameter(GeoDataExtra.PAR_COMMENT, text(5))
+                gcData = GeocachingData().apply {
+                    cacheID = "GC$it"
+                    owner = text(1)
+                    country = "Czech Republic"
+                    state = text(1)
+                    setDescriptions("<p>${text(20)}</p>", false,
+                            "<p>${text(200)}</p><br/>${text(100)}", true)
+                }
+            }
+        }
+        index = TextIndex.forPoints(points)
+        word = words[WORDS / 2]
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    fun build(): TextIndex<Point> {
+        return TextIndex.forPoints(points)
+    }
+
+    @Benchmark
+    fun findIndex(): List<Point> {
+        return index.find(word)
+    }
+
+    @Benchmark
+    fun findIndexPrefix(): List<Point> {
+        return index.find(word.substring(0, 3))
+    }
+
+    @Benchmark
+    fun findIndexCommon(): List<Point> {
+        return index.find(QUERY_COMMON)
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    fun findScan(): List<Point> {
+        return points.filter {
+            it.name.contains(word, true)
+                    || it.extraData?.searchInParameters(word) == true
+                    || it.gcData?.containsInData(word) == true
+        }
+    }
+
+    companion object {
+
+        // number of indexed points
+        private const val POINTS = 20000
+
+        // number of words in vocabulary of texts
+        private const val WORDS = 5000
+
+        // searched text, contained in all points
+        private const val QUERY_COMMON = "czech re"
+    }
+}
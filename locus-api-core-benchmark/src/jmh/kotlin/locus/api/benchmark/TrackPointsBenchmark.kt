@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.benchmark
+
+import locus.api.objects.extra.Location
+import locus.api.objects.geoData.TrackPoints
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Iteration over track points stored as list of [Location] and in columnar [TrackPoints].
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class TrackPointsBenchmark {
+
+    // points as list of locations
+    private lateinit var locations: List<Location>
+
+    // points in columnar storage
+    private lateinit var store: TrackPoints
+
+    @Setup
+    fun setup() {
+        locations = BenchmarkData.track(POINTS).points
+        store = TrackPoints.from(locations)
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    fun altitudeList(): Double {
+        var sum = 0.0
+        for (loc in locations) {
+            if (loc.hasAltitude) {
+                sum += loc.altitude
+            }
+        }
+        return sum
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    fun altitudeStore(): Double {
+        var sum = 0.0
+        for (i in 0 until store.size) {
+            if (store.hasAltitude(i)) {
+                sum += store.getAltitude(i)
+            }
+        }
+        return sum
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    fun cursorStore(): Double {
+        var sum = 0.0
+        val cursor = store.cursor()
+        while (cursor.moveToNext()) {
+            sum += cursor.location.altitude + cursor.location.speed
+        }
+        return sum
+    }
+
+    companion object {
+
+        // number of points
+        private const val POINTS = 100000
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.benchmark
+
+import locus.api.objects.extra.Location
+import locus.api.objects.extra.TrackStats
+import locus.api.objects.extra.TrackStatsCalculator
+import locus.api.objects.geoData.Track
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compute of track statistics from points and merge of statistics, as used for statistics
+ * of more tracks or segments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class TrackStatsBenchmark {
+
+    // statistics of the segments
+    private lateinit var segments: List<TrackStats>
+
+    // track for compute of statistics
+    private lateinit var track: Track
+
+    // huge track for compute of statistics in parallel
+    private lateinit var trackHuge: Track
+
+    // calculator with statistics of whole track
+    private lateinit var calculator: TrackStatsCalculator
+
+    // point added to calculator
+    private lateinit var point: Location
+
+    @Setup
+    fun setup() {
+        track = BenchmarkData.track(POINTS)
+        trackHuge = BenchmarkData.track(POINTS_HUGE)
+        calculator = TrackStatsCalculator().apply {
+            addPoints(track.points, track.breaks)
+        }
+        point = Location(track.points.last())
+
+        val rnd = BenchmarkData.random()
+        segments = List(SEGMENTS) {
+            TrackStats().apply {
+                numOfPoints = 100 + rnd.nextInt(100)
+                startTime = 1_600_000_000_000L + it * 3_600_000L
+                stopTime = startTime + 1_800_000L
+                totalLength = 1000.0f + rnd.nextFloat() * 1000.0f
+                totalLengthMove = totalLength * 0.9f
+                totalTime = stopTime - startTime
+                totalTimeMove = totalTime * 9 / 10
+                speedMax = rnd.nextFloat() * 10.0f
+                altitudeMin = 200.0f + rnd.nextFloat() * 50.0f
+                altitudeMax = altitudeMin + rnd.nextFloat() * 100.0f
+                elePositiveHeight = rnd.nextFloat() * 100.0f
+                eleNegativeHeight = rnd.nextFloat() * 100.0f
+                addHeartRateMeasure(150 + rnd.nextInt(30), 130, totalTime)
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEGMENTS)
+    fun appendStatistics(): TrackStats {
+        val result = TrackStats()
+        for (segment in segments) {
+            result.appendStatistics(segment)
+        }
+        return result
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    fun computeStatistics(): TrackStats {
+        return TrackStatsCalculator.compute(track)
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS_HUGE)
+    fun computeStatisticsHuge(): TrackStats {
+        return TrackStatsCalculator.compute(trackHuge)
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS_HUGE)
+    fun computeStatisticsHugeParallel(): TrackStats {
+        return TrackStatsCalculator.computeParallel(trackHuge)
+    }
+
+    @Benchmark
+    fun addPoint(): TrackStats {
+        // point is moved back and forth to simulate live recording
+        point.time += 1000L
+        point.latitude += if (point.time % 2000L == 0L) 0.00001 else -0.00001
+        calculator.addPoint(point)
+        return calculator.stats
+    }
+
+    companion object {
+
+        // number of merged statistics
+        private const val SEGMENTS = 100
+
+        // number of points in track
+        private const val POINTS = 10000
+
+        // number of points in huge track
+        private const val POINTS_HUGE = 200000
+    }
+}
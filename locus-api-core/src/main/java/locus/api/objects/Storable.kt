@@ -19,13 +19,23 @@
  */
 package locus.api.objects
 
+import locus.api.objects.extra.GeoDataExtra
+import locus.api.objects.extra.Location
+import locus.api.objects.extra.TrackStats
+import locus.api.objects.geoData.Circle
+import locus.api.objects.geoData.Point
+import locus.api.objects.geoData.Track
+import locus.api.objects.geocaching.*
+import locus.api.objects.styles.*
 import locus.api.utils.DataReaderBigEndian
 import locus.api.utils.DataWriterBigEndian
 import locus.api.utils.Logger
 import java.io.DataInputStream
 import java.io.DataOutputStream
 import java.io.IOException
+import java.lang.reflect.InvocationTargetException
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Default empty constructor.
@@ -39,17 +49,28 @@ abstract class Storable {
 
     /**
      * Create precise copy of current object.
-     * Method is that object is stored into byte stream and then restored
-     * as a new object.
+     * Objects that support it are copied directly (see [copyObject]). Other objects are
+     * stored into byte stream and then restored as a new object.
      *
      * @return exact clone of this object
      */
     val copy: Storable
         @Throws(IOException::class, InstantiationException::class, IllegalAccessException::class)
         get() {
-            return read(this.javaClass, DataReaderBigEndian(asBytes))
+            return copyObject()
+                    ?: read(DataReaderBigEndian(asBytes), getFactory(this.javaClass))
         }
 
+    /**
+     * Create deep copy of serialized values of this object, without serialization. Result has
+     * to be same as object written and read back.
+     *
+     * @return copy of object or `null` if object does not support direct copy
+     */
+    protected open fun copyObject(): Storable? {
+        return null
+    }
+
     /**
      * Get whole object serialized into byte array.
      *
@@ -58,9 +79,7 @@ abstract class Storable {
     val asBytes: ByteArray?
         get() {
             return try {
-                DataWriterBigEndian().apply {
-                    write(this)
-                }.toByteArray()
+                writeToBytes { write(it) }
             } catch (e: IOException) {
                 Logger.logE(TAG, "asBytes()", e)
                 null
@@ -101,10 +120,16 @@ abstract class Storable {
     @Throws(IOException::class)
     fun read(dr: DataReaderBigEndian) {
         // read header
-        val bc = readHeader(dr)
-
-        // read body
-        readObject(bc.version, DataReaderBigEndian(bc.data))
+        val version = dr.readInt()
+        val size = readSize(dr)
+
+        // read body directly from the parent reader, limited to the object size
+        val limit = dr.beginWindow(size)
+        try {
+            readObject(version, dr)
+        } finally {
+            dr.endWindow(limit)
+        }
     }
 
     /**
@@ -177,33 +202,23 @@ abstract class Storable {
         private const val TAG = "Storable"
 
         // maximal size of Storable item
-        private const val MAX_SIZE = 50 * 1024 * 1024
+        internal const val MAX_SIZE = 50 * 1024 * 1024
 
         /**
-         * Read header of object from stream.
+         * Read size of object body from stream.
          *
          * @param dr input stream
-         * @return read data container
+         * @return size of the body
          */
         @Throws(IOException::class)
-        private fun readHeader(dr: DataReaderBigEndian): BodyContainer {
-            // initialize container
-            val bc = BodyContainer()
-
-            // read basic data
-            bc.version = dr.readInt()
+        private fun readSize(dr: DataReaderBigEndian): Int {
             val size = dr.readInt()
 
             // check size to prevent OOE
             if (size < 0 || size > MAX_SIZE) {
                 throw IOException("item size too big, size:$size, max: 50MB")
             }
-
-            // read object data
-            bc.data = dr.readBytes(size)
-
-            // return filled container
-            return bc
+            return size
         }
 
         /**
@@ -227,14 +242,93 @@ abstract class Storable {
             }
 
             // read object data
-            bc.data = ByteArray(size)
-
-            dis.read(bc.data!!)
+            bc.data = ByteArray(size).apply {
+                dis.readFully(this)
+            }
 
             // return filled container
             return bc
         }
 
+        //*************************************************
+        // FACTORIES
+        //*************************************************
+
+        /**
+         * Registered factories for creating of new objects during read.
+         */
+        private val factories = ConcurrentHashMap<Class<*>, () -> Storable>()
+
+        init {
+            // core objects
+            registerFactory(Location::class.java) { Location() }
+            registerFactory(GeoDataExtra::class.java) { GeoDataExtra() }
+            registerFactory(TrackStats::class.java) { TrackStats() }
+            registerFactory(Point::class.java) { Point() }
+            registerFactory(Track::class.java) { Track() }
+            registerFactory(Circle::class.java) { Circle() }
+
+            // styles
+            registerFactory(GeoDataStyle::class.java) { GeoDataStyle() }
+            registerFactory(BalloonStyle::class.java) { BalloonStyle() }
+            registerFactory(IconStyle::class.java) { IconStyle() }
+            registerFactory(LabelStyle::class.java) { LabelStyle() }
+            registerFactory(LineStyle::class.java) { LineStyle() }
+            registerFactory(ListStyle::class.java) { ListStyle() }
+
+            // geocaching
+            registerFactory(GeocachingData::class.java) { GeocachingData() }
+            registerFactory(GeocachingAttribute::class.java) { GeocachingAttribute() }
+            registerFactory(GeocachingImage::class.java) { GeocachingImage() }
+            registerFactory(GeocachingLog::class.java) { GeocachingLog() }
+            registerFactory(GeocachingTrackable::class.java) { GeocachingTrackable() }
+            registerFactory(GeocachingWaypoint::class.java) { GeocachingWaypoint() }
+        }
+
+        /**
+         * Register factory used for creating of new instances of [claz] during read. Factory
+         * replaces slow reflection based instantiation.
+         *
+         * @param claz class of created objects
+         * @param factory factory for new objects
+         */
+        fun <E : Storable> registerFactory(claz: Class<E>, factory: () -> E) {
+            factories[claz] = factory
+        }
+
+        /**
+         * Get factory for new instances of [claz]. If no factory is registered, factory over
+         * public empty constructor of the class is created and registered.
+         *
+         * @param claz class of created objects
+         * @return factory for new objects
+         */
+        @Suppress("UNCHECKED_CAST")
+        @Throws(InstantiationException::class, IllegalAccessException::class)
+        fun <E : Storable> getFactory(claz: Class<E>): () -> E {
+            factories[claz]?.let {
+                return it as () -> E
+            }
+
+            // prepare factory over constructor
+            val constructor = try {
+                claz.getConstructor()
+            } catch (e: NoSuchMethodException) {
+                throw InstantiationException("No empty public constructor for $claz")
+            } catch (e: SecurityException) {
+                throw IllegalAccessException("Constructor not accessible for $claz")
+            }
+            val factory: () -> E = {
+                try {
+                    constructor.newInstance()
+                } catch (e: InvocationTargetException) {
+                    throw e.targetException
+                }
+            }
+            factories[claz] = factory
+            return factory
+        }
+
         //*************************************************
         // STATIC TOOLS
         //*************************************************
@@ -250,13 +344,31 @@ abstract class Storable {
          */
         @Throws(IOException::class, InstantiationException::class, IllegalAccessException::class)
         fun <E : Storable> read(claz: Class<E>, dr: DataReaderBigEndian): E {
-            // read header
-            val bc = readHeader(dr)
+            return read(dr, getFactory(claz))
+        }
 
-            // now initialize object. Data are already loaded, so error will not break data flow
-            val storable = claz.newInstance()
-            storable.readObject(bc.version, DataReaderBigEndian(bc.data))
-            return storable
+        /**
+         * Read object created by [factory] from input.
+         *
+         * @param dr reader with data
+         * @param factory factory for new object
+         * @return read object
+         */
+        @Throws(IOException::class)
+        fun <E : Storable> read(dr: DataReaderBigEndian, factory: () -> E): E {
+            // read header
+            val version = dr.readInt()
+            val size = readSize(dr)
+
+            // now initialize object. Body is limited by window, so error will not break data flow
+            val limit = dr.beginWindow(size)
+            try {
+                val storable = factory()
+                storable.readObject(version, dr)
+                return storable
+            } finally {
+                dr.endWindow(limit)
+            }
         }
 
         /**
@@ -266,8 +378,9 @@ abstract class Storable {
          */
         @Throws(IOException::class)
         fun readUnknownObject(dr: DataReaderBigEndian) {
-            // read header. This also allow to skip body of object
-            readHeader(dr)
+            // read header and skip body of object
+            dr.readInt()
+            dr.skip(readSize(dr))
         }
 
         // LIST READING/WRITING
@@ -285,7 +398,20 @@ abstract class Storable {
         }
 
         /**
-         * Read list of certain classes from input stream.
+         * Read list of objects created by [factory] from byte array.
+         *
+         * @param data byte array with pack data
+         * @param factory factory for new objects
+         * @return loaded list of items
+         */
+        @Throws(IOException::class)
+        fun <E : Storable> readList(data: ByteArray, factory: () -> E): List<E> {
+            return DataReaderBigEndian(data).readListStorable(factory)
+        }
+
+        /**
+         * Read list of certain classes from input stream. All items are loaded into memory, for
+         * big lists consider to use [StorableListReader] instead.
          *
          * @param claz class to instantiate and read
          * @param dis  input stream with data
@@ -294,6 +420,27 @@ abstract class Storable {
         @Throws(IOException::class)
         fun <E : Storable> readList(claz: Class<E>,
                 dis: DataInputStream): List<E> {
+            return try {
+                readList(dis, getFactory(claz))
+            } catch (e: InstantiationException) {
+                Logger.logE(TAG, "readList($claz, $dis)", e)
+                ArrayList()
+            } catch (e: IllegalAccessException) {
+                Logger.logE(TAG, "readList($claz, $dis)", e)
+                ArrayList()
+            }
+        }
+
+        /**
+         * Read list of objects created by [factory] from input stream. All items are loaded
+         * into memory, for big lists consider to use [StorableListReader] instead.
+         *
+         * @param dis  input stream with data
+         * @param factory factory for new objects
+         * @return loaded list of items
+         */
+        @Throws(IOException::class)
+        fun <E : Storable> readList(dis: DataInputStream, factory: () -> E): List<E> {
             // prepare container
             val objs = ArrayList<E>()
 
@@ -303,22 +450,44 @@ abstract class Storable {
                 return objs
             }
 
-            // read locations
+            // read items
             for (i in 0 until count) {
-                try {
-                    val item = claz.newInstance()
-                    item.read(dis)
-                    objs.add(item)
-                } catch (e: InstantiationException) {
-                    Logger.logE(TAG, "readList($claz, $dis)", e)
-                } catch (e: IllegalAccessException) {
-                    Logger.logE(TAG, "readList($claz, $dis)", e)
-                }
-
+                objs.add(factory().apply { read(dis) })
             }
             return objs
         }
 
+        /**
+         * Serialize data over writer from the pool and return copy of written bytes.
+         *
+         * @param write function that writes data
+         */
+        @Throws(IOException::class)
+        internal inline fun writeToBytes(write: (DataWriterBigEndian) -> Unit): ByteArray {
+            val dw = DataWriterBigEndian.obtain()
+            try {
+                write(dw)
+                return dw.toByteArray()
+            } finally {
+                dw.recycle()
+            }
+        }
+
+        /**
+         * Create new list with copies of all [items], see [copy].
+         *
+         * @param items list of storable items
+         * @return list of copied items
+         */
+        @Suppress("UNCHECKED_CAST")
+        internal fun <E : Storable> copyList(items: List<E>): MutableList<E> {
+            val result = ArrayList<E>(items.size)
+            for (item in items) {
+                result.add(item.copy as E)
+            }
+            return result
+        }
+
         // WRITE LIST PART
 
         /**
@@ -329,9 +498,7 @@ abstract class Storable {
          */
         fun getAsBytes(data: List<Storable>): ByteArray? {
             return try {
-                DataWriterBigEndian().apply {
-                    writeListStorable(data)
-                }.toByteArray()
+                writeToBytes { it.writeListStorable(data) }
             } catch (e: Exception) {
                 Logger.logE(TAG, "getAsBytes($data)", e)
                 null
@@ -339,25 +506,18 @@ abstract class Storable {
         }
 
         /**
-         * Write certain list into output stream.
+         * Write certain list into output stream. Items are serialized one by one directly into
+         * the stream, see [StorableListWriter].
          *
          * @param objs list of storable items
          * @param dos  output stream where to write items
          */
         @Throws(IOException::class)
         fun writeList(objs: List<Storable>, dos: DataOutputStream) {
-            // get size of list
-            val size = objs.size
-
-            // write size of list
-            dos.writeInt(size)
-            if (size == 0) {
-                return
-            }
-
-            // write objects
-            for (obj in objs) {
-                dos.write(obj.asBytes!!)
+            StorableListWriter(dos, objs.size).apply {
+                for (obj in objs) {
+                    write(obj)
+                }
             }
         }
     }
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.objects
+
+import locus.api.utils.DataReaderBigEndian
+import java.io.Closeable
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Index of list of [Storable] objects written by [Storable.writeList].
+ *
+ * Index is created by single scan over headers of objects. Bodies are skipped, only few bytes
+ * at the start of every body are read to obtain base values defined by [header]. Afterwards,
+ * any object may be read by its index, so huge lists may be loaded by pages or searched without
+ * reading all objects.
+ *
+ * Index keeps the source, so [close] closes the source as well. Index is not thread-safe.
+ */
+class StorableIndex private constructor(
+        private val source: Source,
+        val header: Header) : Closeable {
+
+    /**
+     * Base values stored at the start of body of objects.
+     */
+    enum class Header {
+
+        /**
+         * No values are read.
+         */
+        NONE,
+
+        /**
+         * Body starts with the name (for example `PackPoints`).
+         */
+        NAME,
+
+        /**
+         * Body starts with the ID and the name ([locus.api.objects.geoData.GeoData] objects,
+         * like [locus.api.objects.geoData.Track] or [locus.api.objects.geoData.Point]).
+         */
+        ID_NAME
+    }
+
+    /**
+     * Create index of list stored in byte array.
+     *
+     * @param data serialized list
+     * @param header values to read from objects
+     */
+    @JvmOverloads
+    @Throws(IOException::class)
+    constructor(data: ByteArray, header: Header = Header.ID_NAME)
+            : this(ArraySource(data), header)
+
+    /**
+     * Create index of list stored from the current position of the [FileChannel].
+     *
+     * @param channel channel with data
+     * @param header values to read from objects
+     */
+    @JvmOverloads
+    @Throws(IOException::class)
+    constructor(channel: FileChannel, header: Header = Header.ID_NAME)
+            : this(ChannelSource(channel), header)
+
+    /**
+     * Number of objects in the list.
+     */
+    val count: Int
+
+    // positions of objects headers in the source
+    private val offsets: LongArray
+
+    // sizes of objects bodies
+    private val sizes: IntArray
+
+    // versions of objects
+    private val versions: IntArray
+
+    // IDs of objects
+    private val ids: LongArray
+
+    // names of objects
+    private val names: Array<String?>
+
+    /**
+     * Flag if objects are ordered by ID, so [indexOfId] uses binary search.
+     */
+    val isSortedById: Boolean
+
+    init {
+        count = source.reader(source.start, 4).readInt()
+        if (count < 0 || count > (source.end - source.start - 4) / 8) {
+            throw IOException("invalid number of items: $count")
+        }
+        offsets = LongArray(count)
+        sizes = IntArray(count)
+        versions = IntArray(count)
+        ids = LongArray(count) { -1L }
+        names = arrayOfNulls(count)
+        isSortedById = scan()
+    }
+
+    //*************************************************
+    // VALUES
+    //*************************************************
+
+    /**
+     * Position of object in the source, where its header starts.
+     */
+    fun getOffset(index: Int): Long {
+        return offsets[index]
+    }
+
+    /**
+     * Size of object body.
+     */
+    fun getSize(index: Int): Int {
+        return sizes[index]
+    }
+
+    /**
+     * Version of object.
+     */
+    fun getVersion(index: Int): Int {
+        return versions[index]
+    }
+
+    /**
+     * ID of object, `-1` if ID is not read by [header].
+     */
+    fun getId(index: Int): Long {
+        return ids[index]
+    }
+
+    /**
+     * Name of object, `null` if name is not read by [header].
+     */
+    fun getName(index: Int): String? {
+        return names[index]
+    }
+
+    /**
+     * Find index of object with defined [id].
+     *
+     * @return index of object or `-1` if no such object exists
+     */
+    fun indexOfId(id: Long): Int {
+        if (isSortedById) {
+            val index = ids.binarySearch(id)
+            return if (index >= 0) index else -1
+        }
+        return ids.indexOf(id)
+    }
+
+    //*************************************************
+    // READ
+    //*************************************************
+
+    /**
+     * Read object on defined [index].
+     *
+     * @param factory factory for new object
+     */
+    @Throws(IOException::class)
+    fun <E : Storable> read(index: Int, factory: () -> E): E {
+        return Storable.read(source.reader(offsets[index], HEADER_SIZE + sizes[index]), factory)
+    }
+
+    /**
+     * Read object on defined [index].
+     *
+     * @param claz class of object
+     */
+    @Throws(IOException::class, InstantiationException::class, IllegalAccessException::class)
+    fun <E : Storable> read(index: Int, claz: Class<E>): E {
+        return read(index, Storable.getFactory(claz))
+    }
+
+    /**
+     * Read [length] objects, starting at index [from].
+     *
+     * @param factory factory for new objects
+     */
+    @Throws(IOException::class)
+    fun <E : Storable> readRange(from: Int, length: Int, factory: () -> E): List<E> {
+        if (from < 0 || length < 0 || from > count - length) {
+            throw IndexOutOfBoundsException("Invalid range $from, $length, count: $count")
+        }
+        return List(length) { read(from + it, factory) }
+    }
+
+    override fun close() {
+        source.close()
+    }
+
+    //*************************************************
+    // SCAN
+    //*************************************************
+
+    /**
+     * Scan headers of all objects.
+     *
+     * @return `true` if objects are ordered by ID
+     */
+    private fun scan(): Boolean {
+        var sorted = header == Header.ID_NAME
+        var position = source.start + 4
+        for (i in 0 until count) {
+            // read header and prefix of the body
+            val available = min(source.end - position, (HEADER_SIZE + BODY_PREFIX_SIZE).toLong())
+            if (available < HEADER_SIZE) {
+                throw IOException("unexpected end of data, item: $i")
+            }
+            val dr = source.reader(position, available.toInt())
+            val version = dr.readInt()
+            val size = dr.readInt()
+            if (size < 0 || size > Storable.MAX_SIZE || size > source.end - position - HEADER_SIZE) {
+                throw IOException("invalid size of item: $i, size: $size")
+            }
+            offsets[i] = position
+            sizes[i] = size
+            versions[i] = version
+
+            // values from the start of the body
+            if (header != Header.NONE) {
+                dr.beginWindow(min(size, dr.available()))
+                readHeader(i, dr)
+                if (sorted && i > 0 && ids[i - 1] > ids[i]) {
+                    sorted = false
+                }
+            }
+            position += HEADER_SIZE + size
+        }
+        return sorted
+    }
+
+    /**
+     * Read values defined by [header] from prefix of the body of object on [index].
+     */
+    private fun readHeader(index: Int, dr: DataReaderBigEndian) {
+        val bodyStart = dr.position
+        if (header == Header.ID_NAME) {
+            if (dr.available() < 8) {
+                return
+            }
+            ids[index] = dr.readLong()
+        }
+
+        // name, longer names are read separately
+        if (dr.available() < 4) {
+            return
+        }
+        val nameStart = dr.position
+        val length = dr.readInt()
+        names[index] = when {
+            length < 0 -> null
+            length <= dr.available() -> {
+                dr.seek(nameStart)
+                dr.readString()
+            }
+            length <= sizes[index] - (nameStart - bodyStart) - 4 -> {
+                val nameOffset = offsets[index] + HEADER_SIZE + (nameStart - bodyStart)
+                source.reader(nameOffset, 4 + length).readString()
+            }
+            else -> null
+        }
+    }
+
+    //*************************************************
+    // SOURCES
+    //*************************************************
+
+    private interface Source : Closeable {
+
+        // position of the list in the source
+        val start: Long
+
+        // end of data in the source
+        val end: Long
+
+        /**
+         * Get reader over [length] bytes from [position]. Reader is valid until next call.
+         */
+        @Throws(IOException::class)
+        fun reader(position: Long, length: Int): DataReaderBigEndian
+    }
+
+    private class ArraySource(private val data: ByteArray) : Source {
+
+        override val start: Long = 0L
+
+        override val end: Long = data.size.toLong()
+
+        override fun reader(position: Long, length: Int): DataReaderBigEndian {
+            if (position < 0L || position + length > end) {
+                throw IOException("unexpected end of data")
+            }
+            return DataReaderBigEndian(data, position.toInt(), length)
+        }
+
+        override fun close() {
+            // nothing to close
+        }
+    }
+
+    private class ChannelSource(private val channel: FileChannel) : Source {
+
+        override val start: Long = channel.position()
+
+        override val end: Long = channel.size()
+
+        // reused buffer for read data
+        private var buffer = ByteArray(BUFFER_SIZE_INITIAL)
+
+        override fun reader(position: Long, length: Int): DataReaderBigEndian {
+            if (position < 0L || position + length > end) {
+                throw IOException("unexpected end of file")
+            }
+            if (buffer.size < length) {
+                buffer = buffer.copyOf(max(length, buffer.size * 2))
+            }
+
+            // read whole requested part
+            val bb = ByteBuffer.wrap(buffer, 0, length)
+            while (bb.hasRemaining()) {
+                if (channel.read(bb, position + bb.position()) < 0) {
+                    throw IOException("unexpected end of file")
+                }
+            }
+            return DataReaderBigEndian(buffer, 0, length)
+        }
+
+        override fun close() {
+            channel.close()
+        }
+    }
+
+    companion object {
+
+        // size of object header (version and size)
+        private const val HEADER_SIZE = 8
+
+        // number of bytes read from start of every body
+        private const val BODY_PREFIX_SIZE = 128
+
+        // initial size of the buffer for objects
+        private const val BUFFER_SIZE_INITIAL = 8 * 1024
+    }
+}
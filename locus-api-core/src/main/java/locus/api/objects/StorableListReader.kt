@@ -0,0 +1,278 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.objects
+
+import locus.api.utils.DataReaderBigEndian
+import java.io.Closeable
+import java.io.DataInputStream
+import java.io.IOException
+import java.nio.Buffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Lazy reader for list of [Storable] objects written by [Storable.writeList].
+ *
+ * Objects are read one by one over single reused buffer, so only one object is kept in memory
+ * at once. This allows to process lists that are bigger then available memory. Reader is
+ * not thread-safe.
+ *
+ * Reader takes ownership of the source, so [close] closes the source as well. Position
+ * of the source is not defined after the read.
+ */
+class StorableListReader<E : Storable> private constructor(
+        private val factory: () -> E,
+        private val source: Source) : Iterator<E>, Closeable {
+
+    /**
+     * Read list over [DataInputStream]. Stream should be buffered.
+     *
+     * @param claz class of items in the list
+     * @param dis stream with data
+     */
+    @Throws(IOException::class, InstantiationException::class, IllegalAccessException::class)
+    constructor(claz: Class<E>, dis: DataInputStream)
+            : this(Storable.getFactory(claz), StreamSource(dis))
+
+    /**
+     * Read list over [DataInputStream]. Stream should be buffered.
+     *
+     * @param dis stream with data
+     * @param factory factory for items in the list
+     */
+    @Throws(IOException::class)
+    constructor(dis: DataInputStream, factory: () -> E)
+            : this(factory, StreamSource(dis))
+
+    /**
+     * Read list from the current position of the [FileChannel]. File is memory-mapped by
+     * parts, so it may be bigger then 2GB.
+     *
+     * @param claz class of items in the list
+     * @param channel channel with data
+     */
+    @Throws(IOException::class, InstantiationException::class, IllegalAccessException::class)
+    constructor(claz: Class<E>, channel: FileChannel)
+            : this(Storable.getFactory(claz), ChannelSource(channel))
+
+    /**
+     * Read list from the current position of the [FileChannel]. File is memory-mapped by
+     * parts, so it may be bigger then 2GB.
+     *
+     * @param channel channel with data
+     * @param factory factory for items in the list
+     */
+    @Throws(IOException::class)
+    constructor(channel: FileChannel, factory: () -> E)
+            : this(factory, ChannelSource(channel))
+
+    /**
+     * Number of items in the list.
+     */
+    val count: Int = source.readInt()
+
+    // index of next item to read
+    private var index = 0
+
+    // reused buffer for the object data
+    private var buffer = ByteArray(BUFFER_SIZE_INITIAL)
+
+    init {
+        if (count < 0) {
+            throw IOException("invalid number of items: $count")
+        }
+    }
+
+    override fun hasNext(): Boolean {
+        return index < count
+    }
+
+    @Throws(IOException::class)
+    override fun next(): E {
+        if (!hasNext()) {
+            throw NoSuchElementException()
+        }
+        index++
+
+        // read header
+        val size = readHeader()
+
+        // read body into reused buffer
+        if (buffer.size < size + 8) {
+            buffer = buffer.copyOf(max(size + 8, buffer.size * 2))
+        }
+        source.read(buffer, 8, size)
+
+        // create item
+        return Storable.read(DataReaderBigEndian(buffer, 0, size + 8), factory)
+    }
+
+    /**
+     * Skip next item without reading it.
+     */
+    @Throws(IOException::class)
+    fun skip() {
+        if (!hasNext()) {
+            throw NoSuchElementException()
+        }
+        index++
+
+        // skip body of the item
+        source.skip(readHeader())
+    }
+
+    /**
+     * Read header (version and size) of next item into the buffer.
+     *
+     * @return size of the item body
+     */
+    @Throws(IOException::class)
+    private fun readHeader(): Int {
+        source.read(buffer, 0, 8)
+        val size = (buffer[4].toInt() and 0xff shl 24) or
+                (buffer[5].toInt() and 0xff shl 16) or
+                (buffer[6].toInt() and 0xff shl 8) or
+                (buffer[7].toInt() and 0xff)
+        if (size < 0 || size > Storable.MAX_SIZE) {
+            throw IOException("item size too big, size:$size, max: 50MB")
+        }
+        return size
+    }
+
+    override fun close() {
+        source.close()
+    }
+
+    //*************************************************
+    // SOURCES
+    //*************************************************
+
+    private interface Source : Closeable {
+
+        @Throws(IOException::class)
+        fun read(data: ByteArray, offset: Int, length: Int)
+
+        @Throws(IOException::class)
+        fun skip(length: Int)
+
+        @Throws(IOException::class)
+        fun readInt(): Int
+    }
+
+    private class StreamSource(private val dis: DataInputStream) : Source {
+
+        override fun read(data: ByteArray, offset: Int, length: Int) {
+            dis.readFully(data, offset, length)
+        }
+
+        override fun skip(length: Int) {
+            var remain = length
+            while (remain > 0) {
+                val skipped = dis.skipBytes(remain)
+                if (skipped <= 0) {
+                    // force 'EOFException' in case of end of stream
+                    dis.readByte()
+                    remain--
+                } else {
+                    remain -= skipped
+                }
+            }
+        }
+
+        override fun readInt(): Int {
+            return dis.readInt()
+        }
+
+        override fun close() {
+            dis.close()
+        }
+    }
+
+    private class ChannelSource(private val channel: FileChannel) : Source {
+
+        // current position in the file
+        private var position = channel.position()
+
+        // size of the file
+        private val size = channel.size()
+
+        // currently mapped part of the file
+        private var mapped: MappedByteBuffer? = null
+
+        // offset of the mapped part in the file
+        private var mappedOffset = 0L
+
+        override fun read(data: ByteArray, offset: Int, length: Int) {
+            map(length).get(data, offset, length)
+            position += length
+        }
+
+        override fun skip(length: Int) {
+            if (position + length > size) {
+                throw IOException("unexpected end of file")
+            }
+            position += length
+        }
+
+        override fun readInt(): Int {
+            val value = map(4).int
+            position += 4
+            return value
+        }
+
+        /**
+         * Prepare mapped buffer with at least [length] bytes ready from the current position.
+         */
+        private fun map(length: Int): MappedByteBuffer {
+            if (position + length > size) {
+                throw IOException("unexpected end of file")
+            }
+
+            // map new part of the file if needed
+            var buffer = mapped
+            if (buffer == null || position < mappedOffset
+                    || position + length > mappedOffset + buffer.capacity()) {
+                mappedOffset = position
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        min(size - position, max(length, MAPPED_PART_SIZE).toLong()))
+                mapped = buffer
+            }
+            // cast is needed because of covariant return types in Java 9+
+            (buffer as Buffer).position((position - mappedOffset).toInt())
+            return buffer
+        }
+
+        override fun close() {
+            mapped = null
+            channel.close()
+        }
+    }
+
+    companion object {
+
+        // initial size of the buffer for objects
+        private const val BUFFER_SIZE_INITIAL = 8 * 1024
+
+        // size of single mapped part of the file
+        private const val MAPPED_PART_SIZE = 64 * 1024 * 1024
+    }
+}
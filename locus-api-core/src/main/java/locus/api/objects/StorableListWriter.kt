@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.objects
+
+import locus.api.utils.DataWriterBigEndian
+import java.io.DataOutputStream
+import java.io.IOException
+
+/**
+ * Streaming writer for list of [Storable] objects. Output is same as from [Storable.writeList],
+ * so it may be read by [Storable.readList] or [StorableListReader].
+ *
+ * Items are serialized one by one over single reused buffer and written directly into the
+ * stream, so memory needed for write is given by the biggest single item, not by the whole
+ * list. Writer is not thread-safe.
+ *
+ * @param dos output stream. Stream should be buffered
+ * @param count number of items that will be written
+ */
+class StorableListWriter @Throws(IOException::class) constructor(
+        private val dos: DataOutputStream,
+        val count: Int) {
+
+    // reused buffer for the items
+    private var dw = DataWriterBigEndian(BUFFER_SIZE_INITIAL)
+
+    // number of already written items
+    private var written = 0
+
+    init {
+        if (count < 0) {
+            throw IllegalArgumentException("Invalid number of items: $count")
+        }
+        dos.writeInt(count)
+    }
+
+    /**
+     * Write next item into the stream.
+     *
+     * @param item item to write
+     */
+    @Throws(IOException::class)
+    fun write(item: Storable) {
+        if (written >= count) {
+            throw IllegalStateException("All $count items already written")
+        }
+        written++
+
+        // serialize item and write it into stream
+        dw.reset()
+        item.write(dw)
+        dw.writeTo(dos)
+
+        // do not keep huge buffer for the rest of writing
+        if (dw.size() > BUFFER_SIZE_MAX) {
+            dw = DataWriterBigEndian(BUFFER_SIZE_INITIAL)
+        }
+    }
+
+    /**
+     * Finish writing. Check that all items were written and flush the stream. Stream itself
+     * is not closed.
+     */
+    @Throws(IOException::class)
+    fun finish() {
+        if (written != count) {
+            throw IllegalStateException("Only $written from $count items written")
+        }
+        dos.flush()
+    }
+
+    companion object {
+
+        // initial size of the buffer for items
+        private const val BUFFER_SIZE_INITIAL = 8 * 1024
+
+        // maximal size of the buffer kept between items
+        private const val BUFFER_SIZE_MAX = 1024 * 1024
+
+        /**
+         * Write items provided by [items] sequence into the stream. Sequence is iterated only once,
+         * so items may be created on the fly.
+         *
+         * @param count number of items in sequence
+         * @param items sequence of items
+         * @param dos output stream
+         */
+        @Throws(IOException::class)
+        fun write(count: Int, items: Sequence<Storable>, dos: DataOutputStream) {
+            StorableListWriter(dos, count).apply {
+                items.forEach { write(it) }
+                finish()
+            }
+        }
+    }
+}
@@ -103,6 +103,13 @@ class GeoDataExtra : Storable() {
      */
     internal var parameters = SparseArrayCompat<ByteArray>()
 
+    /**
+     * Decoded text values of [parameters], on same indices. Values are decoded lazily on first
+     * access and whole cache is dropped on any change of parameters. Concurrent readers may
+     * only decode same value more times.
+     */
+    private var decoded: Array<String?>? = null
+
     val count: Int
         get() = parameters.size()
 
@@ -139,7 +146,7 @@ class GeoDataExtra : Storable() {
         }
 
         // finally insert value
-        parameters.put(key, Utils.doStringToBytes(newValue))
+        putParameter(key, Utils.doStringToBytes(newValue))
         return true
     }
 
@@ -178,7 +185,7 @@ class GeoDataExtra : Storable() {
         }
 
         // finally insert value
-        parameters.put(key, value)
+        putParameter(key, value)
         return true
     }
 
@@ -199,9 +206,9 @@ class GeoDataExtra : Storable() {
      * @param key parameter key
      */
     fun getParameter(key: Int): String? {
-        val data = parameters.get(key)
-        return if (data != null) {
-            Utils.doBytesToString(data)
+        val index = parameters.indexOfKey(key)
+        return if (index >= 0) {
+            getParameterAt(index)
         } else {
             null
         }
@@ -233,8 +240,13 @@ class GeoDataExtra : Storable() {
      * @return parameter value or `null` if does not exists
      */
     fun removeParameter(key: Int): String? {
-        val value = getParameter(key)
-        parameters.remove(key)
+        val index = parameters.indexOfKey(key)
+        if (index < 0) {
+            return null
+        }
+        val value = getParameterAt(index)
+        parameters.removeAt(index)
+        decoded = null
         return value
     }
 
@@ -250,13 +262,53 @@ class GeoDataExtra : Storable() {
             }
 
             // perform test
-            if (contains(Utils.doBytesToString(value))) {
+            if (contains(getParameterAt(i))) {
                 return true
             }
         }
         return false
     }
 
+    /**
+     * Test if any parameter contains certain text. Suitable for filtering of many objects,
+     * values are decoded only once and search itself allocates no objects.
+     *
+     * @param text searched text
+     * @param ignoreCase `true` to ignore case of characters
+     */
+    @JvmOverloads
+    fun searchInParameters(text: String, ignoreCase: Boolean = true): Boolean {
+        for (i in 0 until parameters.size()) {
+            if (getParameterAt(i).contains(text, ignoreCase)) {
+                return true
+            }
+        }
+        return false
+    }
+
+    /**
+     * Get decoded text value of parameter on certain index.
+     */
+    private fun getParameterAt(index: Int): String {
+        var cache = decoded
+        if (cache == null || cache.size != parameters.size()) {
+            cache = arrayOfNulls(parameters.size())
+            decoded = cache
+        }
+        return cache[index]
+                ?: Utils.doBytesToString(parameters.valueAt(index)).also {
+                    cache[index] = it
+                }
+    }
+
+    /**
+     * Put raw value of parameter into container.
+     */
+    private fun putParameter(key: Int, value: ByteArray) {
+        parameters.put(key, value)
+        decoded = null
+    }
+
     /**
      * Copy data from other GeoDataExtra container to current object.
      *
@@ -283,7 +335,7 @@ class GeoDataExtra : Storable() {
             }
 
             val value = dataNew.parameters.valueAt(i)
-            parameters.put(key, value)
+            putParameter(key, value)
         }
 
         // add special containers
@@ -322,6 +374,7 @@ class GeoDataExtra : Storable() {
     override fun readObject(version: Int, dr: DataReaderBigEndian) {
         val size = dr.readInt()
         parameters.clear()
+        decoded = null
         for (i in 0 until size) {
             val key = dr.readInt()
             parameters.put(key, dr.readBytes(dr.readInt()))
@@ -342,6 +395,20 @@ class GeoDataExtra : Storable() {
         }
     }
 
+    override fun copyObject(): Storable {
+        return GeoDataExtra().also {
+            // raw values are accessible over `getParameterRaw`, so they are not shared
+            val params = parameters.clone()
+            for (i in 0 until params.size()) {
+                params.setValueAt(i, params.valueAt(i).copyOf())
+            }
+            it.parameters = params
+
+            // decoded texts are immutable
+            it.decoded = decoded?.copyOf()
+        }
+    }
+
     //*************************************************
     // ATTACHMENTS
     //*************************************************
@@ -466,7 +533,7 @@ class GeoDataExtra : Storable() {
         for (key in rangeFrom..rangeTo) {
             val value = getParameter(key)
             if (value == null) {
-                parameters.put(key, Utils.doStringToBytes(item))
+                putParameter(key, Utils.doStringToBytes(item))
                 return true
             } else if (value.equals(item, ignoreCase = true)) {
                 // item already exists
@@ -478,9 +545,13 @@ class GeoDataExtra : Storable() {
 
     private fun getFromStorage(rangeFrom: Int, rangeTo: Int): List<LabelTextContainer> {
         val data = ArrayList<LabelTextContainer>()
-        for (key in rangeFrom..rangeTo) {
-            val value = getParameter(key)
-            if (value == null || value.isEmpty()) {
+        for (i in 0 until parameters.size()) {
+            val key = parameters.keyAt(i)
+            if (key < rangeFrom || key > rangeTo) {
+                continue
+            }
+            val value = getParameterAt(i)
+            if (value.isEmpty()) {
                 continue
             }
 
@@ -503,6 +574,7 @@ class GeoDataExtra : Storable() {
                 // no item
             } else if (value.endsWith(item)) {
                 parameters.remove(key)
+                decoded = null
                 return true
             }  // some other item already included, move to next index
         }
@@ -513,6 +585,7 @@ class GeoDataExtra : Storable() {
         for (i in rangeFrom..rangeTo) {
             parameters.remove(i)
         }
+        decoded = null
     }
 
     private fun convertToTexts(data: List<LabelTextContainer>): List<String> {
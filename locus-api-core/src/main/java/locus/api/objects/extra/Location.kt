@@ -35,24 +35,40 @@ open class Location() : Storable() {
     // CONTAINERS
 
     /**
-     * Container for integer based extra data.
+     * Flags of known extra values that are set. Every known value has own bit defined by
+     * 'FLAG_xxx' parameter.
      */
-    private var extraDataShort = SparseArrayCompat<Short>(0)
+    private var extraFlags = 0
+
+    // fixed slots for known extra values. Value is valid only if relevant flag is set,
+    // otherwise it is always zero.
+    private var extraAltitude = 0.0
+    private var extraSpeed = 0.0f
+    private var extraBearing = 0.0f
+    private var extraAccuracyHor = 0.0f
+    private var extraAccuracyVer = 0.0f
+    private var extraSensorHeartRate: Short = 0
+    private var extraSensorCadence: Short = 0
+    private var extraSensorSpeed = 0.0f
+    private var extraSensorTemperature = 0.0f
+    private var extraSensorPower = 0.0f
+    private var extraSensorStrides = 0
+    private var extraGnssQuality: Short = 0
+    private var extraGnssHdop = 0.0f
+    private var extraGnssVdop = 0.0f
+    private var extraGnssPdop = 0.0f
+    private var extraGnssSatsUsed: Short = 0
+    private var extraGnssSatsVisible: Short = 0
 
     /**
-     * Container for integer based extra data.
+     * Containers for extra data with unknown keys (created by newer versions of API). Containers
+     * are created only when needed and values are kept only to not lose them during
+     * serialization.
      */
-    private var extraDataInt = SparseArrayCompat<Int>(0)
-
-    /**
-     * Container for float based extra data.
-     */
-    private var extraDataFloat = SparseArrayCompat<Float>(0)
-
-    /**
-     * Container for double based extra data.
-     */
-    private var extraDataDouble = SparseArrayCompat<Double>(0)
+    private var extraDataShort: SparseArrayCompat<Short>? = null
+    private var extraDataInt: SparseArrayCompat<Int>? = null
+    private var extraDataFloat: SparseArrayCompat<Float>? = null
+    private var extraDataDouble: SparseArrayCompat<Double>? = null
 
     // VARIABLES
 
@@ -119,17 +135,19 @@ open class Location() : Storable() {
      */
     var altitude: Double
         get() {
-            return extraDataDouble.get(EXTRA_KEY_ALTITUDE, 0.0)
+            return extraAltitude
         }
         set(value) {
-            extraDataDouble.put(EXTRA_KEY_ALTITUDE, value)
+            extraAltitude = value
+            extraFlags = extraFlags or FLAG_ALTITUDE
         }
 
     val hasAltitude: Boolean
-        get() = extraDataDouble.containsKey(EXTRA_KEY_ALTITUDE)
+        get() = extraFlags and FLAG_ALTITUDE != 0
 
     fun removeAltitude() {
-        extraDataDouble.remove(EXTRA_KEY_ALTITUDE)
+        extraAltitude = 0.0
+        extraFlags = extraFlags and FLAG_ALTITUDE.inv()
     }
 
     // SPEED
@@ -139,17 +157,19 @@ open class Location() : Storable() {
      */
     var speed: Float
         get() {
-            return extraDataFloat.get(EXTRA_KEY_SPEED, 0.0f)
+            return extraSpeed
         }
         set(value) {
-            extraDataFloat.put(EXTRA_KEY_SPEED, value)
+            extraSpeed = value
+            extraFlags = extraFlags or FLAG_SPEED
         }
 
     val hasSpeed: Boolean
-        get() = extraDataFloat.containsKey(EXTRA_KEY_SPEED)
+        get() = extraFlags and FLAG_SPEED != 0
 
     fun removeSpeed() {
-        extraDataFloat.remove(EXTRA_KEY_SPEED)
+        extraSpeed = 0.0f
+        extraFlags = extraFlags and FLAG_SPEED.inv()
     }
 
     // BEARING
@@ -160,7 +180,7 @@ open class Location() : Storable() {
      */
     var bearing: Float
         get() {
-            return extraDataFloat.get(EXTRA_KEY_BEARING, 0.0f)
+            return extraBearing
         }
         set(value) {
             var bearingNew = value
@@ -170,14 +190,16 @@ open class Location() : Storable() {
             while (bearingNew >= 360.0f) {
                 bearingNew -= 360.0f
             }
-            extraDataFloat.put(EXTRA_KEY_BEARING, bearingNew)
+            extraBearing = bearingNew
+            extraFlags = extraFlags or FLAG_BEARING
         }
 
     val hasBearing: Boolean
-        get() = extraDataFloat.containsKey(EXTRA_KEY_BEARING)
+        get() = extraFlags and FLAG_BEARING != 0
 
     fun removeBearing() {
-        extraDataFloat.remove(EXTRA_KEY_BEARING)
+        extraBearing = 0.0f
+        extraFlags = extraFlags and FLAG_BEARING.inv()
     }
 
     // HORIZONTAL ACCURACY
@@ -187,17 +209,19 @@ open class Location() : Storable() {
      */
     var accuracyHor: Float
         get() {
-            return extraDataFloat.get(EXTRA_KEY_ACCURACY_HOR, 0.0f)
+            return extraAccuracyHor
         }
         set(value) {
-            extraDataFloat.put(EXTRA_KEY_ACCURACY_HOR, value)
+            extraAccuracyHor = value
+            extraFlags = extraFlags or FLAG_ACCURACY_HOR
         }
 
     val hasAccuracyHor: Boolean
-        get() = extraDataFloat.containsKey(EXTRA_KEY_ACCURACY_HOR)
+        get() = extraFlags and FLAG_ACCURACY_HOR != 0
 
     fun removeAccuracyHor() {
-        extraDataFloat.remove(EXTRA_KEY_ACCURACY_HOR)
+        extraAccuracyHor = 0.0f
+        extraFlags = extraFlags and FLAG_ACCURACY_HOR.inv()
     }
 
     // VERTICAL ACCURACY
@@ -207,17 +231,19 @@ open class Location() : Storable() {
      */
     var accuracyVer: Float
         get() {
-            return extraDataFloat.get(EXTRA_KEY_ACCURACY_VER, 0.0f)
+            return extraAccuracyVer
         }
         set(value) {
-            extraDataFloat.put(EXTRA_KEY_ACCURACY_VER, value)
+            extraAccuracyVer = value
+            extraFlags = extraFlags or FLAG_ACCURACY_VER
         }
 
     val hasAccuracyVer: Boolean
-        get() = extraDataFloat.containsKey(EXTRA_KEY_ACCURACY_VER)
+        get() = extraFlags and FLAG_ACCURACY_VER != 0
 
     fun removeAccuracyVer() {
-        extraDataFloat.remove(EXTRA_KEY_ACCURACY_VER)
+        extraAccuracyVer = 0.0f
+        extraFlags = extraFlags and FLAG_ACCURACY_VER.inv()
     }
 
     //*************************************************
@@ -231,17 +257,19 @@ open class Location() : Storable() {
      */
     var sensorCadence: Short
         get() {
-            return extraDataShort.get(EXTRA_KEY_SENSOR_CADENCE, 0)
+            return extraSensorCadence
         }
         set(value) {
-            extraDataShort.put(EXTRA_KEY_SENSOR_CADENCE, value)
+            extraSensorCadence = value
+            extraFlags = extraFlags or FLAG_SENSOR_CADENCE
         }
 
     val hasSensorCadence: Boolean
-        get() = extraDataShort.containsKey(EXTRA_KEY_SENSOR_CADENCE)
+        get() = extraFlags and FLAG_SENSOR_CADENCE != 0
 
     fun removeSensorCadence() {
-        extraDataShort.remove(EXTRA_KEY_SENSOR_CADENCE)
+        extraSensorCadence = 0
+        extraFlags = extraFlags and FLAG_SENSOR_CADENCE.inv()
     }
 
     // HEART RATE
@@ -251,17 +279,19 @@ open class Location() : Storable() {
      */
     var sensorHeartRate: Short
         get() {
-            return extraDataShort.get(EXTRA_KEY_SENSOR_HEART_RATE, 0)
+            return extraSensorHeartRate
         }
         set(value) {
-            extraDataShort.put(EXTRA_KEY_SENSOR_HEART_RATE, value)
+            extraSensorHeartRate = value
+            extraFlags = extraFlags or FLAG_SENSOR_HEART_RATE
         }
 
     val hasSensorHeartRate: Boolean
-        get() = extraDataShort.containsKey(EXTRA_KEY_SENSOR_HEART_RATE)
+        get() = extraFlags and FLAG_SENSOR_HEART_RATE != 0
 
     fun removeSensorHeartRate() {
-        extraDataShort.remove(EXTRA_KEY_SENSOR_HEART_RATE)
+        extraSensorHeartRate = 0
+        extraFlags = extraFlags and FLAG_SENSOR_HEART_RATE.inv()
     }
 
     // SPEED FROM SENSOR
@@ -274,17 +304,19 @@ open class Location() : Storable() {
      */
     var sensorSpeed: Float
         get() {
-            return extraDataFloat.get(EXTRA_KEY_SENSOR_SPEED, 0.0f)
+            return extraSensorSpeed
         }
         set(value) {
-            extraDataFloat.put(EXTRA_KEY_SENSOR_SPEED, value)
+            extraSensorSpeed = value
+            extraFlags = extraFlags or FLAG_SENSOR_SPEED
         }
 
     val hasSensorSpeed: Boolean
-        get() = extraDataFloat.containsKey(EXTRA_KEY_SENSOR_SPEED)
+        get() = extraFlags and FLAG_SENSOR_SPEED != 0
 
     fun removeSensorSpeed() {
-        extraDataFloat.remove(EXTRA_KEY_SENSOR_SPEED)
+        extraSensorSpeed = 0.0f
+        extraFlags = extraFlags and FLAG_SENSOR_SPEED.inv()
     }
 
     // POWER
@@ -294,17 +326,19 @@ open class Location() : Storable() {
      */
     var sensorPower: Float
         get() {
-            return extraDataFloat.get(EXTRA_KEY_SENSOR_POWER, 0.0f)
+            return extraSensorPower
         }
         set(value) {
-            extraDataFloat.put(EXTRA_KEY_SENSOR_POWER, value)
+            extraSensorPower = value
+            extraFlags = extraFlags or FLAG_SENSOR_POWER
         }
 
     val hasSensorPower: Boolean
-        get() = extraDataFloat.containsKey(EXTRA_KEY_SENSOR_POWER)
+        get() = extraFlags and FLAG_SENSOR_POWER != 0
 
     fun removeSensorPower() {
-        extraDataFloat.remove(EXTRA_KEY_SENSOR_POWER)
+        extraSensorPower = 0.0f
+        extraFlags = extraFlags and FLAG_SENSOR_POWER.inv()
     }
 
     // STRIDES
@@ -314,17 +348,19 @@ open class Location() : Storable() {
      */
     var sensorStrides: Int
         get() {
-            return extraDataInt.get(EXTRA_KEY_SENSOR_STRIDES, 0)
+            return extraSensorStrides
         }
         set(value) {
-            extraDataInt.put(EXTRA_KEY_SENSOR_STRIDES, value)
+            extraSensorStrides = value
+            extraFlags = extraFlags or FLAG_SENSOR_STRIDES
         }
 
     val hasSensorStrides: Boolean
-        get() = extraDataInt.containsKey(EXTRA_KEY_SENSOR_STRIDES)
+        get() = extraFlags and FLAG_SENSOR_STRIDES != 0
 
     fun removeSensorStrides() {
-        extraDataInt.remove(EXTRA_KEY_SENSOR_STRIDES)
+        extraSensorStrides = 0
+        extraFlags = extraFlags and FLAG_SENSOR_STRIDES.inv()
     }
 
     // TEMPERATURE
@@ -334,17 +370,19 @@ open class Location() : Storable() {
      */
     var sensorTemperature: Float
         get() {
-            return extraDataFloat.get(EXTRA_KEY_SENSOR_TEMPERATURE, 0.0f)
+            return extraSensorTemperature
         }
         set(value) {
-            extraDataFloat.put(EXTRA_KEY_SENSOR_TEMPERATURE, value)
+            extraSensorTemperature = value
+            extraFlags = extraFlags or FLAG_SENSOR_TEMPERATURE
         }
 
     val hasSensorTemperature: Boolean
-        get() = extraDataFloat.containsKey(EXTRA_KEY_SENSOR_TEMPERATURE)
+        get() = extraFlags and FLAG_SENSOR_TEMPERATURE != 0
 
     fun removeSensorTemperature() {
-        extraDataFloat.remove(EXTRA_KEY_SENSOR_TEMPERATURE)
+        extraSensorTemperature = 0.0f
+        extraFlags = extraFlags and FLAG_SENSOR_TEMPERATURE.inv()
     }
 
     //*************************************************
@@ -355,17 +393,19 @@ open class Location() : Storable() {
 
     var gnssQuality: Short
         get() {
-            return extraDataShort.get(EXTRA_KEY_GNSS_QUALITY, 0)
+            return extraGnssQuality
         }
         set(value) {
-            extraDataShort.put(EXTRA_KEY_GNSS_QUALITY, value)
+            extraGnssQuality = value
+            extraFlags = extraFlags or FLAG_GNSS_QUALITY
         }
 
     val hasGnssQuality: Boolean
-        get() = extraDataShort.containsKey(EXTRA_KEY_GNSS_QUALITY)
+        get() = extraFlags and FLAG_GNSS_QUALITY != 0
 
     fun removeGnssQuality() {
-        extraDataShort.remove(EXTRA_KEY_GNSS_QUALITY)
+        extraGnssQuality = 0
+        extraFlags = extraFlags and FLAG_GNSS_QUALITY.inv()
     }
 
     // GNSS, HDOP
@@ -377,17 +417,19 @@ open class Location() : Storable() {
      */
     var gnssHdop: Float
         get() {
-            return extraDataFloat.get(EXTRA_KEY_GNSS_HDOP, 0.0f)
+            return extraGnssHdop
         }
         set(value) {
-            extraDataFloat.put(EXTRA_KEY_GNSS_HDOP, value)
+            extraGnssHdop = value
+            extraFlags = extraFlags or FLAG_GNSS_HDOP
         }
 
     val hasGnssHdop: Boolean
-        get() = extraDataFloat.containsKey(EXTRA_KEY_GNSS_HDOP)
+        get() = extraFlags and FLAG_GNSS_HDOP != 0
 
     fun removeGnssHdop() {
-        extraDataFloat.remove(EXTRA_KEY_GNSS_HDOP)
+        extraGnssHdop = 0.0f
+        extraFlags = extraFlags and FLAG_GNSS_HDOP.inv()
     }
 
     // GNSS, VDOP
@@ -399,17 +441,19 @@ open class Location() : Storable() {
      */
     var gnssVdop: Float
         get() {
-            return extraDataFloat.get(EXTRA_KEY_GNSS_VDOP, 0.0f)
+            return extraGnssVdop
         }
         set(value) {
-            extraDataFloat.put(EXTRA_KEY_GNSS_VDOP, value)
+            extraGnssVdop = value
+            extraFlags = extraFlags or FLAG_GNSS_VDOP
         }
 
     val hasGnssVdop: Boolean
-        get() = extraDataFloat.containsKey(EXTRA_KEY_GNSS_VDOP)
+        get() = extraFlags and FLAG_GNSS_VDOP != 0
 
     fun removeGnssVdop() {
-        extraDataFloat.remove(EXTRA_KEY_GNSS_VDOP)
+        extraGnssVdop = 0.0f
+        extraFlags = extraFlags and FLAG_GNSS_VDOP.inv()
     }
 
     // GNSS, PDOP
@@ -421,17 +465,19 @@ open class Location() : Storable() {
      */
     var gnssPdop: Float
         get() {
-            return extraDataFloat.get(EXTRA_KEY_GNSS_PDOP, 0.0f)
+            return extraGnssPdop
         }
         set(value) {
-            extraDataFloat.put(EXTRA_KEY_GNSS_PDOP, value)
+            extraGnssPdop = value
+            extraFlags = extraFlags or FLAG_GNSS_PDOP
         }
 
     val hasGnssPdop: Boolean
-        get() = extraDataFloat.containsKey(EXTRA_KEY_GNSS_PDOP)
+        get() = extraFlags and FLAG_GNSS_PDOP != 0
 
     fun removeGnssPdop() {
-        extraDataFloat.remove(EXTRA_KEY_GNSS_PDOP)
+        extraGnssPdop = 0.0f
+        extraFlags = extraFlags and FLAG_GNSS_PDOP.inv()
     }
 
     // GNSS, NUMBER OF USED SATS
@@ -441,17 +487,19 @@ open class Location() : Storable() {
      */
     var gnssSatsUsed: Short
         get() {
-            return extraDataShort.get(EXTRA_KEY_GNSS_SATS_USED, 0)
+            return extraGnssSatsUsed
         }
         set(value) {
-            extraDataShort.put(EXTRA_KEY_GNSS_SATS_USED, value)
+            extraGnssSatsUsed = value
+            extraFlags = extraFlags or FLAG_GNSS_SATS_USED
         }
 
     val hasGnssSatsUsed: Boolean
-        get() = extraDataShort.containsKey(EXTRA_KEY_GNSS_SATS_USED)
+        get() = extraFlags and FLAG_GNSS_SATS_USED != 0
 
     fun removeGnssSatsUsed() {
-        extraDataShort.remove(EXTRA_KEY_GNSS_SATS_USED)
+        extraGnssSatsUsed = 0
+        extraFlags = extraFlags and FLAG_GNSS_SATS_USED.inv()
     }
 
     // GNSS, NUMBER OF VISIBLE SATS
@@ -461,17 +509,19 @@ open class Location() : Storable() {
      */
     var gnssSatsVisible: Short
         get() {
-            return extraDataShort.get(EXTRA_KEY_GNSS_SATS_VISIBLE, 0)
+            return extraGnssSatsVisible
         }
         set(value) {
-            extraDataShort.put(EXTRA_KEY_GNSS_SATS_VISIBLE, value)
+            extraGnssSatsVisible = value
+            extraFlags = extraFlags or FLAG_GNSS_SATS_VISIBLE
         }
 
     val hasGnssSatsVisible: Boolean
-        get() = extraDataShort.containsKey(EXTRA_KEY_GNSS_SATS_VISIBLE)
+        get() = extraFlags and FLAG_GNSS_SATS_VISIBLE != 0
 
     fun removeGnssSatsVisible() {
-        extraDataShort.remove(EXTRA_KEY_GNSS_SATS_VISIBLE)
+        extraGnssSatsVisible = 0
+        extraFlags = extraFlags and FLAG_GNSS_SATS_VISIBLE.inv()
     }
 
     //*************************************************
@@ -498,10 +548,28 @@ open class Location() : Storable() {
         longitude = loc.longitude
 
         // set extra data
-        extraDataShort.putAll(loc.extraDataShort)
-        extraDataInt.putAll(loc.extraDataInt)
-        extraDataFloat.putAll(loc.extraDataFloat)
-        extraDataDouble.putAll(loc.extraDataDouble)
+        extraFlags = loc.extraFlags
+        extraAltitude = loc.extraAltitude
+        extraSpeed = loc.extraSpeed
+        extraBearing = loc.extraBearing
+        extraAccuracyHor = loc.extraAccuracyHor
+        extraAccuracyVer = loc.extraAccuracyVer
+        extraSensorHeartRate = loc.extraSensorHeartRate
+        extraSensorCadence = loc.extraSensorCadence
+        extraSensorSpeed = loc.extraSensorSpeed
+        extraSensorTemperature = loc.extraSensorTemperature
+        extraSensorPower = loc.extraSensorPower
+        extraSensorStrides = loc.extraSensorStrides
+        extraGnssQuality = loc.extraGnssQuality
+        extraGnssHdop = loc.extraGnssHdop
+        extraGnssVdop = loc.extraGnssVdop
+        extraGnssPdop = loc.extraGnssPdop
+        extraGnssSatsUsed = loc.extraGnssSatsUsed
+        extraGnssSatsVisible = loc.extraGnssSatsVisible
+        extraDataShort = loc.extraDataShort?.clone()
+        extraDataInt = loc.extraDataInt?.clone()
+        extraDataFloat = loc.extraDataFloat?.clone()
+        extraDataDouble = loc.extraDataDouble?.clone()
     }
 
     //*************************************************
@@ -579,8 +647,8 @@ open class Location() : Storable() {
      * @return the approximate distance in meters
      */
     fun distanceTo(dest: Location): Float {
-        val com = LocationCompute(this)
-        return com.distanceTo(dest)
+        return GeodesyBatch.distance(latitude, longitude,
+                dest.latitude, dest.longitude).toFloat()
     }
 
     /**
@@ -594,8 +662,8 @@ open class Location() : Storable() {
      * @return the initial bearing in degrees
      */
     fun bearingTo(dest: Location): Float {
-        val com = LocationCompute(this)
-        return com.bearingTo(dest)
+        return GeodesyBatch.bearing(latitude, longitude,
+                dest.latitude, dest.longitude).toFloat()
     }
 
     /**
@@ -606,8 +674,10 @@ open class Location() : Storable() {
      * float[1] - bearing (in degree)
      */
     fun distanceAndBearingTo(dest: Location): FloatArray {
-        val com = LocationCompute(this)
-        return floatArrayOf(com.distanceTo(dest), com.bearingTo(dest))
+        return FloatArray(2).apply {
+            LocationCompute.computeDistanceAndBearing(latitude, longitude,
+                    dest.latitude, dest.longitude, this)
+        }
     }
 
     //*************************************************
@@ -694,25 +764,22 @@ open class Location() : Storable() {
 
         // V3
         if (version >= 3) {
-            extraDataShort.clear()
+            clearExtraData()
             var size = dr.readByte()
             for (i in 0 until size) {
-                extraDataShort.put(dr.readByte().toInt(), dr.readShort())
+                putExtraShort(dr.readByte().toInt(), dr.readShort())
             }
-            extraDataInt.clear()
             size = dr.readByte()
             for (i in 0 until size) {
-                extraDataInt.put(dr.readByte().toInt(), dr.readInt())
+                putExtraInt(dr.readByte().toInt(), dr.readInt())
             }
-            extraDataFloat.clear()
             size = dr.readByte()
             for (i in 0 until size) {
-                extraDataFloat.put(dr.readByte().toInt(), dr.readFloat())
+                putExtraFloat(dr.readByte().toInt(), dr.readFloat())
             }
-            extraDataDouble.clear()
             size = dr.readByte()
             for (i in 0 until size) {
-                extraDataDouble.put(dr.readByte().toInt(), dr.readDouble())
+                putExtraDouble(dr.readByte().toInt(), dr.readDouble())
             }
         }
     }
@@ -777,28 +844,240 @@ open class Location() : Storable() {
         }()
 
         // V3
-        dw.writeByte(extraDataShort.size().toByte())
-        for (i in 0 until extraDataShort.size()) {
-            dw.writeByte(extraDataShort.keyAt(i).toByte())
-            dw.writeShort(extraDataShort.valueAt(i).toInt())
+        writeExtraShort(dw)
+        writeExtraInt(dw)
+        writeExtraFloat(dw)
+        writeExtraDouble(dw)
+    }
+
+    override fun copyObject(): Storable? {
+        // subclasses may hold own serialized values
+        if (javaClass != Location::class.java) {
+            return null
+        }
+        return Location(this)
+    }
+
+    // EXTRA DATA
+
+    /**
+     * Remove all extra data (stored over 'extra' keys).
+     */
+    internal fun clearExtraData() {
+        extraFlags = 0
+        extraAltitude = 0.0
+        extraSpeed = 0.0f
+        extraBearing = 0.0f
+        extraAccuracyHor = 0.0f
+        extraAccuracyVer = 0.0f
+        extraSensorHeartRate = 0
+        extraSensorCadence = 0
+        extraSensorSpeed = 0.0f
+        extraSensorTemperature = 0.0f
+        extraSensorPower = 0.0f
+        extraSensorStrides = 0
+        extraGnssQuality = 0
+        extraGnssHdop = 0.0f
+        extraGnssVdop = 0.0f
+        extraGnssPdop = 0.0f
+        extraGnssSatsUsed = 0
+        extraGnssSatsVisible = 0
+        extraDataShort = null
+        extraDataInt = null
+        extraDataFloat = null
+        extraDataDouble = null
+    }
+
+    private fun putExtraShort(key: Int, value: Short) {
+        when (key) {
+            EXTRA_KEY_SENSOR_HEART_RATE -> sensorHeartRate = value
+            EXTRA_KEY_SENSOR_CADENCE -> sensorCadence = value
+            EXTRA_KEY_GNSS_QUALITY -> gnssQuality = value
+            EXTRA_KEY_GNSS_SATS_USED -> gnssSatsUsed = value
+            EXTRA_KEY_GNSS_SATS_VISIBLE -> gnssSatsVisible = value
+            else -> (extraDataShort ?: SparseArrayCompat<Short>(1)
+                    .also { extraDataShort = it }).put(key, value)
         }
-        dw.writeByte(extraDataInt.size().toByte())
-        for (i in 0 until extraDataInt.size()) {
-            dw.writeByte(extraDataInt.keyAt(i).toByte())
-            dw.writeInt(extraDataInt.valueAt(i))
+    }
+
+    private fun putExtraInt(key: Int, value: Int) {
+        when (key) {
+            EXTRA_KEY_SENSOR_STRIDES -> sensorStrides = value
+            else -> (extraDataInt ?: SparseArrayCompat<Int>(1)
+                    .also { extraDataInt = it }).put(key, value)
         }
-        dw.writeByte(extraDataFloat.size().toByte())
-        for (i in 0 until extraDataFloat.size()) {
-            dw.writeByte(extraDataFloat.keyAt(i).toByte())
-            dw.writeFloat(extraDataFloat.valueAt(i))
+    }
+
+    private fun putExtraFloat(key: Int, value: Float) {
+        when (key) {
+            EXTRA_KEY_SPEED -> speed = value
+            EXTRA_KEY_BEARING -> bearing = value
+            EXTRA_KEY_ACCURACY_HOR -> accuracyHor = value
+            EXTRA_KEY_ACCURACY_VER -> accuracyVer = value
+            EXTRA_KEY_SENSOR_SPEED -> sensorSpeed = value
+            EXTRA_KEY_SENSOR_TEMPERATURE -> sensorTemperature = value
+            EXTRA_KEY_SENSOR_POWER -> sensorPower = value
+            EXTRA_KEY_GNSS_HDOP -> gnssHdop = value
+            EXTRA_KEY_GNSS_VDOP -> gnssVdop = value
+            EXTRA_KEY_GNSS_PDOP -> gnssPdop = value
+            else -> (extraDataFloat ?: SparseArrayCompat<Float>(1)
+                    .also { extraDataFloat = it }).put(key, value)
         }
-        dw.writeByte(extraDataDouble.size().toByte())
-        for (i in 0 until extraDataDouble.size()) {
-            dw.writeByte(extraDataDouble.keyAt(i).toByte())
-            dw.writeDouble(extraDataDouble.valueAt(i))
+    }
+
+    private fun putExtraDouble(key: Int, value: Double) {
+        when (key) {
+            EXTRA_KEY_ALTITUDE -> altitude = value
+            else -> (extraDataDouble ?: SparseArrayCompat<Double>(1)
+                    .also { extraDataDouble = it }).put(key, value)
         }
     }
 
+    private fun writeExtraShort(dw: DataWriterBigEndian) {
+        val unknown = extraDataShort
+        dw.writeByte((Integer.bitCount(extraFlags and FLAGS_SHORT)
+                + (unknown?.size() ?: 0)).toByte())
+        var next = 0
+        if (hasSensorHeartRate) {
+            next = writeUnknownShort(dw, unknown, next, EXTRA_KEY_SENSOR_HEART_RATE)
+            dw.writeByte(EXTRA_KEY_SENSOR_HEART_RATE.toByte())
+            dw.writeShort(extraSensorHeartRate.toInt())
+        }
+        if (hasSensorCadence) {
+            next = writeUnknownShort(dw, unknown, next, EXTRA_KEY_SENSOR_CADENCE)
+            dw.writeByte(EXTRA_KEY_SENSOR_CADENCE.toByte())
+            dw.writeShort(extraSensorCadence.toInt())
+        }
+        if (hasGnssQuality) {
+            next = writeUnknownShort(dw, unknown, next, EXTRA_KEY_GNSS_QUALITY)
+            dw.writeByte(EXTRA_KEY_GNSS_QUALITY.toByte())
+            dw.writeShort(extraGnssQuality.toInt())
+        }
+        if (hasGnssSatsUsed) {
+            next = writeUnknownShort(dw, unknown, next, EXTRA_KEY_GNSS_SATS_USED)
+            dw.writeByte(EXTRA_KEY_GNSS_SATS_USED.toByte())
+            dw.writeShort(extraGnssSatsUsed.toInt())
+        }
+        if (hasGnssSatsVisible) {
+            next = writeUnknownShort(dw, unknown, next, EXTRA_KEY_GNSS_SATS_VISIBLE)
+            dw.writeByte(EXTRA_KEY_GNSS_SATS_VISIBLE.toByte())
+            dw.writeShort(extraGnssSatsVisible.toInt())
+        }
+        writeUnknownShort(dw, unknown, next, Int.MAX_VALUE)
+    }
+
+    private fun writeExtraInt(dw: DataWriterBigEndian) {
+        val unknown = extraDataInt
+        dw.writeByte((Integer.bitCount(extraFlags and FLAGS_INT)
+                + (unknown?.size() ?: 0)).toByte())
+        var next = 0
+        if (hasSensorStrides) {
+            next = writeUnknownInt(dw, unknown, next, EXTRA_KEY_SENSOR_STRIDES)
+            dw.writeByte(EXTRA_KEY_SENSOR_STRIDES.toByte())
+            dw.writeInt(extraSensorStrides)
+        }
+        writeUnknownInt(dw, unknown, next, Int.MAX_VALUE)
+    }
+
+    private fun writeExtraFloat(dw: DataWriterBigEndian) {
+        val unknown = extraDataFloat
+        dw.writeByte((Integer.bitCount(extraFlags and FLAGS_FLOAT)
+                + (unknown?.size() ?: 0)).toByte())
+        var next = 0
+        next = writeExtraFloat(dw, unknown, next, FLAG_SPEED, EXTRA_KEY_SPEED, extraSpeed)
+        next = writeExtraFloat(dw, unknown, next, FLAG_BEARING, EXTRA_KEY_BEARING, extraBearing)
+        next = writeExtraFloat(dw, unknown, next, FLAG_ACCURACY_HOR, EXTRA_KEY_ACCURACY_HOR,
+                extraAccuracyHor)
+        next = writeExtraFloat(dw, unknown, next, FLAG_ACCURACY_VER, EXTRA_KEY_ACCURACY_VER,
+                extraAccuracyVer)
+        next = writeExtraFloat(dw, unknown, next, FLAG_SENSOR_SPEED, EXTRA_KEY_SENSOR_SPEED,
+                extraSensorSpeed)
+        next = writeExtraFloat(dw, unknown, next, FLAG_SENSOR_TEMPERATURE,
+                EXTRA_KEY_SENSOR_TEMPERATURE, extraSensorTemperature)
+        next = writeExtraFloat(dw, unknown, next, FLAG_SENSOR_POWER, EXTRA_KEY_SENSOR_POWER,
+                extraSensorPower)
+        next = writeExtraFloat(dw, unknown, next, FLAG_GNSS_HDOP, EXTRA_KEY_GNSS_HDOP,
+                extraGnssHdop)
+        next = writeExtraFloat(dw, unknown, next, FLAG_GNSS_VDOP, EXTRA_KEY_GNSS_VDOP,
+                extraGnssVdop)
+        next = writeExtraFloat(dw, unknown, next, FLAG_GNSS_PDOP, EXTRA_KEY_GNSS_PDOP,
+                extraGnssPdop)
+        writeUnknownFloat(dw, unknown, next, Int.MAX_VALUE)
+    }
+
+    private fun writeExtraFloat(dw: DataWriterBigEndian, unknown: SparseArrayCompat<Float>?,
+            next: Int, flag: Int, key: Int, value: Float): Int {
+        if (extraFlags and flag == 0) {
+            return next
+        }
+        val nextNew = writeUnknownFloat(dw, unknown, next, key)
+        dw.writeByte(key.toByte())
+        dw.writeFloat(value)
+        return nextNew
+    }
+
+    private fun writeExtraDouble(dw: DataWriterBigEndian) {
+        val unknown = extraDataDouble
+        dw.writeByte((Integer.bitCount(extraFlags and FLAGS_DOUBLE)
+                + (unknown?.size() ?: 0)).toByte())
+        var next = 0
+        if (hasAltitude) {
+            next = writeUnknownDouble(dw, unknown, next, EXTRA_KEY_ALTITUDE)
+            dw.writeByte(EXTRA_KEY_ALTITUDE.toByte())
+            dw.writeDouble(extraAltitude)
+        }
+        writeUnknownDouble(dw, unknown, next, Int.MAX_VALUE)
+    }
+
+    // UNKNOWN EXTRA DATA
+    // Values with unknown keys are written between known values, so all keys are in ascending
+    // order, same as in older versions. Every function writes values from index [next] with
+    // key lower than [key] and returns index of the next not yet written value.
+
+    private fun writeUnknownShort(dw: DataWriterBigEndian, unknown: SparseArrayCompat<Short>?,
+            next: Int, key: Int): Int {
+        var i = next
+        while (unknown != null && i < unknown.size() && unknown.keyAt(i) < key) {
+            dw.writeByte(unknown.keyAt(i).toByte())
+            dw.writeShort(unknown.valueAt(i).toInt())
+            i++
+        }
+        return i
+    }
+
+    private fun writeUnknownInt(dw: DataWriterBigEndian, unknown: SparseArrayCompat<Int>?,
+            next: Int, key: Int): Int {
+        var i = next
+        while (unknown != null && i < unknown.size() && unknown.keyAt(i) < key) {
+            dw.writeByte(unknown.keyAt(i).toByte())
+            dw.writeInt(unknown.valueAt(i))
+            i++
+        }
+        return i
+    }
+
+    private fun writeUnknownFloat(dw: DataWriterBigEndian, unknown: SparseArrayCompat<Float>?,
+            next: Int, key: Int): Int {
+        var i = next
+        while (unknown != null && i < unknown.size() && unknown.keyAt(i) < key) {
+            dw.writeByte(unknown.keyAt(i).toByte())
+            dw.writeFloat(unknown.valueAt(i))
+            i++
+        }
+        return i
+    }
+
+    private fun writeUnknownDouble(dw: DataWriterBigEndian, unknown: SparseArrayCompat<Double>?,
+            next: Int, key: Int): Int {
+        var i = next
+        while (unknown != null && i < unknown.size() && unknown.keyAt(i) < key) {
+            dw.writeByte(unknown.keyAt(i).toByte())
+            dw.writeDouble(unknown.valueAt(i))
+            i++
+        }
+        return i
+    }
+
     /**
      * Deprecated container for sensors data used only to keep compatibility with older
      * location object versions.
@@ -895,5 +1174,34 @@ open class Location() : Storable() {
         private const val EXTRA_KEY_GNSS_PDOP = 54
         private const val EXTRA_KEY_GNSS_SATS_USED = 55
         private const val EXTRA_KEY_GNSS_SATS_VISIBLE = 56
+
+        // flags of values stored in fixed slots
+        private const val FLAG_ALTITUDE = 1
+        private const val FLAG_SPEED = 1 shl 1
+        private const val FLAG_BEARING = 1 shl 2
+        private const val FLAG_ACCURACY_HOR = 1 shl 3
+        private const val FLAG_ACCURACY_VER = 1 shl 4
+        private const val FLAG_SENSOR_HEART_RATE = 1 shl 5
+        private const val FLAG_SENSOR_CADENCE = 1 shl 6
+        private const val FLAG_SENSOR_SPEED = 1 shl 7
+        private const val FLAG_SENSOR_TEMPERATURE = 1 shl 8
+        private const val FLAG_SENSOR_POWER = 1 shl 9
+        private const val FLAG_SENSOR_STRIDES = 1 shl 10
+        private const val FLAG_GNSS_QUALITY = 1 shl 11
+        private const val FLAG_GNSS_HDOP = 1 shl 12
+        private const val FLAG_GNSS_VDOP = 1 shl 13
+        private const val FLAG_GNSS_PDOP = 1 shl 14
+        private const val FLAG_GNSS_SATS_USED = 1 shl 15
+        private const val FLAG_GNSS_SATS_VISIBLE = 1 shl 16
+
+        // flags of values by their type
+        private const val FLAGS_SHORT = FLAG_SENSOR_HEART_RATE or FLAG_SENSOR_CADENCE or
+                FLAG_GNSS_QUALITY or FLAG_GNSS_SATS_USED or FLAG_GNSS_SATS_VISIBLE
+        private const val FLAGS_INT = FLAG_SENSOR_STRIDES
+        private const val FLAGS_FLOAT = FLAG_SPEED or FLAG_BEARING or
+                FLAG_ACCURACY_HOR or FLAG_ACCURACY_VER or
+                FLAG_SENSOR_SPEED or FLAG_SENSOR_TEMPERATURE or FLAG_SENSOR_POWER or
+                FLAG_GNSS_HDOP or FLAG_GNSS_VDOP or FLAG_GNSS_PDOP
+        private const val FLAGS_DOUBLE = FLAG_ALTITUDE
     }
 }
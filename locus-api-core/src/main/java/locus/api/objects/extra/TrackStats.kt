@@ -216,6 +216,14 @@ class TrackStats : Storable() {
                 || (altitudeMax != Float.NEGATIVE_INFINITY && altitudeMax != 0.0f)
     }
 
+    /**
+     * Check if range of altitudes is defined. Unlike [hasElevationValues], range of zero
+     * altitudes is valid, missing altitudes are marked by infinite values.
+     */
+    private fun hasAltitudeRange(): Boolean {
+        return altitudeMin.isFinite() && altitudeMax.isFinite() && altitudeMin <= altitudeMax
+    }
+
     // HEART RATE
 
     /**
@@ -397,21 +405,33 @@ class TrackStats : Storable() {
     }
 
     /**
-     * Function that allows to merge more statistics into one.
+     * Function that allows to merge more statistics into one. Times and altitudes not defined
+     * in one of statistics are ignored.
      *
      * @param stats second statistics that will be merged into this.
      */
     fun appendStatistics(stats: TrackStats) {
         this.numOfPoints += stats.numOfPoints
-        this.startTime = min(startTime, stats.startTime)
+        this.startTime = when {
+            stats.startTime < 0L -> startTime
+            startTime < 0L -> stats.startTime
+            else -> min(startTime, stats.startTime)
+        }
         this.stopTime = max(stopTime, stats.stopTime)
         this.totalLength += stats.totalLength
         this.totalLengthMove += stats.totalLengthMove
         this.totalTime += stats.totalTime
         this.totalTimeMove += stats.totalTimeMove
         this.speedMax = max(speedMax, stats.speedMax)
-        this.altitudeMax = max(altitudeMax, stats.altitudeMax)
-        this.altitudeMin = min(altitudeMin, stats.altitudeMin)
+        if (stats.hasAltitudeRange()) {
+            if (hasAltitudeRange()) {
+                this.altitudeMax = max(altitudeMax, stats.altitudeMax)
+                this.altitudeMin = min(altitudeMin, stats.altitudeMin)
+            } else {
+                this.altitudeMax = stats.altitudeMax
+                this.altitudeMin = stats.altitudeMin
+            }
+        }
 
         this.eleNeutralDistance += stats.eleNeutralDistance
         this.eleNeutralHeight += stats.eleNeutralHeight
@@ -531,4 +551,41 @@ class TrackStats : Storable() {
         // V3
         dw.writeInt(numOfStrides)
     }
+
+    override fun copyObject(): Storable {
+        return TrackStats().also {
+            it.numOfPoints = numOfPoints
+            it.startTime = startTime
+            it.stopTime = stopTime
+
+            // basic variables
+            it.totalLength = totalLength
+            it.totalLengthMove = totalLengthMove
+            it.totalTime = totalTime
+            it.totalTimeMove = totalTimeMove
+            it.speedMax = speedMax
+
+            // altitude values
+            it.altitudeMax = altitudeMax
+            it.altitudeMin = altitudeMin
+
+            // elevation variables
+            it.eleNeutralDistance = eleNeutralDistance
+            it.eleNeutralHeight = eleNeutralHeight
+            it.elePositiveDistance = elePositiveDistance
+            it.elePositiveHeight = elePositiveHeight
+            it.eleNegativeDistance = eleNegativeDistance
+            it.eleNegativeHeight = eleNegativeHeight
+
+            // sensors
+            it.heartRateBeats = heartRateBeats
+            it.heartRateTime = heartRateTime
+            it.heartRateMax = heartRateMax
+            it.cadenceNumber = cadenceNumber
+            it.cadenceTime = cadenceTime
+            it.cadenceMax = cadenceMax
+            it.energy = energy
+            it.numOfStrides = numOfStrides
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,476 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.objects.extra
+
+import locus.api.objects.geoData.Track
+import locus.api.objects.geoData.TrackPoints
+import locus.api.utils.GeodesyBatch
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveTask
+import kotlin.math.abs
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Streaming compute of [TrackStats] from points of the track.
+ *
+ * Points are consumed one by one and [stats] are updated after every point with constant
+ * cost, so the calculator is suitable for live recording as well as for import of huge tracks.
+ * Values of points are copied, so same (reused) [Location] object may be used for all points.
+ *
+ * - distance and time are not counted over the breaks of the track
+ * - segment is "moving" if its speed is at least [speedMoveThreshold]. Segments without time
+ * counts as moving
+ * - elevation gain and loss are counted only once altitude changes by more than
+ * [elevationHysteresis] from last counted value, which removes noise of measured altitude.
+ * Distance of such section is counted as positive or negative, distance of section not yet
+ * finished by change of altitude is counted as neutral.
+ *
+ * Calculator is not thread-safe. Statistics of huge tracks may be computed in parallel
+ * by [computeParallel].
+ *
+ * @param stats statistics updated by the calculator, values are reset on creation
+ * @param speedMoveThreshold minimal speed of moving segment (in m/s)
+ * @param elevationHysteresis minimal change of altitude counted to elevation values (in m)
+ */
+class TrackStatsCalculator @JvmOverloads constructor(
+        val stats: TrackStats = TrackStats(),
+        val speedMoveThreshold: Float = DEFAULT_SPEED_MOVE_THRESHOLD,
+        val elevationHysteresis: Float = DEFAULT_ELEVATION_HYSTERESIS) {
+
+    // values of previous point
+    private var hasPrevious = false
+    private var prevLat = 0.0
+    private var prevLon = 0.0
+    private var prevTime = 0L
+    private var prevHeartRate = 0
+    private var prevCadence = 0
+
+    // flag that next point starts new segment of the track
+    private var breakBefore = false
+
+    // precise sums of length and time values
+    private var totalLength = 0.0
+    private var totalLengthMove = 0.0
+
+    // altitude of last counted elevation change, NaN if not known
+    private var eleRefAltitude = Double.NaN
+    // last known altitude in current section
+    private var eleLastAltitude = Double.NaN
+    // distance from last counted elevation change
+    private var elePendingDistance = 0.0
+
+    // precise sums of elevation values
+    private var elePositiveDistance = 0.0
+    private var elePositiveHeight = 0.0
+    private var eleNegativeDistance = 0.0
+    private var eleNegativeHeight = 0.0
+    private var eleNeutralDistance = 0.0
+    private var eleNeutralHeight = 0.0
+
+    // values of points collected by partial compute in parallel mode, elevation is not computed
+    private var partDistances: DoubleArray? = null
+    private var partAltitudes: DoubleArray? = null
+    private var partIndex = 0
+
+    init {
+        reset()
+    }
+
+    /**
+     * Reset calculator and [stats] to initial state.
+     */
+    fun reset() {
+        stats.resetStatistics()
+        stats.numOfPoints = 0
+        stats.startTime = -1L
+        stats.stopTime = -1L
+
+        hasPrevious = false
+        breakBefore = false
+        totalLength = 0.0
+        totalLengthMove = 0.0
+        eleRefAltitude = Double.NaN
+        eleLastAltitude = Double.NaN
+        elePendingDistance = 0.0
+        elePositiveDistance = 0.0
+        elePositiveHeight = 0.0
+        eleNegativeDistance = 0.0
+        eleNegativeHeight = 0.0
+        eleNeutralDistance = 0.0
+        eleNeutralHeight = 0.0
+    }
+
+    /**
+     * Mark a break in the track. Next added point starts new segment.
+     */
+    fun addBreak() {
+        if (hasPrevious) {
+            breakBefore = true
+        }
+    }
+
+    /**
+     * Add next point of the track and update [stats].
+     *
+     * @param loc location of the point
+     */
+    fun addPoint(loc: Location) {
+        stats.numOfPoints++
+
+        // time of the track
+        val time = loc.time
+        if (time > 0L) {
+            if (stats.startTime < 0L) {
+                stats.startTime = time
+            }
+            stats.stopTime = time
+        }
+
+        // altitude range
+        val hasAltitude = loc.hasAltitude
+        val altitude = loc.altitude
+        if (hasAltitude) {
+            stats.altitudeMin = min(stats.altitudeMin, altitude.toFloat())
+            stats.altitudeMax = max(stats.altitudeMax, altitude.toFloat())
+        }
+
+        // speed measured directly by device
+        if (loc.hasSpeed) {
+            stats.speedMax = max(stats.speedMax, loc.speed)
+        }
+
+        // segment from previous point
+        var dist = 0.0
+        if (hasPrevious && !breakBefore) {
+            dist = addSegment(loc, time)
+        } else if (breakBefore && partDistances == null) {
+            finishElevationSection()
+        }
+        breakBefore = false
+
+        // elevation changes
+        val distances = partDistances
+        if (distances != null) {
+            distances[partIndex] = dist
+            partAltitudes!![partIndex] = if (hasAltitude) altitude else Double.NaN
+            partIndex++
+        } else {
+            elePendingDistance += dist
+            if (hasAltitude) {
+                addElevation(altitude)
+            }
+            updateElevationStats()
+        }
+
+        // store values for next segment
+        setPrevious(loc)
+    }
+
+    /**
+     * Set previous point, without counting of the point itself.
+     */
+    private fun setPrevious(loc: Location) {
+        hasPrevious = true
+        prevLat = loc.latitude
+        prevLon = loc.longitude
+        prevTime = loc.time
+        prevHeartRate = if (loc.hasSensorHeartRate) loc.sensorHeartRate.toInt() else 0
+        prevCadence = if (loc.hasSensorCadence) loc.sensorCadence.toInt() else 0
+    }
+
+    /**
+     * Add points of the track, where [breaks] are defined as in [Track.breaks].
+     */
+    @JvmOverloads
+    fun addPoints(points: List<Location>, breaks: List<Int> = emptyList()) {
+        var breakIndex = 0
+        for (i in points.indices) {
+            breakIndex = addBreakIfNeeded(i, breaks, breakIndex)
+            addPoint(points[i])
+        }
+    }
+
+    /**
+     * Add points of the track, where [breaks] are defined as in [Track.breaks].
+     */
+    @JvmOverloads
+    fun addPoints(points: TrackPoints, breaks: List<Int> = emptyList()) {
+        var breakIndex = 0
+        val cursor = points.cursor()
+        while (cursor.moveToNext()) {
+            breakIndex = addBreakIfNeeded(cursor.index, breaks, breakIndex)
+            addPoint(cursor.location)
+        }
+    }
+
+    //*************************************************
+    // PRIVATE TOOLS
+    //*************************************************
+
+    /**
+     * Add break before point on [index] if defined in sorted [breaks].
+     *
+     * @return index of next break to check
+     */
+    private fun addBreakIfNeeded(index: Int, breaks: List<Int>, breakIndex: Int): Int {
+        var next = breakIndex
+        while (next < breaks.size && breaks[next] < index) {
+            if (breaks[next] == index - 1) {
+                addBreak()
+            }
+            next++
+        }
+        return next
+    }
+
+    /**
+     * Add segment between previous and current point.
+     *
+     * @return length of the segment
+     */
+    private fun addSegment(loc: Location, time: Long): Double {
+        val dist = GeodesyBatch.distance(prevLat, prevLon, loc.latitude, loc.longitude)
+        totalLength += dist
+
+        // time and movement
+        val dt = time - prevTime
+        if (time > 0L && prevTime > 0L && dt > 0L) {
+            stats.addTotalTime(dt)
+            val speed = (dist * 1000.0 / dt).toFloat()
+            if (speed >= speedMoveThreshold) {
+                totalLengthMove += dist
+                stats.addTotalTimeMove(dt)
+            }
+            if (!loc.hasSpeed) {
+                stats.speedMax = max(stats.speedMax, speed)
+            }
+
+            // sensors
+            if (prevHeartRate > 0 && loc.hasSensorHeartRate) {
+                val hr = loc.sensorHeartRate.toInt()
+                stats.addHeartRateMeasure(hr, (prevHeartRate + hr) / 2, dt)
+            }
+            if (prevCadence > 0 && loc.hasSensorCadence) {
+                val cadence = loc.sensorCadence.toInt()
+                stats.addCadenceMeasure(cadence, (prevCadence + cadence) / 2, dt)
+            }
+        } else if (dt == 0L || time <= 0L || prevTime <= 0L) {
+            // movement can't be detected, only segments with invalid order of time are ignored
+            totalLengthMove += dist
+        }
+
+        stats.totalLength = totalLength.toFloat()
+        stats.totalLengthMove = totalLengthMove.toFloat()
+        return dist
+    }
+
+    /**
+     * Add altitude of current point to elevation values.
+     */
+    private fun addElevation(altitude: Double) {
+        eleLastAltitude = altitude
+        if (eleRefAltitude.isNaN()) {
+            // first altitude in section, distance so far is neutral
+            eleRefAltitude = altitude
+            eleNeutralDistance += elePendingDistance
+            elePendingDistance = 0.0
+            return
+        }
+
+        // count change only over hysteresis
+        val diff = altitude - eleRefAltitude
+        if (diff >= elevationHysteresis) {
+            elePositiveHeight += diff
+            elePositiveDistance += elePendingDistance
+        } else if (-diff >= elevationHysteresis) {
+            eleNegativeHeight -= diff
+            eleNegativeDistance += elePendingDistance
+        } else {
+            return
+        }
+        eleRefAltitude = altitude
+        elePendingDistance = 0.0
+    }
+
+    /**
+     * Count not finished section of elevation as neutral and start new one.
+     */
+    private fun finishElevationSection() {
+        eleNeutralDistance += elePendingDistance
+        if (!eleRefAltitude.isNaN()) {
+            eleNeutralHeight += abs(eleLastAltitude - eleRefAltitude)
+        }
+        elePendingDistance = 0.0
+        eleRefAltitude = Double.NaN
+        eleLastAltitude = Double.NaN
+    }
+
+    /**
+     * Write elevation values into [stats], with current section counted as neutral.
+     */
+    private fun updateElevationStats() {
+        stats.elePositiveDistance = elePositiveDistance.toFloat()
+        stats.elePositiveHeight = elePositiveHeight.toFloat()
+        stats.eleNegativeDistance = eleNegativeDistance.toFloat()
+        stats.eleNegativeHeight = eleNegativeHeight.toFloat()
+        stats.eleNeutralDistance = (eleNeutralDistance + elePendingDistance).toFloat()
+        stats.eleNeutralHeight = if (eleRefAltitude.isNaN()) {
+            eleNeutralHeight
+        } else {
+            eleNeutralHeight + abs(eleLastAltitude - eleRefAltitude)
+        }.toFloat()
+    }
+
+    companion object {
+
+        /**
+         * Default minimal speed of moving segment (in m/s).
+         */
+        const val DEFAULT_SPEED_MOVE_THRESHOLD = 0.5f
+
+        /**
+         * Default minimal change of altitude counted to elevation values (in m).
+         */
+        const val DEFAULT_ELEVATION_HYSTERESIS = 5.0f
+
+        // minimal number of points computed by single task in parallel mode
+        private const val PARALLEL_CHUNK = 16384
+
+        /**
+         * Compute statistics of the whole track.
+         *
+         * @param track track to compute
+         * @return new statistics
+         */
+        @JvmStatic
+        fun compute(track: Track): TrackStats {
+            return TrackStatsCalculator().apply {
+                // points in columnar form are computed without conversion to locations
+                val store = track.pointsColumnar
+                if (store != null) {
+                    addPoints(store, track.breaks)
+                } else {
+                    addPoints(track.points, track.breaks)
+                }
+            }.stats
+        }
+
+        /**
+         * Compute statistics of the whole track in parallel. Points are split into chunks
+         * computed on [pool] and merged. Elevation values are computed at the end over
+         * collected altitudes in single pass, so result is same as from sequential compute.
+         * Small tracks are computed directly in current thread.
+         *
+         * @param track track to compute
+         * @param pool pool used for compute
+         * @param speedMoveThreshold minimal speed of moving segment (in m/s)
+         * @param elevationHysteresis minimal change of altitude counted to elevation values (in m)
+         * @return new statistics
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun computeParallel(track: Track,
+                pool: ForkJoinPool = ForkJoinPool.commonPool(),
+                speedMoveThreshold: Float = DEFAULT_SPEED_MOVE_THRESHOLD,
+                elevationHysteresis: Float = DEFAULT_ELEVATION_HYSTERESIS): TrackStats {
+            val points = track.points
+            val calc = TrackStatsCalculator(TrackStats(), speedMoveThreshold, elevationHysteresis)
+            if (points.size < 2 * PARALLEL_CHUNK) {
+                calc.addPoints(points, track.breaks)
+                return calc.stats
+            }
+
+            // flags of points that start new segment
+            val breaksBefore = BooleanArray(points.size)
+            for (breakIndex in track.breaks) {
+                if (breakIndex >= 0 && breakIndex < points.size - 1) {
+                    breaksBefore[breakIndex + 1] = true
+                }
+            }
+
+            // compute chunks of the track
+            val distances = DoubleArray(points.size)
+            val altitudes = DoubleArray(points.size)
+            calc.stats.appendStatistics(pool.invoke(PartTask(calc, points, breaksBefore,
+                    distances, altitudes, 0, points.size)))
+
+            // compute elevation values over whole track
+            for (i in points.indices) {
+                if (breaksBefore[i]) {
+                    calc.finishElevationSection()
+                }
+                calc.elePendingDistance += distances[i]
+                if (!altitudes[i].isNaN()) {
+                    calc.addElevation(altitudes[i])
+                }
+            }
+            calc.updateElevationStats()
+            return calc.stats
+        }
+    }
+
+    /**
+     * Task that computes statistics of points in range [from, to) without elevation values.
+     * Distances between points and altitudes of points are stored for final compute of
+     * elevation. Segment between chunks belongs to the chunk with second point.
+     */
+    private class PartTask(
+            private val parent: TrackStatsCalculator,
+            private val points: List<Location>,
+            private val breaksBefore: BooleanArray,
+            private val distances: DoubleArray,
+            private val altitudes: DoubleArray,
+            private val from: Int,
+            private val to: Int) : RecursiveTask<TrackStats>() {
+
+        override fun compute(): TrackStats {
+            // split to smaller tasks
+            if (to - from > 2 * PARALLEL_CHUNK) {
+                val middle = (from + to) ushr 1
+                val second = PartTask(parent, points, breaksBefore,
+                        distances, altitudes, middle, to)
+                second.fork()
+                val result = PartTask(parent, points, breaksBefore,
+                        distances, altitudes, from, middle).compute()
+                result.appendStatistics(second.join())
+                return result
+            }
+
+            // compute chunk
+            val calc = TrackStatsCalculator(TrackStats(),
+                    parent.speedMoveThreshold, parent.elevationHysteresis)
+            calc.partDistances = distances
+            calc.partAltitudes = altitudes
+            calc.partIndex = from
+            if (from > 0) {
+                calc.setPrevious(points[from - 1])
+            }
+            for (i in from until to) {
+                if (breaksBefore[i]) {
+                    calc.addBreak()
+                }
+                calc.addPoint(points[i])
+            }
+            return calc.stats
+        }
+    }
+}
@@ -61,7 +61,7 @@ class Circle() : GeoData() {
         readStyles(dr)
 
         // private
-        location = dr.readStorable(Location::class.java)
+        location = dr.readStorable { Location() }
         radius = dr.readFloat()
         isDrawPrecise = dr.readBoolean()
 
@@ -77,16 +77,40 @@ abstract class GeoData : Storable() {
      * Extra data with parameters.
      */
     var extraData: GeoDataExtra? = null
+        get() {
+            extraDataLazy?.let { decodeExtraData(it) }
+            return field
+        }
+        set(value) {
+            extraDataLazy = null
+            field = value
+        }
 
     /**
      * Style for normal state.
      */
     var styleNormal: GeoDataStyle? = null
+        get() {
+            stylesLazy?.let { decodeStyles(it) }
+            return field
+        }
+        set(value) {
+            stylesLazy?.let { decodeStyles(it) }
+            field = value
+        }
 
     /**
      * Style for highlight state.
      */
     var styleHighlight: GeoDataStyle? = null
+        get() {
+            stylesLazy?.let { decodeStyles(it) }
+            return field
+        }
+        set(value) {
+            stylesLazy?.let { decodeStyles(it) }
+            field = value
+        }
 
     /**
      * Current item state.
@@ -104,6 +128,25 @@ abstract class GeoData : Storable() {
      */
     var protected = false
 
+    // LAZY READING
+
+    /**
+     * Flag that enables lazy reading of this object. When set before the object is read, bigger
+     * sections of data (extra data, styles, geocaching data, points and waypoints of tracks)
+     * are only copied in serialized form and decoded on first access. Suitable for reading of
+     * many objects, where only base values (name, times, track statistics) are needed.
+     *
+     * Object with not yet decoded sections is modified on first access, so it should not be
+     * shared between threads.
+     */
+    var isLazyRead: Boolean = false
+
+    // serialized extra data, not yet decoded
+    private var extraDataLazy: ByteArray? = null
+
+    // serialized styles, not yet decoded
+    private var stylesLazy: ByteArray? = null
+
     // TEMPORARY PARAMETERS
 
     /**
@@ -166,13 +209,42 @@ abstract class GeoData : Storable() {
 
     @Throws(IOException::class)
     protected fun readExtraData(dr: DataReaderBigEndian) {
+        if (isLazyRead) {
+            readLazySection(dr) { skipOptionalStorable(it) }?.let {
+                extraData = null
+                extraDataLazy = it
+            }
+            return
+        }
+        readExtraDataNow(dr)
+    }
+
+    @Throws(IOException::class)
+    private fun readExtraDataNow(dr: DataReaderBigEndian) {
         if (dr.readBoolean()) {
             extraData = GeoDataExtra().apply { read(dr) }
         }
     }
 
+    /**
+     * Decode extra data stored by lazy reading.
+     */
+    private fun decodeExtraData(data: ByteArray) {
+        extraDataLazy = null
+        try {
+            readExtraDataNow(DataReaderBigEndian(data))
+        } catch (e: Exception) {
+            Logger.logE(TAG, "decodeExtraData()", e)
+        }
+    }
+
     @Throws(IOException::class)
     protected fun writeExtraData(dw: DataWriterBigEndian) {
+        // not yet decoded data are written without change
+        extraDataLazy?.let {
+            dw.write(it)
+            return
+        }
         extraData
                 ?.takeIf { it.count > 0 }
                 ?.let {
@@ -191,9 +263,7 @@ abstract class GeoData : Storable() {
     var extraDataRaw: ByteArray?
         get() {
             return try {
-                val dw = DataWriterBigEndian()
-                writeExtraData(dw)
-                dw.toByteArray()
+                writeToBytes { writeExtraData(it) }
             } catch (e: IOException) {
                 Logger.logE(TAG, "getExtraDataRaw()", e)
                 null
@@ -527,6 +597,21 @@ abstract class GeoData : Storable() {
 
     @Throws(IOException::class)
     protected fun readStyles(dr: DataReaderBigEndian) {
+        if (isLazyRead) {
+            readLazySection(dr) {
+                skipOptionalStorable(it)
+                skipOptionalStorable(it)
+            }?.let {
+                stylesLazy?.let { prev -> decodeStyles(prev) }
+                stylesLazy = it
+            }
+            return
+        }
+        readStylesNow(dr)
+    }
+
+    @Throws(IOException::class)
+    private fun readStylesNow(dr: DataReaderBigEndian) {
         if (dr.readBoolean()) {
             styleNormal = GeoDataStyle().apply { read(dr) }
         }
@@ -535,8 +620,25 @@ abstract class GeoData : Storable() {
         }
     }
 
+    /**
+     * Decode styles stored by lazy reading.
+     */
+    private fun decodeStyles(data: ByteArray) {
+        stylesLazy = null
+        try {
+            readStylesNow(DataReaderBigEndian(data))
+        } catch (e: Exception) {
+            Logger.logE(TAG, "decodeStyles()", e)
+        }
+    }
+
     @Throws(IOException::class)
     protected fun writeStyles(dw: DataWriterBigEndian) {
+        // not yet decoded styles are written without change
+        stylesLazy?.let {
+            dw.write(it)
+            return
+        }
         styleNormal?.let {
             dw.writeBoolean(true)
             dw.writeStorable(it)
@@ -553,9 +655,7 @@ abstract class GeoData : Storable() {
 
     var styles: ByteArray?
         get() = try {
-            DataWriterBigEndian().apply {
-                writeStyles(this)
-            }.toByteArray()
+            writeToBytes { writeStyles(it) }
         } catch (e: IOException) {
             Logger.logE(TAG, "getStylesRaw()", e)
             null
@@ -630,6 +730,91 @@ abstract class GeoData : Storable() {
                 ?: emptyArray()
     }
 
+    //*************************************************
+    // COPY
+    //*************************************************
+
+    /**
+     * Copy serialized base values into [target], used by [copyObject] of subclasses. Not yet
+     * decoded sections are shared, because serialized data are never modified.
+     */
+    protected fun copyBaseTo(target: GeoData) {
+        target.id = id
+        target.name = name
+        target.timeCreated = timeCreated
+        target.timeUpdated = timeUpdated
+        target.privacy = privacy
+        target.protected = protected
+        target.isLazyRead = isLazyRead
+
+        // extra data, empty data are not serialized
+        val extraLazy = extraDataLazy
+        if (extraLazy != null) {
+            target.extraDataLazy = extraLazy
+        } else {
+            target.extraData = extraData
+                    ?.takeIf { it.count > 0 }
+                    ?.copy as GeoDataExtra?
+        }
+
+        // styles
+        val styles = stylesLazy
+        if (styles != null) {
+            target.stylesLazy = styles
+        } else {
+            target.styleNormal = styleNormal?.copy as GeoDataStyle?
+            target.styleHighlight = styleHighlight?.copy as GeoDataStyle?
+        }
+    }
+
+    //*************************************************
+    // LAZY READING
+    //*************************************************
+
+    /**
+     * Skip section of data defined by [skip] and return its copy for later decoding.
+     *
+     * @return serialized section or `null` if section contains no data
+     */
+    @Throws(IOException::class)
+    protected fun readLazySection(dr: DataReaderBigEndian,
+            skip: (DataReaderBigEndian) -> Unit): ByteArray? {
+        val start = dr.position
+        skip(dr)
+        val end = dr.position
+        if (isEmptySection(dr, start, end)) {
+            return null
+        }
+
+        // copy section, source buffer may be reused by the caller
+        dr.seek(start)
+        return dr.readBytes(end - start)
+    }
+
+    /**
+     * Check if section between [start] and [end] contains only `false` flags or zero counts.
+     */
+    private fun isEmptySection(dr: DataReaderBigEndian, start: Int, end: Int): Boolean {
+        dr.seek(start)
+        while (dr.position < end) {
+            if (dr.readByte() != 0.toByte()) {
+                dr.seek(end)
+                return false
+            }
+        }
+        return true
+    }
+
+    /**
+     * Skip optional object, written as flag followed by object itself.
+     */
+    @Throws(IOException::class)
+    protected fun skipOptionalStorable(dr: DataReaderBigEndian) {
+        if (dr.readBoolean()) {
+            readUnknownObject(dr)
+        }
+    }
+
     companion object {
 
         // tag for logger
@@ -20,6 +20,7 @@
 
 package locus.api.objects.geoData
 
+import locus.api.objects.Storable
 import locus.api.objects.extra.GeoDataExtra
 import locus.api.objects.extra.Location
 import locus.api.objects.geocaching.GeocachingData
@@ -41,6 +42,17 @@ class Point() : GeoData() {
      * Additional geoCaching data.
      */
     var gcData: GeocachingData? = null
+        get() {
+            gcDataLazy?.let { decodeGeocachingData(it) }
+            return field
+        }
+        set(value) {
+            gcDataLazy = null
+            field = value
+        }
+
+    // serialized geocaching data, not yet decoded (see [isLazyRead])
+    private var gcDataLazy: ByteArray? = null
 
     /**
      * Deal with binary data of geocaching object.
@@ -48,9 +60,7 @@ class Point() : GeoData() {
     var gcDataBinary: ByteArray?
         get() {
             return try {
-                val dw = DataWriterBigEndian()
-                writeGeocachingData(dw)
-                dw.toByteArray()
+                writeToBytes { writeGeocachingData(it) }
             } catch (e: IOException) {
                 Logger.logE(TAG, "gcDataBinary - get()", e)
                 null
@@ -190,7 +200,12 @@ class Point() : GeoData() {
         readStyles(dr)
 
         // read geocaching
-        gcData = readGeocachingData(dr)
+        if (isLazyRead) {
+            gcData = null
+            gcDataLazy = readLazySection(dr) { skipOptionalStorable(it) }
+        } else {
+            gcData = readGeocachingData(dr)
+        }
 
         // V1
         if (version >= 1) {
@@ -241,8 +256,28 @@ class Point() : GeoData() {
         dw.writeString(privacy.name)
     }
 
+    override fun copyObject(): Storable {
+        return Point().also {
+            copyBaseTo(it)
+            it.location = Location(location)
+
+            // geocaching data, not yet decoded data are shared
+            val gcLazy = gcDataLazy
+            if (gcLazy != null) {
+                it.gcDataLazy = gcLazy
+            } else {
+                it.gcData = gcData?.copy as GeocachingData?
+            }
+        }
+    }
+
     @Throws(IOException::class)
     private fun writeGeocachingData(dw: DataWriterBigEndian) {
+        // not yet decoded data are written without change
+        gcDataLazy?.let {
+            dw.write(it)
+            return
+        }
         gcData?.let {
             dw.writeBoolean(true)
             it.write(dw)
@@ -251,6 +286,18 @@ class Point() : GeoData() {
         }()
     }
 
+    /**
+     * Decode geocaching data stored by lazy reading.
+     */
+    private fun decodeGeocachingData(data: ByteArray) {
+        gcDataLazy = null
+        try {
+            gcData = readGeocachingData(DataReaderBigEndian(data))
+        } catch (e: Exception) {
+            Logger.logE(TAG, "decodeGeocachingData()", e)
+        }
+    }
+
     companion object {
 
         // tag for logger
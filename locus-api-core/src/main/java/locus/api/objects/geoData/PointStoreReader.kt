@@ -0,0 +1,433 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.objects.geoData
+
+import locus.api.objects.Storable
+import locus.api.utils.DataReaderBigEndian
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.Buffer
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import kotlin.math.ceil
+import kotlin.math.floor
+import kotlin.math.min
+
+/**
+ * Random access reader of point store files, written by [PointStoreWriter].
+ *
+ * File is memory-mapped. Only the small header and trailer are read on open, index of points
+ * and points itself are loaded by the system when they are accessed for the first time. So
+ * also huge stores open immediately and single points or points in bounding box are read
+ * without reading the rest of the file.
+ *
+ * Format of the file (big endian):
+ * - header: magic, version, size of cell of spatial buckets
+ * - points serialized by [Point.write]
+ * - footer: number of points, offsets, latitudes, longitudes and IDs of points, IDs sorted
+ * by value with indices of points, spatial buckets (sorted keys of cells, starts of buckets
+ * and indices of points sorted by buckets)
+ * - trailer: offset of the footer, magic
+ *
+ * Reader is thread-safe. Reader takes ownership of the channel, so [close] closes it as well.
+ *
+ * @param channel channel with the store
+ */
+class PointStoreReader @Throws(IOException::class) constructor(
+        private val channel: FileChannel) : Closeable {
+
+    /**
+     * Open store in the [file].
+     */
+    @Throws(IOException::class)
+    constructor(file: File) : this(RandomAccessFile(file, "r").channel)
+
+    /**
+     * Number of points in the store.
+     */
+    val count: Int
+
+    /**
+     * Size of cell of spatial buckets (in degrees).
+     */
+    val cellSize: Double
+
+    // number of cells in one row and number of rows of grid
+    private val columns: Long
+    private val rows: Long
+
+    // position of the footer (end of points)
+    private val footerOffset: Long
+
+    // tables of the footer
+    private val offsets: ByteBuffer
+    private val lats: ByteBuffer
+    private val lons: ByteBuffer
+    private val ids: ByteBuffer
+    private val sortedIds: ByteBuffer
+    private val idIndices: ByteBuffer
+    private val bucketKeys: ByteBuffer
+    private val bucketStarts: ByteBuffer
+    private val bucketItems: ByteBuffer
+
+    // number of spatial buckets
+    private val bucketCount: Int
+
+    // mapped parts of points, mapped on first access
+    private val chunks: Array<MappedByteBuffer?>
+
+    init {
+        try {
+            // header and trailer
+            val size = channel.size()
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw IOException("Invalid size of file: $size")
+            }
+            val header = read(0L, HEADER_SIZE)
+            if (header.readInt() != MAGIC) {
+                throw IOException("Invalid file")
+            }
+            val version = header.readInt()
+            if (version != FORMAT_VERSION) {
+                throw IOException("Unsupported version of file: $version")
+            }
+            // writer adjusts size of cell to divide 360 degrees, so it may be slightly
+            // below the minimal size
+            cellSize = header.readDouble()
+            if (!(cellSize >= MIN_CELL_SIZE / 2.0 && cellSize <= 90.0)) {
+                throw IOException("Invalid cell size: $cellSize")
+            }
+            columns = ceil(360.0 / cellSize).toLong()
+            rows = ceil(180.0 / cellSize).toLong()
+            val trailer = read(size - TRAILER_SIZE, TRAILER_SIZE)
+            footerOffset = trailer.readLong()
+            if (trailer.readInt() != MAGIC
+                    || footerOffset < HEADER_SIZE || footerOffset > size - TRAILER_SIZE - 4) {
+                throw IOException("Invalid trailer of file")
+            }
+
+            // tables of footer
+            count = read(footerOffset, 4).readInt()
+            var position = footerOffset + 4
+            offsets = map(position, count * 8L).also { position += it.capacity() }
+            lats = map(position, count * 8L).also { position += it.capacity() }
+            lons = map(position, count * 8L).also { position += it.capacity() }
+            ids = map(position, count * 8L).also { position += it.capacity() }
+            sortedIds = map(position, count * 8L).also { position += it.capacity() }
+            idIndices = map(position, count * 4L).also { position += it.capacity() }
+            bucketCount = read(position, 4).readInt()
+            position += 4
+            bucketKeys = map(position, bucketCount * 8L).also { position += it.capacity() }
+            bucketStarts = map(position, (bucketCount + 1) * 4L).also { position += it.capacity() }
+            bucketItems = map(position, count * 4L).also { position += it.capacity() }
+            if (position != size - TRAILER_SIZE) {
+                throw IOException("Invalid footer of file")
+            }
+
+            // parts of points
+            val pointsSize = footerOffset - HEADER_SIZE
+            chunks = arrayOfNulls(((pointsSize + CHUNK_SIZE - 1) / CHUNK_SIZE).toInt())
+        } catch (e: Exception) {
+            channel.close()
+            throw e as? IOException ?: IOException("Invalid file", e)
+        }
+    }
+
+    //*************************************************
+    // INDEX
+    //*************************************************
+
+    /**
+     * ID of point on [index].
+     */
+    fun getId(index: Int): Long {
+        checkIndex(index)
+        return ids.getLong(index * 8)
+    }
+
+    /**
+     * Latitude of point on [index].
+     */
+    fun getLatitude(index: Int): Double {
+        checkIndex(index)
+        return lats.getDouble(index * 8)
+    }
+
+    /**
+     * Longitude of point on [index].
+     */
+    fun getLongitude(index: Int): Double {
+        checkIndex(index)
+        return lons.getDouble(index * 8)
+    }
+
+    /**
+     * Find index of point with defined [id].
+     *
+     * @return index of point or `-1` if no such point exists
+     */
+    fun indexOfId(id: Long): Int {
+        var lo = 0
+        var hi = count - 1
+        while (lo <= hi) {
+            val mid = (lo + hi) ushr 1
+            val value = sortedIds.getLong(mid * 8)
+            when {
+                value < id -> lo = mid + 1
+                value > id -> hi = mid - 1
+                else -> return idIndices.getInt(mid * 4)
+            }
+        }
+        return -1
+    }
+
+    /**
+     * Find indices of all points in bounding box. Box that crosses anti-meridian has [lonMin]
+     * greater than [lonMax].
+     *
+     * @return indices of points in not defined order
+     */
+    fun findInBounds(latMin: Double, lonMin: Double, latMax: Double, lonMax: Double): IntArray {
+        if (count == 0 || latMin > latMax) {
+            return IntArray(0)
+        }
+        val crossing = lonMin > lonMax
+        var result = IntArray(16)
+        var size = 0
+        visitBox(latMin, lonMin, latMax, if (crossing) lonMax + 360.0 else lonMax) { index ->
+            val lat = lats.getDouble(index * 8)
+            val lon = lons.getDouble(index * 8)
+            val inLon = if (crossing) {
+                lon >= lonMin || lon <= lonMax
+            } else {
+                lon in lonMin..lonMax
+            }
+            if (lat in latMin..latMax && inLon) {
+                if (size == result.size) {
+                    result = result.copyOf(size * 2)
+                }
+                result[size++] = index
+            }
+        }
+        return result.copyOf(size)
+    }
+
+    //*************************************************
+    // READ
+    //*************************************************
+
+    /**
+     * Read point on [index].
+     *
+     * @param lazyRead `true` to read point in lazy mode, see [GeoData.isLazyRead]
+     */
+    @JvmOverloads
+    @Throws(IOException::class)
+    fun read(index: Int, lazyRead: Boolean = false): Point {
+        checkIndex(index)
+        val offset = offsets.getLong(index * 8)
+        if (offset < HEADER_SIZE || offset > footerOffset - 8) {
+            throw IOException("Invalid offset of point $index: $offset")
+        }
+
+        // find mapped part with the point
+        val chunk = ((offset - HEADER_SIZE) / CHUNK_SIZE).toInt()
+        val buffer = getChunk(chunk).duplicate()
+        val start = (offset - HEADER_SIZE - chunk * CHUNK_SIZE).toInt()
+        val size = buffer.getInt(start + 4)
+        if (size < 0 || size > Storable.MAX_SIZE || start + 8 + size > buffer.capacity()) {
+            throw IOException("Invalid size of point $index: $size")
+        }
+
+        // copy and read point
+        val data = ByteArray(8 + size)
+        (buffer as Buffer).position(start)
+        buffer.get(data)
+        return Point().apply {
+            isLazyRead = lazyRead
+            read(data)
+        }
+    }
+
+    /**
+     * Read point with defined [id].
+     *
+     * @param lazyRead `true` to read point in lazy mode, see [GeoData.isLazyRead]
+     * @return point or `null` if no such point exists
+     */
+    @JvmOverloads
+    @Throws(IOException::class)
+    fun readById(id: Long, lazyRead: Boolean = false): Point? {
+        val index = indexOfId(id)
+        return if (index >= 0) read(index, lazyRead) else null
+    }
+
+    /**
+     * Read all points in bounding box, see [findInBounds].
+     *
+     * @param limit maximal number of read points
+     * @param lazyRead `true` to read points in lazy mode, see [GeoData.isLazyRead]
+     */
+    @JvmOverloads
+    @Throws(IOException::class)
+    fun readInBounds(latMin: Double, lonMin: Double, latMax: Double, lonMax: Double,
+            limit: Int = Int.MAX_VALUE, lazyRead: Boolean = false): List<Point> {
+        val indices = findInBounds(latMin, lonMin, latMax, lonMax)
+        indices.sort()
+        return List(min(indices.size, limit)) { read(indices[it], lazyRead) }
+    }
+
+    override fun close() {
+        synchronized(chunks) {
+            chunks.fill(null)
+        }
+        channel.close()
+    }
+
+    //*************************************************
+    // PRIVATE TOOLS
+    //*************************************************
+
+    private fun checkIndex(index: Int) {
+        if (index < 0 || index >= count) {
+            throw IndexOutOfBoundsException("Invalid index $index, count: $count")
+        }
+    }
+
+    /**
+     * Get mapped part of points on index [chunk]. Parts overlap by maximal size of object,
+     * so every point is completely in the part where it starts.
+     */
+    private fun getChunk(chunk: Int): MappedByteBuffer {
+        synchronized(chunks) {
+            chunks[chunk]?.let { return it }
+            val start = HEADER_SIZE + chunk * CHUNK_SIZE
+            val length = min(CHUNK_SIZE + Storable.MAX_SIZE + 8L, footerOffset - start)
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, length).also {
+                chunks[chunk] = it
+            }
+        }
+    }
+
+    /**
+     * Visit indices of points in cells of bounding box.
+     */
+    private inline fun visitBox(latMin: Double, lonMin: Double, latMax: Double, lonMax: Double,
+            action: (Int) -> Unit) {
+        val yMin = cellRow(latMin)
+        val yMax = cellRow(latMax)
+        val xMin = floor((lonMin + 180.0) / cellSize).toLong()
+        val xMax = min(floor((lonMax + 180.0) / cellSize).toLong(), xMin + columns - 1)
+
+        // iterate over cells in box or over all points if box has more cells than buckets
+        if ((yMax - yMin + 1) * (xMax - xMin + 1) <= bucketCount) {
+            for (y in yMin..yMax) {
+                for (x in xMin..xMax) {
+                    val column = x % columns
+                    val bucket = indexOfBucket(y * columns + if (column < 0) column + columns else column)
+                    if (bucket < 0) {
+                        continue
+                    }
+                    val end = bucketStarts.getInt((bucket + 1) * 4)
+                    for (i in bucketStarts.getInt(bucket * 4) until end) {
+                        action(bucketItems.getInt(i * 4))
+                    }
+                }
+            }
+        } else {
+            for (i in 0 until count) {
+                action(i)
+            }
+        }
+    }
+
+    /**
+     * Find bucket of cell with defined [key].
+     */
+    private fun indexOfBucket(key: Long): Int {
+        var lo = 0
+        var hi = bucketCount - 1
+        while (lo <= hi) {
+            val mid = (lo + hi) ushr 1
+            val value = bucketKeys.getLong(mid * 8)
+            when {
+                value < key -> lo = mid + 1
+                value > key -> hi = mid - 1
+                else -> return mid
+            }
+        }
+        return -1
+    }
+
+    private fun cellRow(lat: Double): Long {
+        return floor((lat + 90.0) / cellSize).toLong().coerceIn(0L, rows - 1)
+    }
+
+    /**
+     * Read [length] bytes from [position] of the file.
+     */
+    private fun read(position: Long, length: Int): DataReaderBigEndian {
+        val bb = ByteBuffer.allocate(length)
+        while (bb.hasRemaining()) {
+            if (channel.read(bb, position + bb.position()) < 0) {
+                throw IOException("Unexpected end of file")
+            }
+        }
+        return DataReaderBigEndian(bb.array())
+    }
+
+    /**
+     * Map part of the file with table of footer.
+     */
+    private fun map(position: Long, length: Long): ByteBuffer {
+        if (length < 0L || length > Int.MAX_VALUE || position + length > channel.size()) {
+            throw IOException("Invalid footer of file")
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length)
+    }
+
+    companion object {
+
+        // identification of the file
+        internal const val MAGIC = 0x4C505331
+
+        // version of file format
+        internal const val FORMAT_VERSION = 1
+
+        // size of header (magic, version, cell size)
+        internal const val HEADER_SIZE = 16
+
+        // size of trailer (footer offset, magic)
+        private const val TRAILER_SIZE = 12
+
+        // default size of cell of spatial buckets (in degrees)
+        internal const val DEFAULT_CELL_SIZE = 0.1
+
+        // minimal size of cell of spatial buckets (in degrees)
+        internal const val MIN_CELL_SIZE = 0.001
+
+        // size of mapped parts of points
+        private const val CHUNK_SIZE = 256L * 1024 * 1024
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.objects.geoData
+
+import locus.api.utils.DataWriterBigEndian
+import java.io.BufferedOutputStream
+import java.io.Closeable
+import java.io.DataOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import kotlin.math.ceil
+import kotlin.math.floor
+
+/**
+ * Writer of point store files, read by [PointStoreReader].
+ *
+ * Points are serialized one by one into the stream in the same encoding as by [Point.write].
+ * Footer with the index of all points (offsets, coordinates, sorted IDs and grid of spatial
+ * buckets) is written by [close]. Writer keeps 32 bytes per written point in memory
+ * until the footer is written. Writer is not thread-safe.
+ *
+ * @param output stream for the file, closed by [close]
+ * @param cellSize requested size of cell of spatial buckets (in degrees), adjusted to divide
+ * 360 degrees
+ */
+class PointStoreWriter @JvmOverloads @Throws(IOException::class) constructor(
+        output: OutputStream,
+        cellSize: Double = PointStoreReader.DEFAULT_CELL_SIZE) : Closeable {
+
+    init {
+        if (cellSize < PointStoreReader.MIN_CELL_SIZE || cellSize > 90.0) {
+            throw IllegalArgumentException("Invalid cell size $cellSize")
+        }
+    }
+
+    // number of cells in one row of grid
+    private val columns = ceil(360.0 / cellSize).toLong()
+
+    /**
+     * Size of cell of spatial buckets (in degrees).
+     */
+    val cellSize: Double = 360.0 / columns
+
+    // number of rows of grid
+    private val rows = ceil(180.0 / this.cellSize).toLong()
+
+    // output stream
+    private val dos = DataOutputStream(BufferedOutputStream(output))
+
+    // current position in the stream
+    private var position = 0L
+
+    // index of written points
+    private var offsets = LongArray(INITIAL_CAPACITY)
+    private var ids = LongArray(INITIAL_CAPACITY)
+    private var lats = DoubleArray(INITIAL_CAPACITY)
+    private var lons = DoubleArray(INITIAL_CAPACITY)
+
+    /**
+     * Number of written points.
+     */
+    var count: Int = 0
+        private set
+
+    // flag if writer is already closed
+    private var closed = false
+
+    init {
+        dos.writeInt(PointStoreReader.MAGIC)
+        dos.writeInt(PointStoreReader.FORMAT_VERSION)
+        dos.writeDouble(this.cellSize)
+        position = PointStoreReader.HEADER_SIZE.toLong()
+    }
+
+    /**
+     * Write point into the store.
+     */
+    @Throws(IOException::class)
+    fun write(point: Point) {
+        if (closed) {
+            throw IOException("Writer is already closed")
+        }
+
+        // register point
+        if (count == offsets.size) {
+            val capacity = count * 2
+            offsets = offsets.copyOf(capacity)
+            ids = ids.copyOf(capacity)
+            lats = lats.copyOf(capacity)
+            lons = lons.copyOf(capacity)
+        }
+        offsets[count] = position
+        ids[count] = point.id
+        lats[count] = point.location.latitude
+        lons[count] = point.location.longitude
+        count++
+
+        // write point
+        val dw = DataWriterBigEndian.obtain()
+        try {
+            point.write(dw)
+            dw.writeTo(dos)
+            position += dw.size()
+        } finally {
+            dw.recycle()
+        }
+    }
+
+    /**
+     * Write all points into the store.
+     */
+    @Throws(IOException::class)
+    fun writeAll(points: Iterable<Point>) {
+        for (point in points) {
+            write(point)
+        }
+    }
+
+    /**
+     * Write footer with index of points and close the stream.
+     */
+    @Throws(IOException::class)
+    override fun close() {
+        if (closed) {
+            return
+        }
+        closed = true
+        try {
+            writeFooter()
+        } finally {
+            dos.close()
+        }
+    }
+
+    //*************************************************
+    // FOOTER
+    //*************************************************
+
+    /**
+     * Write index of points, see [PointStoreReader] for the format.
+     */
+    private fun writeFooter() {
+        val footerOffset = position
+        dos.writeInt(count)
+
+        // offsets, coordinates and IDs
+        for (i in 0 until count) {
+            dos.writeLong(offsets[i])
+        }
+        for (i in 0 until count) {
+            dos.writeDouble(lats[i])
+        }
+        for (i in 0 until count) {
+            dos.writeDouble(lons[i])
+        }
+        for (i in 0 until count) {
+            dos.writeLong(ids[i])
+        }
+
+        // sorted IDs
+        val idIndices = IntArray(count) { it }
+        val sortedIds = ids.copyOf(count)
+        sort(sortedIds, idIndices, 0, count - 1)
+        for (i in 0 until count) {
+            dos.writeLong(sortedIds[i])
+        }
+        for (i in 0 until count) {
+            dos.writeInt(idIndices[i])
+        }
+
+        // spatial buckets, points sorted by key of cell
+        val items = IntArray(count) { it }
+        val keys = LongArray(count) { cellKey(lats[it], lons[it]) }
+        sort(keys, items, 0, count - 1)
+        var buckets = 0
+        for (i in 0 until count) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                buckets++
+            }
+        }
+        dos.writeInt(buckets)
+        for (i in 0 until count) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                dos.writeLong(keys[i])
+            }
+        }
+        for (i in 0 until count) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                dos.writeInt(i)
+            }
+        }
+        dos.writeInt(count)
+        for (i in 0 until count) {
+            dos.writeInt(items[i])
+        }
+
+        // trailer
+        dos.writeLong(footerOffset)
+        dos.writeInt(PointStoreReader.MAGIC)
+    }
+
+    private fun cellKey(lat: Double, lon: Double): Long {
+        val row = floor((lat + 90.0) / cellSize).toLong().coerceIn(0L, rows - 1)
+        val column = floor((lon + 180.0) / cellSize).toLong() % columns
+        return row * columns + if (column < 0) column + columns else column
+    }
+
+    /**
+     * Sort [keys] in range [from] .. [to] (inclusive), with same moves in [values]. Equal keys
+     * are ordered by values.
+     */
+    private fun sort(keys: LongArray, values: IntArray, from: Int, to: Int) {
+        var lo = from
+        var hi = to
+        while (hi - lo > INSERTION_SORT_LIMIT) {
+            // partition around middle item
+            val mid = (lo + hi) ushr 1
+            val pivotKey = keys[mid]
+            val pivotValue = values[mid]
+            var i = lo
+            var j = hi
+            while (i <= j) {
+                while (compare(keys[i], values[i], pivotKey, pivotValue) < 0) i++
+                while (compare(keys[j], values[j], pivotKey, pivotValue) > 0) j--
+                if (i <= j) {
+                    swap(keys, values, i++, j--)
+                }
+            }
+
+            // recursion into smaller part
+            if (j - lo < hi - i) {
+                sort(keys, values, lo, j)
+                lo = i
+            } else {
+                sort(keys, values, i, hi)
+                hi = j
+            }
+        }
+
+        // insertion sort of small range
+        for (i in lo + 1..hi) {
+            var j = i
+            while (j > lo && compare(keys[j - 1], values[j - 1], keys[j], values[j]) > 0) {
+                swap(keys, values, j - 1, j)
+                j--
+            }
+        }
+    }
+
+    private fun compare(key1: Long, value1: Int, key2: Long, value2: Int): Int {
+        val result = key1.compareTo(key2)
+        return if (result != 0) result else value1.compareTo(value2)
+    }
+
+    private fun swap(keys: LongArray, values: IntArray, i: Int, j: Int) {
+        val key = keys[i]
+        keys[i] = keys[j]
+        keys[j] = key
+        val value = values[i]
+        values[i] = values[j]
+        values[j] = value
+    }
+
+    companion object {
+
+        // initial capacity of index of points
+        private const val INITIAL_CAPACITY = 256
+
+        // size of range sorted by insertion sort
+        private const val INSERTION_SORT_LIMIT = 16
+    }
+}
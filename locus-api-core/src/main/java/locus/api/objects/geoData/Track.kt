@@ -20,6 +20,7 @@
 
 package locus.api.objects.geoData
 
+import locus.api.objects.Storable
 import locus.api.objects.extra.Location
 import locus.api.objects.extra.TrackStats
 import locus.api.utils.DataReaderBigEndian
@@ -33,6 +34,19 @@ class Track : GeoData() {
      * Locations of this track
      */
     var points: MutableList<Location> = arrayListOf()
+        get() {
+            pointsLazy?.let { decodePoints(it) }
+            pointsStore?.let {
+                pointsStore = null
+                field = it.toLocations()
+            }
+            return field
+        }
+        set(value) {
+            pointsLazy = null
+            pointsStore = null
+            field = value
+        }
 
     /**
      * List containing all track break points. Break point is defined as index of point, after
@@ -46,11 +60,11 @@ class Track : GeoData() {
      */
     var breaksBinary: ByteArray
         get() {
-            return DataWriterBigEndian().apply {
+            return writeToBytes { dw ->
                 for (i in breaks.indices) {
-                    writeInt(breaks[i])
+                    dw.writeInt(breaks[i])
                 }
-            }.toByteArray()
+            }
         }
         set(value) {
             breaks.clear()
@@ -74,6 +88,14 @@ class Track : GeoData() {
      * Extra points (also may include routing data)
      */
     var waypoints: MutableList<Point> = arrayListOf()
+        get() {
+            waypointsLazy?.let { decodeWaypoints(it) }
+            return field
+        }
+        set(value) {
+            waypointsLazy = null
+            field = value
+        }
 
     /**
      * Flag that indicate whether to use parent folder style if exists.
@@ -100,12 +122,45 @@ class Track : GeoData() {
      */
     var storeVersionId: Long = -1L
 
+    /**
+     * Flag that indicate whether to serialize points in compact encoding. Compact data are
+     * several times smaller, but coordinates and altitude are rounded (see
+     * [TrackPoints.writeCompact]) and extra values unknown to this version of API are lost.
+     * Older versions of API read such track without points.
+     */
+    var isCompactPoints: Boolean = false
+
+    // serialized points, not yet decoded (see [isLazyRead])
+    private var pointsLazy: ByteArray? = null
+
+    // flag if serialized points are in compact encoding
+    private var pointsLazyCompact: Boolean = false
+
+    // number of serialized points
+    private var pointsLazyCount: Int = 0
+
+    // points in columnar form, converted to [points] on first access
+    private var pointsStore: TrackPoints? = null
+
+    // serialized waypoints, not yet decoded
+    private var waypointsLazy: ByteArray? = null
+
     //*************************************************
     // HELPERS
     //*************************************************
 
+    /**
+     * Number of track points. Not yet decoded points of lazy read track are not decoded and
+     * points in columnar form are not converted.
+     */
     val pointsCount: Int
-        get() = points.size
+        get() = if (pointsLazy != null) pointsLazyCount else pointsStore?.size ?: points.size
+
+    /**
+     * Points in columnar form, if track holds them so (see [setPoints]).
+     */
+    internal val pointsColumnar: TrackPoints?
+        get() = pointsStore
 
     /**
      * Get point on certain index.
@@ -116,6 +171,42 @@ class Track : GeoData() {
         return points[index]
     }
 
+    /**
+     * Get track points in columnar form. Suitable for memory effective work with huge tracks.
+     *
+     * If the track holds points in columnar form (set by [setPoints], read in compact
+     * encoding or not yet decoded compact points of lazy read track), returned store is
+     * the one used by the track and its changes are part of the track. Otherwise new copy
+     * of [points] is created.
+     */
+    fun getPointsStore(): TrackPoints {
+        pointsStore?.let { return it }
+
+        // read not yet decoded compact points directly
+        val data = pointsLazy
+        if (data != null && pointsLazyCompact) {
+            try {
+                return TrackPoints.readCompact(DataReaderBigEndian(data)).also {
+                    pointsLazy = null
+                    pointsStore = it
+                }
+            } catch (e: Exception) {
+                Logger.logE(TAG, "getPointsStore()", e)
+            }
+        }
+        return TrackPoints.from(points)
+    }
+
+    /**
+     * Use columnar [store] as points of the track. Track keeps the store without creating
+     * of locations for points, until [points] are accessed. Then all points are converted
+     * to list of locations and the store is no longer used by the track.
+     */
+    fun setPoints(store: TrackPoints) {
+        points = arrayListOf()
+        pointsStore = store
+    }
+
     /**
      * Set custom track statistics to current track.
      */
@@ -133,7 +224,7 @@ class Track : GeoData() {
     //*************************************************
 
     public override fun getVersion(): Int {
-        return 8
+        return 9
     }
 
     @Throws(IOException::class)
@@ -142,7 +233,16 @@ class Track : GeoData() {
         name = dr.readString()
 
         // load locations
-        points = dr.readListStorable(Location::class.java)
+        if (isLazyRead) {
+            points = arrayListOf()
+            readLazySection(dr) { skipListStorable(it) }?.let {
+                pointsLazy = it
+                pointsLazyCompact = false
+                pointsLazyCount = DataReaderBigEndian(it).readInt()
+            }
+        } else {
+            points = dr.readListStorable { Location() }
+        }
 
         // read breaks
         val breaksSize = dr.readInt()
@@ -151,7 +251,12 @@ class Track : GeoData() {
         }
 
         // read waypoints
-        waypoints = dr.readListStorable(Point::class.java)
+        if (isLazyRead) {
+            waypoints = arrayListOf()
+            waypointsLazy = readLazySection(dr) { skipListStorable(it) }
+        } else {
+            waypoints = dr.readListStorable { Point() }
+        }
 
         // read extra part
         readExtraData(dr)
@@ -227,6 +332,32 @@ class Track : GeoData() {
             privacy = Privacy.values().find { it.name == privacyValue }
                     ?: privacy
         }
+
+        // V9
+        if (version >= 9) {
+            isCompactPoints = dr.readBoolean()
+            if (isCompactPoints) {
+                val size = dr.readInt()
+                if (isLazyRead) {
+                    val data = dr.readBytes(size)
+                    points = arrayListOf()
+                    pointsLazy = data
+                    pointsLazyCompact = true
+                    pointsLazyCount = DataReaderBigEndian(data).let {
+                        it.readVarInt()
+                        it.readVarInt()
+                    }
+                } else {
+                    // read compact block, limited to its size
+                    val limit = dr.beginWindow(size)
+                    try {
+                        setPoints(TrackPoints.readCompact(dr))
+                    } finally {
+                        dr.endWindow(limit)
+                    }
+                }
+            }
+        }
     }
 
     @Throws(IOException::class)
@@ -234,8 +365,16 @@ class Track : GeoData() {
         dw.writeLong(id)
         dw.writeString(name)
 
-        // write locations
-        dw.writeListStorable(points)
+        // write locations, compact points are written in V9 part. Not yet decoded points
+        // are written without change
+        val pointsRaw = pointsLazy?.takeIf { pointsLazyCompact == isCompactPoints }
+        val store = pointsStore
+        when {
+            isCompactPoints -> dw.writeListStorable(emptyList())
+            pointsRaw != null -> dw.write(pointsRaw)
+            store != null -> writePoints(dw, store)
+            else -> dw.writeListStorable(points)
+        }
 
         // write breaks
         breaksBinary.let {
@@ -246,7 +385,11 @@ class Track : GeoData() {
         }
 
         // write waypoints
-        dw.writeListStorable(waypoints)
+        waypointsLazy?.let {
+            dw.write(it)
+        } ?: run {
+            dw.writeListStorable(waypoints)
+        }
 
         // write extra data
         writeExtraData(dw)
@@ -299,6 +442,123 @@ class Track : GeoData() {
 
         // V8
         dw.writeString(privacy.name)
+
+        // V9
+        dw.writeBoolean(isCompactPoints)
+        if (isCompactPoints) {
+            // write empty size of compact block and fill it once block is written
+            dw.writeInt(0)
+            val startSize = dw.size()
+            pointsRaw?.let {
+                dw.write(it)
+            } ?: run {
+                (store ?: TrackPoints.from(points)).writeCompact(dw)
+            }
+            val blockSize = dw.size() - startSize
+            dw.storePosition()
+            dw.moveTo(startSize - 4)
+            dw.writeInt(blockSize)
+            dw.restorePosition()
+        }
+    }
+
+    override fun copyObject(): Storable {
+        return Track().also {
+            copyBaseTo(it)
+
+            // locations, not yet decoded points are shared
+            val lazy = pointsLazy
+            val store = pointsStore
+            if (lazy != null) {
+                it.pointsLazy = lazy
+                it.pointsLazyCompact = pointsLazyCompact
+                it.pointsLazyCount = pointsLazyCount
+            } else if (store != null) {
+                it.setPoints(store.copy())
+            } else {
+                val locs = points
+                it.points = ArrayList<Location>(locs.size).apply {
+                    for (i in locs.indices) {
+                        add(Location(locs[i]))
+                    }
+                }
+            }
+            it.breaks = ArrayList(breaks)
+
+            // waypoints
+            val waypointsRaw = waypointsLazy
+            if (waypointsRaw != null) {
+                it.waypointsLazy = waypointsRaw
+            } else {
+                it.waypoints = copyList(waypoints)
+            }
+
+            // rest of values
+            it.isUseFolderStyle = isUseFolderStyle
+            it.activityType = activityType
+            it.stats = stats.copy as TrackStats
+            it.storeItemId = storeItemId
+            it.storeVersionId = storeVersionId
+            it.isCompactPoints = isCompactPoints
+        }
+    }
+
+    /**
+     * Write points in columnar form in the same format as list of locations.
+     */
+    @Throws(IOException::class)
+    private fun writePoints(dw: DataWriterBigEndian, store: TrackPoints) {
+        dw.writeInt(store.size)
+        store.forEach { _, loc ->
+            loc.write(dw)
+        }
+    }
+
+    //*************************************************
+    // LAZY READING
+    //*************************************************
+
+    /**
+     * Skip list of objects without reading of items.
+     */
+    @Throws(IOException::class)
+    private fun skipListStorable(dr: DataReaderBigEndian) {
+        val count = dr.readInt()
+        for (i in 0 until count) {
+            readUnknownObject(dr)
+        }
+    }
+
+    /**
+     * Decode points stored by lazy reading.
+     */
+    private fun decodePoints(data: ByteArray) {
+        pointsLazy = null
+        try {
+            val dr = DataReaderBigEndian(data)
+            points = if (pointsLazyCompact) {
+                TrackPoints.readCompact(dr).toLocations()
+            } else {
+                dr.readListStorable { Location() }
+            }
+        } catch (e: Exception) {
+            Logger.logE(TAG, "decodePoints()", e)
+        }
+    }
+
+    /**
+     * Decode waypoints stored by lazy reading. Waypoints are read in the same mode as the track.
+     */
+    private fun decodeWaypoints(data: ByteArray) {
+        waypointsLazy = null
+        try {
+            val lazy = isLazyRead
+            waypoints = DataReaderBigEndian(data).readListStorable {
+                Point().apply { isLazyRead = lazy }
+            }
+        } catch (e: Exception) {
+            Logger.logE(TAG, "decodeWaypoints()", e)
+        }
     }
 
     companion object {
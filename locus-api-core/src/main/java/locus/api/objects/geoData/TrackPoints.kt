@@ -0,0 +1,937 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+package locus.api.objects.geoData
+
+import locus.api.objects.extra.Location
+import locus.api.utils.DataReaderBigEndian
+import locus.api.utils.DataWriterBigEndian
+import locus.api.utils.GeodesyBatch
+import java.io.IOException
+import kotlin.math.max
+
+/**
+ * Columnar (structure of arrays) storage of the track points.
+ *
+ * Coordinates and times are stored in parallel primitive arrays. Optional values (altitude,
+ * speed, sensors, GNSS, ...) are stored in own columns that are created only once first value
+ * of certain type is stored. Every optional column keeps bitset of points, that have the value
+ * defined. Compared to list of [Location] objects, memory needed for points is several times
+ * lower and loops over single value (like altitude for statistics) access continuous memory.
+ *
+ * Points are not accessible as [Location] objects directly. To work with points as with
+ * locations, use [get] with reused location or [cursor], both without allocation of new objects
+ * for every point. Extra values with keys unknown to this version of API are not kept.
+ *
+ * Container is not thread-safe.
+ */
+class TrackPoints(initialCapacity: Int = 16) {
+
+    /**
+     * Number of stored points.
+     */
+    var size: Int = 0
+        private set
+
+    // current capacity of all columns
+    private var capacity = max(initialCapacity, 1)
+
+    // basic columns
+    private var latitudes = DoubleArray(capacity)
+    private var longitudes = DoubleArray(capacity)
+    private var times = LongArray(capacity)
+
+    // rarely used columns for ID and provider, created only when needed
+    private var ids: LongArray? = null
+    private var providers: Array<String?>? = null
+
+    // columns of optional values, created only when needed
+    private val doubleColumns = arrayOfNulls<DoubleColumn>(DOUBLE_COLUMNS)
+    private val floatColumns = arrayOfNulls<FloatColumn>(FLOAT_COLUMNS)
+    private val shortColumns = arrayOfNulls<ShortColumn>(SHORT_COLUMNS)
+    private val intColumns = arrayOfNulls<IntColumn>(INT_COLUMNS)
+
+    //*************************************************
+    // MODIFICATION
+    //*************************************************
+
+    /**
+     * Add new point defined by coordinates and time.
+     *
+     * @param lat latitude of the point
+     * @param lon longitude of the point
+     * @param time time of the point (in ms)
+     * @return index of the new point
+     */
+    fun add(lat: Double, lon: Double, time: Long): Int {
+        ensureCapacity(size + 1)
+        val index = size++
+        latitudes[index] = lat
+        longitudes[index] = lon
+        times[index] = time
+        return index
+    }
+
+    /**
+     * Add new point with all values from [loc].
+     *
+     * @param loc source location
+     * @return index of the new point
+     */
+    fun add(loc: Location): Int {
+        val index = add(loc.latitude, loc.longitude, loc.time)
+        putValues(index, loc)
+        return index
+    }
+
+    /**
+     * Replace point on [index] by values from [loc].
+     *
+     * @param index index of the point
+     * @param loc source location
+     */
+    operator fun set(index: Int, loc: Location) {
+        checkIndex(index)
+        latitudes[index] = loc.latitude
+        longitudes[index] = loc.longitude
+        times[index] = loc.time
+        putValues(index, loc)
+    }
+
+    /**
+     * Remove all points. Memory allocated for basic columns is kept for next use, columns of
+     * optional values are released.
+     */
+    fun clear() {
+        size = 0
+        ids = null
+        providers = null
+        doubleColumns.fill(null)
+        floatColumns.fill(null)
+        shortColumns.fill(null)
+        intColumns.fill(null)
+    }
+
+    /**
+     * Reduce allocated memory to number of stored points.
+     */
+    fun trimToSize() {
+        if (size < capacity) {
+            resize(max(size, 1))
+        }
+    }
+
+    //*************************************************
+    // ACCESS
+    //*************************************************
+
+    /**
+     * Fill [target] location with values of the point on [index]. All previous values of
+     * the location are replaced.
+     *
+     * @param index index of the point
+     * @param target location to fill
+     * @return filled [target] location
+     */
+    fun get(index: Int, target: Location): Location {
+        checkIndex(index)
+        target.id = ids?.get(index) ?: -1L
+        target.provider = providers?.get(index) ?: ""
+        target.time = times[index]
+        target.latitude = latitudes[index]
+        target.longitude = longitudes[index]
+
+        // optional values
+        target.clearExtraData()
+        doubleColumns[COL_ALTITUDE]?.let {
+            if (it.isSet(index)) target.altitude = it.values[index]
+        }
+        floatColumns[COL_SPEED]?.let {
+            if (it.isSet(index)) target.speed = it.values[index]
+        }
+        floatColumns[COL_BEARING]?.let {
+            if (it.isSet(index)) target.bearing = it.values[index]
+        }
+        floatColumns[COL_ACCURACY_HOR]?.let {
+            if (it.isSet(index)) target.accuracyHor = it.values[index]
+        }
+        floatColumns[COL_ACCURACY_VER]?.let {
+            if (it.isSet(index)) target.accuracyVer = it.values[index]
+        }
+        floatColumns[COL_SENSOR_SPEED]?.let {
+            if (it.isSet(index)) target.sensorSpeed = it.values[index]
+        }
+        floatColumns[COL_SENSOR_TEMPERATURE]?.let {
+            if (it.isSet(index)) target.sensorTemperature = it.values[index]
+        }
+        floatColumns[COL_SENSOR_POWER]?.let {
+            if (it.isSet(index)) target.sensorPower = it.values[index]
+        }
+        floatColumns[COL_GNSS_HDOP]?.let {
+            if (it.isSet(index)) target.gnssHdop = it.values[index]
+        }
+        floatColumns[COL_GNSS_VDOP]?.let {
+            if (it.isSet(index)) target.gnssVdop = it.values[index]
+        }
+        floatColumns[COL_GNSS_PDOP]?.let {
+            if (it.isSet(index)) target.gnssPdop = it.values[index]
+        }
+        shortColumns[COL_SENSOR_HEART_RATE]?.let {
+            if (it.isSet(index)) target.sensorHeartRate = it.values[index]
+        }
+        shortColumns[COL_SENSOR_CADENCE]?.let {
+            if (it.isSet(index)) target.sensorCadence = it.values[index]
+        }
+        shortColumns[COL_GNSS_QUALITY]?.let {
+            if (it.isSet(index)) target.gnssQuality = it.values[index]
+        }
+        shortColumns[COL_GNSS_SATS_USED]?.let {
+            if (it.isSet(index)) target.gnssSatsUsed = it.values[index]
+        }
+        shortColumns[COL_GNSS_SATS_VISIBLE]?.let {
+            if (it.isSet(index)) target.gnssSatsVisible = it.values[index]
+        }
+        intColumns[COL_SENSOR_STRIDES]?.let {
+            if (it.isSet(index)) target.sensorStrides = it.values[index]
+        }
+        return target
+    }
+
+    /**
+     * Create new location with values of the point on [index].
+     *
+     * @param index index of the point
+     */
+    operator fun get(index: Int): Location {
+        return get(index, Location())
+    }
+
+    fun getLatitude(index: Int): Double {
+        checkIndex(index)
+        return latitudes[index]
+    }
+
+    fun getLongitude(index: Int): Double {
+        checkIndex(index)
+        return longitudes[index]
+    }
+
+    fun getTime(index: Int): Long {
+        checkIndex(index)
+        return times[index]
+    }
+
+    fun hasAltitude(index: Int): Boolean {
+        checkIndex(index)
+        return doubleColumns[COL_ALTITUDE]?.isSet(index) ?: false
+    }
+
+    /**
+     * Get altitude of the point. If point has no altitude, 0.0 is returned.
+     */
+    fun getAltitude(index: Int): Double {
+        checkIndex(index)
+        return doubleColumns[COL_ALTITUDE]?.values?.get(index) ?: 0.0
+    }
+
+    fun hasSpeed(index: Int): Boolean {
+        checkIndex(index)
+        return floatColumns[COL_SPEED]?.isSet(index) ?: false
+    }
+
+    /**
+     * Get speed of the point. If point has no speed, 0.0f is returned.
+     */
+    fun getSpeed(index: Int): Float {
+        checkIndex(index)
+        return floatColumns[COL_SPEED]?.values?.get(index) ?: 0.0f
+    }
+
+    /**
+     * Compute length of the track over all points.
+     *
+     * @param formula formula used for compute
+     * @return length in metres
+     */
+    @JvmOverloads
+    fun computeLength(formula: GeodesyBatch.Formula = GeodesyBatch.Formula.VINCENTY): Double {
+        return GeodesyBatch.computeLength(latitudes, longitudes, size, formula)
+    }
+
+    /**
+     * Compute segments between points. See [GeodesyBatch.computeSegments] for definition of
+     * optional output containers.
+     *
+     * @return length in metres
+     */
+    fun computeSegments(formula: GeodesyBatch.Formula, distances: DoubleArray?,
+            bearings: DoubleArray?, cumulative: DoubleArray?): Double {
+        return GeodesyBatch.computeSegments(latitudes, longitudes, size, formula,
+                distances, bearings, cumulative)
+    }
+
+    /**
+     * Create cursor over stored points.
+     */
+    fun cursor(): Cursor {
+        return Cursor()
+    }
+
+    /**
+     * Iterate over all points. Single location object is reused for all points, so it
+     * must not be stored by [action].
+     */
+    inline fun forEach(action: (index: Int, loc: Location) -> Unit) {
+        val loc = Location()
+        for (i in 0 until size) {
+            action(i, get(i, loc))
+        }
+    }
+
+    /**
+     * Create independent copy of all points.
+     */
+    fun copy(): TrackPoints {
+        val result = TrackPoints(capacity)
+        result.size = size
+        result.latitudes = latitudes.copyOf()
+        result.longitudes = longitudes.copyOf()
+        result.times = times.copyOf()
+        result.ids = ids?.copyOf()
+        result.providers = providers?.copyOf()
+        for (i in doubleColumns.indices) {
+            result.doubleColumns[i] = doubleColumns[i]?.copy()
+        }
+        for (i in floatColumns.indices) {
+            result.floatColumns[i] = floatColumns[i]?.copy()
+        }
+        for (i in shortColumns.indices) {
+            result.shortColumns[i] = shortColumns[i]?.copy()
+        }
+        for (i in intColumns.indices) {
+            result.intColumns[i] = intColumns[i]?.copy()
+        }
+        return result
+    }
+
+    /**
+     * Create list of new locations with values of all points.
+     */
+    fun toLocations(): MutableList<Location> {
+        val result = ArrayList<Location>(size)
+        for (i in 0 until size) {
+            result.add(get(i))
+        }
+        return result
+    }
+
+    /**
+     * Cursor over the points. Cursor fills single location with values of current point,
+     * so the location is valid only until next move of the cursor.
+     */
+    inner class Cursor internal constructor() {
+
+        /**
+         * Location with values of the current point.
+         */
+        val location = Location()
+
+        /**
+         * Index of the current point, '-1' before first move.
+         */
+        var index = -1
+            private set
+
+        /**
+         * Move cursor to the next point.
+         *
+         * @return `false` if there is no next point
+         */
+        fun moveToNext(): Boolean {
+            if (index + 1 >= size) {
+                return false
+            }
+            get(++index, location)
+            return true
+        }
+
+        /**
+         * Move cursor to the point on [index].
+         *
+         * @return location with values of the point
+         */
+        fun moveTo(index: Int): Location {
+            get(index, location)
+            this.index = index
+            return location
+        }
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    private fun checkIndex(index: Int) {
+        if (index < 0 || index >= size) {
+            throw IndexOutOfBoundsException("Index: $index, size: $size")
+        }
+    }
+
+    private fun putValues(index: Int, loc: Location) {
+        // ID and provider
+        if (loc.id != -1L || ids != null) {
+            val column = ids ?: LongArray(capacity) { -1L }.also { ids = it }
+            column[index] = loc.id
+        }
+        if (loc.provider.isNotEmpty() || providers != null) {
+            val column = providers ?: arrayOfNulls<String>(capacity).also { providers = it }
+            column[index] = loc.provider
+        }
+
+        // optional values
+        putDouble(COL_ALTITUDE, index, loc.hasAltitude, loc.altitude)
+        putFloat(COL_SPEED, index, loc.hasSpeed, loc.speed)
+        putFloat(COL_BEARING, index, loc.hasBearing, loc.bearing)
+        putFloat(COL_ACCURACY_HOR, index, loc.hasAccuracyHor, loc.accuracyHor)
+        putFloat(COL_ACCURACY_VER, index, loc.hasAccuracyVer, loc.accuracyVer)
+        putFloat(COL_SENSOR_SPEED, index, loc.hasSensorSpeed, loc.sensorSpeed)
+        putFloat(COL_SENSOR_TEMPERATURE, index, loc.hasSensorTemperature, loc.sensorTemperature)
+        putFloat(COL_SENSOR_POWER, index, loc.hasSensorPower, loc.sensorPower)
+        putFloat(COL_GNSS_HDOP, index, loc.hasGnssHdop, loc.gnssHdop)
+        putFloat(COL_GNSS_VDOP, index, loc.hasGnssVdop, loc.gnssVdop)
+        putFloat(COL_GNSS_PDOP, index, loc.hasGnssPdop, loc.gnssPdop)
+        putShort(COL_SENSOR_HEART_RATE, index, loc.hasSensorHeartRate, loc.sensorHeartRate)
+        putShort(COL_SENSOR_CADENCE, index, loc.hasSensorCadence, loc.sensorCadence)
+        putShort(COL_GNSS_QUALITY, index, loc.hasGnssQuality, loc.gnssQuality)
+        putShort(COL_GNSS_SATS_USED, index, loc.hasGnssSatsUsed, loc.gnssSatsUsed)
+        putShort(COL_GNSS_SATS_VISIBLE, index, loc.hasGnssSatsVisible, loc.gnssSatsVisible)
+        putInt(COL_SENSOR_STRIDES, index, loc.hasSensorStrides, loc.sensorStrides)
+    }
+
+    private fun putDouble(column: Int, index: Int, has: Boolean, value: Double) {
+        var col = doubleColumns[column]
+        if (has && col == null) {
+            col = DoubleColumn(capacity)
+            doubleColumns[column] = col
+        }
+        col?.put(index, has, value)
+    }
+
+    private fun putFloat(column: Int, index: Int, has: Boolean, value: Float) {
+        var col = floatColumns[column]
+        if (has && col == null) {
+            col = FloatColumn(capacity)
+            floatColumns[column] = col
+        }
+        col?.put(index, has, value)
+    }
+
+    private fun putShort(column: Int, index: Int, has: Boolean, value: Short) {
+        var col = shortColumns[column]
+        if (has && col == null) {
+            col = ShortColumn(capacity)
+            shortColumns[column] = col
+        }
+        col?.put(index, has, value)
+    }
+
+    private fun putInt(column: Int, index: Int, has: Boolean, value: Int) {
+        var col = intColumns[column]
+        if (has && col == null) {
+            col = IntColumn(capacity)
+            intColumns[column] = col
+        }
+        col?.put(index, has, value)
+    }
+
+    private fun ensureCapacity(required: Int) {
+        if (required > capacity) {
+            resize(max(required, capacity + (capacity shr 1)))
+        }
+    }
+
+    private fun resize(newCapacity: Int) {
+        capacity = newCapacity
+        latitudes = latitudes.copyOf(newCapacity)
+        longitudes = longitudes.copyOf(newCapacity)
+        times = times.copyOf(newCapacity)
+        ids = ids?.let { old -> LongArray(newCapacity) { if (it < size) old[it] else -1L } }
+        providers = providers?.copyOf(newCapacity)
+        doubleColumns.forEach { it?.resize(newCapacity) }
+        floatColumns.forEach { it?.resize(newCapacity) }
+        shortColumns.forEach { it?.resize(newCapacity) }
+        intColumns.forEach { it?.resize(newCapacity) }
+    }
+
+    //*************************************************
+    // COMPACT ENCODING
+    //*************************************************
+
+    /**
+     * Write all points in compact encoding. Coordinates, altitude and time are stored as
+     * fixed-point deltas to previous point in zig-zag variable length encoding, optional
+     * values are stored column by column.
+     *
+     * Encoding is lossy: coordinates are stored with precision of 1e-7 degree (~1 cm)
+     * and altitude with precision of 1 mm.
+     *
+     * @param dw writer for the data
+     */
+    @Throws(IOException::class)
+    fun writeCompact(dw: DataWriterBigEndian) {
+        dw.writeVarInt(COMPACT_VERSION)
+        dw.writeVarInt(size)
+
+        // coordinates and time
+        writeDeltas(dw) { Math.round(latitudes[it] * COORDINATE_SCALE) }
+        writeDeltas(dw) { Math.round(longitudes[it] * COORDINATE_SCALE) }
+        writeDeltas(dw) { times[it] }
+
+        // mask of existing optional columns
+        val optional = arrayOf(ids, providers,
+                *doubleColumns, *floatColumns, *shortColumns, *intColumns)
+        var mask = 0
+        for (i in optional.indices) {
+            if (optional[i] != null) {
+                mask = mask or (1 shl i)
+            }
+        }
+        dw.writeVarInt(mask)
+
+        // ID and provider
+        ids?.let { column ->
+            writeDeltas(dw) { column[it] }
+        }
+        providers?.let { column ->
+            // dictionary of used providers, index '0' is reserved for no provider
+            val dictionary = LinkedHashMap<String, Int>()
+            for (i in 0 until size) {
+                column[i]?.takeIf { it.isNotEmpty() }?.let {
+                    dictionary.getOrPut(it) { dictionary.size + 1 }
+                }
+            }
+            dw.writeVarInt(dictionary.size)
+            for (provider in dictionary.keys) {
+                dw.writeString(provider)
+            }
+            for (i in 0 until size) {
+                dw.writeVarInt(column[i]?.let { dictionary[it] } ?: 0)
+            }
+        }
+
+        // optional values
+        for (col in doubleColumns) {
+            col?.let { column ->
+                writePresence(dw, column)
+                var last = 0L
+                for (i in 0 until size) {
+                    if (column.isSet(i)) {
+                        val value = Math.round(column.values[i] * ALTITUDE_SCALE)
+                        dw.writeVarLongSigned(value - last)
+                        last = value
+                    }
+                }
+            }
+        }
+        for (col in floatColumns) {
+            col?.let { column ->
+                writePresence(dw, column)
+                for (i in 0 until size) {
+                    if (column.isSet(i)) {
+                        dw.writeFloat(column.values[i])
+                    }
+                }
+            }
+        }
+        for (col in shortColumns) {
+            col?.let { column ->
+                writePresence(dw, column)
+                var last = 0
+                for (i in 0 until size) {
+                    if (column.isSet(i)) {
+                        dw.writeVarIntSigned(column.values[i] - last)
+                        last = column.values[i].toInt()
+                    }
+                }
+            }
+        }
+        for (col in intColumns) {
+            col?.let { column ->
+                writePresence(dw, column)
+                var last = 0
+                for (i in 0 until size) {
+                    if (column.isSet(i)) {
+                        dw.writeVarIntSigned(column.values[i] - last)
+                        last = column.values[i]
+                    }
+                }
+            }
+        }
+    }
+
+    private fun readCompactColumns(dr: DataReaderBigEndian) {
+        val mask = dr.readVarInt()
+        var bit = 0
+
+        // ID and provider
+        if (mask and (1 shl bit++) != 0) {
+            val column = LongArray(capacity) { -1L }
+            var last = 0L
+            for (i in 0 until size) {
+                last += dr.readVarLongSigned()
+                column[i] = last
+            }
+            ids = column
+        }
+        if (mask and (1 shl bit++) != 0) {
+            val dictionarySize = dr.readVarInt()
+            if (dictionarySize < 0 || dictionarySize > dr.available()) {
+                throw IOException("Invalid size of provider dictionary: $dictionarySize")
+            }
+            val dictionary = Array(dictionarySize) { dr.readString() }
+            val column = arrayOfNulls<String>(capacity)
+            for (i in 0 until size) {
+                val index = dr.readVarInt()
+                if (index < 0 || index > dictionary.size) {
+                    throw IOException("Invalid provider index: $index")
+                }
+                column[i] = if (index == 0) null else dictionary[index - 1]
+            }
+            providers = column
+        }
+
+        // optional values
+        for (c in doubleColumns.indices) {
+            if (mask and (1 shl bit++) != 0) {
+                val column = DoubleColumn(capacity)
+                readPresence(dr, column)
+                var last = 0L
+                for (i in 0 until size) {
+                    if (column.isSet(i)) {
+                        last += dr.readVarLongSigned()
+                        column.values[i] = last / ALTITUDE_SCALE
+                    }
+                }
+                doubleColumns[c] = column
+            }
+        }
+        for (c in floatColumns.indices) {
+            if (mask and (1 shl bit++) != 0) {
+                val column = FloatColumn(capacity)
+                readPresence(dr, column)
+                for (i in 0 until size) {
+                    if (column.isSet(i)) {
+                        column.values[i] = dr.readFloat()
+                    }
+                }
+                floatColumns[c] = column
+            }
+        }
+        for (c in shortColumns.indices) {
+            if (mask and (1 shl bit++) != 0) {
+                val column = ShortColumn(capacity)
+                readPresence(dr, column)
+                var last = 0
+                for (i in 0 until size) {
+                    if (column.isSet(i)) {
+                        last += dr.readVarIntSigned()
+                        column.values[i] = last.toShort()
+                    }
+                }
+                shortColumns[c] = column
+            }
+        }
+        for (c in intColumns.indices) {
+            if (mask and (1 shl bit++) != 0) {
+                val column = IntColumn(capacity)
+                readPresence(dr, column)
+                var last = 0
+                for (i in 0 until size) {
+                    if (column.isSet(i)) {
+                        last += dr.readVarIntSigned()
+                        column.values[i] = last
+                    }
+                }
+                intColumns[c] = column
+            }
+        }
+    }
+
+    private inline fun writeDeltas(dw: DataWriterBigEndian, value: (Int) -> Long) {
+        var last = 0L
+        for (i in 0 until size) {
+            val current = value(i)
+            dw.writeVarLongSigned(current - last)
+            last = current
+        }
+    }
+
+    /**
+     * Write bitset of points with defined value in [column]. If all points have value defined,
+     * bitset is not written at all.
+     */
+    private fun writePresence(dw: DataWriterBigEndian, column: Column) {
+        var count = 0
+        for (i in 0 until size) {
+            if (column.isSet(i)) {
+                count++
+            }
+        }
+        dw.writeVarInt(count)
+        if (count == size) {
+            return
+        }
+        for (i in 0 until (size + 7) / 8) {
+            dw.write((column.present[i ushr 3] ushr ((i and 7) * 8)).toInt())
+        }
+    }
+
+    /**
+     * Read bitset of points with defined value into [column].
+     */
+    private fun readPresence(dr: DataReaderBigEndian, column: Column) {
+        val count = dr.readVarInt()
+        if (count == size) {
+            for (i in 0 until size) {
+                column.mark(i, true)
+            }
+            return
+        }
+        for (i in 0 until (size + 7) / 8) {
+            val word = i ushr 3
+            column.present[word] = column.present[word] or
+                    ((dr.readByte().toLong() and 0xFF) shl ((i and 7) * 8))
+        }
+    }
+
+    //*************************************************
+    // COLUMNS
+    //*************************************************
+
+    /**
+     * Base of the column with optional values. Keeps bitset of points with defined value.
+     */
+    private abstract class Column(capacity: Int) {
+
+        // bitset of points with defined value
+        var present = LongArray(words(capacity))
+
+        fun isSet(index: Int): Boolean {
+            return present[index ushr 6] and (1L shl index) != 0L
+        }
+
+        fun mark(index: Int, set: Boolean) {
+            val word = index ushr 6
+            present[word] = if (set) {
+                present[word] or (1L shl index)
+            } else {
+                present[word] and (1L shl index).inv()
+            }
+        }
+
+        open fun resize(capacity: Int) {
+            present = present.copyOf(words(capacity))
+        }
+
+        private fun words(capacity: Int): Int {
+            return (capacity + 63) ushr 6
+        }
+    }
+
+    private class DoubleColumn(capacity: Int) : Column(capacity) {
+
+        var values = DoubleArray(capacity)
+
+        fun copy(): DoubleColumn {
+            return DoubleColumn(values.size).also {
+                it.present = present.copyOf()
+                it.values = values.copyOf()
+            }
+        }
+
+        fun put(index: Int, has: Boolean, value: Double) {
+            values[index] = if (has) value else 0.0
+            mark(index, has)
+        }
+
+        override fun resize(capacity: Int) {
+            super.resize(capacity)
+            values = values.copyOf(capacity)
+        }
+    }
+
+    private class FloatColumn(capacity: Int) : Column(capacity) {
+
+        var values = FloatArray(capacity)
+
+        fun copy(): FloatColumn {
+            return FloatColumn(values.size).also {
+                it.present = present.copyOf()
+                it.values = values.copyOf()
+            }
+        }
+
+        fun put(index: Int, has: Boolean, value: Float) {
+            values[index] = if (has) value else 0.0f
+            mark(index, has)
+        }
+
+        override fun resize(capacity: Int) {
+            super.resize(capacity)
+            values = values.copyOf(capacity)
+        }
+    }
+
+    private class ShortColumn(capacity: Int) : Column(capacity) {
+
+        var values = ShortArray(capacity)
+
+        fun copy(): ShortColumn {
+            return ShortColumn(values.size).also {
+                it.present = present.copyOf()
+                it.values = values.copyOf()
+            }
+        }
+
+        fun put(index: Int, has: Boolean, value: Short) {
+            values[index] = if (has) value else 0
+            mark(index, has)
+        }
+
+        override fun resize(capacity: Int) {
+            super.resize(capacity)
+            values = values.copyOf(capacity)
+        }
+    }
+
+    private class IntColumn(capacity: Int) : Column(capacity) {
+
+        var values = IntArray(capacity)
+
+        fun copy(): IntColumn {
+            return IntColumn(values.size).also {
+                it.present = present.copyOf()
+                it.values = values.copyOf()
+            }
+        }
+
+        fun put(index: Int, has: Boolean, value: Int) {
+            values[index] = if (has) value else 0
+            mark(index, has)
+        }
+
+        override fun resize(capacity: Int) {
+            super.resize(capacity)
+            values = values.copyOf(capacity)
+        }
+    }
+
+    companion object {
+
+        // columns of double values
+        private const val COL_ALTITUDE = 0
+        private const val DOUBLE_COLUMNS = 1
+
+        // columns of float values
+        private const val COL_SPEED = 0
+        private const val COL_BEARING = 1
+        private const val COL_ACCURACY_HOR = 2
+        private const val COL_ACCURACY_VER = 3
+        private const val COL_SENSOR_SPEED = 4
+        private const val COL_SENSOR_TEMPERATURE = 5
+        private const val COL_SENSOR_POWER = 6
+        private const val COL_GNSS_HDOP = 7
+        private const val COL_GNSS_VDOP = 8
+        private const val COL_GNSS_PDOP = 9
+        private const val FLOAT_COLUMNS = 10
+
+        // columns of short values
+        private const val COL_SENSOR_HEART_RATE = 0
+        private const val COL_SENSOR_CADENCE = 1
+        private const val COL_GNSS_QUALITY = 2
+        private const val COL_GNSS_SATS_USED = 3
+        private const val COL_GNSS_SATS_VISIBLE = 4
+        private const val SHORT_COLUMNS = 5
+
+        // columns of integer values
+        private const val COL_SENSOR_STRIDES = 0
+        private const val INT_COLUMNS = 1
+
+        // version of compact encoding
+        private const val COMPACT_VERSION = 1
+
+        // scale of fixed-point coordinates (1e-7 degree)
+        private const val COORDINATE_SCALE = 1.0e7
+
+        // scale of fixed-point altitude (1 mm)
+        private const val ALTITUDE_SCALE = 1000.0
+
+        /**
+         * Read points written by [writeCompact].
+         *
+         * @param dr reader with the data
+         * @return read points
+         */
+        @Throws(IOException::class)
+        fun readCompact(dr: DataReaderBigEndian): TrackPoints {
+            val version = dr.readVarInt()
+            if (version != COMPACT_VERSION) {
+                throw IOException("Unsupported version of compact points: $version")
+            }
+            val count = dr.readVarInt()
+            if (count < 0 || count > dr.available()) {
+                throw IOException("Invalid number of points: $count")
+            }
+
+            // coordinates and time
+            val result = TrackPoints(count)
+            result.size = count
+            var last = 0L
+            for (i in 0 until count) {
+                last += dr.readVarLongSigned()
+                result.latitudes[i] = last / COORDINATE_SCALE
+            }
+            last = 0L
+            for (i in 0 until count) {
+                last += dr.readVarLongSigned()
+                result.longitudes[i] = last / COORDINATE_SCALE
+            }
+            last = 0L
+            for (i in 0 until count) {
+                last += dr.readVarLongSigned()
+                result.times[i] = last
+            }
+            result.readCompactColumns(dr)
+            return result
+        }
+
+        /**
+         * Create columnar storage with all [points].
+         *
+         * @param points source locations
+         */
+        fun from(points: List<Location>): TrackPoints {
+            val result = TrackPoints(points.size)
+            for (i in points.indices) {
+                result.add(points[i])
+            }
+            return result
+        }
+    }
+}
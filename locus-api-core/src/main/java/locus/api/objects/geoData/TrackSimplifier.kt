@@ -0,0 +1,676 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.objects.geoData
+
+import locus.api.objects.extra.GeoDataExtra
+import locus.api.objects.extra.Location
+import locus.api.objects.extra.TrackStats
+import locus.api.utils.GeodesyBatch
+import kotlin.math.abs
+import kotlin.math.cos
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.pow
+import kotlin.math.sqrt
+
+/**
+ * Simplification of track geometry, useful mainly to reduce number of points of huge tracks
+ * before they are sent to the app or drawn on the map.
+ *
+ * All methods keep structure of the track:
+ * - first and last point of every segment, so [Track.breaks] are preserved
+ * - points referenced by [Track.waypoints] over [GeoDataExtra.PAR_RTE_INDEX]
+ * - points with extreme values (min/max altitude, max speed, max heart rate, cadence and
+ * power) in every segment
+ *
+ * Points of result are same objects as points of source track.
+ */
+object TrackSimplifier {
+
+    /**
+     * Method of simplification.
+     */
+    enum class Method {
+
+        /**
+         * Douglas-Peucker algorithm. Removes points closer to simplified line than tolerance.
+         * Fast on common tracks, worst case O(n^2) (e.g. spiral, where every split removes
+         * only single point). Prefer [VISVALINGAM] for huge tracks of unknown shape.
+         */
+        DOUGLAS_PEUCKER,
+
+        /**
+         * Visvalingam-Whyatt algorithm. Removes points with effective triangle area lower
+         * than square of tolerance. Always O(n log n).
+         */
+        VISVALINGAM
+    }
+
+    // mean radius of Earth used for projection (in m)
+    private const val EARTH_RADIUS = 6371000.0
+
+    // resolution of the map tile on zoom 0 on equator (in m per pixel)
+    private const val MAP_RESOLUTION_ZOOM_0 = 156543.03392
+
+    /**
+     * Maximal zoom level supported by [Lod].
+     */
+    const val MAX_ZOOM = 22
+
+    //*************************************************
+    // PUBLIC API
+    //*************************************************
+
+    /**
+     * Simplify track with certain tolerance.
+     *
+     * @param track source track, not modified
+     * @param tolerance tolerance of simplification (in m)
+     * @param method method of simplification
+     * @return new simplified track
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun simplify(track: Track, tolerance: Double, method: Method = Method.VISVALINGAM): Track {
+        return createTrack(track, simplifyIndices(track, tolerance, method))
+    }
+
+    /**
+     * Get indices of points kept by simplification with certain tolerance.
+     *
+     * @param track source track
+     * @param tolerance tolerance of simplification (in m)
+     * @param method method of simplification
+     * @return sorted indices of kept points
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun simplifyIndices(track: Track, tolerance: Double,
+            method: Method = Method.VISVALINGAM): IntArray {
+        val data = Geometry(track)
+        return when (method) {
+            Method.DOUGLAS_PEUCKER ->
+                data.douglasPeucker(tolerance)
+            Method.VISVALINGAM ->
+                data.filter(data.visvalingam(), tolerance * tolerance)
+        }
+    }
+
+    /**
+     * Decimate track by distance and time between points. Point is removed if it is closer
+     * than [minDistance] and sooner than [minTime] from last kept point. Zero value disables
+     * certain condition.
+     *
+     * @param track source track, not modified
+     * @param minDistance minimal distance between points (in m)
+     * @param minTime minimal time between points (in ms)
+     * @return new decimated track
+     */
+    @JvmStatic
+    fun decimate(track: Track, minDistance: Double, minTime: Long): Track {
+        return createTrack(track, decimateIndices(track, minDistance, minTime))
+    }
+
+    /**
+     * Get indices of points kept by decimation, see [decimate].
+     *
+     * @return sorted indices of kept points
+     */
+    @JvmStatic
+    fun decimateIndices(track: Track, minDistance: Double, minTime: Long): IntArray {
+        val points = track.points
+        if (minDistance <= 0.0 && minTime <= 0L) {
+            return IntArray(points.size) { it }
+        }
+
+        // keep points far enough from last kept point
+        val keep = Geometry.forcedPoints(track)
+        var last = -1
+        for (i in points.indices) {
+            if (!keep[i] && last >= 0) {
+                val loc = points[i]
+                val lastLoc = points[last]
+                keep[i] = (minTime > 0L && loc.time - lastLoc.time >= minTime)
+                        || (minDistance > 0.0 && GeodesyBatch.distance(
+                        lastLoc.latitude, lastLoc.longitude, loc.latitude, loc.longitude,
+                        GeodesyBatch.Formula.HAVERSINE) >= minDistance)
+            }
+            if (keep[i]) {
+                last = i
+            }
+        }
+        return Geometry.toIndices(keep)
+    }
+
+    /**
+     * Create multi-level representation of the track for display on different zoom levels.
+     *
+     * @param track source track, should not be modified while level of details is used
+     * @param pixelTolerance tolerance of simplification on the map (in pixels)
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun createLod(track: Track, pixelTolerance: Double = 1.0): Lod {
+        return Lod(track, pixelTolerance)
+    }
+
+    /**
+     * Create copy of track with only certain points. Breaks and indices of waypoints are
+     * updated to new indices of points.
+     *
+     * @param track source track, not modified
+     * @param indices sorted indices of points to keep. Points referenced by breaks and
+     * waypoints have to be included
+     * @return new track
+     */
+    @JvmStatic
+    fun createTrack(track: Track, indices: IntArray): Track {
+        val result = Track()
+        result.id = track.id
+        result.name = track.name
+        result.timeCreated = track.timeCreated
+        result.timeUpdated = track.timeUpdated
+        result.privacy = track.privacy
+        result.protected = track.protected
+        result.extraDataRaw = track.extraDataRaw
+        result.styles = track.styles
+        result.isUseFolderStyle = track.isUseFolderStyle
+        result.activityType = track.activityType
+        result.stats = track.stats.copy as TrackStats
+        result.storeItemId = track.storeItemId
+        result.storeVersionId = track.storeVersionId
+        result.isCompactPoints = track.isCompactPoints
+
+        // points
+        val points = ArrayList<Location>(indices.size)
+        for (index in indices) {
+            points.add(track.points[index])
+        }
+        result.points = points
+
+        // breaks
+        for (breakIndex in track.breaks) {
+            val index = indices.binarySearch(breakIndex)
+            if (index >= 0) {
+                result.breaks.add(index)
+            }
+        }
+
+        // waypoints
+        for (wpt in track.waypoints) {
+            val copy = wpt.copy as Point
+            val rteIndex = wpt.paramRteIndex
+            if (rteIndex >= 0) {
+                val index = indices.binarySearch(rteIndex)
+                if (index >= 0) {
+                    copy.addParameter(GeoDataExtra.PAR_RTE_INDEX, index)
+                }
+            }
+            result.waypoints.add(copy)
+        }
+        return result
+    }
+
+    //*************************************************
+    // LEVEL OF DETAILS
+    //*************************************************
+
+    /**
+     * Level of details (pyramid of simplified geometries) of the track.
+     *
+     * Importance of every point is computed only once by Visvalingam-Whyatt algorithm, single
+     * level is then created by simple filter of points, in O(n). Levels are created lazily
+     * and cached. Container is not thread-safe.
+     */
+    class Lod internal constructor(
+            val track: Track,
+            private val pixelTolerance: Double) {
+
+        // geometry of the track
+        private val geometry = Geometry(track)
+
+        // importance of the points
+        private val importance = geometry.visvalingam()
+
+        // cached levels for zoom levels
+        private val levels = arrayOfNulls<IntArray>(MAX_ZOOM + 1)
+
+        // size of pixel on zero zoom, in area of the track (in m)
+        private val resolution = MAP_RESOLUTION_ZOOM_0 * cos(Math.toRadians(geometry.latMiddle))
+
+        /**
+         * Get indices of points for certain tolerance.
+         *
+         * @param tolerance tolerance of simplification (in m)
+         * @return sorted indices of kept points
+         */
+        fun getIndices(tolerance: Double): IntArray {
+            return geometry.filter(importance, tolerance * tolerance)
+        }
+
+        /**
+         * Get indices of points for display on certain zoom level.
+         *
+         * @param zoom zoom level of the map (0 - [MAX_ZOOM])
+         * @return sorted indices of kept points
+         */
+        fun getIndicesForZoom(zoom: Int): IntArray {
+            val level = zoom.coerceIn(0, MAX_ZOOM)
+            return levels[level]
+                    ?: getIndices(resolution / 2.0.pow(level) * pixelTolerance).also {
+                        levels[level] = it
+                    }
+        }
+
+        /**
+         * Create simplified track for display on certain zoom level.
+         *
+         * @param zoom zoom level of the map (0 - [MAX_ZOOM])
+         * @return new simplified track
+         */
+        fun createTrack(zoom: Int): Track {
+            return createTrack(track, getIndicesForZoom(zoom))
+        }
+    }
+
+    //*************************************************
+    // GEOMETRY
+    //*************************************************
+
+    /**
+     * Points of the track projected into plane in metres, together with points that has to
+     * be kept.
+     */
+    private class Geometry(track: Track) {
+
+        // number of points
+        val size = track.points.size
+
+        // projected coordinates (sinusoidal projection, equal-area)
+        val x = DoubleArray(size)
+        val y = DoubleArray(size)
+
+        // points that has to be kept
+        val forced = forcedPoints(track)
+
+        // latitude in the middle of the track
+        val latMiddle: Double
+
+        init {
+            val points = track.points
+            val lon0 = if (size > 0) points[0].longitude else 0.0
+            var latMin = 90.0
+            var latMax = -90.0
+            for (i in 0 until size) {
+                val loc = points[i]
+                val lat = Math.toRadians(loc.latitude)
+                x[i] = EARTH_RADIUS * Math.toRadians(loc.longitude - lon0) * cos(lat)
+                y[i] = EARTH_RADIUS * lat
+                latMin = min(latMin, loc.latitude)
+                latMax = max(latMax, loc.latitude)
+            }
+            latMiddle = if (size > 0) (latMin + latMax) / 2.0 else 0.0
+        }
+
+        /**
+         * Compute importance (effective area) of all points by Visvalingam-Whyatt algorithm.
+         * Forced points have infinite importance.
+         */
+        fun visvalingam(): DoubleArray {
+            val importance = DoubleArray(size)
+            val prev = IntArray(size) { it - 1 }
+            val next = IntArray(size) { it + 1 }
+            val heap = AreaHeap(size)
+            for (i in 0 until size) {
+                if (forced[i]) {
+                    importance[i] = Double.POSITIVE_INFINITY
+                } else {
+                    heap.add(i, area(prev[i], i, next[i]))
+                }
+            }
+
+            // remove points from the least important
+            var lastArea = 0.0
+            while (heap.size > 0) {
+                val index = heap.peek()
+                lastArea = max(lastArea, heap.areaOf(index))
+                importance[index] = lastArea
+                heap.poll()
+
+                // remove point from the line and update neighbours
+                val p = prev[index]
+                val n = next[index]
+                next[p] = n
+                prev[n] = p
+                if (!forced[p]) {
+                    heap.update(p, area(prev[p], p, n))
+                }
+                if (!forced[n]) {
+                    heap.update(n, area(p, n, next[n]))
+                }
+            }
+            return importance
+        }
+
+        /**
+         * Get indices of points with importance at least [minImportance].
+         */
+        fun filter(importance: DoubleArray, minImportance: Double): IntArray {
+            var count = 0
+            for (value in importance) {
+                if (value >= minImportance) {
+                    count++
+                }
+            }
+            val result = IntArray(count)
+            var index = 0
+            for (i in importance.indices) {
+                if (importance[i] >= minImportance) {
+                    result[index++] = i
+                }
+            }
+            return result
+        }
+
+        /**
+         * Simplify geometry by Douglas-Peucker algorithm. Forced points split line into
+         * parts simplified separately.
+         */
+        fun douglasPeucker(tolerance: Double): IntArray {
+            val keep = forced.copyOf()
+            var stack = IntArray(64)
+            var stackSize = 0
+
+            // add ranges between forced points
+            var start = 0
+            for (i in 1 until size) {
+                if (forced[i]) {
+                    if (i - start > 1) {
+                        if (stackSize + 2 > stack.size) {
+                            stack = stack.copyOf(stack.size * 2)
+                        }
+                        stack[stackSize++] = start
+                        stack[stackSize++] = i
+                    }
+                    start = i
+                }
+            }
+
+            // simplify ranges
+            while (stackSize > 0) {
+                val last = stack[--stackSize]
+                val first = stack[--stackSize]
+                var maxDist = -1.0
+                var maxIndex = -1
+                for (i in first + 1 until last) {
+                    val dist = distanceToSegment(i, first, last)
+                    if (dist > maxDist) {
+                        maxDist = dist
+                        maxIndex = i
+                    }
+                }
+                if (maxDist > tolerance) {
+                    keep[maxIndex] = true
+                    if (stackSize + 4 > stack.size) {
+                        stack = stack.copyOf(stack.size * 2)
+                    }
+                    if (maxIndex - first > 1) {
+                        stack[stackSize++] = first
+                        stack[stackSize++] = maxIndex
+                    }
+                    if (last - maxIndex > 1) {
+                        stack[stackSize++] = maxIndex
+                        stack[stackSize++] = last
+                    }
+                }
+            }
+            return toIndices(keep)
+        }
+
+        /**
+         * Area of triangle defined by three points.
+         */
+        private fun area(a: Int, b: Int, c: Int): Double {
+            return abs((x[b] - x[a]) * (y[c] - y[a]) - (x[c] - x[a]) * (y[b] - y[a])) / 2.0
+        }
+
+        /**
+         * Distance of point [p] from segment defined by points [a] and [b].
+         */
+        private fun distanceToSegment(p: Int, a: Int, b: Int): Double {
+            val dx = x[b] - x[a]
+            val dy = y[b] - y[a]
+            val lengthSq = dx * dx + dy * dy
+            var t = if (lengthSq > 0.0) {
+                ((x[p] - x[a]) * dx + (y[p] - y[a]) * dy) / lengthSq
+            } else {
+                0.0
+            }
+            t = t.coerceIn(0.0, 1.0)
+            val px = x[a] + t * dx - x[p]
+            val py = y[a] + t * dy - y[p]
+            return sqrt(px * px + py * py)
+        }
+
+        companion object {
+
+            /**
+             * Get flags of points that has to be kept in every simplification.
+             */
+            fun forcedPoints(track: Track): BooleanArray {
+                val points = track.points
+                val forced = BooleanArray(points.size)
+                if (points.isEmpty()) {
+                    return forced
+                }
+
+                // ends of segments
+                val breaks = track.breaks
+                        .filter { it >= 0 && it < points.size - 1 }
+                        .sorted()
+                forced[0] = true
+                forced[points.size - 1] = true
+                for (breakIndex in breaks) {
+                    forced[breakIndex] = true
+                    forced[breakIndex + 1] = true
+                }
+
+                // points referenced by waypoints
+                for (wpt in track.waypoints) {
+                    val index = wpt.paramRteIndex
+                    if (index >= 0 && index < points.size) {
+                        forced[index] = true
+                    }
+                }
+
+                // extremes in segments
+                var start = 0
+                for (breakIndex in breaks) {
+                    markExtremes(points, start, breakIndex + 1, forced)
+                    start = breakIndex + 1
+                }
+                markExtremes(points, start, points.size, forced)
+                return forced
+            }
+
+            /**
+             * Mark points with extreme values in range [from, to).
+             */
+            private fun markExtremes(points: List<Location>, from: Int, to: Int,
+                    forced: BooleanArray) {
+                var altMin = -1
+                var altMax = -1
+                var speedMax = -1
+                var hrMax = -1
+                var cadenceMax = -1
+                var powerMax = -1
+                for (i in from until to) {
+                    val loc = points[i]
+                    if (loc.hasAltitude) {
+                        if (altMin < 0 || loc.altitude < points[altMin].altitude) {
+                            altMin = i
+                        }
+                        if (altMax < 0 || loc.altitude > points[altMax].altitude) {
+                            altMax = i
+                        }
+                    }
+                    if (loc.hasSpeed && (speedMax < 0 || loc.speed > points[speedMax].speed)) {
+                        speedMax = i
+                    }
+                    if (loc.hasSensorHeartRate && (hrMax < 0
+                                    || loc.sensorHeartRate > points[hrMax].sensorHeartRate)) {
+                        hrMax = i
+                    }
+                    if (loc.hasSensorCadence && (cadenceMax < 0
+                                    || loc.sensorCadence > points[cadenceMax].sensorCadence)) {
+                        cadenceMax = i
+                    }
+                    if (loc.hasSensorPower && (powerMax < 0
+                                    || loc.sensorPower > points[powerMax].sensorPower)) {
+                        powerMax = i
+                    }
+                }
+                for (index in intArrayOf(altMin, altMax, speedMax, hrMax, cadenceMax, powerMax)) {
+                    if (index >= 0) {
+                        forced[index] = true
+                    }
+                }
+            }
+
+            /**
+             * Convert flags to sorted indices.
+             */
+            fun toIndices(keep: BooleanArray): IntArray {
+                var count = 0
+                for (value in keep) {
+                    if (value) {
+                        count++
+                    }
+                }
+                val result = IntArray(count)
+                var index = 0
+                for (i in keep.indices) {
+                    if (keep[i]) {
+                        result[index++] = i
+                    }
+                }
+                return result
+            }
+        }
+    }
+
+    /**
+     * Binary min-heap of point indices ordered by area, with support for update of area
+     * of any point in the heap.
+     */
+    private class AreaHeap(capacity: Int) {
+
+        // indices of points in heap order
+        private val heap = IntArray(capacity)
+        // area of the points
+        private val areas = DoubleArray(capacity)
+        // position of the point in heap, -1 if not in heap
+        private val positions = IntArray(capacity) { -1 }
+
+        /**
+         * Number of points in the heap.
+         */
+        var size = 0
+            private set
+
+        fun add(index: Int, area: Double) {
+            areas[index] = area
+            heap[size] = index
+            positions[index] = size
+            size++
+            siftUp(size - 1)
+        }
+
+        fun peek(): Int {
+            return heap[0]
+        }
+
+        fun areaOf(index: Int): Double {
+            return areas[index]
+        }
+
+        fun poll(): Int {
+            val result = heap[0]
+            positions[result] = -1
+            size--
+            if (size > 0) {
+                heap[0] = heap[size]
+                positions[heap[0]] = 0
+                siftDown(0)
+            }
+            return result
+        }
+
+        fun update(index: Int, area: Double) {
+            val position = positions[index]
+            val old = areas[index]
+            areas[index] = area
+            if (area < old) {
+                siftUp(position)
+            } else {
+                siftDown(position)
+            }
+        }
+
+        private fun siftUp(position: Int) {
+            var pos = position
+            val index = heap[pos]
+            while (pos > 0) {
+                val parent = (pos - 1) ushr 1
+                if (areas[heap[parent]] <= areas[index]) {
+                    break
+                }
+                heap[pos] = heap[parent]
+                positions[heap[pos]] = pos
+                pos = parent
+            }
+            heap[pos] = index
+            positions[index] = pos
+        }
+
+        private fun siftDown(position: Int) {
+            var pos = position
+            val index = heap[pos]
+            while (true) {
+                var child = 2 * pos + 1
+                if (child >= size) {
+                    break
+                }
+                if (child + 1 < size && areas[heap[child + 1]] < areas[heap[child]]) {
+                    child++
+                }
+                if (areas[index] <= areas[heap[child]]) {
+                    break
+                }
+                heap[pos] = heap[child]
+                positions[heap[pos]] = pos
+                pos = child
+            }
+            heap[pos] = index
+            positions[index] = pos
+        }
+    }
+}
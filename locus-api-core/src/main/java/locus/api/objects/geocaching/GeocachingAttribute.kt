@@ -103,6 +103,12 @@ class GeocachingAttribute() : Storable() {
         dw.writeInt(id)
     }
 
+    override fun copyObject(): Storable {
+        return GeocachingAttribute().also {
+            it.id = id
+        }
+    }
+
     companion object {
 
         private val attrIds by lazy {
@@ -460,10 +460,10 @@ class GeocachingData : Storable() {
 
         // read rest
         encodedHints = dr.readString()
-        attributes = dr.readListStorable(GeocachingAttribute::class.java)
-        logs = dr.readListStorable(GeocachingLog::class.java)
-        trackables = dr.readListStorable(GeocachingTrackable::class.java)
-        waypoints = dr.readListStorable(GeocachingWaypoint::class.java)
+        attributes = dr.readListStorable { GeocachingAttribute() }
+        logs = dr.readListStorable { GeocachingLog() }
+        trackables = dr.readListStorable { GeocachingTrackable() }
+        waypoints = dr.readListStorable { GeocachingWaypoint() }
         notes = dr.readString()
         isComputed = dr.readBoolean()
         isFound = dr.readBoolean()
@@ -481,7 +481,7 @@ class GeocachingData : Storable() {
         if (version >= 2) {
             lonOriginal = dr.readDouble()
             latOriginal = dr.readDouble()
-            images = dr.readListStorable(GeocachingImage::class.java)
+            images = dr.readListStorable { GeocachingImage() }
         }
 
         // V3
@@ -550,6 +550,53 @@ class GeocachingData : Storable() {
         dw.writeInt(source)
     }
 
+    override fun copyObject(): Storable {
+        return GeocachingData().also {
+            it.id = id
+            it.cacheID = cacheID
+            it.isAvailable = isAvailable
+            it.isArchived = isArchived
+            it.isPremiumOnly = isPremiumOnly
+            it.name = name
+            it.dateUpdated = dateUpdated
+            it.dateHidden = dateHidden
+            it.placedBy = placedBy
+            it.owner = owner
+            it.datePublished = datePublished
+            it.type = type
+            it.container = container
+            it.difficulty = difficulty
+            it.terrain = terrain
+            it.country = country
+            it.state = state
+
+            // listings are never modified in place, so array may be shared
+            descBytes?.takeIf { data -> data.isNotEmpty() }?.let { data ->
+                it.descBytes = data
+                it.shortDescLength = shortDescLength
+            }
+
+            // rest
+            it.encodedHints = encodedHints
+            it.attributes = copyList(attributes)
+            it.logs = copyList(logs)
+            it.trackables = copyList(trackables)
+            it.waypoints = copyList(waypoints)
+            it.notes = notes
+            it.isComputed = isComputed
+            it.isFound = isFound
+            it.cacheUrl = cacheUrl
+            it.favoritePoints = favoritePoints
+            it.gcVoteNumOfVotes = gcVoteNumOfVotes
+            it.gcVoteAverage = gcVoteAverage
+            it.gcVoteUserVote = gcVoteUserVote
+            it.lonOriginal = lonOriginal
+            it.latOriginal = latOriginal
+            it.images = copyList(images)
+            it.source = source
+        }
+    }
+
     companion object {
 
         // tag for logger
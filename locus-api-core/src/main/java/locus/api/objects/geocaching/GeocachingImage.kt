@@ -53,4 +53,13 @@ class GeocachingImage : Storable() {
         dw.writeString(thumbUrl)
         dw.writeString(url)
     }
+
+    override fun copyObject(): Storable {
+        return GeocachingImage().also {
+            it.name = name
+            it.description = description
+            it.thumbUrl = thumbUrl
+            it.url = url
+        }
+    }
 }
@@ -113,7 +113,7 @@ class GeocachingLog : Storable() {
 
         // V1
         if (version >= 1) {
-            _images = dr.readListStorable(GeocachingImage::class.java)
+            _images = dr.readListStorable { GeocachingImage() }
         }
 
         // V2
@@ -142,6 +142,21 @@ class GeocachingLog : Storable() {
         dw.writeDouble(cooLat)
     }
 
+    override fun copyObject(): Storable {
+        return GeocachingLog().also {
+            it.id = id
+            it.type = type
+            it.date = date
+            it.finder = finder
+            it.findersFound = findersFound
+            it.logText = logText
+            it._images = copyList(_images)
+            it.findersId = findersId
+            it.cooLon = cooLon
+            it.cooLat = cooLat
+        }
+    }
+
     companion object {
 
         // LOG TYPES
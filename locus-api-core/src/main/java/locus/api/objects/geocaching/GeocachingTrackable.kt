@@ -130,4 +130,19 @@ class GeocachingTrackable : Storable() {
         dw.writeLong(id)
         dw.writeString(currentOwner)
     }
+
+    override fun copyObject(): Storable {
+        return GeocachingTrackable().also {
+            it.name = name
+            it.imgUrl = imgUrl
+            it.srcDetails = srcDetails
+            it.originalOwner = originalOwner
+            it.released = released
+            it.origin = origin
+            it.goal = goal
+            it.details = details
+            it.id = id
+            it.currentOwner = currentOwner
+        }
+    }
 }
\ No newline at end of file
@@ -106,6 +106,19 @@ class GeocachingWaypoint : Storable() {
         dw.writeBoolean(isDescModified)
     }
 
+    override fun copyObject(): Storable {
+        return GeocachingWaypoint().also {
+            it.code = code
+            it.name = name
+            it.desc = desc
+            it.type = type
+            it.typeImagePath = typeImagePath
+            it.lon = lon
+            it.lat = lat
+            it.isDescModified = isDescModified
+        }
+    }
+
     companion object {
 
         /*
@@ -54,4 +54,13 @@ class BalloonStyle : Storable() {
         dw.writeString(text)
         dw.writeInt(displayMode.ordinal)
     }
+
+    override fun copyObject(): Storable {
+        return BalloonStyle().also {
+            it.bgColor = bgColor
+            it.textColor = textColor
+            it.text = text
+            it.displayMode = displayMode
+        }
+    }
 }
\ No newline at end of file
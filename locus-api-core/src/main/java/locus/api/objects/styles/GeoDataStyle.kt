@@ -278,6 +278,18 @@ class GeoDataStyle() : Storable() {
         }
     }
 
+    override fun copyObject(): Storable {
+        return GeoDataStyle().also {
+            it.id = id
+            it.name = name
+            it.balloonStyle = balloonStyle?.copy as BalloonStyle?
+            it.iconStyle = iconStyle?.copy as IconStyle?
+            it.labelStyle = labelStyle?.copy as LabelStyle?
+            it.listStyle = listStyle?.copy as ListStyle?
+            it.lineStyle = lineStyle?.copy as LineStyle?
+        }
+    }
+
     companion object {
 
         // tag for logger
@@ -69,4 +69,15 @@ class IconStyle : Storable() {
         dw.writeString(iconHref)
         hotSpot.write(dw)
     }
+
+    @Suppress("DEPRECATION")
+    override fun copyObject(): Storable {
+        return IconStyle().also {
+            it.color = color
+            it.scale = scale
+            it.heading = heading
+            it.iconHref = iconHref ?: ""
+            it.hotSpot = hotSpot.copy
+        }
+    }
 }
\ No newline at end of file
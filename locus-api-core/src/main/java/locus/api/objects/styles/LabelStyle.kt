@@ -57,4 +57,11 @@ class LabelStyle : Storable() {
         dw.writeInt(color)
         dw.writeFloat(scale)
     }
+
+    override fun copyObject(): Storable {
+        return LabelStyle().also {
+            it.color = color
+            it.scale = scale
+        }
+    }
 }
\ No newline at end of file
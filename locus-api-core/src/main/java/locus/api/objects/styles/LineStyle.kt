@@ -179,6 +179,24 @@ class LineStyle : Storable() {
         dw.writeInt(colorFill)
     }
 
+    override fun copyObject(): Storable {
+        return LineStyle().also {
+            it.drawBase = drawBase
+            it.colorBase = colorBase
+            it.drawSymbol = drawSymbol
+            it.colorSymbol = colorSymbol
+            it.symbol = symbol
+            it.coloring = coloring
+            it.coloringParams.putAll(coloringParams)
+            it.width = width
+            it.units = units
+            it.drawOutline = drawOutline
+            it.colorOutline = colorOutline
+            it.drawFill = drawFill
+            it.colorFill = colorFill
+        }
+    }
+
     companion object {
 
         // white color
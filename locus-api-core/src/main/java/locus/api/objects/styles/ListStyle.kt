@@ -47,6 +47,8 @@ class ListStyle : Storable() {
 
     @Throws(IOException::class)
     override fun readObject(version: Int, dis: DataReaderBigEndian) {
+        // flag always written by `writeObject`
+        dis.readBoolean()
         val style = dis.readInt()
         if (style < ListStyle.ListItemType.values().size) {
             listItemType = ListStyle.ListItemType.values()[style]
@@ -75,4 +77,17 @@ class ListStyle : Storable() {
             dw.writeString(itemIcon.href)
         }
     }
+
+    override fun copyObject(): Storable {
+        return ListStyle().also {
+            it.listItemType = listItemType
+            it.bgColor = bgColor
+            for (itemIcon in itemIcons) {
+                it.itemIcons.add(ItemIcon().apply {
+                    state = itemIcon.state
+                    href = itemIcon.href
+                })
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
+import kotlin.jvm.functions.Function0;
 import locus.api.objects.Storable;
 
 public class DataReaderBigEndian {
@@ -13,27 +14,59 @@ public class DataReaderBigEndian {
     private static final String TAG = "DataReaderBigEndian";
     // UTF-8 charset
     private static final Charset UTF8 = Charset.forName("UTF-8");
+    // ISO-8859-1 charset, same as UTF-8 for ASCII texts
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+    // size of table of deduplicated strings, power of two
+    private static final int STRINGS_TABLE_SIZE = 256;
+    // maximal length (in bytes) of deduplicated string
+    private static final int STRINGS_MAX_LENGTH = 128;
+    // minimal number of items in list, that enables deduplication of strings
+    private static final int STRINGS_MIN_LIST_SIZE = 8;
 
     // current position in buffer
     private int mPosition;
+    // end (exclusive) of readable part of the buffer
+    private int mLimit;
     // buffer with data
     private byte[] mBuffer;
 
+    // deduplicated strings and position and length of their data in the buffer
+    private String[] mStrings;
+    private int[] mStringsOffset;
+    private int[] mStringsLength;
+    // flag if deduplication of strings was explicitly disabled
+    private boolean mStringsDisabled;
+
     public DataReaderBigEndian(byte[] data) throws IOException {
-        if (data == null) {
+        this(data, 0, data == null ? 0 : data.length);
+    }
+
+    /**
+     * Create reader over part of existing buffer. Data are not copied, so reader is only
+     * a view over the `data` array. All positions are absolute indexes in this array.
+     *
+     * @param data   array with data
+     * @param offset index of the first byte to read
+     * @param length number of readable bytes
+     */
+    public DataReaderBigEndian(byte[] data, int offset, int length) throws IOException {
+        if (data == null || offset < 0 || length < 0 || offset > data.length - length) {
             throw new IOException("Invalid parameter");
         }
-        this.mPosition = 0;
+        this.mPosition = offset;
+        this.mLimit = offset + length;
         this.mBuffer = data;
     }
 
     /**
-     * Get length of current stream.
+     * Get length of current stream. In case, reader is limited by a window, end of
+     * window is returned.
      *
      * @return length of stream
      */
     public long length() {
-        return mBuffer.length;
+        return mLimit;
     }
 
     /**
@@ -42,7 +75,16 @@ public class DataReaderBigEndian {
      * @return number of available bytes
      */
     public int available() {
-        return mBuffer.length - mPosition;
+        return mLimit - mPosition;
+    }
+
+    /**
+     * Get current position in the buffer.
+     *
+     * @return current position
+     */
+    public int getPosition() {
+        return mPosition;
     }
 
     /**
@@ -54,6 +96,47 @@ public class DataReaderBigEndian {
         mPosition = pos;
     }
 
+    /**
+     * Skip certain number of bytes.
+     *
+     * @param count number of bytes to skip
+     */
+    public void skip(int count) {
+        checkPosition(count);
+    }
+
+    // WINDOWS
+
+    /**
+     * Limit reader to the next `size` bytes. Used for reading of nested objects, that
+     * should not read over own body, without need to copy body into separate buffer.
+     *
+     * @param size size of the window
+     * @return previous limit, that has to be returned back over {@link #endWindow(int)}
+     */
+    public int beginWindow(int size) {
+        if (size < 0 || size > available()) {
+            throw new ArrayIndexOutOfBoundsException("Invalid window for data load. " +
+                    "Current:" + mPosition + ", " +
+                    "limit:" + mLimit + ", " +
+                    "size:" + size);
+        }
+        int limit = mLimit;
+        mLimit = mPosition + size;
+        return limit;
+    }
+
+    /**
+     * Close window opened by {@link #beginWindow(int)}. All not yet read bytes in the window are
+     * skipped, so reader continues right after the window.
+     *
+     * @param limit previous limit returned by {@link #beginWindow(int)}
+     */
+    public void endWindow(int limit) {
+        mPosition = mLimit;
+        mLimit = limit;
+    }
+
     // READ FUNCTIONS
 
     public byte readByte() {
@@ -118,14 +201,63 @@ public class DataReaderBigEndian {
         return Double.longBitsToDouble(readLong());
     }
 
+    /**
+     * Read an <code>int</code> written by {@link DataWriterBigEndian#writeVarInt(int)}.
+     */
+    public int readVarInt() {
+        return (int) readVarLong();
+    }
+
+    /**
+     * Read an <code>int</code> written by {@link DataWriterBigEndian#writeVarIntSigned(int)}.
+     */
+    public int readVarIntSigned() {
+        int v = readVarInt();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Read a <code>long</code> written by {@link DataWriterBigEndian#writeVarLong(long)}.
+     */
+    public long readVarLong() {
+        long result = 0L;
+        int pos = mPosition;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos >= mLimit) {
+                throw new ArrayIndexOutOfBoundsException("Invalid position for data load. " +
+                        "Current:" + pos + ", " +
+                        "length:" + mLimit);
+            }
+            byte b = mBuffer[pos++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                mPosition = pos;
+                return result;
+            }
+        }
+        throw new IllegalStateException("Invalid variable length value, " +
+                "position:" + mPosition);
+    }
+
+    /**
+     * Read a <code>long</code> written by {@link DataWriterBigEndian#writeVarLongSigned(long)}.
+     */
+    public long readVarLongSigned() {
+        long v = readVarLong();
+        return (v >>> 1) ^ -(v & 1L);
+    }
+
     public String readString() {
         int textLength = readInt();
         if (textLength == 0) {
             return "";
         } else {
             checkPosition(textLength);
-            return new String(mBuffer,
-                    mPosition - textLength, textLength, UTF8);
+            int offset = mPosition - textLength;
+            if (mStrings != null && textLength <= STRINGS_MAX_LENGTH) {
+                return readStringDeduplicated(offset, textLength);
+            }
+            return decodeString(offset, textLength);
         }
     }
 
@@ -158,6 +290,17 @@ public class DataReaderBigEndian {
         return Storable.Companion.read(claz, this);
     }
 
+    /**
+     * Read Storable object created by factory.
+     *
+     * @param factory factory for new object
+     * @param <E>     class type
+     * @return loaded Storable class
+     */
+    public <E extends Storable> E readStorable(Function0<E> factory) throws IOException {
+        return Storable.Companion.read(this, factory);
+    }
+
     // LIST TOOLS
 
     public List<String> readListString() {
@@ -171,6 +314,7 @@ public class DataReaderBigEndian {
         }
 
         // read Strings
+        prepareDeduplication(count);
         for (int i = 0; i < count; i++) {
             objs.add(readString());
         }
@@ -179,40 +323,146 @@ public class DataReaderBigEndian {
 
     public <E extends Storable> List<E> readListStorable(Class<E> claz)
             throws IOException {
-        // prepare container
-        List<E> objs = new ArrayList<>();
+        Function0<E> factory;
+        //noinspection TryWithIdenticalCatches
+        try {
+            factory = Storable.Companion.getFactory(claz);
+        } catch (InstantiationException e) {
+            Logger.INSTANCE.logE(TAG, "readList(" + claz + ")", e);
+            factory = null;
+        } catch (IllegalAccessException e) {
+            Logger.INSTANCE.logE(TAG, "readList(" + claz + ")", e);
+            factory = null;
+        }
+
+        // class can't be created, skip data of all items
+        if (factory == null) {
+            int count = readInt();
+            for (int i = 0; i < count; i++) {
+                Storable.Companion.readUnknownObject(this);
+            }
+            return new ArrayList<>();
+        }
+        return readListStorable(factory);
+    }
 
+    public <E extends Storable> List<E> readListStorable(Function0<E> factory)
+            throws IOException {
         // read size
         int count = readInt();
         if (count == 0) {
-            return objs;
+            return new ArrayList<>();
         }
 
-        // read locations
+        // prepare container, every item has at least 8 bytes long header
+        List<E> objs = new ArrayList<>(Math.min(count, available() / 8));
+        prepareDeduplication(count);
+
+        // read items
         for (int i = 0; i < count; i++) {
-            //noinspection TryWithIdenticalCatches
-            try {
-                E item = claz.newInstance();
-                item.read(this);
-                objs.add(item);
-            } catch (InstantiationException e) {
-                Logger.INSTANCE.logE(TAG, "readList(" + claz + ")", e);
-            } catch (IllegalAccessException e) {
-                Logger.INSTANCE.logE(TAG, "readList(" + claz + ")", e);
-            }
+            E item = factory.invoke();
+            item.read(this);
+            objs.add(item);
         }
         return objs;
     }
 
+    // STRINGS DEDUPLICATION
+
+    /**
+     * Enable or disable deduplication of strings. With enabled deduplication, repeated short
+     * strings read by {@link #readString()} share single instance. Deduplication uses small
+     * table of recently read strings, so it never holds more than few hundreds of strings.
+     * <p>
+     * If not disabled, deduplication is enabled automatically for lists of objects or strings
+     * with at least few items, where repeated values are common.
+     *
+     * @param enabled {@code true} to enable deduplication
+     */
+    public void setStringDeduplication(boolean enabled) {
+        mStringsDisabled = !enabled;
+        if (!enabled) {
+            mStrings = null;
+            mStringsOffset = null;
+            mStringsLength = null;
+        } else if (mStrings == null) {
+            mStrings = new String[STRINGS_TABLE_SIZE];
+            mStringsOffset = new int[STRINGS_TABLE_SIZE];
+            mStringsLength = new int[STRINGS_TABLE_SIZE];
+        }
+    }
+
+    /**
+     * Check if deduplication of strings is currently enabled.
+     *
+     * @return {@code true} if enabled
+     */
+    public boolean isStringDeduplication() {
+        return mStrings != null;
+    }
+
+    /**
+     * Enable deduplication for list with {@code count} items, if not disabled explicitly.
+     */
+    private void prepareDeduplication(int count) {
+        if (count >= STRINGS_MIN_LIST_SIZE && mStrings == null && !mStringsDisabled) {
+            setStringDeduplication(true);
+        }
+    }
+
+    /**
+     * Get string from table of read strings or decode and store it.
+     */
+    private String readStringDeduplicated(int offset, int length) {
+        // hash of data
+        int hash = length;
+        for (int i = offset, n = offset + length; i < n; i++) {
+            hash = 31 * hash + mBuffer[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (STRINGS_TABLE_SIZE - 1);
+
+        // compare with stored string
+        String value = mStrings[slot];
+        if (value != null && mStringsLength[slot] == length) {
+            int stored = mStringsOffset[slot];
+            int i = 0;
+            while (i < length && mBuffer[stored + i] == mBuffer[offset + i]) {
+                i++;
+            }
+            if (i == length) {
+                return value;
+            }
+        }
+
+        // decode and replace stored string
+        value = decodeString(offset, length);
+        mStrings[slot] = value;
+        mStringsOffset[slot] = offset;
+        mStringsLength[slot] = length;
+        return value;
+    }
+
+    /**
+     * Decode UTF-8 string, ASCII texts are decoded without UTF-8 decoder.
+     */
+    private String decodeString(int offset, int length) {
+        for (int i = offset, n = offset + length; i < n; i++) {
+            if (mBuffer[i] < 0) {
+                return new String(mBuffer, offset, length, UTF8);
+            }
+        }
+        return new String(mBuffer, offset, length, LATIN1);
+    }
+
     // PRIVATE TOOLS
 
     private void checkPosition(int increment) {
-        mPosition += increment;
-        if (mPosition > mBuffer.length) {
+        if (increment < 0 || increment > mLimit - mPosition) {
             throw new ArrayIndexOutOfBoundsException("Invalid position for data load. " +
                     "Current:" + mPosition + ", " +
-                    "length:" + mBuffer.length + ", " +
+                    "length:" + mLimit + ", " +
                     "increment:" + increment);
         }
+        mPosition += increment;
     }
 }
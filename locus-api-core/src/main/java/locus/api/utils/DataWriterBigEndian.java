@@ -2,14 +2,47 @@ package locus.api.utils;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 
 import locus.api.objects.Storable;
 
+/**
+ * Writer of data into growing byte array, in big endian order.
+ * <p>
+ * Writer is not thread-safe. For repeated serialization on hot paths, use writer from the pool
+ * over {@link #obtain()} and return it back over {@link #recycle()}.
+ */
 @SuppressWarnings("PointlessBitwiseExpression")
 public class DataWriterBigEndian {
 
+    // default capacity of new writer
+    private static final int DEFAULT_CAPACITY = 256;
+
+    // maximal capacity of buffer kept in pooled writer
+    private static final int MAX_POOLED_CAPACITY = 256 * 1024;
+
+    // free writer for every thread
+    private static final ThreadLocal<DataWriterBigEndian> POOL =
+            new ThreadLocal<DataWriterBigEndian>();
+
+    /**
+     * Get empty writer from the pool of current thread, or new writer if pool is empty (for
+     * example when pooled writer is already in use by outer serialization). Return writer
+     * back over {@link #recycle()} when its content is no longer needed.
+     *
+     * @return empty writer
+     */
+    public static DataWriterBigEndian obtain() {
+        DataWriterBigEndian dw = POOL.get();
+        if (dw == null) {
+            return new DataWriterBigEndian();
+        }
+        POOL.set(null);
+        return dw;
+    }
+
     /**
      * The buffer where data is stored.
      */
@@ -33,7 +66,7 @@ public class DataWriterBigEndian {
      * initially 32 bytes, though its size increases if necessary.
      */
     public DataWriterBigEndian() {
-        this(256);
+        this(DEFAULT_CAPACITY);
     }
 
     /**
@@ -59,12 +92,24 @@ public class DataWriterBigEndian {
      *
      * @see java.io.ByteArrayInputStream#count
      */
-    public synchronized void reset() {
+    public void reset() {
         mCount = 0;
         mCurrentPos = 0;
         mSavedPos = 0;
     }
 
+    /**
+     * Return writer into the pool of current thread, see {@link #obtain()}. Writer, its buffer
+     * and views created by {@link #toByteBuffer()} must not be used after this call.
+     */
+    public void recycle() {
+        if (mBuf.length > MAX_POOLED_CAPACITY) {
+            mBuf = new byte[DEFAULT_CAPACITY];
+        }
+        reset();
+        POOL.set(this);
+    }
+
 
     /**
      * Increases the capacity if necessary to ensure that it can hold
@@ -142,20 +187,20 @@ public class DataWriterBigEndian {
 
     // WRITE FUNCTIONS
 
-    private byte mWriteBuffer[] = new byte[8];
+    private byte mWriteBuffer[] = new byte[10];
 
     /**
      * Writes the specified byte to this byte array output stream.
      *
      * @param b the byte to be written.
      */
-    public synchronized void write(int b) {
+    public void write(int b) {
         ensureCapacity(mCurrentPos + 1);
         mBuf[mCurrentPos] = (byte) b;
         setNewPositions(1);
     }
 
-    public synchronized void write(byte b[]) {
+    public void write(byte b[]) {
         write(b, 0, b.length);
     }
 
@@ -167,7 +212,7 @@ public class DataWriterBigEndian {
      * @param off the start offset in the data.
      * @param len the number of bytes to write.
      */
-    public synchronized void write(byte b[], int off, int len) {
+    public void write(byte b[], int off, int len) {
         if ((off < 0) || (off > b.length) || (len < 0) ||
                 ((off + len) - b.length > 0)) {
             throw new IndexOutOfBoundsException();
@@ -221,11 +266,14 @@ public class DataWriterBigEndian {
      * @see java.io.FilterOutputStream#out
      */
     public final void writeInt(int v) {
-        mWriteBuffer[0] = (byte) ((v >>> 24) & 0xFF);
-        mWriteBuffer[1] = (byte) ((v >>> 16) & 0xFF);
-        mWriteBuffer[2] = (byte) ((v >>> 8) & 0xFF);
-        mWriteBuffer[3] = (byte) ((v >>> 0) & 0xFF);
-        write(mWriteBuffer, 0, 4);
+        ensureCapacity(mCurrentPos + 4);
+        byte[] buf = mBuf;
+        int pos = mCurrentPos;
+        buf[pos] = (byte) (v >>> 24);
+        buf[pos + 1] = (byte) (v >>> 16);
+        buf[pos + 2] = (byte) (v >>> 8);
+        buf[pos + 3] = (byte) (v >>> 0);
+        setNewPositions(4);
     }
 
     /**
@@ -237,15 +285,18 @@ public class DataWriterBigEndian {
      * @see java.io.FilterOutputStream#out
      */
     public final void writeLong(long v) {
-        mWriteBuffer[0] = (byte) (v >>> 56);
-        mWriteBuffer[1] = (byte) (v >>> 48);
-        mWriteBuffer[2] = (byte) (v >>> 40);
-        mWriteBuffer[3] = (byte) (v >>> 32);
-        mWriteBuffer[4] = (byte) (v >>> 24);
-        mWriteBuffer[5] = (byte) (v >>> 16);
-        mWriteBuffer[6] = (byte) (v >>> 8);
-        mWriteBuffer[7] = (byte) (v >>> 0);
-        write(mWriteBuffer, 0, 8);
+        ensureCapacity(mCurrentPos + 8);
+        byte[] buf = mBuf;
+        int pos = mCurrentPos;
+        buf[pos] = (byte) (v >>> 56);
+        buf[pos + 1] = (byte) (v >>> 48);
+        buf[pos + 2] = (byte) (v >>> 40);
+        buf[pos + 3] = (byte) (v >>> 32);
+        buf[pos + 4] = (byte) (v >>> 24);
+        buf[pos + 5] = (byte) (v >>> 16);
+        buf[pos + 6] = (byte) (v >>> 8);
+        buf[pos + 7] = (byte) (v >>> 0);
+        setNewPositions(8);
     }
 
     /**
@@ -280,6 +331,54 @@ public class DataWriterBigEndian {
         writeLong(Double.doubleToLongBits(v));
     }
 
+    /**
+     * Writes an <code>int</code> in variable length encoding, 7 bits per byte, lowest
+     * bits first. Small positive values need only one or two bytes, negative values always
+     * need five bytes. Use {@link #writeVarIntSigned(int)} for values that may be negative.
+     *
+     * @param v an <code>int</code> to be written.
+     */
+    public final void writeVarInt(int v) {
+        writeVarLong(v & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Writes an <code>int</code> in zig-zag variable length encoding, so small negative
+     * values need also only few bytes.
+     *
+     * @param v an <code>int</code> to be written.
+     */
+    public final void writeVarIntSigned(int v) {
+        writeVarInt((v << 1) ^ (v >> 31));
+    }
+
+    /**
+     * Writes a <code>long</code> in variable length encoding, 7 bits per byte, lowest
+     * bits first.
+     *
+     * @param v a <code>long</code> to be written.
+     * @see #writeVarInt(int)
+     */
+    public final void writeVarLong(long v) {
+        int count = 0;
+        while ((v & ~0x7FL) != 0) {
+            mWriteBuffer[count++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        mWriteBuffer[count++] = (byte) v;
+        write(mWriteBuffer, 0, count);
+    }
+
+    /**
+     * Writes a <code>long</code> in zig-zag variable length encoding.
+     *
+     * @param v a <code>long</code> to be written.
+     * @see #writeVarIntSigned(int)
+     */
+    public final void writeVarLongSigned(long v) {
+        writeVarLong((v << 1) ^ (v >> 63));
+    }
+
     public final void writeString(String string) throws IOException {
         if (string == null || string.length() == 0) {
             writeInt(0);
@@ -355,10 +454,20 @@ public class DataWriterBigEndian {
      * @param out the output stream to which to write the data.
      * @throws IOException if an I/O error occurs.
      */
-    public synchronized void writeTo(OutputStream out) throws IOException {
+    public void writeTo(OutputStream out) throws IOException {
         out.write(mBuf, 0, mCount);
     }
 
+    /**
+     * Get read-only view on the current content of the writer, without copy of the data.
+     * View is valid only until next write, {@link #reset()} or {@link #recycle()} call.
+     *
+     * @return view on written data
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(mBuf, 0, mCount).slice().asReadOnlyBuffer();
+    }
+
     /**
      * Creates a newly allocated byte array. Its size is the current
      * size of this output stream and the valid contents of the buffer
@@ -367,7 +476,7 @@ public class DataWriterBigEndian {
      * @return the current contents of this output stream, as a byte array.
      * @see java.io.ByteArrayOutputStream#size()
      */
-    public synchronized byte toByteArray()[] {
+    public byte toByteArray()[] {
         return Arrays.copyOf(mBuf, mCount);
     }
 
@@ -378,7 +487,7 @@ public class DataWriterBigEndian {
      * of valid bytes in this output stream.
      * @see java.io.ByteArrayOutputStream#count
      */
-    public synchronized int size() {
+    public int size() {
         return mCount;
     }
 }
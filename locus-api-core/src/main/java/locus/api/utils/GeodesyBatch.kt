@@ -0,0 +1,284 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.utils
+
+import kotlin.math.max
+
+/**
+ * Batch compute of distances and bearings over polylines defined by arrays of coordinates.
+ *
+ * Trigonometric values of every point are computed only once and shared by both segments
+ * the point belongs to. No objects are allocated during the compute, all results are written
+ * into arrays provided by caller.
+ */
+object GeodesyBatch {
+
+    /**
+     * Formula used for compute.
+     */
+    enum class Formula {
+
+        /**
+         * Earth approximated as sphere (Haversine formula). Precision is around 99.9%, several
+         * times faster then [VINCENTY].
+         */
+        HAVERSINE,
+
+        /**
+         * Earth defined as WGS84 ellipsoid (Vincenty inverse formula). Same results as
+         * [locus.api.objects.extra.Location.distanceTo].
+         */
+        VINCENTY
+    }
+
+    // WGS84 parameters for compute
+    private const val WGS84_AXIS_A = 6378137.0
+    private const val WGS84_AXIS_B = 6356752.3142
+    private const val WGS84_FLAT = (WGS84_AXIS_A - WGS84_AXIS_B) / WGS84_AXIS_A
+    private const val WGS84_A_SQ_MINUS_B_SQ_OVER_B_SQ =
+            (WGS84_AXIS_A * WGS84_AXIS_A - WGS84_AXIS_B * WGS84_AXIS_B) / (WGS84_AXIS_B * WGS84_AXIS_B)
+
+    // maximal number of iterations for Vincenty formula
+    private const val VINCENTY_MAX_ITERS = 20
+
+    // conversion of degrees to radians
+    private const val DEG_TO_RAD = Math.PI / 180.0
+
+    //*************************************************
+    // SINGLE SEGMENT
+    //*************************************************
+
+    /**
+     * Compute distance between two points.
+     *
+     * @param lat1 latitude of first point
+     * @param lon1 longitude of first point
+     * @param lat2 latitude of second point
+     * @param lon2 longitude of second point
+     * @param formula formula used for compute
+     * @return distance in metres
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun distance(lat1: Double, lon1: Double, lat2: Double, lon2: Double,
+            formula: Formula = Formula.VINCENTY): Double {
+        return when (formula) {
+            Formula.HAVERSINE ->
+                LocationCompute.computeDistanceFast(lat1, lon1, lat2, lon2)
+            Formula.VINCENTY -> {
+                val u1 = Math.atan((1.0 - WGS84_FLAT) * Math.tan(lat1 * DEG_TO_RAD))
+                val u2 = Math.atan((1.0 - WGS84_FLAT) * Math.tan(lat2 * DEG_TO_RAD))
+                vincenty(Math.sin(u1), Math.cos(u1), Math.sin(u2), Math.cos(u2),
+                        (lon2 - lon1) * DEG_TO_RAD, null, 0)
+            }
+        }
+    }
+
+    /**
+     * Compute initial bearing between two points.
+     *
+     * @param lat1 latitude of first point
+     * @param lon1 longitude of first point
+     * @param lat2 latitude of second point
+     * @param lon2 longitude of second point
+     * @param formula formula used for compute
+     * @return initial bearing in degrees (-180, 180]
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun bearing(lat1: Double, lon1: Double, lat2: Double, lon2: Double,
+            formula: Formula = Formula.VINCENTY): Double {
+        return when (formula) {
+            Formula.HAVERSINE ->
+                LocationCompute.computeBearingFast(lat1, lon1, lat2, lon2)
+            Formula.VINCENTY -> {
+                val u1 = Math.atan((1.0 - WGS84_FLAT) * Math.tan(lat1 * DEG_TO_RAD))
+                val u2 = Math.atan((1.0 - WGS84_FLAT) * Math.tan(lat2 * DEG_TO_RAD))
+                vincenty(Math.sin(u1), Math.cos(u1), Math.sin(u2), Math.cos(u2),
+                        (lon2 - lon1) * DEG_TO_RAD, null, 0, true)
+            }
+        }
+    }
+
+    //*************************************************
+    // POLYLINE
+    //*************************************************
+
+    /**
+     * Compute length of polyline.
+     *
+     * @param lats latitudes of points
+     * @param lons longitudes of points
+     * @param count number of points to use from the arrays
+     * @param formula formula used for compute
+     * @return total length in metres
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun computeLength(lats: DoubleArray, lons: DoubleArray,
+            count: Int = lats.size, formula: Formula = Formula.VINCENTY): Double {
+        return computeSegments(lats, lons, count, formula, null, null, null)
+    }
+
+    /**
+     * Compute segments of polyline. Every output array is optional.
+     *
+     * @param lats latitudes of points
+     * @param lons longitudes of points
+     * @param count number of points to use from the arrays
+     * @param formula formula used for compute
+     * @param distances container for `count - 1` distances, `distances[i]` is distance
+     * between points `i` and `i + 1` in metres
+     * @param bearings container for `count - 1` bearings, `bearings[i]` is initial bearing
+     * from point `i` to point `i + 1` in degrees
+     * @param cumulative container for `count` distances, `cumulative[i]` is distance from
+     * first point to point `i` along polyline in metres
+     * @return total length in metres
+     */
+    @JvmStatic
+    fun computeSegments(lats: DoubleArray, lons: DoubleArray, count: Int, formula: Formula,
+            distances: DoubleArray?, bearings: DoubleArray?, cumulative: DoubleArray?): Double {
+        // check parameters
+        if (count < 0 || count > lats.size || count > lons.size) {
+            throw IllegalArgumentException("count $count out of coordinates " +
+                    "bounds (${lats.size}, ${lons.size})")
+        }
+        val segments = max(count - 1, 0)
+        if (distances != null && distances.size < segments) {
+            throw IllegalArgumentException("distances has length < $segments")
+        }
+        if (bearings != null && bearings.size < segments) {
+            throw IllegalArgumentException("bearings has length < $segments")
+        }
+        if (cumulative != null && cumulative.size < count) {
+            throw IllegalArgumentException("cumulative has length < $count")
+        }
+        if (count == 0) {
+            return 0.0
+        }
+
+        // compute
+        cumulative?.set(0, 0.0)
+        return when (formula) {
+            Formula.HAVERSINE -> LocationCompute.computeSegmentsFast(
+                    lats, lons, count, distances, bearings, cumulative)
+            Formula.VINCENTY ->
+                computeVincenty(lats, lons, count, distances, bearings, cumulative)
+        }
+    }
+
+    /**
+     * Compute segments with Vincenty formula.
+     */
+    private fun computeVincenty(lats: DoubleArray, lons: DoubleArray, count: Int,
+            distances: DoubleArray?, bearings: DoubleArray?, cumulative: DoubleArray?): Double {
+        val u = Math.atan((1.0 - WGS84_FLAT) * Math.tan(lats[0] * DEG_TO_RAD))
+        var sinU1 = Math.sin(u)
+        var cosU1 = Math.cos(u)
+        var sum = 0.0
+        for (i in 1 until count) {
+            val u2 = Math.atan((1.0 - WGS84_FLAT) * Math.tan(lats[i] * DEG_TO_RAD))
+            val sinU2 = Math.sin(u2)
+            val cosU2 = Math.cos(u2)
+            val dist = vincenty(sinU1, cosU1, sinU2, cosU2,
+                    (lons[i] - lons[i - 1]) * DEG_TO_RAD, bearings, i - 1)
+            sum += dist
+            distances?.set(i - 1, dist)
+            cumulative?.set(i, sum)
+
+            // move to next point
+            sinU1 = sinU2
+            cosU1 = cosU2
+        }
+        return sum
+    }
+
+    /**
+     * Compute distance and initial bearing with Vincenty inverse formula on WGS84 ellipsoid.
+     * Based on http://www.ngs.noaa.gov/PUBS_LIB/inverse.pdf (section 4).
+     *
+     * @param sinU1 sine of reduced latitude of first point
+     * @param cosU1 cosine of reduced latitude of first point
+     * @param sinU2 sine of reduced latitude of second point
+     * @param cosU2 cosine of reduced latitude of second point
+     * @param l difference of longitudes in radians
+     * @param bearings optional container for initial bearing in degrees
+     * @param index index in [bearings] container
+     * @param returnBearing `true` to return initial bearing instead of distance
+     * @return distance in metres or initial bearing in degrees
+     */
+    private fun vincenty(sinU1: Double, cosU1: Double, sinU2: Double, cosU2: Double,
+            l: Double, bearings: DoubleArray?, index: Int, returnBearing: Boolean = false): Double {
+        val f = WGS84_FLAT
+        val cosU1cosU2 = cosU1 * cosU2
+        val sinU1sinU2 = sinU1 * sinU2
+
+        var a = 0.0
+        var sigma = 0.0
+        var deltaSigma = 0.0
+        var cosLambda = 0.0
+        var sinLambda = 0.0
+        var lambda = l
+        for (iter in 0 until VINCENTY_MAX_ITERS) {
+            val lambdaOrig = lambda
+            cosLambda = Math.cos(lambda)
+            sinLambda = Math.sin(lambda)
+            val t1 = cosU2 * sinLambda
+            val t2 = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda
+            val sinSigma = Math.sqrt(t1 * t1 + t2 * t2)
+            val cosSigma = sinU1sinU2 + cosU1cosU2 * cosLambda
+            sigma = Math.atan2(sinSigma, cosSigma)
+            val sinAlpha = if (sinSigma == 0.0) 0.0 else cosU1cosU2 * sinLambda / sinSigma
+            val cosSqAlpha = 1.0 - sinAlpha * sinAlpha
+            val cos2SM = if (cosSqAlpha == 0.0) 0.0 else cosSigma - 2.0 * sinU1sinU2 / cosSqAlpha
+            val uSquared = cosSqAlpha * WGS84_A_SQ_MINUS_B_SQ_OVER_B_SQ
+
+            a = 1.0 + uSquared / 16384.0 *
+                    (4096.0 + uSquared * (-768.0 + uSquared * (320.0 - 175.0 * uSquared)))
+            val b = uSquared / 1024.0 *
+                    (256.0 + uSquared * (-128.0 + uSquared * (74.0 - 47.0 * uSquared)))
+            val c = f / 16.0 * cosSqAlpha * (4.0 + f * (4.0 - 3.0 * cosSqAlpha))
+            val cos2SMSq = cos2SM * cos2SM
+            deltaSigma = b * sinSigma * (cos2SM + b / 4.0 *
+                    (cosSigma * (-1.0 + 2.0 * cos2SMSq) - (b / 6.0 * cos2SM *
+                            (-3.0 + 4.0 * sinSigma * sinSigma) * (-3.0 + 4.0 * cos2SMSq))))
+            lambda = l + ((1.0 - c) * f * sinAlpha * (sigma + (c * sinSigma *
+                    (cos2SM + (c * cosSigma * (-1.0 + 2.0 * cos2SM * cos2SM))))))
+
+            // zero change also ends compute along meridian, where lambda is zero
+            val delta = lambda - lambdaOrig
+            if (delta == 0.0 || Math.abs(delta / lambda) < 1.0e-12) {
+                break
+            }
+        }
+
+        // initial bearing
+        if (bearings != null || returnBearing) {
+            val bearing = Math.toDegrees(Math.atan2(cosU2 * sinLambda,
+                    cosU1 * sinU2 - sinU1 * cosU2 * cosLambda))
+            if (returnBearing) {
+                return bearing
+            }
+            bearings?.set(index, bearing)
+        }
+        return WGS84_AXIS_B * a * (sigma - deltaSigma)
+    }
+}
@@ -204,12 +204,6 @@ class LocationCompute(private val loc: Location) {
 
         const val AVERAGE_RADIUS_OF_EARTH = 6371000.0
 
-        /**
-         * Temporary variable for fast location computes. Use in case, you
-         * need only a distance result
-         */
-        private val mDistResult = DoubleArray(1)
-
         /**
          * Compute distance on Earth approximated as sphere.
          *
@@ -217,12 +211,10 @@ class LocationCompute(private val loc: Location) {
          * @param loc2 second location
          * @return computed distance in metres
          */
-        @Synchronized
         fun computeDistanceFast(loc1: Location, loc2: Location): Double {
-            computeDistanceAndBearingFast(
+            return computeDistanceFast(
                     loc1.latitude, loc1.longitude,
-                    loc2.latitude, loc2.longitude, mDistResult)
-            return mDistResult[0]
+                    loc2.latitude, loc2.longitude)
         }
 
         /**
@@ -234,12 +226,165 @@ class LocationCompute(private val loc: Location) {
          * @param lon2 longitude of second point
          * @return computed distance in metres
          */
-        @Synchronized
         fun computeDistanceFast(lat1: Double, lon1: Double,
                 lat2: Double, lon2: Double): Double {
-            computeDistanceAndBearingFast(
-                    lat1, lon1, lat2, lon2, mDistResult)
-            return mDistResult[0]
+            val lat1Rad = lat1 * Math.PI / 180.0
+            val lat2Rad = lat2 * Math.PI / 180.0
+            return haversine(lat1Rad, lat2Rad, Math.cos(lat1Rad), Math.cos(lat2Rad),
+                    (lon2 - lon1) * Math.PI / 180.0)
+        }
+
+        /**
+         * Compute initial bearing on Earth approximated as sphere.
+         *
+         * @param lat1 latitude of first point
+         * @param lon1 longitude of first point
+         * @param lat2 latitude of second point
+         * @param lon2 longitude of second point
+         * @return initial bearing in degrees (-180, 180]
+         */
+        fun computeBearingFast(lat1: Double, lon1: Double,
+                lat2: Double, lon2: Double): Double {
+            val lat1Rad = lat1 * Math.PI / 180.0
+            val lat2Rad = lat2 * Math.PI / 180.0
+            return bearing(Math.sin(lat1Rad), Math.cos(lat1Rad),
+                    Math.sin(lat2Rad), Math.cos(lat2Rad), (lon2 - lon1) * Math.PI / 180.0)
+        }
+
+        /**
+         * Compute distances between consecutive points on Earth approximated as sphere. Distance
+         * between points `i` and `i + 1` is stored in `results[i]`.
+         *
+         * @param lats latitudes of points
+         * @param lons longitudes of points
+         * @param count number of points to use from the arrays
+         * @param results container for `count - 1` results
+         * @return total distance in metres
+         */
+        @JvmOverloads
+        fun computeDistancesFast(lats: DoubleArray, lons: DoubleArray,
+                count: Int = lats.size, results: DoubleArray? = null): Double {
+            checkBatch(lats, lons, count)
+            if (results != null && results.size < count - 1) {
+                throw IllegalArgumentException("results has length < ${count - 1}")
+            }
+            return computeSegmentsFast(lats, lons, count, results, null, null)
+        }
+
+        /**
+         * Compute segments between consecutive points on Earth approximated as sphere. Arrays
+         * are not validated, see [GeodesyBatch.computeSegments] for meaning of every optional
+         * output array.
+         *
+         * @return total distance in metres
+         */
+        internal fun computeSegmentsFast(lats: DoubleArray, lons: DoubleArray, count: Int,
+                distances: DoubleArray?, bearings: DoubleArray?, cumulative: DoubleArray?): Double {
+            // sine and cosine of latitude are shared by two following segments
+            var sum = 0.0
+            var lat1 = 0.0
+            var sinLat1 = 0.0
+            var cosLat1 = 0.0
+            for (i in 0 until count) {
+                val lat2 = lats[i] * Math.PI / 180.0
+                val sinLat2 = if (bearings != null) Math.sin(lat2) else 0.0
+                val cosLat2 = Math.cos(lat2)
+                if (i > 0) {
+                    val dLon = (lons[i] - lons[i - 1]) * Math.PI / 180.0
+                    val dist = haversine(lat1, lat2, cosLat1, cosLat2, dLon)
+                    sum += dist
+                    distances?.set(i - 1, dist)
+                    cumulative?.set(i, sum)
+                    bearings?.set(i - 1, bearing(sinLat1, cosLat1, sinLat2, cosLat2, dLon))
+                }
+                lat1 = lat2
+                sinLat1 = sinLat2
+                cosLat1 = cosLat2
+            }
+            return sum
+        }
+
+        /**
+         * Compute distances from single point to all points on Earth approximated as sphere.
+         * Distance to point `i` is stored in `results[i]`.
+         *
+         * @param lat latitude of source point
+         * @param lon longitude of source point
+         * @param lats latitudes of target points
+         * @param lons longitudes of target points
+         * @param count number of points to use from the arrays
+         * @param results container for `count` results
+         * @return index of the nearest point or -1 if no points are defined
+         */
+        @JvmOverloads
+        fun computeDistancesFast(lat: Double, lon: Double,
+                lats: DoubleArray, lons: DoubleArray,
+                count: Int = lats.size, results: DoubleArray? = null): Int {
+            checkBatch(lats, lons, count)
+            if (results != null && results.size < count) {
+                throw IllegalArgumentException("results has length < $count")
+            }
+
+            val lat1 = lat * Math.PI / 180.0
+            val cosLat1 = Math.cos(lat1)
+            var nearest = -1
+            var nearestDist = Double.MAX_VALUE
+            for (i in 0 until count) {
+                val lat2 = lats[i] * Math.PI / 180.0
+                val dist = haversine(lat1, lat2, cosLat1, Math.cos(lat2),
+                        (lons[i] - lon) * Math.PI / 180.0)
+                results?.set(i, dist)
+                if (dist < nearestDist) {
+                    nearest = i
+                    nearestDist = dist
+                }
+            }
+            return nearest
+        }
+
+        /**
+         * Validate arrays for batch computes.
+         */
+        private fun checkBatch(lats: DoubleArray, lons: DoubleArray, count: Int) {
+            if (count < 0 || count > lats.size || count > lons.size) {
+                throw IllegalArgumentException("count $count out of coordinates " +
+                        "bounds (${lats.size}, ${lons.size})")
+            }
+        }
+
+        /**
+         * Haversine distance between two points.
+         *
+         * @param lat1 latitude of first point in radians
+         * @param lat2 latitude of second point in radians
+         * @param cosLat1 cosine of [lat1]
+         * @param cosLat2 cosine of [lat2]
+         * @param dLon difference of longitudes in radians
+         * @return distance in metres
+         */
+        private fun haversine(lat1: Double, lat2: Double,
+                cosLat1: Double, cosLat2: Double, dLon: Double): Double {
+            val sinDLat2 = Math.sin((lat2 - lat1) / 2.0)
+            val sinDLon2 = Math.sin(dLon / 2.0)
+            val a = sinDLat2 * sinDLat2 + cosLat1 * cosLat2 * sinDLon2 * sinDLon2
+            return 2.0 * Math.atan2(Math.sqrt(a), Math.sqrt(1.0 - a)) * AVERAGE_RADIUS_OF_EARTH
+        }
+
+        /**
+         * Initial bearing between two points on sphere.
+         *
+         * @param sinLat1 sine of latitude of first point
+         * @param cosLat1 cosine of latitude of first point
+         * @param sinLat2 sine of latitude of second point
+         * @param cosLat2 cosine of latitude of second point
+         * @param dLon difference of longitudes in radians
+         * @return initial bearing in degrees (-180, 180]
+         */
+        private fun bearing(sinLat1: Double, cosLat1: Double,
+                sinLat2: Double, cosLat2: Double, dLon: Double): Double {
+            val y = Math.sin(dLon) * cosLat2
+            val x = cosLat1 * sinLat2 - sinLat1 * cosLat2 * Math.cos(dLon)
+            return Math.toDegrees(Math.atan2(y, x))
         }
 
         /**
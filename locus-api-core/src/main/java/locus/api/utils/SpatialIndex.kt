@@ -0,0 +1,584 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.utils
+
+import locus.api.objects.extra.Location
+import locus.api.objects.geoData.Point
+import kotlin.math.abs
+import kotlin.math.ceil
+import kotlin.math.cos
+import kotlin.math.floor
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.sqrt
+
+/**
+ * In-memory spatial index of items with location, based on regular grid of geographic
+ * coordinates. Allows to search nearest items, items in radius and items in bounding box
+ * without linear scan over all items.
+ *
+ * Location of every item is read once, when item is inserted. If location of item changes,
+ * item has to be removed and inserted again. Distances are computed on Earth approximated
+ * as sphere, see [LocationCompute.computeDistanceFast].
+ *
+ * Index is not thread-safe.
+ *
+ * @param cellSize requested size of grid cell (in degrees), adjusted to divide 360 degrees
+ * @param locationOf function that returns location of item
+ */
+class SpatialIndex<T : Any>(
+        cellSize: Double,
+        private val locationOf: (T) -> Location) {
+
+    init {
+        if (cellSize <= 0.0 || cellSize > 90.0) {
+            throw IllegalArgumentException("Invalid cell size $cellSize")
+        }
+    }
+
+    // number of cells in one row of grid
+    private val columns = ceil(360.0 / cellSize).toLong()
+
+    /**
+     * Size of grid cell (in degrees).
+     */
+    val cellSize: Double = 360.0 / columns
+
+    // number of rows of grid
+    private val rows = ceil(180.0 / cellSize).toLong()
+
+    // indexed items, `null` for removed items
+    private val items = ArrayList<T?>()
+
+    // coordinates of items
+    private var lats = DoubleArray(INITIAL_CAPACITY)
+    private var lons = DoubleArray(INITIAL_CAPACITY)
+
+    // indices of removed items, ready for reuse
+    private var free = IntArray(INITIAL_CAPACITY)
+    private var freeCount = 0
+
+    // non-empty cells of grid
+    private val cells = HashMap<Long, Cell>()
+
+    /**
+     * Number of indexed items.
+     */
+    val size: Int
+        get() = items.size - freeCount
+
+    //*************************************************
+    // MODIFICATION
+    //*************************************************
+
+    /**
+     * Insert item into index.
+     */
+    fun insert(item: T) {
+        val loc = locationOf(item)
+
+        // prepare slot for item
+        val index = if (freeCount > 0) {
+            free[--freeCount].also { items[it] = item }
+        } else {
+            items.add(item)
+            if (items.size > lats.size) {
+                lats = lats.copyOf(lats.size * 2)
+                lons = lons.copyOf(lons.size * 2)
+            }
+            items.size - 1
+        }
+        lats[index] = loc.latitude
+        lons[index] = loc.longitude
+
+        // add to cell
+        cells.getOrPut(cellKey(loc.latitude, loc.longitude)) { Cell() }.add(index)
+    }
+
+    /**
+     * Insert all items into index.
+     */
+    fun insertAll(items: Collection<T>) {
+        for (item in items) {
+            insert(item)
+        }
+    }
+
+    /**
+     * Remove item from index. Item is compared by identity.
+     *
+     * @return `true` if item was removed
+     */
+    fun remove(item: T): Boolean {
+        // search in expected cell first
+        val loc = locationOf(item)
+        val key = cellKey(loc.latitude, loc.longitude)
+        cells[key]?.let { cell ->
+            for (i in 0 until cell.size) {
+                if (items[cell.ids[i]] === item) {
+                    removeAt(key, cell, i)
+                    return true
+                }
+            }
+        }
+
+        // location of item was changed, search all items
+        for (index in items.indices) {
+            if (items[index] === item) {
+                val itemKey = cellKey(lats[index], lons[index])
+                val cell = cells.getValue(itemKey)
+                removeAt(itemKey, cell, cell.indexOf(index))
+                return true
+            }
+        }
+        return false
+    }
+
+    /**
+     * Remove all items from index.
+     */
+    fun clear() {
+        items.clear()
+        cells.clear()
+        freeCount = 0
+    }
+
+    //*************************************************
+    // QUERIES
+    //*************************************************
+
+    /**
+     * Find nearest items to certain location.
+     *
+     * @param lat latitude of location
+     * @param lon longitude of location
+     * @param limit maximal number of items
+     * @param maxRadius maximal distance of items (in m)
+     * @return items sorted by distance from the nearest
+     */
+    @JvmOverloads
+    fun findNearest(lat: Double, lon: Double, limit: Int,
+            maxRadius: Double = Double.MAX_VALUE): List<T> {
+        if (limit <= 0 || size == 0) {
+            return emptyList()
+        }
+
+        // bounded max-heap of found items, sorted by distance
+        val heap = NearestHeap(min(limit, size))
+        val cy = cellRow(lat)
+        val cx = cellColumn(lon)
+        val maxRing = max(rows, columns / 2)
+        var ring = 0L
+        var visited = 0
+        while (ring <= maxRing && visited < size) {
+            // lower bound of distance of any item in this ring
+            val minDist = ringMinDistance(lat, ring)
+            if (minDist > maxRadius || (heap.isFull() && minDist > heap.maxDistance())) {
+                break
+            }
+
+            // visit cells in ring
+            visited += visitRing(cx, cy, ring) { index ->
+                val dist = LocationCompute.computeDistanceFast(lat, lon, lats[index], lons[index])
+                if (dist <= maxRadius) {
+                    heap.offer(index, dist)
+                }
+            }
+            ring++
+        }
+        return heap.toSortedItems()
+    }
+
+    /**
+     * Find nearest items to certain location.
+     *
+     * @param loc location
+     * @param limit maximal number of items
+     * @param maxRadius maximal distance of items (in m)
+     * @return items sorted by distance from the nearest
+     */
+    @JvmOverloads
+    fun findNearest(loc: Location, limit: Int,
+            maxRadius: Double = Double.MAX_VALUE): List<T> {
+        return findNearest(loc.latitude, loc.longitude, limit, maxRadius)
+    }
+
+    /**
+     * Find all items in certain distance from location.
+     *
+     * @param lat latitude of location
+     * @param lon longitude of location
+     * @param radius maximal distance of items (in m)
+     * @return items in not defined order
+     */
+    fun findInRadius(lat: Double, lon: Double, radius: Double): List<T> {
+        val result = ArrayList<T>()
+        if (size == 0 || radius < 0.0) {
+            return result
+        }
+
+        // bounding box of the circle
+        val dLat = radius / METERS_PER_DEGREE
+        val latMin = max(lat - dLat, -90.0)
+        val latMax = min(lat + dLat, 90.0)
+        val cosLat = cos(Math.toRadians(max(abs(latMin), abs(latMax))))
+        val dLon = if (cosLat > 0.0) radius / (METERS_PER_DEGREE * cosLat) else 360.0
+        val lonMin = if (dLon >= 180.0) -180.0 else lon - dLon
+        val lonMax = if (dLon >= 180.0) 180.0 else lon + dLon
+
+        // check items in the box
+        visitBox(latMin, lonMin, latMax, lonMax) { index ->
+            if (LocationCompute.computeDistanceFast(lat, lon, lats[index], lons[index]) <= radius) {
+                result.add(items[index]!!)
+            }
+        }
+        return result
+    }
+
+    /**
+     * Find all items in bounding box. Box that crosses anti-meridian has [lonMin] greater
+     * than [lonMax].
+     *
+     * @return items in not defined order
+     */
+    fun findInBounds(latMin: Double, lonMin: Double, latMax: Double, lonMax: Double): List<T> {
+        val result = ArrayList<T>()
+        if (size == 0 || latMin > latMax) {
+            return result
+        }
+        val crossing = lonMin > lonMax
+        visitBox(latMin, lonMin, latMax, if (crossing) lonMax + 360.0 else lonMax) { index ->
+            val lat = lats[index]
+            val lon = lons[index]
+            val inLon = if (crossing) {
+                lon >= lonMin || lon <= lonMax
+            } else {
+                lon in lonMin..lonMax
+            }
+            if (lat in latMin..latMax && inLon) {
+                result.add(items[index]!!)
+            }
+        }
+        return result
+    }
+
+    //*************************************************
+    // PRIVATE TOOLS
+    //*************************************************
+
+    private fun cellRow(lat: Double): Long {
+        return floor((lat + 90.0) / cellSize).toLong().coerceIn(0L, rows - 1)
+    }
+
+    private fun cellColumn(lon: Double): Long {
+        val column = floor((lon + 180.0) / cellSize).toLong() % columns
+        return if (column < 0) column + columns else column
+    }
+
+    private fun cellKey(lat: Double, lon: Double): Long {
+        return cellRow(lat) * columns + cellColumn(lon)
+    }
+
+    /**
+     * Remove item on position [position] in [cell].
+     */
+    private fun removeAt(key: Long, cell: Cell, position: Int) {
+        val index = cell.ids[position]
+        cell.removeAt(position)
+        if (cell.size == 0) {
+            cells.remove(key)
+        }
+        items[index] = null
+        if (freeCount == free.size) {
+            free = free.copyOf(free.size * 2)
+        }
+        free[freeCount++] = index
+    }
+
+    /**
+     * Lower bound of distance between location on [lat] and items in cells of certain ring
+     * around cell of the location.
+     */
+    private fun ringMinDistance(lat: Double, ring: Long): Double {
+        if (ring <= 1L) {
+            return 0.0
+        }
+
+        // full cells between location and ring, width of cell limited by the highest latitude
+        val latEdge = min(abs(lat) + (ring + 1) * cellSize, 90.0)
+        val cellHeight = cellSize * METERS_PER_DEGREE
+        val cellWidth = cellHeight * cos(Math.toRadians(latEdge))
+        return (ring - 1) * min(cellHeight, cellWidth)
+    }
+
+    /**
+     * Visit all items in cells of ring around cell [cx], [cy]. Every cell is visited only
+     * in single ring, also when ring wraps around the globe.
+     *
+     * @return number of visited items
+     */
+    private inline fun visitRing(cx: Long, cy: Long, ring: Long, action: (Int) -> Unit): Int {
+        var visited = 0
+        for (y in max(cy - ring, 0L)..min(cy + ring, rows - 1)) {
+            if (y == cy - ring || y == cy + ring) {
+                // edge rows, all columns of the ring
+                if (2 * ring + 1 >= columns) {
+                    for (x in 0 until columns) {
+                        visited += visitCell(y, x, action)
+                    }
+                } else {
+                    for (dx in -ring..ring) {
+                        visited += visitCell(y, cx + dx, action)
+                    }
+                }
+            } else if (2 * ring < columns) {
+                // inner rows, only columns on edges of the ring
+                visited += visitCell(y, cx - ring, action)
+                visited += visitCell(y, cx + ring, action)
+            } else if (2 * ring == columns) {
+                // both edges are in same column
+                visited += visitCell(y, cx + ring, action)
+            }
+        }
+        return visited
+    }
+
+    /**
+     * Visit all items in single cell. Column is wrapped around the globe.
+     *
+     * @return number of visited items
+     */
+    private inline fun visitCell(y: Long, x: Long, action: (Int) -> Unit): Int {
+        var column = x % columns
+        if (column < 0) {
+            column += columns
+        }
+        val cell = cells[y * columns + column] ?: return 0
+        for (j in 0 until cell.size) {
+            action(cell.ids[j])
+        }
+        return cell.size
+    }
+
+    /**
+     * Visit all items in cells that intersects bounding box. Longitude may exceed 180
+     * degrees for box crossing anti-meridian.
+     */
+    private inline fun visitBox(latMin: Double, lonMin: Double, latMax: Double, lonMax: Double,
+            action: (Int) -> Unit) {
+        val yMin = cellRow(latMin)
+        val yMax = cellRow(latMax)
+        val xMin = floor((lonMin + 180.0) / cellSize).toLong()
+        val xMax = min(floor((lonMax + 180.0) / cellSize).toLong(), xMin + columns - 1)
+
+        // iterate over smaller of cells in box and non-empty cells
+        if ((yMax - yMin + 1) * (xMax - xMin + 1) <= cells.size) {
+            for (y in yMin..yMax) {
+                for (x in xMin..xMax) {
+                    visitCell(y, x, action)
+                }
+            }
+        } else {
+            for (cell in cells.values) {
+                for (j in 0 until cell.size) {
+                    action(cell.ids[j])
+                }
+            }
+        }
+    }
+
+    /**
+     * Single cell of the grid, list of indices of items.
+     */
+    private class Cell {
+
+        var ids = IntArray(4)
+        var size = 0
+
+        fun add(index: Int) {
+            if (size == ids.size) {
+                ids = ids.copyOf(size * 2)
+            }
+            ids[size++] = index
+        }
+
+        fun indexOf(index: Int): Int {
+            for (i in 0 until size) {
+                if (ids[i] == index) {
+                    return i
+                }
+            }
+            return -1
+        }
+
+        fun removeAt(position: Int) {
+            ids[position] = ids[--size]
+        }
+    }
+
+    /**
+     * Bounded max-heap of nearest items.
+     */
+    private inner class NearestHeap(private val capacity: Int) {
+
+        private val indices = IntArray(capacity)
+        private val distances = DoubleArray(capacity)
+        private var size = 0
+
+        fun isFull(): Boolean {
+            return size == capacity
+        }
+
+        fun maxDistance(): Double {
+            return distances[0]
+        }
+
+        fun offer(index: Int, distance: Double) {
+            if (size < capacity) {
+                // add to the end and sift up
+                var pos = size++
+                while (pos > 0) {
+                    val parent = (pos - 1) ushr 1
+                    if (distances[parent] >= distance) {
+                        break
+                    }
+                    indices[pos] = indices[parent]
+                    distances[pos] = distances[parent]
+                    pos = parent
+                }
+                indices[pos] = index
+                distances[pos] = distance
+            } else if (distance < distances[0]) {
+                // replace farthest item and sift down
+                var pos = 0
+                while (true) {
+                    var child = 2 * pos + 1
+                    if (child >= size) {
+                        break
+                    }
+                    if (child + 1 < size && distances[child + 1] > distances[child]) {
+                        child++
+                    }
+                    if (distance >= distances[child]) {
+                        break
+                    }
+                    indices[pos] = indices[child]
+                    distances[pos] = distances[child]
+                    pos = child
+                }
+                indices[pos] = index
+                distances[pos] = distance
+            }
+        }
+
+        fun toSortedItems(): List<T> {
+            val order = (0 until size).sortedBy { distances[it] }
+            return order.map { items[indices[it]]!! }
+        }
+    }
+
+    companion object {
+
+        // initial capacity of containers
+        private const val INITIAL_CAPACITY = 16
+
+        // length of one degree of latitude, rounded down (in m)
+        private const val METERS_PER_DEGREE = 111194.0
+
+        // expected number of items in single cell, used to compute size of cell
+        private const val ITEMS_PER_CELL = 8
+
+        // limits of size of cell (in degrees)
+        private const val MIN_CELL_SIZE = 0.0001
+        private const val MAX_CELL_SIZE = 10.0
+        private const val DEFAULT_CELL_SIZE = 0.01
+
+        // number of items used to compute size of cell
+        private const val SAMPLE_SIZE = 1024
+
+        /**
+         * Create index over items, with size of cell computed from bounds of the items.
+         *
+         * @param items items to index
+         * @param locationOf function that returns location of item
+         */
+        @JvmStatic
+        fun <T : Any> create(items: Collection<T>, locationOf: (T) -> Location): SpatialIndex<T> {
+            return SpatialIndex(computeCellSize(items, locationOf), locationOf).apply {
+                insertAll(items)
+            }
+        }
+
+        /**
+         * Compute size of cell with expected number of items per cell. Bounds of items are
+         * computed from percentiles of sample of items, so few distant items do not
+         * affect the size.
+         */
+        private fun <T : Any> computeCellSize(items: Collection<T>,
+                locationOf: (T) -> Location): Double {
+            if (items.size <= ITEMS_PER_CELL) {
+                return DEFAULT_CELL_SIZE
+            }
+
+            // sample of coordinates
+            val step = max(items.size / SAMPLE_SIZE, 1)
+            val lats = DoubleArray((items.size + step - 1) / step)
+            val lons = DoubleArray(lats.size)
+            var count = 0
+            for ((i, item) in items.withIndex()) {
+                if (i % step == 0 && count < lats.size) {
+                    val loc = locationOf(item)
+                    lats[count] = loc.latitude
+                    lons[count] = loc.longitude
+                    count++
+                }
+            }
+            lats.sort(0, count)
+            lons.sort(0, count)
+
+            // area covered by most of items
+            val low = count * 5 / 100
+            val high = count - 1 - low
+            val area = (lats[high] - lats[low]) * (lons[high] - lons[low])
+            if (area <= 0.0) {
+                return DEFAULT_CELL_SIZE
+            }
+            return sqrt(area * ITEMS_PER_CELL / (items.size * 0.9))
+                    .coerceIn(MIN_CELL_SIZE, MAX_CELL_SIZE)
+        }
+
+        /**
+         * Create index over points.
+         */
+        @JvmStatic
+        fun forPoints(points: Collection<Point>): SpatialIndex<Point> {
+            return create(points) { it.location }
+        }
+
+        /**
+         * Create index over locations.
+         */
+        @JvmStatic
+        fun forLocations(locations: Collection<Location>): SpatialIndex<Location> {
+            return create(locations) { it }
+        }
+    }
+}
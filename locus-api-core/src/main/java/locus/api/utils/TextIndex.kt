@@ -0,0 +1,425 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.utils
+
+import locus.api.objects.extra.GeoDataExtra
+import locus.api.objects.geoData.Point
+import java.text.Normalizer
+import java.util.*
+
+/**
+ * In-memory inverted index of texts attached to items. Allows repeated full-text searches over
+ * many items without linear scan over all texts.
+ *
+ * Texts are split into tokens (sequences of letters and digits), converted to lower case and
+ * accents are removed. HTML tags and entities are skipped. Texts of every item are read once,
+ * when item is inserted. If texts of item changes, item has to be updated.
+ *
+ * Index is not thread-safe.
+ *
+ * @param textsOf function that hands all texts of item to the consumer
+ */
+class TextIndex<T : Any>(
+        private val textsOf: (item: T, consumer: (String) -> Unit) -> Unit) {
+
+    // indexed items, `null` for removed items
+    private val items = ArrayList<T?>()
+
+    // indices of items in the index
+    private val indices = IdentityHashMap<T, Int>()
+
+    // postings of tokens of items, `null` for removed items
+    private val itemPostings = ArrayList<Array<Postings>?>()
+
+    // indices of removed items, ready for reuse
+    private var free = IntArray(INITIAL_CAPACITY)
+    private var freeCount = 0
+
+    // all tokens with list of items
+    private val tokens = HashMap<String, Postings>()
+
+    // all tokens sorted for prefix queries
+    private val tokensSorted = TreeMap<String, Postings>()
+
+    // helper set of tokens of single item
+    private val itemTokens = HashSet<String>()
+
+    // marks of items matched by the query, see [find]
+    private var marks = IntArray(INITIAL_CAPACITY)
+    private var markBase = 0
+
+    /**
+     * Number of indexed items.
+     */
+    val size: Int
+        get() = indices.size
+
+    /**
+     * Number of unique indexed tokens.
+     */
+    val tokensCount: Int
+        get() = tokens.size
+
+    //*************************************************
+    // MODIFICATION
+    //*************************************************
+
+    /**
+     * Insert item into index. Item already existing in index is updated.
+     */
+    fun insert(item: T) {
+        if (indices.containsKey(item)) {
+            remove(item)
+        }
+
+        // prepare slot for item
+        val index = if (freeCount > 0) {
+            free[--freeCount].also {
+                items[it] = item
+            }
+        } else {
+            items.add(item)
+            itemPostings.add(null)
+            if (items.size > marks.size) {
+                marks = marks.copyOf(marks.size * 2)
+            }
+            items.size - 1
+        }
+        indices[item] = index
+
+        // collect unique tokens of item
+        itemTokens.clear()
+        textsOf(item) { text ->
+            tokenize(text) { itemTokens.add(it) }
+        }
+
+        // add item to postings of all tokens
+        val postings = arrayOfNulls<Postings>(itemTokens.size)
+        for ((i, token) in itemTokens.withIndex()) {
+            postings[i] = tokens.getOrPut(token) {
+                Postings(token).also { tokensSorted[token] = it }
+            }.apply {
+                add(index)
+            }
+        }
+        itemTokens.clear()
+        @Suppress("UNCHECKED_CAST")
+        itemPostings[index] = postings as Array<Postings>
+    }
+
+    /**
+     * Insert all items into index.
+     */
+    fun insertAll(items: Collection<T>) {
+        for (item in items) {
+            insert(item)
+        }
+    }
+
+    /**
+     * Update texts of item already existing in index.
+     */
+    fun update(item: T) {
+        insert(item)
+    }
+
+    /**
+     * Remove item from index. Item is compared by identity.
+     *
+     * @return `true` if item was removed
+     */
+    fun remove(item: T): Boolean {
+        val index = indices.remove(item)
+                ?: return false
+
+        // remove from postings of all tokens
+        for (postings in itemPostings[index]!!) {
+            postings.remove(index)
+            if (postings.size == 0) {
+                tokens.remove(postings.token)
+                tokensSorted.remove(postings.token)
+            }
+        }
+        items[index] = null
+        itemPostings[index] = null
+
+        // mark slot as free
+        if (freeCount == free.size) {
+            free = free.copyOf(freeCount * 2)
+        }
+        free[freeCount++] = index
+        return true
+    }
+
+    /**
+     * Remove all items from index.
+     */
+    fun clear() {
+        items.clear()
+        indices.clear()
+        itemPostings.clear()
+        tokens.clear()
+        tokensSorted.clear()
+        freeCount = 0
+    }
+
+    //*************************************************
+    // SEARCH
+    //*************************************************
+
+    /**
+     * Find items that contain all words of the query. Items are returned in order of insertion,
+     * newly inserted items may take position of removed items.
+     *
+     * @param query searched text
+     * @param limit maximal number of returned items
+     * @param prefix `true` to match words of the query also as prefix of indexed words
+     */
+    @JvmOverloads
+    fun find(query: String, limit: Int = Int.MAX_VALUE, prefix: Boolean = true): List<T> {
+        // tokens of the query
+        val queryTokens = LinkedHashSet<String>()
+        tokenize(query) { queryTokens.add(it) }
+        if (queryTokens.isEmpty() || limit <= 0) {
+            return emptyList()
+        }
+
+        // prepare base of marks, so all existing marks are below it
+        if (markBase > Int.MAX_VALUE - queryTokens.size - 1) {
+            marks.fill(0)
+            markBase = 0
+        }
+        val base = markBase + 1
+        markBase += queryTokens.size + 1
+
+        // items matched by all tokens are marked by (base + number of tokens)
+        var found = IntArray(INITIAL_CAPACITY)
+        var foundCount = 0
+        for ((i, token) in queryTokens.withIndex()) {
+            val last = i == queryTokens.size - 1
+            visitPostings(token, prefix) { postings ->
+                for (j in 0 until postings.size) {
+                    val index = postings.ids[j]
+                    val mark = marks[index]
+                    if ((i == 0 && mark < base) || mark == base + i) {
+                        marks[index] = base + i + 1
+                        if (last) {
+                            if (foundCount == found.size) {
+                                found = found.copyOf(foundCount * 2)
+                            }
+                            found[foundCount++] = index
+                        }
+                    }
+                }
+            }
+        }
+
+        // convert to items
+        found.sort(0, foundCount)
+        val count = minOf(foundCount, limit)
+        return List(count) { items[found[it]]!! }
+    }
+
+    /**
+     * Test if any item contains all words of the query.
+     *
+     * @param query searched text
+     * @param prefix `true` to match words of the query also as prefix of indexed words
+     */
+    @JvmOverloads
+    fun contains(query: String, prefix: Boolean = true): Boolean {
+        return find(query, 1, prefix).isNotEmpty()
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Visit postings of all tokens that match [token].
+     */
+    private inline fun visitPostings(token: String, prefix: Boolean, action: (Postings) -> Unit) {
+        if (prefix) {
+            for (postings in tokensSorted.subMap(token, true, token + Char.MAX_VALUE, false).values) {
+                action(postings)
+            }
+        } else {
+            tokens[token]?.let(action)
+        }
+    }
+
+    /**
+     * List of indices of items that contain certain token.
+     */
+    private class Postings(val token: String) {
+
+        var ids = IntArray(2)
+        var size = 0
+
+        fun add(index: Int) {
+            if (size == ids.size) {
+                ids = ids.copyOf(size * 2)
+            }
+            ids[size++] = index
+        }
+
+        fun remove(index: Int) {
+            for (i in 0 until size) {
+                if (ids[i] == index) {
+                    ids[i] = ids[--size]
+                    return
+                }
+            }
+        }
+    }
+
+    companion object {
+
+        // initial capacity of containers
+        private const val INITIAL_CAPACITY = 16
+
+        // maximal length of HTML entity, like "&nbsp;"
+        private const val MAX_ENTITY_LENGTH = 10
+
+        // parameters of GeoData with searchable texts
+        private val POINT_PARAMETERS = intArrayOf(
+                GeoDataExtra.PAR_DESCRIPTION,
+                GeoDataExtra.PAR_COMMENT,
+                GeoDataExtra.PAR_TYPE,
+                GeoDataExtra.PAR_GEOCACHE_CODE,
+                GeoDataExtra.PAR_ADDRESS_STREET,
+                GeoDataExtra.PAR_ADDRESS_CITY,
+                GeoDataExtra.PAR_ADDRESS_REGION,
+                GeoDataExtra.PAR_ADDRESS_POST_CODE,
+                GeoDataExtra.PAR_ADDRESS_COUNTRY,
+                GeoDataExtra.PAR_RTE_STREET)
+
+        // lower case characters without accents, for characters below 0x250
+        private val FOLDED = CharArray(0x250) { i ->
+            val c = i.toChar()
+            if (i < 0xC0) {
+                c.lowercaseChar()
+            } else {
+                Normalizer.normalize(c.toString(), Normalizer.Form.NFD)[0].lowercaseChar()
+            }
+        }
+
+        /**
+         * Split text into normalized tokens and hand them to the [consumer].
+         *
+         * @param text text to split
+         */
+        @JvmStatic
+        fun tokenize(text: String, consumer: (String) -> Unit) {
+            val sb = StringBuilder()
+            var i = 0
+            val length = text.length
+            while (i < length) {
+                val c = text[i]
+
+                // token characters
+                if (Character.isLetterOrDigit(c)) {
+                    sb.append(if (c.code < FOLDED.size) FOLDED[c.code] else c.lowercaseChar())
+                    i++
+                    continue
+                }
+
+                // end of token
+                if (sb.isNotEmpty()) {
+                    consumer(sb.toString())
+                    sb.setLength(0)
+                }
+
+                // skip HTML tags and entities
+                i = when (c) {
+                    '<' -> skipTag(text, i)
+                    '&' -> skipEntity(text, i)
+                    else -> i + 1
+                }
+            }
+            if (sb.isNotEmpty()) {
+                consumer(sb.toString())
+            }
+        }
+
+        /**
+         * Get position after HTML tag that starts on [start], or next position if it is not a tag.
+         */
+        private fun skipTag(text: String, start: Int): Int {
+            if (start + 1 < text.length) {
+                val next = text[start + 1]
+                if (Character.isLetter(next) || next == '/' || next == '!' || next == '?') {
+                    val end = text.indexOf('>', start + 2)
+                    if (end > 0) {
+                        return end + 1
+                    }
+                }
+            }
+            return start + 1
+        }
+
+        /**
+         * Get position after HTML entity that starts on [start], or next position if it is
+         * not an entity.
+         */
+        private fun skipEntity(text: String, start: Int): Int {
+            val limit = minOf(text.length, start + MAX_ENTITY_LENGTH)
+            for (i in start + 1 until limit) {
+                val c = text[i]
+                if (c == ';') {
+                    return if (i > start + 1) i + 1 else start + 1
+                }
+                if (!Character.isLetterOrDigit(c) && c != '#') {
+                    break
+                }
+            }
+            return start + 1
+        }
+
+        /**
+         * Create index over points. Indexed are name of point, its text parameters and texts
+         * of attached geocaching data.
+         */
+        @JvmStatic
+        fun forPoints(points: Collection<Point>): TextIndex<Point> {
+            return TextIndex<Point> { point, consumer ->
+                consumer(point.name)
+                point.extraData?.let { extra ->
+                    for (key in POINT_PARAMETERS) {
+                        extra.getParameter(key)?.let(consumer)
+                    }
+                }
+                point.gcData?.let { gc ->
+                    consumer(gc.cacheID)
+                    consumer(gc.name)
+                    consumer(gc.owner)
+                    consumer(gc.placedBy)
+                    consumer(gc.country)
+                    consumer(gc.state)
+                    consumer(gc.notes)
+                    gc.descriptions.forEach(consumer)
+                }
+            }.apply {
+                insertAll(points)
+            }
+        }
+    }
+}
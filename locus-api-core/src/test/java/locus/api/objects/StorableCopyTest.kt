@@ -0,0 +1,416 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.objects
+
+import locus.api.objects.extra.GeoDataExtra
+import locus.api.objects.extra.KmlVec2
+import locus.api.objects.extra.Location
+import locus.api.objects.extra.TrackStats
+import locus.api.objects.geoData.GeoData
+import locus.api.objects.geoData.Point
+import locus.api.objects.geoData.Track
+import locus.api.objects.geocaching.GeocachingAttribute
+import locus.api.objects.geocaching.GeocachingData
+import locus.api.objects.geocaching.GeocachingImage
+import locus.api.objects.geocaching.GeocachingLog
+import locus.api.objects.geocaching.GeocachingTrackable
+import locus.api.objects.geocaching.GeocachingWaypoint
+import locus.api.objects.styles.BalloonStyle
+import locus.api.objects.styles.GeoDataStyle
+import locus.api.objects.styles.IconStyle
+import locus.api.objects.styles.LabelStyle
+import locus.api.objects.styles.LineStyle
+import locus.api.objects.styles.ListStyle
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNotSame
+import org.junit.Test
+
+class StorableCopyTest {
+
+    @Test
+    fun copyLocation() {
+        assertCopy(createLocation(1))
+        assertCopy(Location(50.0, 14.0))
+    }
+
+    @Test
+    fun copyStyles() {
+        assertCopy(createBalloonStyle())
+        assertCopy(createIconStyle())
+        assertCopy(createLabelStyle())
+        assertCopy(createLineStyle())
+        assertCopy(createListStyle())
+        assertCopy(createStyle("normal"))
+        assertCopy(GeoDataStyle())
+    }
+
+    @Test
+    fun copyListStyle() {
+        // list style is read back with all values
+        val style = createListStyle()
+        val read = ListStyle().apply { read(style.asBytes!!) }
+        assertEquals(style.listItemType, read.listItemType)
+        assertEquals(style.bgColor, read.bgColor)
+        assertEquals(style.itemIcons.map { it.state to it.href },
+                read.itemIcons.map { it.state to it.href })
+
+        // copy is not sharing icons
+        val copy = style.copy as ListStyle
+        assertArrayEquals(read.asBytes, copy.asBytes)
+        assertNotSame(style.itemIcons[0], copy.itemIcons[0])
+    }
+
+    @Test
+    fun copyExtraData() {
+        assertCopy(createExtra())
+        assertCopy(GeoDataExtra())
+    }
+
+    @Test
+    fun copyTrackStats() {
+        assertCopy(createStats())
+        assertCopy(TrackStats())
+    }
+
+    @Test
+    fun copyGeocaching() {
+        val gc = createGeocaching()
+        assertCopy(gc)
+        assertCopy(gc.logs[0])
+        assertCopy(gc.attributes[0])
+        assertCopy(gc.images[0])
+        assertCopy(gc.trackables[0])
+        assertCopy(gc.waypoints[0])
+        assertCopy(GeocachingData())
+    }
+
+    @Test
+    fun copyPoint() {
+        val point = createPoint(1)
+        assertCopy(point)
+        assertCopy(Point())
+
+        // lazily read point keeps data in serialized form
+        val lazy = Point().apply {
+            isLazyRead = true
+            read(point.asBytes!!)
+        }
+        assertCopy(lazy)
+        assertArrayEquals(point.asBytes, lazy.copy.asBytes)
+    }
+
+    @Test
+    fun copyTrack() {
+        for (compact in listOf(false, true)) {
+            val track = createTrack(compact)
+            assertCopy(track)
+
+            // lazily read track keeps points and waypoints in serialized form
+            val lazy = Track().apply {
+                isLazyRead = true
+                read(track.asBytes!!)
+            }
+            assertCopy(lazy)
+            assertArrayEquals(track.asBytes, lazy.copy.asBytes)
+        }
+        assertCopy(Track())
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Check that copy is a new object with same serialized form.
+     */
+    private fun assertCopy(item: Storable) {
+        val data = item.asBytes
+        assertNotNull(data)
+        val copy = item.copy
+        assertNotSame(item, copy)
+        assertEquals(item.javaClass, copy.javaClass)
+        assertArrayEquals(item.javaClass.simpleName, data, copy.asBytes)
+
+        // copy of copy is also same
+        assertArrayEquals(item.javaClass.simpleName, data, copy.copy.asBytes)
+
+        // source was not modified
+        assertArrayEquals(item.javaClass.simpleName, data, item.asBytes)
+    }
+
+    private fun createLocation(seed: Int): Location {
+        return Location(50.0 + seed * 0.001, 14.0 - seed * 0.001).apply {
+            id = 100L + seed
+            provider = "gps $seed"
+            time = 1_600_000_000_000L + seed * 1000L
+            altitude = 250.5 + seed
+            speed = 3.5f
+            bearing = 120.0f
+            accuracyHor = 5.0f
+            accuracyVer = 8.0f
+            sensorCadence = 85
+            sensorHeartRate = 140
+            sensorSpeed = 3.4f
+            sensorPower = 210.0f
+            sensorStrides = 1000 + seed
+            sensorTemperature = 18.5f
+            gnssQuality = 2
+            gnssHdop = 0.8f
+            gnssVdop = 1.1f
+            gnssPdop = 1.4f
+            gnssSatsUsed = 9
+            gnssSatsVisible = 14
+        }
+    }
+
+    private fun createBalloonStyle(): BalloonStyle {
+        return BalloonStyle().apply {
+            bgColor = 0x11223344
+            textColor = 0x55667788
+            text = "<b>balloon</b>"
+            displayMode = BalloonStyle.DisplayMode.values().last()
+        }
+    }
+
+    private fun createIconStyle(): IconStyle {
+        return IconStyle().apply {
+            color = 0x7F00FF00
+            scale = 1.5f
+            heading = 45.0f
+            iconHref = "file:///icons/pin.png"
+            hotSpot = KmlVec2().apply {
+                x = 12.0
+                xUnits = KmlVec2.Units.values().last()
+                y = 4.0
+                yUnits = KmlVec2.Units.values().last()
+            }
+        }
+    }
+
+    private fun createLabelStyle(): LabelStyle {
+        return LabelStyle().apply {
+            color = 0x12345678
+            scale = 0.7f
+        }
+    }
+
+    private fun createLineStyle(): LineStyle {
+        return LineStyle().apply {
+            drawBase = false
+            colorBase = 0x01020304
+            drawSymbol = true
+            colorSymbol = 0x05060708
+            symbol = LineStyle.Symbol.values().last()
+            coloring = LineStyle.Coloring.values().last()
+            width = 4.5f
+            units = LineStyle.Units.values().last()
+            drawOutline = true
+            colorOutline = 0x090A0B0C
+            drawFill = true
+            colorFill = 0x0D0E0F10
+            setColoringParam(LineStyle.KEY_CP_ALTITUDE_MANUAL_MIN, "100")
+            setColoringParam(LineStyle.KEY_CP_ALTITUDE_MANUAL_MAX, "900")
+        }
+    }
+
+    private fun createListStyle(): ListStyle {
+        return ListStyle().apply {
+            listItemType = ListStyle.ListItemType.RADIO_FOLDER
+            bgColor = 0x0A0B0C0D
+            itemIcons.add(ListStyle.ItemIcon().apply {
+                state = ListStyle.ItemIcon.State.CLOSED
+                href = "closed.png"
+            })
+            itemIcons.add(ListStyle.ItemIcon().apply {
+                state = ListStyle.ItemIcon.State.FETCHING2
+                href = "fetching.png"
+            })
+        }
+    }
+
+    private fun createStyle(name: String): GeoDataStyle {
+        return GeoDataStyle().apply {
+            id = "style_$name"
+            this.name = name
+            balloonStyle = createBalloonStyle()
+            iconStyle = createIconStyle()
+            labelStyle = createLabelStyle()
+            listStyle = createListStyle()
+            lineStyle = createLineStyle()
+        }
+    }
+
+    private fun createExtra(): GeoDataExtra {
+        return GeoDataExtra().apply {
+            addParameter(GeoDataExtra.PAR_DESCRIPTION, "<p>description</p>")
+            addParameter(GeoDataExtra.PAR_COMMENT, "comment")
+            addParameter(GeoDataExtra.PAR_SOURCE, 3.toByte())
+            addParameter(GeoDataExtra.PAR_LOPOINTS_GEOMETRY, byteArrayOf(1, 2, 3, 4))
+            addParameter(GeoDataExtra.PAR_RTE_INDEX, "12")
+            addAttachment(GeoDataExtra.AttachType.EMAIL, "work", "name@example.com")
+            addAttachment(GeoDataExtra.AttachType.URL, null, "https://example.com")
+        }
+    }
+
+    private fun createStats(): TrackStats {
+        return TrackStats().apply {
+            numOfPoints = 120
+            startTime = 1_600_000_000_000L
+            stopTime = 1_600_000_600_000L
+            totalLength = 3500.5f
+            totalLengthMove = 3000.25f
+            totalTime = 600_000L
+            totalTimeMove = 500_000L
+            speedMax = 7.5f
+            altitudeMax = 420.0f
+            altitudeMin = 210.0f
+            eleNeutralDistance = 100.0f
+            eleNeutralHeight = 2.0f
+            elePositiveDistance = 1700.0f
+            elePositiveHeight = 180.0f
+            eleNegativeDistance = 1700.5f
+            eleNegativeHeight = 150.0f
+            addHeartRateMeasure(160, 140, 60_000L)
+            addCadenceMeasure(95, 85, 60_000L)
+            addEnergy(350)
+            numOfStrides = 4000
+        }
+    }
+
+    private fun createGeocaching(): GeocachingData {
+        return GeocachingData().apply {
+            id = 123456L
+            cacheID = "GC12345"
+            isAvailable = false
+            isArchived = true
+            isPremiumOnly = true
+            name = "Cache name"
+            placedBy = "placer"
+            owner = "owner"
+            dateHidden = 1_500_000_000_000L
+            datePublished = 1_500_000_100_000L
+            dateUpdated = 1_500_000_200_000L
+            type = GeocachingData.CACHE_TYPE_MULTI
+            container = GeocachingData.CACHE_SIZE_SMALL
+            difficulty = 2.5f
+            terrain = 3.5f
+            country = "Czechia"
+            state = "Prague"
+            setDescriptions("short", false, "<p>long</p>", true)
+            encodedHints = "hint"
+            attributes.add(GeocachingAttribute(14, true))
+            attributes.add(GeocachingAttribute(27, false))
+            logs.add(GeocachingLog().apply {
+                id = 77L
+                type = GeocachingLog.CACHE_LOG_TYPE_FOUND
+                date = 1_550_000_000_000L
+                finder = "finder"
+                findersId = 88L
+                findersFound = 500
+                logText = "TFTC"
+                cooLon = 14.5
+                cooLat = 50.5
+                addImage(createImage("log"))
+            })
+            trackables.add(GeocachingTrackable().apply {
+                id = 99L
+                name = "trackable"
+                imgUrl = "https://example.com/tb.png"
+                srcDetails = "https://example.com/tb"
+                originalOwner = "original"
+                currentOwner = "current"
+                released = 1_400_000_000_000L
+                origin = "origin"
+                goal = "goal"
+                details = "details"
+            })
+            waypoints.add(GeocachingWaypoint().apply {
+                code = "WP1"
+                name = "parking"
+                desc = "description"
+                isDescModified = true
+                type = GeocachingWaypoint.CACHE_WAYPOINT_TYPE_PARKING
+                typeImagePath = "parking.png"
+                lon = 14.25
+                lat = 50.25
+            })
+            notes = "notes"
+            isComputed = true
+            isFound = true
+            cacheUrl = "https://coord.info/GC12345"
+            favoritePoints = 42
+            gcVoteNumOfVotes = 10
+            gcVoteAverage = 4.5f
+            gcVoteUserVote = 5.0f
+            lonOriginal = 14.2
+            latOriginal = 50.2
+            images.add(createImage("cache"))
+            source = GeocachingData.CACHE_SOURCE_GEOCACHING_COM
+        }
+    }
+
+    private fun createImage(name: String): GeocachingImage {
+        return GeocachingImage().apply {
+            this.name = name
+            description = "image $name"
+            thumbUrl = "https://example.com/$name-thumb.jpg"
+            url = "https://example.com/$name.jpg"
+        }
+    }
+
+    private fun fillGeoData(item: GeoData, seed: Int) {
+        item.id = 1000L + seed
+        item.name = "item $seed"
+        item.timeCreated = 1_600_000_000_000L + seed
+        item.timeUpdated = 1_600_000_100_000L + seed
+        item.privacy = GeoData.Privacy.SHARED_URL
+        item.protected = true
+        item.extraData = createExtra()
+        item.styleNormal = createStyle("normal")
+        item.styleHighlight = createStyle("highlight")
+    }
+
+    private fun createPoint(seed: Int): Point {
+        return Point("point $seed", createLocation(seed)).apply {
+            fillGeoData(this, seed)
+            gcData = createGeocaching()
+        }
+    }
+
+    private fun createTrack(compact: Boolean): Track {
+        return Track().apply {
+            fillGeoData(this, 0)
+            points = MutableList(20) { createLocation(it) }
+            breaks = mutableListOf(4, 11)
+            waypoints = mutableListOf(createPoint(2), createPoint(3).apply {
+                addParameter(GeoDataExtra.PAR_RTE_INDEX, 7)
+            })
+            isUseFolderStyle = false
+            activityType = 5
+            stats = createStats()
+            storeItemId = 11L
+            storeVersionId = 12L
+            isCompactPoints = compact
+        }
+    }
+}
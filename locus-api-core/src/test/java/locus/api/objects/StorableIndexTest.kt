@@ -0,0 +1,206 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.objects
+
+import locus.api.objects.extra.Location
+import locus.api.objects.geoData.Point
+import locus.api.objects.geoData.Track
+import locus.api.utils.DataReaderBigEndian
+import locus.api.utils.DataWriterBigEndian
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.util.Random
+
+class StorableIndexTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    @Test
+    fun arrayAndChannelSource() {
+        val points = createPoints(Random(1L), 300, sorted = true)
+        val data = DataWriterBigEndian().apply { writeListStorable(points) }.toByteArray()
+
+        // list in the middle of the file
+        val file = writeFile(ByteArray(17) { it.toByte() } + data + ByteArray(5))
+        RandomAccessFile(file, "r").use { raf ->
+            val channel = raf.channel
+            channel.position(17L)
+            val fromArray = StorableIndex(data)
+            val fromChannel = StorableIndex(channel)
+            for (index in listOf(fromArray, fromChannel)) {
+                assertEquals(points.size, index.count)
+                assertTrue(index.isSortedById)
+                for (i in points.indices) {
+                    assertEquals(points[i].id, index.getId(i))
+                    assertEquals(points[i].name, index.getName(i))
+                    assertArrayEquals(points[i].asBytes, index.read(i) { Point() }.asBytes)
+                }
+            }
+
+            // same positions, offset by position of the list
+            for (i in points.indices) {
+                assertEquals(fromArray.getOffset(i) + 17L, fromChannel.getOffset(i))
+                assertEquals(fromArray.getSize(i), fromChannel.getSize(i))
+                assertEquals(fromArray.getVersion(i), fromChannel.getVersion(i))
+            }
+            assertEquals(points.subList(100, 110).map { it.asBytes!!.toList() },
+                    fromChannel.readRange(100, 10) { Point() }.map { it.asBytes!!.toList() })
+        }
+    }
+
+    @Test
+    fun longNames() {
+        // names around length of read prefix of body, with multi-byte characters
+        val random = Random(2L)
+        val names = mutableListOf("", "a", "ž".repeat(57), "ž".repeat(58), "ž".repeat(59),
+                "x".repeat(115), "x".repeat(116), "x".repeat(117), "x".repeat(128),
+                "žluťoučký kůň ".repeat(20), "y".repeat(5000))
+        repeat(50) {
+            names.add(List(random.nextInt(300)) { 'a' + random.nextInt(26) }.joinToString(""))
+        }
+        val points = names.mapIndexed { i, name ->
+            Point(name, Location(50.0, 14.0)).apply { id = i.toLong() }
+        }
+        val tracks = names.mapIndexed { i, name ->
+            Track().apply {
+                id = 1000L + i
+                this.name = name
+                this.points = mutableListOf(Location(50.0, 14.0), Location(50.1, 14.1))
+            }
+        }
+        val named = names.map { Named(it) }
+        val data = DataWriterBigEndian().apply { writeListStorable(points) }.toByteArray()
+        val dataTracks = DataWriterBigEndian().apply { writeListStorable(tracks) }.toByteArray()
+        val dataNamed = DataWriterBigEndian().apply { writeListStorable(named) }.toByteArray()
+        for ((index, ids) in listOf(
+                StorableIndex(data) to points.map { it.id },
+                channelIndex(data, StorableIndex.Header.ID_NAME) to points.map { it.id },
+                StorableIndex(dataTracks) to tracks.map { it.id },
+                channelIndex(dataTracks, StorableIndex.Header.ID_NAME) to tracks.map { it.id },
+                StorableIndex(dataNamed, StorableIndex.Header.NAME) to names.map { -1L },
+                channelIndex(dataNamed, StorableIndex.Header.NAME) to names.map { -1L })) {
+            assertEquals(names.size, index.count)
+            for (i in names.indices) {
+                assertEquals(ids[i], index.getId(i))
+                assertEquals(names[i], index.getName(i))
+            }
+            index.close()
+        }
+
+        // no values read
+        val index = StorableIndex(data, StorableIndex.Header.NONE)
+        assertFalse(index.isSortedById)
+        for (i in names.indices) {
+            assertEquals(-1L, index.getId(i))
+            assertNull(index.getName(i))
+            assertEquals(names[i], index.read(i) { Point() }.name)
+        }
+    }
+
+    @Test
+    fun indexOfId() {
+        val random = Random(3L)
+        for (sorted in listOf(true, false)) {
+            val points = createPoints(random, 500, sorted)
+            val index = StorableIndex(
+                    DataWriterBigEndian().apply { writeListStorable(points) }.toByteArray())
+            assertEquals(sorted, index.isSortedById)
+
+            // compare with linear search, also for missing IDs
+            for (id in -5L..points.maxOf { it.id } + 5L) {
+                assertEquals("id $id", points.indexOfFirst { it.id == id }, index.indexOfId(id))
+            }
+        }
+
+        // duplicated IDs are still sorted
+        val points = listOf(1L, 3L, 3L, 3L, 8L).map {
+            Point("p$it", Location(50.0, 14.0)).apply { id = it }
+        }
+        val index = StorableIndex(
+                DataWriterBigEndian().apply { writeListStorable(points) }.toByteArray())
+        assertTrue(index.isSortedById)
+        assertEquals(3L, index.getId(index.indexOfId(3L)))
+        assertEquals(-1, index.indexOfId(2L))
+        assertEquals(4, index.indexOfId(8L))
+    }
+
+    @Test(expected = IOException::class)
+    fun truncatedData() {
+        val points = createPoints(Random(4L), 10, sorted = true)
+        val data = DataWriterBigEndian().apply { writeListStorable(points) }.toByteArray()
+        StorableIndex(data.copyOf(data.size - 10))
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Object with name on the start of body.
+     */
+    private class Named(var name: String = "") : Storable() {
+
+        override fun getVersion(): Int {
+            return 0
+        }
+
+        override fun readObject(version: Int, dr: DataReaderBigEndian) {
+            name = dr.readString()
+        }
+
+        override fun writeObject(dw: DataWriterBigEndian) {
+            dw.writeString(name)
+            dw.writeInt(name.length)
+        }
+    }
+
+    /**
+     * Points with unique IDs, sorted by ID or shuffled.
+     */
+    private fun createPoints(random: Random, count: Int, sorted: Boolean): List<Point> {
+        var id = 0L
+        val points = List(count) {
+            id += 1 + random.nextInt(3)
+            Point("point $id", Location(50.0 + random.nextDouble(), 14.0)).apply {
+                this.id = id
+            }
+        }
+        return if (sorted) points else points.shuffled(random)
+    }
+
+    private fun writeFile(data: ByteArray): File {
+        return folder.newFile().apply { writeBytes(data) }
+    }
+
+    private fun channelIndex(data: ByteArray, header: StorableIndex.Header): StorableIndex {
+        return StorableIndex(RandomAccessFile(writeFile(data), "r").channel, header)
+    }
+}
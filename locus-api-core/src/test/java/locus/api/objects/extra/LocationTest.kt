@@ -0,0 +1,225 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.objects.extra
+
+import locus.api.utils.DataWriterBigEndian
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class LocationTest {
+
+    @Test
+    fun writeMatchesBaselineFormat() {
+        val loc = createLocation()
+        assertArrayEquals(writeBaseline(false), loc.asBytes)
+    }
+
+    @Test
+    fun writeKeepsUnknownKeysInOrder() {
+        val data = writeBaseline(true)
+        val loc = Location().apply { read(data) }
+        assertLocation(loc)
+        assertArrayEquals(data, loc.asBytes)
+        assertArrayEquals(data, Location(loc).asBytes)
+    }
+
+    @Test
+    fun writeEmptyLocation() {
+        val loc = Location(50.0, 14.0)
+        val data = storable(3) { dw ->
+            dw.writeLong(-1L)
+            dw.writeString("")
+            dw.writeLong(0L)
+            dw.writeDouble(50.0)
+            dw.writeDouble(14.0)
+            dw.writeBoolean(false)
+            dw.writeDouble(0.0)
+            dw.writeBoolean(false)
+            dw.writeBoolean(false)
+            repeat(4) { dw.writeByte(0.toByte()) }
+        }
+        assertArrayEquals(data, loc.asBytes)
+        assertTrue(Location().apply { read(data) }.let { !it.hasAltitude && !it.hasSpeed })
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Location with all known values.
+     */
+    private fun createLocation(): Location {
+        return Location(50.25, 14.5).apply {
+            id = 7L
+            provider = "gps"
+            time = 1000L
+            altitude = 250.5
+            speed = 3.5f
+            bearing = 90.0f
+            accuracyHor = 4.0f
+            accuracyVer = 6.0f
+            sensorHeartRate = 120
+            sensorCadence = 85
+            sensorSpeed = 3.25f
+            sensorTemperature = 21.5f
+            sensorPower = 200.0f
+            sensorStrides = 1500
+            gnssQuality = 2
+            gnssHdop = 1.25f
+            gnssVdop = 1.5f
+            gnssPdop = 1.75f
+            gnssSatsUsed = 9
+            gnssSatsVisible = 14
+        }
+    }
+
+    private fun assertLocation(loc: Location) {
+        val expected = createLocation()
+        assertEquals(expected.latitude, loc.latitude, 0.0)
+        assertEquals(expected.longitude, loc.longitude, 0.0)
+        assertEquals(expected.altitude, loc.altitude, 0.0)
+        assertEquals(expected.accuracyVer, loc.accuracyVer, 0.0f)
+        assertEquals(expected.sensorHeartRate, loc.sensorHeartRate)
+        assertEquals(expected.sensorStrides, loc.sensorStrides)
+        assertEquals(expected.gnssPdop, loc.gnssPdop, 0.0f)
+        assertEquals(expected.gnssSatsVisible, loc.gnssSatsVisible)
+    }
+
+    /**
+     * Write values of [createLocation] in the format of older versions, where all extra values
+     * are stored in sorted maps, optionally with values of unknown keys.
+     */
+    private fun writeBaseline(unknownKeys: Boolean): ByteArray {
+        return storable(3) { dw ->
+            dw.writeLong(7L)
+            dw.writeString("gps")
+            dw.writeLong(1000L)
+            dw.writeDouble(50.25)
+            dw.writeDouble(14.5)
+            dw.writeBoolean(true)
+            dw.writeDouble(250.5)
+
+            // basic values
+            dw.writeBoolean(true)
+            dw.writeBoolean(true)
+            dw.writeFloat(4.0f)
+            dw.writeBoolean(true)
+            dw.writeFloat(90.0f)
+            dw.writeBoolean(true)
+            dw.writeFloat(3.5f)
+
+            // sensors
+            dw.writeBoolean(true)
+            dw.write(storable(1) {
+                it.writeBoolean(true)
+                it.writeInt(120)
+                it.writeBoolean(true)
+                it.writeInt(85)
+                it.writeBoolean(true)
+                it.writeFloat(3.25f)
+                it.writeBoolean(true)
+                it.writeFloat(200.0f)
+                it.writeBoolean(true)
+                it.writeInt(1500)
+                it.writeBoolean(false)
+                it.writeInt(0)
+                it.writeBoolean(true)
+                it.writeFloat(21.5f)
+            })
+
+            // short values
+            dw.writeByte((if (unknownKeys) 6 else 5).toByte())
+            writeShort(dw, 20, 120)
+            writeShort(dw, 21, 85)
+            if (unknownKeys) {
+                writeShort(dw, 30, 333)
+            }
+            writeShort(dw, 51, 2)
+            writeShort(dw, 55, 9)
+            writeShort(dw, 56, 14)
+
+            // int values
+            dw.writeByte((if (unknownKeys) 3 else 1).toByte())
+            if (unknownKeys) {
+                writeInt(dw, 5, 55555)
+            }
+            writeInt(dw, 25, 1500)
+            if (unknownKeys) {
+                writeInt(dw, 60, 66666)
+            }
+
+            // float values
+            dw.writeByte((if (unknownKeys) 11 else 10).toByte())
+            writeFloat(dw, 11, 3.5f)
+            writeFloat(dw, 12, 90.0f)
+            writeFloat(dw, 13, 4.0f)
+            writeFloat(dw, 14, 6.0f)
+            if (unknownKeys) {
+                writeFloat(dw, 15, 15.5f)
+            }
+            writeFloat(dw, 22, 3.25f)
+            writeFloat(dw, 23, 21.5f)
+            writeFloat(dw, 24, 200.0f)
+            writeFloat(dw, 52, 1.25f)
+            writeFloat(dw, 53, 1.5f)
+            writeFloat(dw, 54, 1.75f)
+
+            // double values
+            dw.writeByte((if (unknownKeys) 2 else 1).toByte())
+            if (unknownKeys) {
+                dw.writeByte(3.toByte())
+                dw.writeDouble(3.125)
+            }
+            dw.writeByte(10.toByte())
+            dw.writeDouble(250.5)
+        }
+    }
+
+    private fun writeShort(dw: DataWriterBigEndian, key: Int, value: Int) {
+        dw.writeByte(key.toByte())
+        dw.writeShort(value)
+    }
+
+    private fun writeInt(dw: DataWriterBigEndian, key: Int, value: Int) {
+        dw.writeByte(key.toByte())
+        dw.writeInt(value)
+    }
+
+    private fun writeFloat(dw: DataWriterBigEndian, key: Int, value: Float) {
+        dw.writeByte(key.toByte())
+        dw.writeFloat(value)
+    }
+
+    /**
+     * Write object header and body written by [writeBody].
+     */
+    private fun storable(version: Int, writeBody: (DataWriterBigEndian) -> Unit): ByteArray {
+        val body = DataWriterBigEndian().apply(writeBody).toByteArray()
+        return DataWriterBigEndian().apply {
+            writeInt(version)
+            writeInt(body.size)
+            write(body)
+        }.toByteArray()
+    }
+}
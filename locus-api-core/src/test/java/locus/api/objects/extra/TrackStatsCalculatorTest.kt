@@ -0,0 +1,269 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.objects.extra
+
+import locus.api.objects.geoData.Track
+import locus.api.objects.geoData.TrackPoints
+import locus.api.utils.GeodesyBatch
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.Random
+import java.util.concurrent.ForkJoinPool
+
+class TrackStatsCalculatorTest {
+
+    @Test
+    fun noLengthAndTimeOverBreaks() {
+        val points = listOf(
+                point(50.000, 1000L),
+                point(50.001, 61_000L),
+                point(50.010, 3_600_000L),
+                point(50.011, 3_660_000L))
+        val stats = compute(points, listOf(1))
+        assertEquals((distance(points, 0) + distance(points, 2)).toFloat(),
+                stats.totalLength, 1.0e-3f)
+        assertEquals(120_000L, stats.totalTime)
+        assertEquals(4, stats.numOfPoints)
+        assertEquals(1000L, stats.startTime)
+        assertEquals(3_660_000L, stats.stopTime)
+
+        // break after the last point has no effect
+        assertArrayEquals(compute(points, emptyList()).asBytes,
+                compute(points, listOf(3)).asBytes)
+    }
+
+    @Test
+    fun movingThreshold() {
+        // ~111 m in 60 s (moving), ~111 m in 600 s (not moving), ~111 m without time (moving)
+        val points = listOf(
+                point(50.000, 1000L),
+                point(50.001, 61_000L),
+                point(50.002, 661_000L),
+                point(50.003, 0L))
+        val stats = compute(points, emptyList())
+        assertEquals(660_000L, stats.totalTime)
+        assertEquals(60_000L, stats.totalTimeMove)
+        assertEquals((distance(points, 0) + distance(points, 2)).toFloat(),
+                stats.totalLengthMove, 1.0e-3f)
+        assertEquals((distance(points, 0) * 1000.0 / 60_000L).toFloat(), stats.speedMax, 1.0e-4f)
+
+        // higher threshold
+        val calc = TrackStatsCalculator(TrackStats(), 2.0f)
+        calc.addPoints(points)
+        assertEquals(0L, calc.stats.totalTimeMove)
+        assertEquals(distance(points, 2).toFloat(), calc.stats.totalLengthMove, 1.0e-3f)
+    }
+
+    @Test
+    fun elevationHysteresis() {
+        val altitudes = doubleArrayOf(100.0, 102.0, 106.0, 104.0, 99.0, 101.0)
+        val points = altitudes.mapIndexed { i, altitude ->
+            point(50.0 + i * 0.001, 1000L + i * 60_000L).apply { this.altitude = altitude }
+        }
+        val stats = compute(points, emptyList())
+        assertEquals(6.0f, stats.elePositiveHeight, 1.0e-4f)
+        assertEquals(7.0f, stats.eleNegativeHeight, 1.0e-4f)
+        assertEquals(2.0f, stats.eleNeutralHeight, 1.0e-4f)
+        assertEquals((distance(points, 0) + distance(points, 1)).toFloat(),
+                stats.elePositiveDistance, 1.0e-3f)
+        assertEquals((distance(points, 2) + distance(points, 3)).toFloat(),
+                stats.eleNegativeDistance, 1.0e-3f)
+        assertEquals(distance(points, 4).toFloat(), stats.eleNeutralDistance, 1.0e-3f)
+        assertEquals(99.0f, stats.altitudeMin, 0.0f)
+        assertEquals(106.0f, stats.altitudeMax, 0.0f)
+        assertElevationDistance(stats)
+    }
+
+    @Test
+    fun elevationSectionEndsOnBreak() {
+        val altitudes = doubleArrayOf(100.0, 103.0, 200.0, 210.0)
+        val points = altitudes.mapIndexed { i, altitude ->
+            point(50.0 + i * 0.001, 1000L + i * 60_000L).apply { this.altitude = altitude }
+        }
+
+        // change over the break is not counted, open section before break is neutral
+        val stats = compute(points, listOf(1))
+        assertEquals(10.0f, stats.elePositiveHeight, 1.0e-4f)
+        assertEquals(0.0f, stats.eleNegativeHeight, 0.0f)
+        assertEquals(3.0f, stats.eleNeutralHeight, 1.0e-4f)
+        assertEquals(distance(points, 0).toFloat(), stats.eleNeutralDistance, 1.0e-3f)
+        assertEquals(distance(points, 2).toFloat(), stats.elePositiveDistance, 1.0e-3f)
+        assertElevationDistance(stats)
+    }
+
+    @Test
+    fun elevationDistanceMatchesLength() {
+        val random = Random(7L)
+        val points = randomTrack(random, 5000)
+        val breaks = listOf(10, 11, 700, 2500, 4998)
+        val stats = compute(points, breaks)
+        assertElevationDistance(stats)
+    }
+
+    @Test
+    fun incrementalMatchesCompute() {
+        val random = Random(11L)
+        val points = randomTrack(random, 600)
+        val breaks = listOf(50, 51, 300, 420)
+
+        // statistics after every point are same as statistics of whole track so far
+        val calc = TrackStatsCalculator()
+        for (i in points.indices) {
+            if (i - 1 in breaks) {
+                calc.addBreak()
+            }
+            calc.addPoint(points[i])
+            if (i % 37 == 0 || i == points.size - 1) {
+                val track = Track().apply {
+                    this.points = points.subList(0, i + 1).toMutableList()
+                    this.breaks = breaks.filter { it < i }.toMutableList()
+                }
+                assertArrayEquals("point $i", TrackStatsCalculator.compute(track).asBytes,
+                        calc.stats.asBytes)
+            }
+        }
+
+        // same result for columnar points and reused location
+        val columnar = TrackStatsCalculator().apply {
+            addPoints(TrackPoints.from(points), breaks)
+        }
+        assertArrayEquals(calc.stats.asBytes, columnar.stats.asBytes)
+
+        // reset
+        calc.reset()
+        calc.addPoints(points, breaks)
+        assertArrayEquals(columnar.stats.asBytes, calc.stats.asBytes)
+    }
+
+    @Test
+    fun parallelMatchesCompute() {
+        // chunks of parallel compute start at 32768, 65536 and 98304
+        val random = Random(13L)
+        val points = randomTrack(random, 4 * 32768 + 17)
+        val breaks = listOf(32767, 65535, 65536, 98200, 110_000)
+
+        // steady climb over chunk border, so elevation section continues between chunks
+        for (i in 98250 until 98360) {
+            points[i].altitude = 500.0 + (i - 98250) * 0.5
+        }
+        val track = Track().apply {
+            this.points = points.toMutableList()
+            this.breaks = breaks.toMutableList()
+        }
+
+        val expected = TrackStatsCalculator.compute(track)
+        val pool = ForkJoinPool(4)
+        try {
+            val stats = TrackStatsCalculator.computeParallel(track, pool)
+            assertEquals(expected.numOfPoints, stats.numOfPoints)
+            assertEquals(expected.startTime, stats.startTime)
+            assertEquals(expected.stopTime, stats.stopTime)
+            assertEquals(expected.totalTime, stats.totalTime)
+            assertEquals(expected.totalTimeMove, stats.totalTimeMove)
+            assertFloat(expected.totalLength, stats.totalLength)
+            assertFloat(expected.totalLengthMove, stats.totalLengthMove)
+            assertEquals(expected.speedMax, stats.speedMax, 0.0f)
+            assertEquals(expected.altitudeMin, stats.altitudeMin, 0.0f)
+            assertEquals(expected.altitudeMax, stats.altitudeMax, 0.0f)
+            assertFloat(expected.elePositiveDistance, stats.elePositiveDistance)
+            assertFloat(expected.elePositiveHeight, stats.elePositiveHeight)
+            assertFloat(expected.eleNegativeDistance, stats.eleNegativeDistance)
+            assertFloat(expected.eleNegativeHeight, stats.eleNegativeHeight)
+            assertFloat(expected.eleNeutralDistance, stats.eleNeutralDistance)
+            assertFloat(expected.eleNeutralHeight, stats.eleNeutralHeight)
+            assertEquals(expected.heartRateMax, stats.heartRateMax)
+            assertEquals(expected.heartRateAverage, stats.heartRateAverage)
+            assertEquals(expected.cadenceMax, stats.cadenceMax)
+            assertEquals(expected.cadenceAverage, stats.cadenceAverage)
+            assertEquals(expected.energy, stats.energy)
+            assertEquals(expected.numOfStrides, stats.numOfStrides)
+            assertElevationDistance(stats)
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    private fun point(lat: Double, time: Long): Location {
+        return Location(lat, 14.0).apply { this.time = time }
+    }
+
+    private fun distance(points: List<Location>, index: Int): Double {
+        return GeodesyBatch.distance(points[index].latitude, points[index].longitude,
+                points[index + 1].latitude, points[index + 1].longitude)
+    }
+
+    private fun compute(points: List<Location>, breaks: List<Int>): TrackStats {
+        return TrackStatsCalculator().apply { addPoints(points, breaks) }.stats
+    }
+
+    /**
+     * Sums computed in different order may differ in the last bits.
+     */
+    private fun assertFloat(expected: Float, actual: Float) {
+        assertEquals(expected, actual, Math.abs(expected) * 1.0e-5f)
+    }
+
+    /**
+     * Positive, negative and neutral distance have to cover whole length of the track.
+     */
+    private fun assertElevationDistance(stats: TrackStats) {
+        val sum = stats.elePositiveDistance + stats.eleNegativeDistance + stats.eleNeutralDistance
+        assertEquals(stats.totalLength, sum, stats.totalLength * 1.0e-5f)
+    }
+
+    companion object {
+
+        /**
+         * Random walk with altitudes, speeds, sensors and occasional points without time
+         * or altitude.
+         */
+        internal fun randomTrack(random: Random, count: Int): List<Location> {
+            var lat = 50.0
+            var lon = 14.0
+            var altitude = 300.0
+            var time = 1_600_000_000_000L
+            return List(count) { i ->
+                lat += (random.nextDouble() - 0.5) * 0.001
+                lon += (random.nextDouble() - 0.5) * 0.001
+                altitude += (random.nextDouble() - 0.5) * 8.0
+                time += 1000L + random.nextInt(10_000)
+                Location(lat, lon).apply {
+                    if (i % 53 != 7) {
+                        this.time = time
+                    }
+                    if (i % 41 != 3) {
+                        this.altitude = altitude
+                    }
+                    if (i % 5 == 0) {
+                        speed = random.nextFloat() * 10.0f
+                    }
+                    sensorHeartRate = (100 + random.nextInt(60)).toShort()
+                    sensorCadence = (70 + random.nextInt(20)).toShort()
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.objects.extra
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class TrackStatsTest {
+
+    @Test
+    fun appendZeroAltitude() {
+        val stats = TrackStats()
+        stats.appendStatistics(altitudes(0.0f, 0.0f))
+        assertEquals(0.0f, stats.altitudeMin, 0.0f)
+        assertEquals(0.0f, stats.altitudeMax, 0.0f)
+
+        // merge with range above zero
+        stats.appendStatistics(altitudes(100.0f, 250.0f))
+        assertEquals(0.0f, stats.altitudeMin, 0.0f)
+        assertEquals(250.0f, stats.altitudeMax, 0.0f)
+    }
+
+    @Test
+    fun appendRangeEndingInZero() {
+        val stats = altitudes(-20.0f, 0.0f)
+        stats.appendStatistics(altitudes(0.0f, 10.0f))
+        assertEquals(-20.0f, stats.altitudeMin, 0.0f)
+        assertEquals(10.0f, stats.altitudeMax, 0.0f)
+    }
+
+    @Test
+    fun appendWithoutAltitude() {
+        val stats = altitudes(100.0f, 250.0f)
+        stats.appendStatistics(TrackStats())
+        assertEquals(100.0f, stats.altitudeMin, 0.0f)
+        assertEquals(250.0f, stats.altitudeMax, 0.0f)
+
+        // no altitude in both statistics
+        val empty = TrackStats()
+        empty.appendStatistics(TrackStats())
+        assertEquals(Float.POSITIVE_INFINITY, empty.altitudeMin, 0.0f)
+        assertEquals(Float.NEGATIVE_INFINITY, empty.altitudeMax, 0.0f)
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    private fun altitudes(min: Float, max: Float): TrackStats {
+        return TrackStats().apply {
+            altitudeMin = min
+            altitudeMax = max
+        }
+    }
+}
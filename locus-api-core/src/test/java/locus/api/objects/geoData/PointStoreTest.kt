@@ -0,0 +1,228 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.objects.geoData
+
+import locus.api.objects.extra.Location
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+
+class PointStoreTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    @Test
+    fun writeAndRead() {
+        val points = List(500) {
+            createPoint(1000L - it, 49.0 + (it % 25) * 0.1, 13.0 + (it / 25) * 0.1)
+        }
+        val file = writeStore(points)
+        PointStoreReader(file).use { reader ->
+            assertEquals(points.size, reader.count)
+            assertEquals(0.1, reader.cellSize, 1.0e-12)
+            for (i in points.indices) {
+                assertEquals(points[i].id, reader.getId(i))
+                assertEquals(points[i].location.latitude, reader.getLatitude(i), 0.0)
+                assertEquals(points[i].location.longitude, reader.getLongitude(i), 0.0)
+                assertArrayEquals(points[i].asBytes, reader.read(i).asBytes)
+            }
+            assertArrayEquals(points[123].asBytes, reader.read(123, true).asBytes)
+
+            // points in bounding box
+            val expected = points.indices.filter {
+                points[it].location.latitude in 49.45..49.85
+                        && points[it].location.longitude in 13.35..14.05
+            }
+            assertEquals(expected, reader.findInBounds(49.45, 13.35, 49.85, 14.05).sorted())
+            assertEquals(expected.take(3).map { points[it].name },
+                    reader.readInBounds(49.45, 13.35, 49.85, 14.05, 3).map { it.name })
+
+            // box larger than grid of buckets
+            assertEquals(points.size, reader.findInBounds(-90.0, -180.0, 90.0, 180.0).size)
+        }
+    }
+
+    @Test
+    fun readById() {
+        val points = listOf(
+                createPoint(7L, 50.0, 14.0),
+                createPoint(3L, 50.1, 14.1),
+                createPoint(7L, 50.2, 14.2),
+                createPoint(-1L, 50.3, 14.3),
+                createPoint(Long.MAX_VALUE, 50.4, 14.4))
+        PointStoreReader(writeStore(points)).use { reader ->
+            assertEquals(1, reader.indexOfId(3L))
+            assertEquals(points[1].name, reader.readById(3L)!!.name)
+            assertEquals(points[4].name, reader.readById(Long.MAX_VALUE)!!.name)
+            assertEquals(points[3].name, reader.readById(-1L)!!.name)
+
+            // any of the points with duplicate ID
+            val index = reader.indexOfId(7L)
+            assertTrue(index == 0 || index == 2)
+            assertEquals(points[index].name, reader.readById(7L)!!.name)
+
+            // missing IDs
+            for (id in listOf(0L, 2L, 4L, 8L, Long.MIN_VALUE)) {
+                assertEquals(-1, reader.indexOfId(id))
+                assertNull(reader.readById(id))
+            }
+        }
+    }
+
+    @Test
+    fun findAcrossAntiMeridian() {
+        val points = listOf(
+                createPoint(1L, 10.0, 179.95),
+                createPoint(2L, 10.0, -179.95),
+                createPoint(3L, 10.0, 0.0),
+                createPoint(4L, 10.0, 179.5),
+                createPoint(5L, 10.0, -179.5),
+                createPoint(6L, 12.0, 179.95))
+        PointStoreReader(writeStore(points)).use { reader ->
+            assertEquals(listOf(0, 1), reader.findInBounds(9.0, 179.9, 11.0, -179.9).sorted())
+            assertEquals(listOf(0, 1, 3, 4), reader.findInBounds(9.0, 179.0, 11.0, -179.0).sorted())
+            assertEquals(listOf(0, 1, 3, 4, 5),
+                    reader.findInBounds(9.0, 179.0, 13.0, -179.0).sorted())
+            assertEquals(listOf(2), reader.findInBounds(9.0, -1.0, 11.0, 1.0).sorted())
+        }
+    }
+
+    @Test
+    fun emptyStore() {
+        PointStoreReader(writeStore(emptyList())).use { reader ->
+            assertEquals(0, reader.count)
+            assertEquals(0, reader.findInBounds(-90.0, -180.0, 90.0, 180.0).size)
+            assertEquals(-1, reader.indexOfId(0L))
+            assertNull(reader.readById(0L))
+            assertTrue(reader.readInBounds(-90.0, -180.0, 90.0, 180.0).isEmpty())
+        }
+    }
+
+    @Test
+    fun cellSizeBounds() {
+        for (cellSize in listOf(PointStoreReader.MIN_CELL_SIZE, 0.0123, 90.0)) {
+            val file = folder.newFile()
+            PointStoreWriter(file.outputStream(), cellSize).use {
+                it.write(createPoint(1L, 50.0, 14.0))
+            }
+            PointStoreReader(file).use { reader ->
+                assertEquals(360.0 / Math.ceil(360.0 / cellSize), reader.cellSize, 0.0)
+                assertEquals(listOf(0), reader.findInBounds(49.0, 13.0, 51.0, 15.0).toList())
+            }
+        }
+    }
+
+    @Test
+    fun corruptedTrailer() {
+        val file = writeStore(listOf(createPoint(1L, 50.0, 14.0)))
+
+        // invalid magic
+        assertInvalid(modify(file) { it.putInt(it.capacity() - 4, 0) })
+
+        // invalid offset of footer
+        assertInvalid(modify(file) { it.putLong(it.capacity() - 12, it.capacity().toLong()) })
+        assertInvalid(modify(file) { it.putLong(it.capacity() - 12, 4L) })
+
+        // truncated file
+        assertInvalid(modify(file) { it.limit(it.capacity() - 1) })
+        assertInvalid(modify(file) { it.limit(20) })
+    }
+
+    @Test
+    fun corruptedFooter() {
+        val file = writeStore(listOf(createPoint(1L, 50.0, 14.0), createPoint(2L, 50.5, 14.5)))
+
+        // invalid number of points
+        assertInvalid(modify(file) { it.putInt(footerOffset(it), 3) })
+        assertInvalid(modify(file) { it.putInt(footerOffset(it), -1) })
+        assertInvalid(modify(file) { it.putInt(footerOffset(it), Int.MAX_VALUE) })
+
+        // invalid number of buckets, placed behind tables of points
+        assertInvalid(modify(file) { it.putInt(footerOffset(it) + 4 + 2 * 44, 1000) })
+    }
+
+    @Test
+    fun invalidHeader() {
+        val file = writeStore(listOf(createPoint(1L, 50.0, 14.0)))
+        assertInvalid(modify(file) { it.putInt(0, 0) })
+        assertInvalid(modify(file) { it.putInt(4, 99) })
+
+        // invalid size of cell
+        for (cellSize in listOf(0.0, -0.1, Double.NaN, Double.POSITIVE_INFINITY, 1.0e-300, 180.0)) {
+            assertInvalid(modify(file) { it.putDouble(8, cellSize) })
+        }
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    private fun createPoint(id: Long, lat: Double, lon: Double): Point {
+        return Point("point $id $lat $lon", Location(lat, lon)).apply {
+            this.id = id
+        }
+    }
+
+    private fun writeStore(points: List<Point>): File {
+        val file = folder.newFile()
+        PointStoreWriter(file.outputStream(), 0.1).use { it.writeAll(points) }
+        return file
+    }
+
+    /**
+     * Create copy of the [file] changed by [change].
+     */
+    private fun modify(file: File, change: (ByteBuffer) -> Unit): File {
+        val data = ByteBuffer.wrap(file.readBytes())
+        change(data)
+        return folder.newFile().apply {
+            writeBytes(data.array().copyOf(data.limit()))
+        }
+    }
+
+    private fun footerOffset(data: ByteBuffer): Int {
+        return data.getLong(data.capacity() - 12).toInt()
+    }
+
+    /**
+     * Check that opening of the [file] fails and the channel is closed.
+     */
+    private fun assertInvalid(file: File) {
+        val channel = RandomAccessFile(file, "r").channel
+        try {
+            PointStoreReader(channel).close()
+            fail("Invalid file opened")
+        } catch (e: IOException) {
+            assertFalse(channel.isOpen)
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.objects.geoData
+
+import locus.api.objects.extra.Location
+import locus.api.utils.DataReaderBigEndian
+import locus.api.utils.DataWriterBigEndian
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import java.io.IOException
+
+class TrackPointsTest {
+
+    @Test
+    fun compactNoPoints() {
+        val result = roundTrip(emptyList())
+        assertEquals(0, result.size)
+        assertTrue(result.toLocations().isEmpty())
+    }
+
+    @Test
+    fun compactSinglePoint() {
+        assertPoints(listOf(createLocation(0)))
+        assertPoints(listOf(Location(-33.5, -70.25)))
+    }
+
+    @Test
+    fun compactAllColumns() {
+        assertPoints(List(20) { createLocation(it) })
+    }
+
+    @Test
+    fun compactEachOptionalColumn() {
+        for (i in SETTERS.indices) {
+            // value defined only for some points
+            val points = List(10) { index ->
+                Location(coordinate(500_000_000L + index * 10_000L),
+                        coordinate(140_000_000L - index * 10_000L)).apply {
+                    time = 1000L * index
+                    if (index % 3 == 1) {
+                        SETTERS[i](this, index)
+                    }
+                }
+            }
+            assertPoints(points)
+
+            // value defined for all points
+            assertPoints(points.map { Location(it).apply { SETTERS[i](this, 2) } })
+        }
+    }
+
+    @Test
+    fun compactWithoutOptionalColumns() {
+        val points = List(5) { Location(50.0 + it, 14.0) }
+        val data = write(TrackPoints.from(points))
+
+        // version, count, delta columns of coordinates and time and empty mask
+        val expected = DataWriterBigEndian().apply {
+            writeVarInt(1)
+            writeVarInt(5)
+            writeVarLongSigned(500_000_000L)
+            repeat(4) { writeVarLongSigned(10_000_000L) }
+            writeVarLongSigned(140_000_000L)
+            repeat(4) { writeVarLongSigned(0L) }
+            repeat(5) { writeVarLongSigned(0L) }
+            writeVarInt(0)
+        }.toByteArray()
+        assertArrayEquals(expected, data)
+        assertPoints(points)
+    }
+
+    @Test
+    fun compactProviders() {
+        val providers = listOf("gps", "network", "", "gps", "fused", "network", "")
+        val points = providers.mapIndexed { index, provider ->
+            Location(50.0, 14.0 + index).apply { this.provider = provider }
+        }
+        val result = roundTrip(points)
+        for (i in providers.indices) {
+            assertEquals(providers[i], result[i].provider)
+        }
+        assertPoints(points)
+    }
+
+    @Test
+    fun compactRounding() {
+        val points = List(200) { index ->
+            Location(89.99999995 - index * 0.123456789123, -179.99999995 + index * 1.7654321987)
+                    .apply { altitude = -420.12345 + index * 37.0004999 }
+        }
+        val result = roundTrip(points)
+        for (i in points.indices) {
+            assertEquals(points[i].latitude, result[i].latitude, 0.5e-7 + 1.0e-12)
+            assertEquals(points[i].longitude, result[i].longitude, 0.5e-7 + 1.0e-12)
+            assertEquals(points[i].altitude, result[i].altitude, 0.5e-3 + 1.0e-9)
+        }
+
+        // values already rounded to 1e-7 degree and 1 mm are kept exactly
+        val exact = listOf(
+                Location(50.1234567, 14.7654321).apply { altitude = 1234.567 },
+                Location(-89.9999999, 179.9999999).apply { altitude = -0.001 },
+                Location(0.0000001, -0.0000001).apply { altitude = 0.0 })
+        val exactResult = roundTrip(exact)
+        for (i in exact.indices) {
+            assertEquals(exact[i].latitude, exactResult[i].latitude, 0.0)
+            assertEquals(exact[i].longitude, exactResult[i].longitude, 0.0)
+            assertEquals(exact[i].altitude, exactResult[i].altitude, 0.0)
+        }
+    }
+
+    @Test
+    fun compactAltitudeZero() {
+        val result = roundTrip(listOf(
+                Location(50.0, 14.0).apply { altitude = 0.0 },
+                Location(50.0, 14.0)))
+        assertTrue(result[0].hasAltitude)
+        assertEquals(0.0, result[0].altitude, 0.0)
+        assertFalse(result[1].hasAltitude)
+    }
+
+    @Test(expected = IOException::class)
+    fun compactUnsupportedVersion() {
+        val data = write(TrackPoints.from(listOf(createLocation(0))))
+        data[0] = 99
+        TrackPoints.readCompact(DataReaderBigEndian(data))
+    }
+
+    @Test
+    fun compactInvalidProviders() {
+        // index over dictionary and negative index
+        for (index in listOf(2, -1)) {
+            assertInvalidProviders { dw ->
+                dw.writeVarInt(1)
+                dw.writeString("gps")
+                dw.writeVarInt(index)
+            }
+        }
+
+        // negative and too big size of dictionary
+        for (dictionarySize in listOf(-1, 1000)) {
+            assertInvalidProviders { dw ->
+                dw.writeVarInt(dictionarySize)
+                dw.writeVarInt(0)
+            }
+        }
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Location with all known values, coordinates and altitude rounded to precision of
+     * the compact encoding.
+     */
+    private fun createLocation(index: Int): Location {
+        return Location(coordinate(500_000_000L + index * 1234L),
+                coordinate(140_000_000L - index * 4321L)).apply {
+            id = 100L + index
+            provider = "gps"
+            time = 1_600_000_000_000L + index * 1000L
+            SETTERS.forEach { it(this, index) }
+        }
+    }
+
+    /**
+     * Coordinate defined by number of 1e-7 degree [units], so it is not changed by encoding.
+     */
+    private fun coordinate(units: Long): Double {
+        return units / 1.0e7
+    }
+
+    /**
+     * Check, that [points] survive compact encoding without change.
+     */
+    private fun assertPoints(points: List<Location>) {
+        val result = roundTrip(points)
+        assertEquals(points.size, result.size)
+        for (i in points.indices) {
+            assertArrayEquals("point $i", points[i].asBytes, result[i].asBytes)
+        }
+    }
+
+    /**
+     * Check that single point with provider column written by [writeProviders] is rejected.
+     */
+    private fun assertInvalidProviders(writeProviders: (DataWriterBigEndian) -> Unit) {
+        val dw = DataWriterBigEndian()
+        dw.writeVarInt(1)
+        dw.writeVarInt(1)
+        repeat(3) { dw.writeVarLongSigned(0L) }
+        dw.writeVarInt(1 shl 1)
+        writeProviders(dw)
+        try {
+            TrackPoints.readCompact(DataReaderBigEndian(dw.toByteArray()))
+            fail("Invalid providers read")
+        } catch (e: IOException) {
+            // expected
+        }
+    }
+
+    private fun roundTrip(points: List<Location>): TrackPoints {
+        val data = write(TrackPoints.from(points))
+        val dr = DataReaderBigEndian(data)
+        return TrackPoints.readCompact(dr).also {
+            assertEquals(0, dr.available())
+        }
+    }
+
+    private fun write(points: TrackPoints): ByteArray {
+        return DataWriterBigEndian().apply { points.writeCompact(this) }.toByteArray()
+    }
+
+    companion object {
+
+        // setters of all optional values, one for every column
+        private val SETTERS = listOf<Location.(Int) -> Unit>(
+                { altitude = 250.125 + it },
+                { speed = 1.5f + it },
+                { bearing = 10.0f * it },
+                { accuracyHor = 3.0f + it },
+                { accuracyVer = 5.0f + it },
+                { sensorSpeed = 2.25f + it },
+                { sensorTemperature = -5.5f + it },
+                { sensorPower = 150.0f + it },
+                { gnssHdop = 0.5f + it },
+                { gnssVdop = 0.75f + it },
+                { gnssPdop = 1.25f + it },
+                { sensorHeartRate = (90 + it).toShort() },
+                { sensorCadence = (60 + it).toShort() },
+                { gnssQuality = (it % 4).toShort() },
+                { gnssSatsUsed = (4 + it).toShort() },
+                { gnssSatsVisible = (12 - it).toShort() },
+                { sensorStrides = 1000 * it })
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.objects.geoData
+
+import locus.api.objects.extra.GeoDataExtra
+import locus.api.objects.extra.Location
+import locus.api.utils.GeodesyBatch
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+import kotlin.math.cos
+import kotlin.math.sqrt
+
+class TrackSimplifierTest {
+
+    @Test
+    fun douglasPeucker() {
+        val track = createTrack()
+        val tolerance = 20.0
+        val indices = TrackSimplifier.simplifyIndices(track, tolerance,
+                TrackSimplifier.Method.DOUGLAS_PEUCKER)
+        assertTrue(indices.size < track.points.size / 4)
+        assertStructure(track, indices)
+
+        // removed points are close to simplified line
+        val projected = project(track.points)
+        for (i in 1 until indices.size) {
+            for (p in indices[i - 1] + 1 until indices[i]) {
+                val dist = distanceToSegment(projected, p, indices[i - 1], indices[i])
+                assertTrue("point $p, distance $dist", dist <= tolerance)
+            }
+        }
+    }
+
+    @Test
+    fun visvalingam() {
+        val track = createTrack()
+        val indices = TrackSimplifier.simplifyIndices(track, 20.0,
+                TrackSimplifier.Method.VISVALINGAM)
+        assertTrue(indices.size < track.points.size / 4)
+        assertStructure(track, indices)
+
+        // higher tolerance keeps subset of points
+        val coarse = TrackSimplifier.simplifyIndices(track, 100.0,
+                TrackSimplifier.Method.VISVALINGAM)
+        assertTrue(coarse.size < indices.size)
+        assertTrue(coarse.all { indices.binarySearch(it) >= 0 })
+        assertStructure(track, coarse)
+    }
+
+    @Test
+    fun levelOfDetails() {
+        val track = createTrack()
+        val lod = TrackSimplifier.createLod(track)
+
+        // same importance as direct simplification
+        assertArrayEquals(TrackSimplifier.simplifyIndices(track, 35.0,
+                TrackSimplifier.Method.VISVALINGAM), lod.getIndices(35.0))
+
+        // every zoom level contains points of lower zoom levels
+        var previous = lod.getIndicesForZoom(0)
+        assertStructure(track, previous)
+        for (zoom in 1..TrackSimplifier.MAX_ZOOM) {
+            val indices = lod.getIndicesForZoom(zoom)
+            assertTrue(previous.all { indices.binarySearch(it) >= 0 })
+            assertSame(indices, lod.getIndicesForZoom(zoom))
+            assertStructure(track, indices)
+            previous = indices
+        }
+        assertEquals(track.points.size, lod.getIndicesForZoom(TrackSimplifier.MAX_ZOOM + 5).size)
+        assertResult(track, lod.getIndicesForZoom(12), lod.createTrack(12))
+    }
+
+    @Test
+    fun decimate() {
+        val track = createTrack()
+        val minDistance = 25.0
+        val indices = TrackSimplifier.decimateIndices(track, minDistance, 0L)
+        assertTrue(indices.size < track.points.size / 2)
+        assertStructure(track, indices)
+
+        // removed points are close to the last kept point
+        val points = track.points
+        for (i in 1 until indices.size) {
+            for (p in indices[i - 1] + 1 until indices[i]) {
+                val dist = GeodesyBatch.distance(
+                        points[indices[i - 1]].latitude, points[indices[i - 1]].longitude,
+                        points[p].latitude, points[p].longitude,
+                        GeodesyBatch.Formula.HAVERSINE)
+                assertTrue("point $p, distance $dist", dist < minDistance)
+            }
+        }
+
+        // decimate by time only
+        val byTime = TrackSimplifier.decimateIndices(track, 0.0, 5000L)
+        assertStructure(track, byTime)
+        assertTrue(byTime.size < track.points.size)
+
+        // nothing to decimate
+        assertEquals(track.points.size, TrackSimplifier.decimateIndices(track, 0.0, 0L).size)
+    }
+
+    @Test
+    fun createTrackRemapsIndices() {
+        val track = createTrack()
+        for (indices in listOf(
+                TrackSimplifier.simplifyIndices(track, 20.0,
+                        TrackSimplifier.Method.DOUGLAS_PEUCKER),
+                TrackSimplifier.simplifyIndices(track, 20.0,
+                        TrackSimplifier.Method.VISVALINGAM),
+                TrackSimplifier.decimateIndices(track, 25.0, 0L))) {
+            assertResult(track, indices, TrackSimplifier.createTrack(track, indices))
+        }
+        val simplified = TrackSimplifier.simplify(track, 20.0)
+        assertResult(track, TrackSimplifier.simplifyIndices(track, 20.0), simplified)
+        assertResult(track, TrackSimplifier.decimateIndices(track, 25.0, 3000L),
+                TrackSimplifier.decimate(track, 25.0, 3000L))
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Track with three segments, waypoints attached to trackpoints and sensor values.
+     */
+    private fun createTrack(): Track {
+        val random = Random(5L)
+        var time = 1_600_000_000_000L
+        val points = List(SEGMENT * 3) { i ->
+            // zigzag line with a noise
+            val lat = 50.0 + i * 0.0001 + (random.nextDouble() - 0.5) * 0.00005
+            val lon = 14.0 + (if ((i / 50) % 2 == 0) i % 50 else 50 - i % 50) * 0.0001 +
+                    (random.nextDouble() - 0.5) * 0.00005
+            time += 1000L + random.nextInt(1000)
+            Location(lat, lon).apply {
+                this.time = time
+                altitude = 300.0 + random.nextInt(20)
+                speed = random.nextInt(10).toFloat()
+                sensorHeartRate = (100 + random.nextInt(50)).toShort()
+                sensorCadence = (80 + random.nextInt(10)).toShort()
+                sensorPower = random.nextInt(300).toFloat()
+            }
+        }
+        return Track().apply {
+            name = "simplified"
+            this.points = points.toMutableList()
+            breaks = mutableListOf(SEGMENT - 1, 2 * SEGMENT - 1)
+            for (index in intArrayOf(77, SEGMENT + 133, 2 * SEGMENT + 251)) {
+                waypoints.add(Point("wpt $index", Location(points[index])).apply {
+                    addParameter(GeoDataExtra.PAR_RTE_INDEX, index)
+                })
+            }
+            waypoints.add(Point("no index", Location(50.0, 14.0)))
+        }
+    }
+
+    /**
+     * Check that indices keep ends of segments, points of waypoints and extremes of segments.
+     */
+    private fun assertStructure(track: Track, indices: IntArray) {
+        assertTrue(indices.isNotEmpty())
+        for (i in 1 until indices.size) {
+            assertTrue(indices[i - 1] < indices[i])
+        }
+        fun assertKept(index: Int, what: String) {
+            assertTrue("$what at $index", indices.binarySearch(index) >= 0)
+        }
+
+        // ends and extremes of segments
+        val points = track.points
+        var start = 0
+        for (end in track.breaks + (points.size - 1)) {
+            assertKept(start, "start of segment")
+            assertKept(end, "end of segment")
+            val segment = (start..end)
+            assertKept(segment.minByOrNull { points[it].altitude }!!, "min altitude")
+            assertKept(segment.maxByOrNull { points[it].altitude }!!, "max altitude")
+            assertKept(segment.maxByOrNull { points[it].speed }!!, "max speed")
+            assertKept(segment.maxByOrNull { points[it].sensorHeartRate }!!, "max heart rate")
+            assertKept(segment.maxByOrNull { points[it].sensorCadence }!!, "max cadence")
+            assertKept(segment.maxByOrNull { points[it].sensorPower }!!, "max power")
+            start = end + 1
+        }
+
+        // waypoints
+        for (wpt in track.waypoints) {
+            if (wpt.paramRteIndex >= 0) {
+                assertKept(wpt.paramRteIndex, "waypoint")
+            }
+        }
+    }
+
+    /**
+     * Check that track created from indices has remapped breaks and waypoints.
+     */
+    private fun assertResult(track: Track, indices: IntArray, result: Track) {
+        assertEquals(track.name, result.name)
+        assertEquals(indices.size, result.points.size)
+        for (i in indices.indices) {
+            assertSame(track.points[indices[i]], result.points[i])
+        }
+
+        // breaks point to the last points of segments
+        assertEquals(track.breaks.size, result.breaks.size)
+        for (i in track.breaks.indices) {
+            assertSame(track.points[track.breaks[i]], result.points[result.breaks[i]])
+            assertSame(track.points[track.breaks[i] + 1], result.points[result.breaks[i] + 1])
+        }
+
+        // waypoints point to the same trackpoints
+        assertEquals(track.waypoints.size, result.waypoints.size)
+        for (i in track.waypoints.indices) {
+            val source = track.waypoints[i]
+            val wpt = result.waypoints[i]
+            assertEquals(source.name, wpt.name)
+            if (source.paramRteIndex < 0) {
+                assertEquals(-1, wpt.paramRteIndex)
+            } else {
+                assertSame(track.points[source.paramRteIndex], result.points[wpt.paramRteIndex])
+            }
+        }
+    }
+
+    /**
+     * Project points same way as simplification does.
+     */
+    private fun project(points: List<Location>): Array<DoubleArray> {
+        val lon0 = points[0].longitude
+        return Array(points.size) {
+            val lat = Math.toRadians(points[it].latitude)
+            doubleArrayOf(
+                    EARTH_RADIUS * Math.toRadians(points[it].longitude - lon0) * cos(lat),
+                    EARTH_RADIUS * lat)
+        }
+    }
+
+    private fun distanceToSegment(xy: Array<DoubleArray>, p: Int, a: Int, b: Int): Double {
+        val dx = xy[b][0] - xy[a][0]
+        val dy = xy[b][1] - xy[a][1]
+        val lengthSq = dx * dx + dy * dy
+        val t = if (lengthSq > 0.0) {
+            (((xy[p][0] - xy[a][0]) * dx + (xy[p][1] - xy[a][1]) * dy) / lengthSq)
+                    .coerceIn(0.0, 1.0)
+        } else {
+            0.0
+        }
+        val px = xy[a][0] + t * dx - xy[p][0]
+        val py = xy[a][1] + t * dy - xy[p][1]
+        return sqrt(px * px + py * py)
+    }
+
+    companion object {
+
+        // number of points in single segment
+        private const val SEGMENT = 400
+
+        // radius of Earth used by simplifier
+        private const val EARTH_RADIUS = 6371000.0
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.objects.geoData
+
+import locus.api.objects.Storable
+import locus.api.objects.extra.Location
+import locus.api.utils.DataReaderBigEndian
+import locus.api.utils.DataWriterBigEndian
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class TrackTest {
+
+    @Test
+    fun compactBlockHasSize() {
+        val track = createTrack(50).apply { isCompactPoints = true }
+        val data = track.asBytes!!
+        val compact = DataWriterBigEndian().apply {
+            TrackPoints.from(track.points).writeCompact(this)
+        }.toByteArray()
+
+        // V9 part: flag, size of compact block and the block itself
+        val dr = DataReaderBigEndian(data)
+        dr.seek(data.size - compact.size - 5)
+        assertTrue(dr.readBoolean())
+        assertEquals(compact.size, dr.readInt())
+        assertArrayEquals(compact, dr.readBytes(compact.size))
+    }
+
+    @Test
+    fun compactReadEager() {
+        val track = createTrack(50).apply { isCompactPoints = true }
+        val result = Track().apply { read(track.asBytes!!) }
+        assertTrue(result.isCompactPoints)
+        assertTrack(track, result)
+        assertArrayEquals(track.asBytes, result.asBytes)
+    }
+
+    @Test
+    fun compactReadLazy() {
+        val track = createTrack(50).apply { isCompactPoints = true }
+        val data = track.asBytes!!
+        val result = Track().apply {
+            isLazyRead = true
+            read(data)
+        }
+        assertEquals(50, result.pointsCount)
+        assertArrayEquals(data, result.asBytes)
+        assertTrack(track, result)
+        assertArrayEquals(data, result.asBytes)
+    }
+
+    @Test
+    fun compactReadList() {
+        val tracks = listOf(
+                createTrack(0).apply { isCompactPoints = true },
+                createTrack(1).apply { isCompactPoints = true },
+                createTrack(30),
+                createTrack(20).apply { isCompactPoints = true })
+        val data = Storable.getAsBytes(tracks)!!
+        for (lazy in listOf(false, true)) {
+            val result = Storable.readList(data) { Track().apply { isLazyRead = lazy } }
+            assertEquals(tracks.size, result.size)
+            for (i in tracks.indices) {
+                assertEquals(tracks[i].isCompactPoints, result[i].isCompactPoints)
+                assertTrack(tracks[i], result[i])
+            }
+        }
+    }
+
+    @Test
+    fun columnarPoints() {
+        val source = createTrack(40)
+        val store = TrackPoints.from(source.points)
+        val track = createTrack(0).apply {
+            id = source.id
+            name = source.name
+            breaks = ArrayList(source.breaks)
+            setPoints(store)
+        }
+
+        // store is used by the track without conversion
+        assertSame(store, track.getPointsStore())
+        assertSame(store, track.pointsColumnar)
+        assertEquals(40, track.pointsCount)
+        assertArrayEquals(source.asBytes, track.asBytes)
+        track.isCompactPoints = true
+        source.isCompactPoints = true
+        assertArrayEquals(source.asBytes, track.asBytes)
+
+        // copy does not share the store
+        val copy = track.copy as Track
+        assertNotSame(store, copy.getPointsStore())
+        assertArrayEquals(track.asBytes, copy.asBytes)
+
+        // access to points converts the store
+        assertTrack(source, track)
+        assertNull(track.pointsColumnar)
+        assertNotSame(store, track.getPointsStore())
+        assertArrayEquals(source.asBytes, track.asBytes)
+    }
+
+    @Test
+    fun compactReadColumnar() {
+        val track = createTrack(50).apply { isCompactPoints = true }
+        val data = track.asBytes!!
+
+        // eager read keeps points in columnar form
+        val result = Track().apply { read(data) }
+        assertEquals(50, result.pointsColumnar!!.size)
+        assertEquals(50, result.pointsCount)
+        assertArrayEquals(data, result.asBytes)
+
+        // lazy read adopts decoded store
+        val lazy = Track().apply {
+            isLazyRead = true
+            read(data)
+        }
+        assertNull(lazy.pointsColumnar)
+        val store = lazy.getPointsStore()
+        assertSame(store, lazy.getPointsStore())
+        assertArrayEquals(data, lazy.asBytes)
+        assertTrack(track, lazy)
+    }
+
+    @Test
+    fun readVersion8() {
+        val track = createTrack(10).apply { timeUpdated = 5000L }
+
+        // V8 does not contain V9 flag of compact points
+        val data = changeVersion(track.asBytes!!, 8, 1)
+        val result = Track().apply { read(data) }
+        assertFalse(result.isCompactPoints)
+        assertEquals(5000L, result.timeUpdated)
+        assertEquals(track.privacy, result.privacy)
+        assertTrack(track, result)
+        assertArrayEquals(track.asBytes, result.asBytes)
+    }
+
+    @Test
+    fun readVersion6() {
+        val track = createTrack(10).apply {
+            timeUpdated = 5000L
+            privacy = GeoData.Privacy.SHARED_URL
+        }
+
+        // V6 does not contain time of update, privacy and V9 flag of compact points
+        val trim = 8 + 4 + track.privacy.name.length + 1
+        val result = Track().apply { read(changeVersion(track.asBytes!!, 6, trim)) }
+        assertFalse(result.isCompactPoints)
+        assertEquals(GeoData.Privacy.PRIVATE, result.privacy)
+        assertTrack(track, result)
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    private fun createTrack(count: Int): Track {
+        return Track().apply {
+            id = 10L + count
+            name = "track $count"
+            for (i in 0 until count) {
+                points.add(Location(
+                        (500_000_000L + i * 1234L) / 1.0e7,
+                        (140_000_000L - i * 4321L) / 1.0e7).apply {
+                    time = 1_600_000_000_000L + i * 1000L
+                    if (i % 2 == 0) {
+                        altitude = 250.5 + i
+                    }
+                    if (i % 5 == 0) {
+                        provider = "gps"
+                        sensorHeartRate = (100 + i).toShort()
+                    }
+                })
+            }
+            waypoints.add(Point("point", Location(50.0, 14.0)))
+            breaks = arrayListOf(count / 2)
+        }
+    }
+
+    private fun assertTrack(expected: Track, track: Track) {
+        assertEquals(expected.id, track.id)
+        assertEquals(expected.name, track.name)
+        assertEquals(expected.breaks, track.breaks)
+        assertEquals(expected.waypoints.size, track.waypoints.size)
+        assertEquals(expected.points.size, track.points.size)
+        for (i in expected.points.indices) {
+            assertArrayEquals("point $i", expected.points[i].asBytes, track.points[i].asBytes)
+        }
+    }
+
+    /**
+     * Change serialized track to older [version] by removing [trim] bytes of newer values
+     * from the end of the body.
+     */
+    private fun changeVersion(data: ByteArray, version: Int, trim: Int): ByteArray {
+        val dr = DataReaderBigEndian(data)
+        dr.readInt()
+        val size = dr.readInt()
+        return DataWriterBigEndian().apply {
+            writeInt(version)
+            writeInt(size - trim)
+            write(data, 8, size - trim)
+        }.toByteArray()
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.utils
+
+import locus.api.objects.extra.Location
+import locus.api.objects.geoData.Point
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class DataStringDeduplicationTest {
+
+    @Test
+    fun enabledForLongLists() {
+        // short list does not enable deduplication
+        val dr = DataReaderBigEndian(write {
+            it.writeListString(List(7) { "a" })
+            it.writeListString(List(8) { "b" })
+        })
+        val short = dr.readListString()
+        assertFalse(dr.isStringDeduplication)
+        assertNotSame(short[0], short[1])
+
+        // long list enables it for rest of reading
+        val long = dr.readListString()
+        assertTrue(dr.isStringDeduplication)
+        assertEquals(List(8) { "b" }, long)
+        for (value in long) {
+            assertSame(long[0], value)
+        }
+    }
+
+    @Test
+    fun repeatedValuesShared() {
+        val values = List(200) { "value ${it % 13}" }
+        val result = DataReaderBigEndian(write { it.writeListString(values) }).readListString()
+        assertEquals(values, result)
+        for (i in 13 until values.size) {
+            assertSame(result[i - 13], result[i])
+        }
+
+        // also strings read inside of list of objects
+        val points = List(50) { Point("name ${it % 3}", Location(50.0, 14.0)) }
+        val read = DataReaderBigEndian(write { it.writeListStorable(points) })
+                .readListStorable { Point() }
+        assertEquals(points.map { it.name }, read.map { it.name })
+        assertSame(read[0].name, read[3].name)
+    }
+
+    @Test
+    fun slotCollisions() {
+        // different texts of same length stored in same slot of table
+        val (first, second) = findCollision(6)
+        assertNotEquals(first, second)
+        assertEquals(first.length, second.length)
+        val values = List(40) { if (it % 3 == 0) first else second }
+        val result = DataReaderBigEndian(write { it.writeListString(values) }).readListString()
+        assertEquals(values, result)
+
+        // value is shared only while it stays in the slot
+        assertSame(result[1], result[2])
+        assertEquals(second, result[4])
+    }
+
+    @Test
+    fun longStringsNotShared() {
+        val values = listOf("x".repeat(128), "x".repeat(129), "ž".repeat(64), "ž".repeat(65),
+                "y".repeat(1000))
+        val list = (values + values).shuffled(java.util.Random(1L))
+        val result = DataReaderBigEndian(write { it.writeListString(list) }).readListString()
+        assertEquals(list, result)
+        for (value in values) {
+            val read = result.filter { it == value }
+            assertEquals(2, read.size)
+            if (value.toByteArray().size <= 128) {
+                assertSame(read[0], read[1])
+            } else {
+                assertNotSame(read[0], read[1])
+            }
+        }
+    }
+
+    @Test
+    fun nonAsciiStrings() {
+        val values = listOf("žluťoučký kůň", "Ωμέγα", "日本語", "emoji 😀", "ascii",
+                "café", "\u0000\u007F", "ß")
+        val list = values.flatMap { listOf(it, it) }
+        val result = DataReaderBigEndian(write { it.writeListString(list) }).readListString()
+        assertEquals(list, result)
+
+        // repeated value follows directly, so it cannot be replaced in the table
+        for (i in values.indices) {
+            assertSame(result[2 * i], result[2 * i + 1])
+        }
+    }
+
+    @Test
+    fun disabledStaysDisabled() {
+        val values = List(20) { "same" }
+        val dr = DataReaderBigEndian(write {
+            it.writeListString(values)
+            it.writeListString(values)
+            it.writeListStorable(List(10) { Point("same", Location(50.0, 14.0)) })
+        })
+        dr.setStringDeduplication(false)
+        val first = dr.readListString()
+        val second = dr.readListString()
+        val points = dr.readListStorable { Point() }
+        assertFalse(dr.isStringDeduplication)
+        assertEquals(values, first)
+        assertEquals(values, second)
+        assertNotSame(first[0], first[1])
+        assertNotSame(second[0], second[1])
+        assertNotSame(points[0].name, points[1].name)
+
+        // enable again
+        val dr2 = DataReaderBigEndian(write { it.writeListString(values) })
+        dr2.setStringDeduplication(false)
+        dr2.setStringDeduplication(true)
+        val result = dr2.readListString()
+        assertSame(result[0], result[1])
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    private fun write(action: (DataWriterBigEndian) -> Unit): ByteArray {
+        return DataWriterBigEndian().apply(action).toByteArray()
+    }
+
+    /**
+     * Find two different ASCII texts with certain length that use same slot of the table.
+     */
+    private fun findCollision(length: Int): Pair<String, String> {
+        val slots = HashMap<Int, String>()
+        var i = 0
+        while (true) {
+            val text = i.toString().padStart(length, 'k')
+            var hash = length
+            for (b in text.toByteArray()) {
+                hash = 31 * hash + b
+            }
+            val slot = (hash xor (hash ushr 16)) and 255
+            slots.put(slot, text)?.let {
+                return it to text
+            }
+            i++
+        }
+    }
+}
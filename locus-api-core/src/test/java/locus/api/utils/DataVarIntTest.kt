@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.utils
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class DataVarIntTest {
+
+    @Test
+    fun varIntEncoding() {
+        assertArrayEquals(bytes(0x00), write { it.writeVarInt(0) })
+        assertArrayEquals(bytes(0x7F), write { it.writeVarInt(127) })
+        assertArrayEquals(bytes(0x80, 0x01), write { it.writeVarInt(128) })
+        assertArrayEquals(bytes(0xAC, 0x02), write { it.writeVarInt(300) })
+        assertArrayEquals(bytes(0xFF, 0xFF, 0xFF, 0xFF, 0x0F), write { it.writeVarInt(-1) })
+    }
+
+    @Test
+    fun varIntSignedEncoding() {
+        assertArrayEquals(bytes(0x00), write { it.writeVarIntSigned(0) })
+        assertArrayEquals(bytes(0x01), write { it.writeVarIntSigned(-1) })
+        assertArrayEquals(bytes(0x02), write { it.writeVarIntSigned(1) })
+        assertArrayEquals(bytes(0x7F), write { it.writeVarIntSigned(-64) })
+        assertArrayEquals(bytes(0x80, 0x01), write { it.writeVarIntSigned(64) })
+    }
+
+    @Test
+    fun varIntRoundTrip() {
+        val values = intArrayOf(0, 1, 63, 64, 127, 128, 16383, 16384, 2097151, 2097152,
+                Int.MAX_VALUE, -1, -64, -65, Int.MIN_VALUE)
+        val data = write { dw ->
+            values.forEach {
+                dw.writeVarInt(it)
+                dw.writeVarIntSigned(it)
+            }
+        }
+        val dr = DataReaderBigEndian(data)
+        values.forEach {
+            assertEquals(it, dr.readVarInt())
+            assertEquals(it, dr.readVarIntSigned())
+        }
+        assertEquals(0, dr.available())
+    }
+
+    @Test
+    fun varLongRoundTrip() {
+        val values = longArrayOf(0L, 1L, 127L, 128L, Int.MAX_VALUE + 1L, 1L shl 56,
+                Long.MAX_VALUE, -1L, Int.MIN_VALUE - 1L, Long.MIN_VALUE)
+        val data = write { dw ->
+            values.forEach {
+                dw.writeVarLong(it)
+                dw.writeVarLongSigned(it)
+            }
+        }
+        val dr = DataReaderBigEndian(data)
+        values.forEach {
+            assertEquals(it, dr.readVarLong())
+            assertEquals(it, dr.readVarLongSigned())
+        }
+        assertEquals(0, dr.available())
+        assertEquals(10, write { it.writeVarLong(-1L) }.size)
+        assertEquals(1, write { it.writeVarLongSigned(-1L) }.size)
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException::class)
+    fun varIntTruncated() {
+        DataReaderBigEndian(bytes(0x80, 0x80)).readVarInt()
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    private fun write(writer: (DataWriterBigEndian) -> Unit): ByteArray {
+        return DataWriterBigEndian().apply(writer).toByteArray()
+    }
+
+    private fun bytes(vararg values: Int): ByteArray {
+        return ByteArray(values.size) { values[it].toByte() }
+    }
+}
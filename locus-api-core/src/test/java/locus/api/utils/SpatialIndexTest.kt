@@ -0,0 +1,215 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.utils
+
+import locus.api.objects.extra.Location
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+
+class SpatialIndexTest {
+
+    @Test
+    fun nearestMatchesScan() {
+        val random = Random(1L)
+        for (cellSize in doubleArrayOf(0.5, 7.0, 30.0, 90.0)) {
+            val items = randomItems(random, 2000)
+            val index = SpatialIndex(cellSize) { item: Item -> item.loc }
+                    .apply { insertAll(items) }
+            for (query in queries(random)) {
+                for (limit in intArrayOf(1, 5, 50)) {
+                    assertNearest(index, items, query, limit, Double.MAX_VALUE)
+                    assertNearest(index, items, query, limit, 500_000.0)
+                }
+            }
+        }
+    }
+
+    @Test
+    fun nearestWrapsAroundGlobe() {
+        // few columns, so rings wrap around the globe already for small rings
+        val random = Random(2L)
+        val items = randomItems(random, 300)
+        for (cellSize in doubleArrayOf(45.0, 60.0, 90.0)) {
+            val index = SpatialIndex(cellSize) { item: Item -> item.loc }
+                    .apply { insertAll(items) }
+            for (query in queries(random)) {
+                assertNearest(index, items, query, items.size, Double.MAX_VALUE)
+            }
+        }
+    }
+
+    @Test
+    fun radiusMatchesScan() {
+        val random = Random(3L)
+        for (cellSize in doubleArrayOf(0.5, 7.0, 30.0)) {
+            val items = randomItems(random, 2000)
+            val index = SpatialIndex(cellSize) { item: Item -> item.loc }
+                    .apply { insertAll(items) }
+            for (query in queries(random)) {
+                for (radius in doubleArrayOf(0.0, 10_000.0, 300_000.0, 3_000_000.0, 30_000_000.0)) {
+                    val expected = items.filter { distance(query, it) <= radius }.ids()
+                    val found = index.findInRadius(query.latitude, query.longitude, radius)
+                    assertEquals("$query, radius $radius", expected, found.ids())
+                }
+            }
+        }
+    }
+
+    @Test
+    fun boundsMatchesScan() {
+        val random = Random(4L)
+        val items = randomItems(random, 2000)
+        val index = SpatialIndex(2.0) { item: Item -> item.loc }.apply { insertAll(items) }
+        val boxes = mutableListOf(
+                doubleArrayOf(-10.0, 170.0, 10.0, -170.0),
+                doubleArrayOf(80.0, -180.0, 90.0, 180.0),
+                doubleArrayOf(-90.0, 179.5, 90.0, -179.5),
+                doubleArrayOf(-90.0, -180.0, 90.0, 180.0))
+        repeat(100) {
+            val lat1 = random.nextDouble() * 180.0 - 90.0
+            val lat2 = random.nextDouble() * 180.0 - 90.0
+            boxes.add(doubleArrayOf(minOf(lat1, lat2), random.nextDouble() * 360.0 - 180.0,
+                    maxOf(lat1, lat2), random.nextDouble() * 360.0 - 180.0))
+        }
+        for (box in boxes) {
+            val (latMin, lonMin, latMax, lonMax) = box.toList()
+            val expected = items.filter {
+                val lon = it.loc.longitude
+                it.loc.latitude in latMin..latMax && if (lonMin > lonMax) {
+                    lon >= lonMin || lon <= lonMax
+                } else {
+                    lon in lonMin..lonMax
+                }
+            }.ids()
+            assertEquals(box.contentToString(), expected,
+                    index.findInBounds(latMin, lonMin, latMax, lonMax).ids())
+        }
+    }
+
+    @Test
+    fun removeReusesSlots() {
+        val random = Random(5L)
+        val items = randomItems(random, 500).toMutableList()
+        val index = SpatialIndex(5.0) { item: Item -> item.loc }.apply { insertAll(items) }
+
+        // remove half of items, one with changed location
+        val removed = items.filterIndexed { i, _ -> i % 2 == 0 }
+        removed[0].loc = Location(0.0, 0.0)
+        for (item in removed) {
+            assertTrue(index.remove(item))
+            assertFalse(index.remove(item))
+        }
+        items.removeAll(removed)
+        assertEquals(items.size, index.size)
+
+        // insert new items into free slots
+        val added = randomItems(random, 300, 10_000)
+        index.insertAll(added)
+        items.addAll(added)
+        assertEquals(items.size, index.size)
+        for (query in queries(random)) {
+            assertNearest(index, items, query, 20, Double.MAX_VALUE)
+            assertEquals(items.filter { distance(query, it) <= 1_000_000.0 }.ids(),
+                    index.findInRadius(query.latitude, query.longitude, 1_000_000.0).ids())
+        }
+        assertEquals(items.ids(), index.findInBounds(-90.0, -180.0, 90.0, 180.0).ids())
+
+        // clear
+        index.clear()
+        assertEquals(0, index.size)
+        assertTrue(index.findNearest(0.0, 0.0, 10).isEmpty())
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Indexed item, compared by identity.
+     */
+    private class Item(val id: Int, var loc: Location)
+
+    /**
+     * Random items over whole globe, with clusters around anti-meridian and poles.
+     */
+    private fun randomItems(random: Random, count: Int, firstId: Int = 0): List<Item> {
+        return List(count) {
+            val loc = when (it % 4) {
+                0 -> Location(random.nextDouble() * 180.0 - 90.0,
+                        random.nextDouble() * 360.0 - 180.0)
+                1 -> Location(random.nextDouble() * 20.0 - 10.0,
+                        if (random.nextBoolean()) 180.0 - random.nextDouble() * 2.0
+                        else -180.0 + random.nextDouble() * 2.0)
+                2 -> Location(90.0 - random.nextDouble() * 3.0,
+                        random.nextDouble() * 360.0 - 180.0)
+                else -> Location(-90.0 + random.nextDouble() * 3.0,
+                        random.nextDouble() * 360.0 - 180.0)
+            }
+            Item(firstId + it, loc)
+        }
+    }
+
+    /**
+     * Random query locations together with edge cases.
+     */
+    private fun queries(random: Random): List<Location> {
+        val result = mutableListOf(
+                Location(0.0, 180.0),
+                Location(0.0, -180.0),
+                Location(5.0, 179.99),
+                Location(-5.0, -179.99),
+                Location(90.0, 0.0),
+                Location(-90.0, 45.0),
+                Location(89.9, 179.9),
+                Location(-88.0, -120.0))
+        repeat(30) {
+            result.add(Location(random.nextDouble() * 180.0 - 90.0,
+                    random.nextDouble() * 360.0 - 180.0))
+        }
+        return result
+    }
+
+    private fun distance(loc: Location, item: Item): Double {
+        return LocationCompute.computeDistanceFast(loc, item.loc)
+    }
+
+    private fun List<Item>.ids(): List<Int> {
+        return map { it.id }.sorted()
+    }
+
+    /**
+     * Compare nearest items with result of linear scan. Items with equal distance may be
+     * in any order, so distances are compared.
+     */
+    private fun assertNearest(index: SpatialIndex<Item>, items: List<Item>, query: Location,
+            limit: Int, maxRadius: Double) {
+        val expected = items
+                .map { distance(query, it) }
+                .filter { it <= maxRadius }
+                .sorted()
+                .take(limit)
+        val found = index.findNearest(query, limit, maxRadius).map { distance(query, it) }
+        assertEquals("$query, limit $limit, radius $maxRadius", expected, found)
+    }
+}
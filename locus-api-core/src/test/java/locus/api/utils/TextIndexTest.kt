@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012, Asamm Software, s. r. o.
+ *
+ * This file is part of LocusAPI.
+ *
+ * LocusAPI is free software: you can redistribute it and/or modify
+ * it under the terms of the Lesser GNU General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * LocusAPI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Lesser GNU General Public License for more details.
+ *
+ * You should have received a copy of the Lesser GNU General Public
+ * License along with LocusAPI. If not, see
+ * <http://www.gnu.org/licenses/lgpl.html/>.
+ */
+
+package locus.api.utils
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+
+class TextIndexTest {
+
+    @Test
+    fun tokenize() {
+        assertEquals(listOf("prilis", "zlutoucky", "kun", "upel", "dabelske", "ody"),
+                tokens("Příliš žluťoučký kůň úpěl ĎÁBELSKÉ ódy"))
+
+        // characters out of folding table are only converted to lower case
+        assertEquals(listOf("ωмега"), tokens("ΩМЕГА"))
+        assertEquals(listOf("strasse", "cafe", "12a"), tokens("STRASSE, café-12a"))
+        assertEquals(listOf("bold", "text", "link", "end"),
+                tokens("<b>bold</b>&nbsp;text <a href=\"x\">link</a><!-- -->&#160;end"))
+        assertEquals(listOf("a", "b", "amp", "c"), tokens("a < b &amp c"))
+        assertEquals(listOf("x", "y"), tokens("x & y"))
+        assertEquals(listOf("unclosed", "a", "href"), tokens("unclosed <a href"))
+    }
+
+    @Test
+    fun findFoldsAccents() {
+        val index = createIndex(listOf(
+                "Příliš žluťoučký kůň",
+                "<p>Kun v&nbsp;<i>lese</i></p>",
+                "Zlutoucky pes"))
+        assertEquals(listOf(0), index.find("prilis KUN").ids())
+        assertEquals(listOf(0, 2), index.find("žlutoucky").ids())
+        assertEquals(listOf(0, 1), index.find("kůň", prefix = false).ids())
+        assertEquals(listOf(1), index.find("kun lese").ids())
+
+        // content of HTML tags and entities is not indexed
+        assertTrue(index.find("nbsp").isEmpty())
+        assertTrue(index.find("p", prefix = false).isEmpty())
+        assertTrue(index.find("i", prefix = false).isEmpty())
+    }
+
+    @Test
+    fun findPrefixMatchesItemOnce() {
+        val index = createIndex(listOf(
+                "house houses household",
+                "horse hose",
+                "houses",
+                "hotel house horse"))
+
+        // several tokens of single item match every word of the query
+        assertEquals(listOf(0, 2, 3), index.find("hou").ids())
+        assertEquals(listOf(0, 2, 3), index.find("hou ho").ids())
+        assertEquals(listOf(0, 2, 3), index.find("ho hou house").ids())
+        assertEquals(listOf(3), index.find("hou hot hors").ids())
+        assertEquals(listOf(0, 3), index.find("house", prefix = false).ids())
+        assertEquals(listOf(0, 1, 2, 3), index.find("h h").ids())
+        assertTrue(index.find("hou xyz").isEmpty())
+        assertTrue(index.find("  ,. ").isEmpty())
+
+        // limit
+        assertEquals(listOf(0, 2), index.find("hou", 2).ids())
+        assertTrue(index.find("hou", 0).isEmpty())
+        assertTrue(index.contains("hors hot"))
+        assertFalse(index.contains("hors", prefix = false))
+    }
+
+    @Test
+    fun updateAndRemove() {
+        val items = listOf(Item(0, "alpha beta"), Item(1, "beta gamma"), Item(2, "gamma delta"))
+        val index = TextIndex<Item> { item, consumer -> consumer(item.text) }
+        index.insertAll(items)
+        assertEquals(3, index.size)
+        assertEquals(4, index.tokensCount)
+
+        // update removes old tokens
+        items[0].text = "epsilon"
+        index.update(items[0])
+        assertEquals(3, index.size)
+        assertEquals(4, index.tokensCount)
+        assertTrue(index.find("alpha").isEmpty())
+        assertEquals(listOf(1), index.find("beta").ids())
+        assertEquals(listOf(0), index.find("eps").ids())
+
+        // remove cleans postings
+        assertTrue(index.remove(items[1]))
+        assertFalse(index.remove(items[1]))
+        assertEquals(2, index.size)
+        assertEquals(3, index.tokensCount)
+        assertTrue(index.find("beta").isEmpty())
+        assertEquals(listOf(2), index.find("gamma").ids())
+
+        // new item reuses free slot
+        val added = Item(3, "beta omega")
+        index.insert(added)
+        assertEquals(listOf(3), index.find("beta").ids())
+        assertEquals(listOf(3), index.find("bet ome").ids())
+        assertEquals(5, index.tokensCount)
+
+        // remove all
+        for (item in items + added) {
+            index.remove(item)
+        }
+        assertEquals(0, index.size)
+        assertEquals(0, index.tokensCount)
+        assertTrue(index.find("gamma").isEmpty())
+    }
+
+    @Test
+    fun findMatchesScan() {
+        val random = Random(9L)
+        val words = listOf("lake", "lakes", "lakeside", "hill", "hills", "hilltop", "road",
+                "roads", "cafe", "cave", "castle", "car", "čáp", "řeka", "<b>stone</b>",
+                "bridge", "bridges", "tower", "town", "towns")
+        val items = MutableList(400) { Item(it, randomText(random, words)) }
+        val index = TextIndex<Item> { item, consumer -> consumer(item.text) }
+        index.insertAll(items)
+
+        repeat(10) { round ->
+            // modify part of items
+            repeat(30) {
+                val item = items[random.nextInt(items.size)]
+                if (random.nextBoolean()) {
+                    item.text = randomText(random, words)
+                    index.update(item)
+                } else if (index.remove(item)) {
+                    items.remove(item)
+                    val added = Item(1000 * (round + 1) + it, randomText(random, words))
+                    items.add(added)
+                    index.insert(added)
+                }
+            }
+            assertEquals(items.size, index.size)
+
+            // compare queries with linear scan
+            repeat(100) {
+                val query = List(1 + random.nextInt(3)) {
+                    val word = tokens(words[random.nextInt(words.size)]).first()
+                    word.substring(0, 1 + random.nextInt(word.length))
+                }.joinToString(" ")
+                for (prefix in listOf(true, false)) {
+                    val queryTokens = tokens(query)
+                    val expected = items.filter { item ->
+                        val itemTokens = tokens(item.text)
+                        queryTokens.all { q ->
+                            itemTokens.any { if (prefix) it.startsWith(q) else it == q }
+                        }
+                    }
+                    assertEquals("'$query', prefix $prefix",
+                            expected.ids(), index.find(query, prefix = prefix).ids())
+                }
+            }
+        }
+    }
+
+    //*************************************************
+    // TOOLS
+    //*************************************************
+
+    /**
+     * Indexed item, compared by identity.
+     */
+    private class Item(val id: Int, var text: String)
+
+    private fun createIndex(texts: List<String>): TextIndex<Item> {
+        return TextIndex<Item> { item, consumer -> consumer(item.text) }.apply {
+            insertAll(texts.mapIndexed { i, text -> Item(i, text) })
+        }
+    }
+
+    private fun tokens(text: String): List<String> {
+        val result = ArrayList<String>()
+        TextIndex.tokenize(text) { result.add(it) }
+        return result
+    }
+
+    private fun randomText(random: Random, words: List<String>): String {
+        return List(1 + random.nextInt(4)) { words[random.nextInt(words.size)] }
+                .joinToString(if (random.nextBoolean()) " " else ", ")
+    }
+
+    private fun List<Item>.ids(): List<Int> {
+        return map { it.id }.sorted()
+    }
+}